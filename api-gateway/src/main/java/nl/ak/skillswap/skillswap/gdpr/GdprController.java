@@ -2,16 +2,24 @@ package nl.ak.skillswap.skillswap.gdpr;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.ak.skillswap.skillswap.gdpr.dto.AggregatedGdprExport;
 import nl.ak.skillswap.skillswap.gdpr.dto.GdprDeletionRequest;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import nl.ak.skillswap.skillswap.gdpr.service.GdprExportPeerClient;
 import nl.ak.skillswap.skillswap.gdpr.service.GdprOrchestrationService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -24,26 +32,86 @@ import java.util.UUID;
 @RequestMapping("/api/gdpr")
 public class GdprController {
 
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
     private final GdprOrchestrationService orchestrationService;
+    private final GdprExportPeerClient peerClient;
 
     /**
-     * Export all user data from all services.
-     * Returns aggregated data from user-service, message-service, etc.
+     * Start exporting all user data from all services.
+     * Returns the export job at once; its archive can be downloaded when it is no longer RUNNING.
      */
-    @GetMapping("/export")
-    public Mono<ResponseEntity<AggregatedGdprExport>> exportData(@AuthenticationPrincipal Jwt jwt) {
+    @PostMapping("/export")
+    public Mono<ResponseEntity<GdprExportJobStatus>> exportData(@AuthenticationPrincipal Jwt jwt) {
         String externalId = jwt.getSubject();
         UUID userId = UUID.fromString(externalId);
 
         log.info("GDPR export requested by user: {}", externalId);
 
-        return orchestrationService.requestExport(userId, externalId)
-                .map(export -> {
-                    if (export.hasErrors()) {
-                        log.warn("GDPR export completed with errors: {}", export.errors());
-                    }
-                    return ResponseEntity.ok(export);
-                });
+        return orchestrationService.startExport(userId, externalId)
+                .map(export -> ResponseEntity.accepted()
+                        .location(URI.create("/api/gdpr/export/" + export.exportId()))
+                        .body(export));
+    }
+
+    /**
+     * Progress of one of the user's exports; asked of the other gateway instances if it was not started here.
+     */
+    @GetMapping("/export/{exportId}")
+    public Mono<ResponseEntity<GdprExportJobStatus>> exportStatus(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID exportId,
+            @RequestHeader(name = GdprExportPeerClient.FORWARDED_HEADER, required = false) String forwarded
+    ) {
+        UUID userId = UUID.fromString(jwt.getSubject());
+        Optional<GdprExportJobStatus> export = orchestrationService.findExport(exportId, userId);
+        if (export.isPresent()) {
+            return Mono.just(ResponseEntity.ok(export.get()));
+        }
+        if (forwarded != null || !peerClient.hasPeers()) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        return peerClient.findExport(exportId, jwt.getTokenValue())
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Download the archive of a finished export: gzip-compressed NDJSON.
+     * A file resource is sent with zero-copy transfer, and Range requests get partial content.
+     * An export started on another gateway instance is streamed through from there.
+     */
+    @GetMapping("/export/{exportId}/download")
+    public Mono<ResponseEntity<?>> downloadExport(
+            @AuthenticationPrincipal Jwt jwt,
+            @PathVariable UUID exportId,
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(name = GdprExportPeerClient.FORWARDED_HEADER, required = false) String forwarded
+    ) {
+        UUID userId = UUID.fromString(jwt.getSubject());
+
+        Optional<GdprExportJobStatus> export = orchestrationService.findExport(exportId, userId);
+        if (export.isEmpty()) {
+            if (forwarded != null || !peerClient.hasPeers()) {
+                return Mono.just(ResponseEntity.notFound().build());
+            }
+            return peerClient.download(exportId, jwt.getTokenValue(), range)
+                    .<ResponseEntity<?>>map(response -> response)
+                    .defaultIfEmpty(ResponseEntity.notFound().build());
+        }
+        if (!export.get().downloadable()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build());
+        }
+
+        return Mono.just(orchestrationService.findArchive(exportId, userId)
+                .<ResponseEntity<?>>map(path -> ResponseEntity.ok()
+                        .contentType(GZIP)
+                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename("gdpr-export-" + exportId + ".ndjson.gz")
+                                .build()
+                                .toString())
+                        .body(new FileSystemResource(path)))
+                .orElseGet(() -> ResponseEntity.notFound().build()));
     }
 
     /**
@@ -95,7 +163,9 @@ public class GdprController {
                 ),
                 "retentionPolicy", "Data is retained until you request deletion",
                 "endpoints", Map.of(
-                        "export", "GET /api/gdpr/export",
+                        "export", "POST /api/gdpr/export",
+                        "exportStatus", "GET /api/gdpr/export/{exportId}",
+                        "exportDownload", "GET /api/gdpr/export/{exportId}/download",
                         "delete", "DELETE /api/gdpr/delete?type=FULL|ANONYMIZE"
                 )
         )));
@@ -18,26 +18,22 @@ public class GdprRabbitConfig {
     @Value("${app.gdpr.exchange:skillswap.events}")
     private String exchange;
 
-    // Queue for receiving aggregated export responses
-    public static final String GDPR_EXPORT_RESPONSE_QUEUE = "gdpr.export.response.gateway";
+    // Prefix of this instance's reply queue for export responses and chunks
+    public static final String GDPR_EXPORT_REPLY_QUEUE_PREFIX = "gdpr.export.reply.gateway.";
 
     @Bean
     public TopicExchange gdprExchange() {
         return new TopicExchange(exchange);
     }
 
+    /**
+     * Reply queue of this gateway instance, named in every export request it publishes.
+     * Exclusive and auto-delete, so replies only reach the instance that holds the export;
+     * services publish to it through the default exchange, which needs no binding.
+     */
     @Bean
-    public Queue gdprExportResponseQueue() {
-        return QueueBuilder.durable(GDPR_EXPORT_RESPONSE_QUEUE)
-                .withArgument("x-message-ttl", 60000) // 60 second TTL for responses
-                .build();
-    }
-
-    @Bean
-    public Binding gdprExportResponseBinding(Queue gdprExportResponseQueue, TopicExchange gdprExchange) {
-        return BindingBuilder.bind(gdprExportResponseQueue)
-                .to(gdprExchange)
-                .with("gdpr.export.response");
+    public Queue gdprExportReplyQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy(GDPR_EXPORT_REPLY_QUEUE_PREFIX));
     }
 
     @Bean
@@ -0,0 +1,17 @@
+package nl.ak.skillswap.skillswap.gdpr.dto;
+
+import java.util.UUID;
+
+/**
+ * One part of a service's streamed GDPR export.
+ * Received from RabbitMQ; numbered from 0, the chunk marked {@code last} closes the export.
+ */
+public record GdprExportChunk(
+        UUID correlationId,
+        String serviceName,
+        UUID userId,
+        int sequence,
+        boolean last,
+        int lines,
+        String data  // NDJSON, one record per line
+) {}
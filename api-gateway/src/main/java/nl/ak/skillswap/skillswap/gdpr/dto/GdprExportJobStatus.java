@@ -0,0 +1,30 @@
+package nl.ak.skillswap.skillswap.gdpr.dto;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Progress of an asynchronous GDPR export.
+ * The archive can be downloaded once the export is no longer RUNNING, unless it FAILED.
+ */
+public record GdprExportJobStatus(
+        UUID exportId,
+        Status status,
+        Instant createdAt,
+        Instant completedAt,
+        Map<String, String> services,  // service name -> PENDING, RECEIVING, COMPLETED, FAILED or TIMED_OUT
+        Map<String, String> errors,
+        long sizeBytes
+) {
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        PARTIAL,  // some services failed or did not answer in time
+        FAILED    // the archive could not be written
+    }
+
+    public boolean downloadable() {
+        return status == Status.COMPLETED || status == Status.PARTIAL;
+    }
+}
@@ -6,19 +6,22 @@ import java.util.UUID;
 /**
  * Event requesting GDPR data export for a user.
  * Published to RabbitMQ, consumed by all services.
+ * Services answer on {@code replyTo}, the reply queue of the gateway instance that asked.
  */
 public record GdprExportRequest(
         UUID correlationId,
         UUID userId,
         String userExternalId,
-        Instant requestedAt
+        Instant requestedAt,
+        String replyTo
 ) {
-    public static GdprExportRequest create(UUID userId, String userExternalId) {
+    public static GdprExportRequest create(UUID userId, String userExternalId, String replyTo) {
         return new GdprExportRequest(
                 UUID.randomUUID(),
                 userId,
                 userExternalId,
-                Instant.now()
+                Instant.now(),
+                replyTo
         );
     }
 }
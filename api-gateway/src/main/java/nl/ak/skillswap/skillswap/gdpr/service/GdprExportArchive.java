@@ -0,0 +1,122 @@
+package nl.ak.skillswap.skillswap.gdpr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip-compressed NDJSON file that export records are appended to as they arrive.
+ *
+ * Every line carries a {@code type}: one {@code header}, then {@code data} (a service's whole
+ * export in one response), {@code record} (one line of a streamed export) and {@code error}
+ * lines in arrival order, and a closing {@code summary}. Streamed lines are copied without
+ * being parsed, so only the compressor's buffers are held in memory. Not thread-safe.
+ */
+class GdprExportArchive implements AutoCloseable {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final byte[] RECORD_END = "}\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final OutputStream out;
+
+    private record Header(String type, UUID exportId, UUID userId, Instant createdAt) {}
+
+    private record Data(String type, String service, Object data) {}
+
+    private record Failure(String type, String service, String error) {}
+
+    private record Summary(String type, String status, Map<String, String> services,
+                           Map<String, String> errors, Instant completedAt) {}
+
+    GdprExportArchive(Path path, ObjectMapper objectMapper, UUID exportId, UUID userId, Instant createdAt) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        try {
+            this.out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_BYTES), BUFFER_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writeLine(new Header("header", exportId, userId, createdAt));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    void writeData(String service, Object data) {
+        writeLine(new Data("data", service, data));
+    }
+
+    /**
+     * Append the lines of a streamed chunk, each wrapped with the service it came from.
+     */
+    void writeRecords(String service, String ndjson) {
+        try {
+            byte[] prefix = ("{\"type\":\"record\",\"service\":" + objectMapper.writeValueAsString(service) + ",\"record\":")
+                    .getBytes(StandardCharsets.UTF_8);
+            int start = 0;
+            while (start < ndjson.length()) {
+                int end = ndjson.indexOf('\n', start);
+                if (end < 0) end = ndjson.length();
+                String line = ndjson.substring(start, end);
+                if (!line.isBlank()) {
+                    out.write(prefix);
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                    out.write(RECORD_END);
+                }
+                start = end + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void writeError(String service, String error) {
+        writeLine(new Failure("error", service, error));
+    }
+
+    /**
+     * Write the summary and close the file.
+     *
+     * @return the size of the archive in bytes
+     */
+    long finish(String status, Map<String, String> services, Map<String, String> errors, Instant completedAt) {
+        writeLine(new Summary("summary", status, services, errors, completedAt));
+        close();
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(Object line) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package nl.ak.skillswap.skillswap.gdpr.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportChunk;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * One export in progress or done: which services have answered, and the archive their data
+ * is written to as it arrives.
+ *
+ * A service either answers with one response or streams its export as chunks. Chunks are
+ * appended in sequence order; one that arrives early waits until the chunks before it are in.
+ * A failure response after some chunks keeps what was written and adds the error. Responses and
+ * chunks arrive on different listener threads, hence the synchronized methods.
+ *
+ * A service times out when nothing has arrived from it for the inactivity timeout, so a large
+ * export that keeps streaming chunks is never cut off mid-stream. An optional overall deadline
+ * bounds the whole export regardless.
+ */
+@Slf4j
+class GdprExportJob {
+
+    enum ServiceState { PENDING, RECEIVING, COMPLETED, FAILED, TIMED_OUT }
+
+    /**
+     * Told when a service, and then the whole export, has finished one way or another.
+     */
+    interface Listener {
+        void serviceFinished(String service, ServiceState state, Duration elapsed);
+
+        void exportFinished(GdprExportJobStatus status);
+    }
+
+    private final UUID exportId;
+    private final UUID userId;
+    private final Instant createdAt;
+    private final LongSupplier clock;
+    private final long startNanos;
+    private final GdprExportArchive archive;
+    private final Listener listener;
+
+    private final Map<String, ServiceState> services = new LinkedHashMap<>();
+    // Last time each service's response or chunk arrived, in clock nanos
+    private final Map<String, Long> lastActivity = new HashMap<>();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+    private final Map<String, PendingChunks> pendingChunks = new HashMap<>();
+
+    private GdprExportJobStatus.Status status = GdprExportJobStatus.Status.RUNNING;
+    private Instant completedAt;
+    private long sizeBytes;
+
+    GdprExportJob(UUID exportId, UUID userId, Instant createdAt, Collection<String> expectedServices,
+                  GdprExportArchive archive, Listener listener) {
+        this(exportId, userId, createdAt, expectedServices, archive, listener, System::nanoTime);
+    }
+
+    GdprExportJob(UUID exportId, UUID userId, Instant createdAt, Collection<String> expectedServices,
+                  GdprExportArchive archive, Listener listener, LongSupplier clock) {
+        this.exportId = exportId;
+        this.userId = userId;
+        this.createdAt = createdAt;
+        this.archive = archive;
+        this.listener = listener;
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+        expectedServices.forEach(service -> {
+            services.put(service, ServiceState.PENDING);
+            lastActivity.put(service, startNanos);
+        });
+    }
+
+    UUID userId() {
+        return userId;
+    }
+
+    synchronized void addResponse(GdprExportResponse response) {
+        String service = response.serviceName();
+        if (!accepts(service)) return;
+        pendingChunks.remove(service);
+        write(() -> {
+            if (response.success()) {
+                archive.writeData(service, response.data());
+            } else {
+                archive.writeError(service, response.errorMessage());
+            }
+        });
+        if (response.success()) {
+            finishService(service, ServiceState.COMPLETED);
+        } else {
+            errors.put(service, response.errorMessage());
+            finishService(service, ServiceState.FAILED);
+        }
+    }
+
+    synchronized void addChunk(GdprExportChunk chunk) {
+        String service = chunk.serviceName();
+        if (!accepts(service)) return;
+        services.put(service, ServiceState.RECEIVING);
+        lastActivity.put(service, clock.getAsLong());
+
+        PendingChunks pending = pendingChunks.computeIfAbsent(service, s -> new PendingChunks());
+        for (GdprExportChunk next : pending.offer(chunk)) {
+            write(() -> archive.writeRecords(service, next.data()));
+            if (next.last()) {
+                pendingChunks.remove(service);
+                finishService(service, ServiceState.COMPLETED);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Give up on the services that sent nothing for {@code inactivityTimeout}, or on every unfinished
+     * service once the export has run for {@code maxDuration}; a zero {@code maxDuration} means no
+     * overall deadline. The archive is closed once no service is left.
+     *
+     * @return the services that timed out now
+     */
+    synchronized List<String> expireInactive(Duration inactivityTimeout, Duration maxDuration) {
+        if (status != GdprExportJobStatus.Status.RUNNING) return List.of();
+        long now = clock.getAsLong();
+        boolean overdue = !maxDuration.isZero() && now - startNanos >= maxDuration.toNanos();
+        List<String> late = services.entrySet().stream()
+                .filter(e -> e.getValue() == ServiceState.PENDING || e.getValue() == ServiceState.RECEIVING)
+                .map(Map.Entry::getKey)
+                .filter(service -> overdue || now - lastActivity.get(service) >= inactivityTimeout.toNanos())
+                .toList();
+        String error = overdue ? "Export did not complete within the maximum duration"
+                : "No data received within the inactivity timeout";
+        for (String service : late) {
+            errors.put(service, error);
+            write(() -> archive.writeError(service, error));
+            finishService(service, ServiceState.TIMED_OUT);
+        }
+        return late;
+    }
+
+    synchronized boolean finished() {
+        return status != GdprExportJobStatus.Status.RUNNING;
+    }
+
+    synchronized Instant completedAt() {
+        return completedAt;
+    }
+
+    synchronized GdprExportJobStatus status() {
+        Map<String, String> serviceStates = new LinkedHashMap<>();
+        services.forEach((service, state) -> serviceStates.put(service, state.name()));
+        return new GdprExportJobStatus(exportId, status, createdAt, completedAt, serviceStates,
+                new LinkedHashMap<>(errors), sizeBytes);
+    }
+
+    /**
+     * Close and remove the archive, whether or not the export finished.
+     */
+    synchronized void discard() {
+        try {
+            archive.close();
+        } catch (RuntimeException e) {
+            log.debug("Failed to close GDPR export archive {}: {}", exportId, e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(archive.path());
+        } catch (IOException e) {
+            log.warn("Failed to delete GDPR export archive {}: {}", archive.path(), e.getMessage());
+        }
+    }
+
+    private boolean accepts(String service) {
+        ServiceState state = services.get(service);
+        if (state == null) {
+            log.warn("Ignoring GDPR export data from unexpected service {} for export {}", service, exportId);
+            return false;
+        }
+        return status == GdprExportJobStatus.Status.RUNNING
+                && (state == ServiceState.PENDING || state == ServiceState.RECEIVING);
+    }
+
+    private void finishService(String service, ServiceState state) {
+        services.put(service, state);
+        listener.serviceFinished(service, state, Duration.ofNanos(clock.getAsLong() - startNanos));
+        if (status != GdprExportJobStatus.Status.RUNNING) return;
+
+        boolean allDone = services.values().stream()
+                .noneMatch(s -> s == ServiceState.PENDING || s == ServiceState.RECEIVING);
+        if (!allDone) return;
+
+        completedAt = Instant.now();
+        Map<String, String> serviceStates = new LinkedHashMap<>();
+        services.forEach((s, st) -> serviceStates.put(s, st.name()));
+        write(() -> sizeBytes = archive.finish(
+                (errors.isEmpty() ? GdprExportJobStatus.Status.COMPLETED : GdprExportJobStatus.Status.PARTIAL).name(),
+                serviceStates, errors, completedAt));
+        if (status == GdprExportJobStatus.Status.RUNNING) {
+            status = errors.isEmpty() ? GdprExportJobStatus.Status.COMPLETED : GdprExportJobStatus.Status.PARTIAL;
+            listener.exportFinished(status());
+        }
+    }
+
+    // A disk error ends the whole export; there is no archive left to offer
+    private void write(Runnable write) {
+        if (status == GdprExportJobStatus.Status.FAILED) return;
+        try {
+            write.run();
+        } catch (RuntimeException e) {
+            log.error("Failed to write GDPR export archive {}: {}", exportId, e.getMessage(), e);
+            status = GdprExportJobStatus.Status.FAILED;
+            completedAt = Instant.now();
+            errors.put("archive", "Export could not be written");
+            discard();
+            listener.exportFinished(status());
+        }
+    }
+
+    /**
+     * Chunks of one service that arrived ahead of their turn, keyed by sequence number.
+     */
+    private static class PendingChunks {
+        private final SortedMap<Integer, GdprExportChunk> early = new TreeMap<>();
+        private int nextSequence;
+
+        /**
+         * @return the chunks that can be written now, in order
+         */
+        List<GdprExportChunk> offer(GdprExportChunk chunk) {
+            if (chunk.sequence() < nextSequence) return List.of();  // redelivered
+            early.putIfAbsent(chunk.sequence(), chunk);
+
+            List<GdprExportChunk> ready = new ArrayList<>();
+            while (!early.isEmpty() && early.firstKey() == nextSequence) {
+                ready.add(early.remove(early.firstKey()));
+                nextSequence++;
+            }
+            return ready;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package nl.ak.skillswap.skillswap.gdpr.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Finds exports held by the other gateway instances.
+ *
+ * An export lives on the instance that started it, but a load balancer may send the status poll
+ * or the download to any instance. On a local miss the controller asks each of
+ * {@code app.gdpr.export.peers} in turn, passing on the user's token, and relays the first answer.
+ * Forwarded requests carry {@link #FORWARDED_HEADER} and are only ever answered locally. Without
+ * peers configured the gateway must run as a single instance, or route {@code /api/gdpr/export/**}
+ * stickily to the instance that started the export.
+ */
+@Slf4j
+@Component
+public class GdprExportPeerClient {
+
+    public static final String FORWARDED_HEADER = "X-Gdpr-Export-Forwarded";
+
+    private static final String STATUS_PATH = "/api/gdpr/export/{exportId}";
+    private static final String DOWNLOAD_PATH = "/api/gdpr/export/{exportId}/download";
+
+    // Headers of a relayed download that belong to the hop between the instances
+    private static final List<String> HOP_HEADERS =
+            List.of(HttpHeaders.CONNECTION, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.KEEP_ALIVE);
+
+    private final WebClient webClient;
+    private final List<String> peers;
+    private final Duration timeout;
+
+    public GdprExportPeerClient(WebClient.Builder webClientBuilder,
+                                @Value("${app.gdpr.export.peers:}") List<String> peers,
+                                @Value("${app.gdpr.export.peer-timeout-ms:2000}") long timeoutMs) {
+        this.webClient = webClientBuilder.build();
+        // This instance may be listed too; it answers its own forwarded request with 404
+        this.peers = peers.stream().map(String::strip).filter(peer -> !peer.isEmpty()).toList();
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    public boolean hasPeers() {
+        return !peers.isEmpty();
+    }
+
+    /**
+     * Status of the export from whichever peer holds it; empty when none does.
+     */
+    public Mono<ResponseEntity<GdprExportJobStatus>> findExport(UUID exportId, String bearerToken) {
+        return Flux.fromIterable(peers)
+                .concatMap(peer -> webClient.get()
+                        .uri(peer + STATUS_PATH, exportId)
+                        .headers(headers -> forwardedHeaders(headers, bearerToken, null))
+                        .retrieve()
+                        .toEntity(GdprExportJobStatus.class)
+                        .timeout(timeout)
+                        .onErrorResume(e -> notHeld(peer, exportId, e)))
+                .next();
+    }
+
+    /**
+     * Download of the export from whichever peer holds it, streamed through; empty when none does.
+     * A peer that holds the export but cannot serve it yet answers with its own status, e.g. 409.
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> download(UUID exportId, String bearerToken, String range) {
+        return Flux.fromIterable(peers)
+                .concatMap(peer -> webClient.get()
+                        .uri(peer + DOWNLOAD_PATH, exportId)
+                        .headers(headers -> forwardedHeaders(headers, bearerToken, range))
+                        .retrieve()
+                        .onStatus(status -> status.value() == HttpStatus.CONFLICT.value(), response -> Mono.empty())
+                        .toEntityFlux(DataBuffer.class)
+                        .timeout(timeout)
+                        .map(GdprExportPeerClient::relayed)
+                        .onErrorResume(e -> notHeld(peer, exportId, e)))
+                .next();
+    }
+
+    private static void forwardedHeaders(HttpHeaders headers, String bearerToken, String range) {
+        headers.setBearerAuth(bearerToken);
+        headers.set(FORWARDED_HEADER, "true");
+        if (range != null) {
+            headers.set(HttpHeaders.RANGE, range);
+        }
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> relayed(ResponseEntity<Flux<DataBuffer>> response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        HOP_HEADERS.forEach(headers::remove);
+        return ResponseEntity.status(response.getStatusCode()).headers(headers).body(response.getBody());
+    }
+
+    private <T> Mono<T> notHeld(String peer, UUID exportId, Throwable error) {
+        if (!(error instanceof WebClientResponseException.NotFound)) {
+            log.warn("Failed to look up GDPR export {} on {}: {}", exportId, peer, error.getMessage());
+        }
+        return Mono.empty();
+    }
+}
@@ -1,72 +1,192 @@
 package nl.ak.skillswap.skillswap.gdpr.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.skillswap.gdpr.dto.*;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Orchestrates GDPR operations across all microservices.
- * - Export: Publishes request, waits for responses from all services
+ * - Export: Publishes request and returns a job; responses are written to a compressed archive
+ *   on local disk as they arrive, to be downloaded once every service has answered
  * - Deletion: Publishes fire-and-forget request to all services
+ *
+ * Export jobs live on the gateway instance that started them, and so do their archives, which
+ * are removed {@code retention-minutes} after the export finished. Services reply on the
+ * instance's own queue, named in the request, so every reply reaches the job it belongs to.
+ * Status polls and downloads that reach another instance are relayed by {@link GdprExportPeerClient}.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class GdprOrchestrationService {
 
-    private final RabbitTemplate rabbitTemplate;
+    // Services asked for their part of an export; each answers on its own queue
+    static final List<String> EXPORT_SERVICES = List.of("user-service", "message-service");
+
+    private static final String ARCHIVE_SUFFIX = ".ndjson.gz";
 
-    @Value("${app.gdpr.expected-services:2}")
-    private int expectedServices;
+    // Message types of export replies, equal to the routing keys they used on the shared exchange
+    private static final String EXPORT_RESPONSE_TYPE = "gdpr.export.response";
+    private static final String EXPORT_CHUNK_TYPE = "gdpr.export.chunk";
 
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Queue gdprExportReplyQueue;
+
+    // Per service: how long it may go without sending a response or chunk
     @Value("${app.gdpr.timeout-seconds:30}")
     private int timeoutSeconds;
 
-    // Track pending export requests
-    private final ConcurrentHashMap<UUID, ExportCollector> pendingExports = new ConcurrentHashMap<>();
+    // Whole export, however busy the services are; 0 for no limit
+    @Value("${app.gdpr.export.max-duration-minutes:30}")
+    private long maxDurationMinutes;
+
+    @Value("${app.gdpr.export.directory:${java.io.tmpdir}/skillswap-gdpr-exports}")
+    private String exportDirectory;
+
+    @Value("${app.gdpr.export.retention-minutes:60}")
+    private long retentionMinutes;
+
+    // Exports started on this instance, until their archive is removed
+    private final ConcurrentHashMap<UUID, GdprExportJob> exports = new ConcurrentHashMap<>();
+
+    private Path directory;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Files.createDirectories(Path.of(exportDirectory));
+        // Jobs do not survive a restart, so neither do the archives they pointed at
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.filter(path -> path.getFileName().toString().endsWith(ARCHIVE_SUFFIX))
+                    .forEach(this::deleteQuietly);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gdpr-export-jobs");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::removeExpiredExports, 1, 1, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(this::expireInactiveExports, 1, 1, TimeUnit.SECONDS);
+        log.info("GDPR export archives in {} (retention {} min)", directory, retentionMinutes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        exports.values().forEach(GdprExportJob::discard);
+        exports.clear();
+    }
 
     /**
-     * Request GDPR data export from all services.
-     * Waits for responses and aggregates them.
+     * Start a GDPR data export from all services.
+     * Returns as soon as the request is published; poll {@link #findExport} for progress.
      */
-    public Mono<AggregatedGdprExport> requestExport(UUID userId, String userExternalId) {
-        UUID correlationId = UUID.randomUUID();
-        log.info("Starting GDPR export: correlationId={}, userId={}", correlationId, userId);
+    public Mono<GdprExportJobStatus> startExport(UUID userId, String userExternalId) {
+        return Mono.fromCallable(() -> {
+            UUID correlationId = UUID.randomUUID();
+            log.info("Starting GDPR export: correlationId={}, userId={}", correlationId, userId);
 
-        // Create collector for responses
-        ExportCollector collector = new ExportCollector(correlationId, userId, expectedServices);
-        pendingExports.put(correlationId, collector);
+            Instant createdAt = Instant.now();
+            GdprExportArchive archive = new GdprExportArchive(directory.resolve(correlationId + ARCHIVE_SUFFIX),
+                    objectMapper, correlationId, userId, createdAt);
+            GdprExportJob job = new GdprExportJob(correlationId, userId, createdAt, EXPORT_SERVICES, archive,
+                    new ExportMetrics(correlationId));
+            exports.put(correlationId, job);
 
-        // Publish export request
-        GdprExportRequest request = new GdprExportRequest(
-                correlationId,
-                userId,
-                userExternalId,
-                Instant.now()
-        );
+            // Publish export request
+            GdprExportRequest request = new GdprExportRequest(
+                    correlationId,
+                    userId,
+                    userExternalId,
+                    createdAt,
+                    gdprExportReplyQueue.getName()
+            );
+
+            // Send to each service's queue via their routing keys
+            try {
+                EXPORT_SERVICES.forEach(service -> rabbitTemplate.convertAndSend("gdpr.export." + service, request));
+            } catch (RuntimeException e) {
+                exports.remove(correlationId);
+                job.discard();
+                throw e;
+            }
+            log.info("GDPR export request published to all services: correlationId={}", correlationId);
+
+            return job.status();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Progress of an export, if it was started on this instance by the given user.
+     */
+    public Optional<GdprExportJobStatus> findExport(UUID exportId, UUID userId) {
+        return ownedExport(exportId, userId).map(GdprExportJob::status);
+    }
+
+    /**
+     * The archive of a finished export, if it was started on this instance by the given user.
+     */
+    public Optional<Path> findArchive(UUID exportId, UUID userId) {
+        return ownedExport(exportId, userId)
+                .filter(job -> job.status().downloadable())
+                .map(job -> directory.resolve(exportId + ARCHIVE_SUFFIX));
+    }
 
-        // Send to each service's queue via their routing keys
-        rabbitTemplate.convertAndSend("gdpr.export.user-service", request);
-        rabbitTemplate.convertAndSend("gdpr.export.message-service", request);
-        log.info("GDPR export request published to all services: correlationId={}", correlationId);
-
-        // Wait for responses with timeout
-        return collector.waitForCompletion(Duration.ofSeconds(timeoutSeconds))
-                .doFinally(signal -> {
-                    pendingExports.remove(correlationId);
-                    log.info("GDPR export completed: correlationId={}, signal={}", correlationId, signal);
-                });
+    private Optional<GdprExportJob> ownedExport(UUID exportId, UUID userId) {
+        return Optional.ofNullable(exports.get(exportId)).filter(job -> job.userId().equals(userId));
+    }
+
+    void expireInactiveExports() {
+        Duration inactivityTimeout = Duration.ofSeconds(timeoutSeconds);
+        Duration maxDuration = Duration.ofMinutes(maxDurationMinutes);
+        exports.forEach((id, job) -> {
+            if (job.finished()) return;
+            List<String> timedOut = job.expireInactive(inactivityTimeout, maxDuration);
+            if (!timedOut.isEmpty()) {
+                log.warn("GDPR export {}: {} timed out", id, timedOut);
+            }
+        });
+    }
+
+    private void removeExpiredExports() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        exports.forEach((id, job) -> {
+            Instant completedAt = job.completedAt();
+            if (completedAt != null && completedAt.isBefore(cutoff) && exports.remove(id, job)) {
+                job.discard();
+                log.debug("Removed GDPR export {}", id);
+            }
+        });
     }
 
     /**
@@ -93,76 +213,95 @@ public class GdprOrchestrationService {
         });
     }
 
+    /**
+     * Handle replies on this instance's reply queue: export responses and streamed chunks,
+     * told apart by the message type the services set to the matching routing key.
+     */
+    @RabbitListener(queues = "#{gdprExportReplyQueue.name}")
+    public void handleExportReply(Message message) {
+        String type = message.getMessageProperties().getType();
+        try {
+            if (EXPORT_RESPONSE_TYPE.equals(type)) {
+                handleExportResponse(objectMapper.readValue(message.getBody(), GdprExportResponse.class));
+            } else if (EXPORT_CHUNK_TYPE.equals(type)) {
+                handleExportChunk(objectMapper.readValue(message.getBody(), GdprExportChunk.class));
+            } else {
+                log.warn("Ignoring GDPR export reply of unknown type: {}", type);
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring malformed GDPR export reply of type {}: {}", type, e.getMessage());
+        }
+    }
+
     /**
      * Handle export responses from services.
      */
-    @RabbitListener(queues = "gdpr.export.response.gateway")
-    public void handleExportResponse(GdprExportResponse response) {
+    void handleExportResponse(GdprExportResponse response) {
         log.info("Received GDPR export response: correlationId={}, service={}, success={}",
                 response.correlationId(), response.serviceName(), response.success());
 
-        ExportCollector collector = pendingExports.get(response.correlationId());
-        if (collector != null) {
-            collector.addResponse(response);
+        GdprExportJob job = exports.get(response.correlationId());
+        if (job != null) {
+            job.addResponse(response);
         } else {
             log.warn("No pending export for correlationId: {}", response.correlationId());
         }
     }
 
     /**
-     * Collector for aggregating export responses from multiple services.
+     * Handle streamed export chunks from services.
+     */
+    void handleExportChunk(GdprExportChunk chunk) {
+        log.debug("Received GDPR export chunk: correlationId={}, service={}, sequence={}, last={}",
+                chunk.correlationId(), chunk.serviceName(), chunk.sequence(), chunk.last());
+
+        GdprExportJob job = exports.get(chunk.correlationId());
+        if (job != null) {
+            job.addChunk(chunk);
+        } else {
+            log.warn("No pending export for correlationId: {}", chunk.correlationId());
+        }
+    }
+
+    /**
+     * Logs and meters how long each service took and how each export ended.
      */
-    private static class ExportCollector {
+    private class ExportMetrics implements GdprExportJob.Listener {
         private final UUID correlationId;
-        private final UUID userId;
-        private final int expectedCount;
-        private final Map<String, Object> serviceData = new ConcurrentHashMap<>();
-        private final Map<String, String> errors = new ConcurrentHashMap<>();
-        private final Sinks.One<AggregatedGdprExport> sink = Sinks.one();
 
-        ExportCollector(UUID correlationId, UUID userId, int expectedCount) {
+        ExportMetrics(UUID correlationId) {
             this.correlationId = correlationId;
-            this.userId = userId;
-            this.expectedCount = expectedCount;
         }
 
-        void addResponse(GdprExportResponse response) {
-            if (response.success()) {
-                serviceData.put(response.serviceName(), response.data());
-            } else {
-                errors.put(response.serviceName(), response.errorMessage());
-            }
-
-            // Check if all responses received
-            if (serviceData.size() + errors.size() >= expectedCount) {
-                complete();
-            }
+        @Override
+        public void serviceFinished(String service, GdprExportJob.ServiceState state, Duration elapsed) {
+            log.info("GDPR export {}: {} {} after {} ms", correlationId, service, state, elapsed.toMillis());
+            Timer.builder("gdpr.export.service.latency")
+                    .description("Time from publishing an export request until a service's part is complete")
+                    .tag("service", service)
+                    .tag("outcome", state.name().toLowerCase())
+                    .register(meterRegistry)
+                    .record(elapsed);
         }
 
-        void complete() {
-            AggregatedGdprExport result = new AggregatedGdprExport(
-                    correlationId,
-                    userId,
-                    Instant.now(),
-                    new HashMap<>(serviceData),
-                    new HashMap<>(errors)
-            );
-            sink.tryEmitValue(result);
+        @Override
+        public void exportFinished(GdprExportJobStatus status) {
+            log.info("GDPR export completed: correlationId={}, status={}, sizeBytes={}",
+                    correlationId, status.status(), status.sizeBytes());
+            meterRegistry.counter("gdpr.export.jobs", "status", status.status().name().toLowerCase()).increment();
+            DistributionSummary.builder("gdpr.export.archive.size")
+                    .description("Compressed size of finished GDPR export archives")
+                    .baseUnit("bytes")
+                    .register(meterRegistry)
+                    .record(status.sizeBytes());
         }
+    }
 
-        Mono<AggregatedGdprExport> waitForCompletion(Duration timeout) {
-            return sink.asMono()
-                    .timeout(timeout)
-                    .onErrorResume(e -> {
-                        // On timeout, return partial results
-                        return Mono.just(new AggregatedGdprExport(
-                                correlationId,
-                                userId,
-                                Instant.now(),
-                                new HashMap<>(serviceData),
-                                Map.of("timeout", "Not all services responded within timeout. Partial data returned.")
-                        ));
-                    });
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
         }
     }
 }
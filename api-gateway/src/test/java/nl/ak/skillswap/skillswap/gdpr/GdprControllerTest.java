@@ -1,26 +1,35 @@
 package nl.ak.skillswap.skillswap.gdpr;
 
-import nl.ak.skillswap.skillswap.gdpr.dto.AggregatedGdprExport;
 import nl.ak.skillswap.skillswap.gdpr.dto.GdprDeletionRequest;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import nl.ak.skillswap.skillswap.gdpr.service.GdprExportPeerClient;
 import nl.ak.skillswap.skillswap.gdpr.service.GdprOrchestrationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -36,6 +45,9 @@ class GdprControllerTest {
     @Mock
     private GdprOrchestrationService orchestrationService;
 
+    @Mock
+    private GdprExportPeerClient peerClient;
+
     @InjectMocks
     private GdprController gdprController;
 
@@ -50,6 +62,12 @@ class GdprControllerTest {
 
         mockJwt = mock(Jwt.class);
         when(mockJwt.getSubject()).thenReturn(externalId);
+        when(mockJwt.getTokenValue()).thenReturn("token");
+    }
+
+    private GdprExportJobStatus exportStatus(GdprExportJobStatus.Status status) {
+        return new GdprExportJobStatus(UUID.randomUUID(), status, Instant.now(), null,
+                Map.of("user-service", "PENDING", "message-service", "PENDING"), Map.of(), 0);
     }
 
     @Nested
@@ -57,56 +75,135 @@ class GdprControllerTest {
     class ExportData {
 
         @Test
-        @DisplayName("should return export data successfully")
-        void shouldReturnExportDataSuccessfully() {
-            AggregatedGdprExport export = new AggregatedGdprExport(
-                    UUID.randomUUID(),
-                    userId,
-                    Instant.now(),
-                    new HashMap<>(),
-                    new HashMap<>()
-            );
-
-            when(orchestrationService.requestExport(eq(userId), eq(externalId)))
+        @DisplayName("should accept the export and point to its status")
+        void shouldAcceptExport() {
+            GdprExportJobStatus export = exportStatus(GdprExportJobStatus.Status.RUNNING);
+            when(orchestrationService.startExport(eq(userId), eq(externalId)))
                     .thenReturn(Mono.just(export));
 
-            Mono<ResponseEntity<AggregatedGdprExport>> result = gdprController.exportData(mockJwt);
+            Mono<ResponseEntity<GdprExportJobStatus>> result = gdprController.exportData(mockJwt);
 
             StepVerifier.create(result)
+                    .assertNext(response -> {
+                        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+                        assertThat(response.getHeaders().getLocation())
+                                .hasToString("/api/gdpr/export/" + export.exportId());
+                        assertThat(response.getBody()).isEqualTo(export);
+                    })
+                    .verifyComplete();
+
+            verify(orchestrationService).startExport(userId, externalId);
+        }
+
+        @Test
+        @DisplayName("should return not found for an unknown export")
+        void shouldReturnNotFoundForUnknownExport() {
+            UUID exportId = UUID.randomUUID();
+            when(orchestrationService.findExport(exportId, userId)).thenReturn(Optional.empty());
+
+            StepVerifier.create(gdprController.exportStatus(mockJwt, exportId, null))
+                    .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND))
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("should relay the status of an export started on another instance")
+        void shouldRelayStatusFromPeer() {
+            GdprExportJobStatus export = exportStatus(GdprExportJobStatus.Status.RUNNING);
+            when(orchestrationService.findExport(export.exportId(), userId)).thenReturn(Optional.empty());
+            when(peerClient.hasPeers()).thenReturn(true);
+            when(peerClient.findExport(export.exportId(), "token")).thenReturn(Mono.just(ResponseEntity.ok(export)));
+
+            StepVerifier.create(gdprController.exportStatus(mockJwt, export.exportId(), null))
                     .assertNext(response -> {
                         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
                         assertThat(response.getBody()).isEqualTo(export);
                     })
                     .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("should answer a forwarded status request from this instance only")
+        void shouldNotForwardTwice() {
+            UUID exportId = UUID.randomUUID();
+            when(orchestrationService.findExport(exportId, userId)).thenReturn(Optional.empty());
+            when(peerClient.hasPeers()).thenReturn(true);
+
+            StepVerifier.create(gdprController.exportStatus(mockJwt, exportId, "true"))
+                    .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND))
+                    .verifyComplete();
 
-            verify(orchestrationService).requestExport(userId, externalId);
+            verify(peerClient, never()).findExport(any(), any());
         }
+    }
+
+    @Nested
+    @DisplayName("downloadExport")
+    class DownloadExport {
 
         @Test
-        @DisplayName("should return export with errors logged")
-        void shouldReturnExportWithErrorsLogged() {
-            Map<String, String> errors = new HashMap<>();
-            errors.put("user-service", "Connection timeout");
-
-            AggregatedGdprExport export = new AggregatedGdprExport(
-                    UUID.randomUUID(),
-                    userId,
-                    Instant.now(),
-                    new HashMap<>(),
-                    errors
-            );
-
-            when(orchestrationService.requestExport(eq(userId), eq(externalId)))
-                    .thenReturn(Mono.just(export));
+        @DisplayName("should refuse to download an export that is still running")
+        void shouldRejectRunningExport() {
+            GdprExportJobStatus export = exportStatus(GdprExportJobStatus.Status.RUNNING);
+            when(orchestrationService.findExport(export.exportId(), userId)).thenReturn(Optional.of(export));
+
+            StepVerifier.create(gdprController.downloadExport(mockJwt, export.exportId(), null, null))
+                    .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT))
+                    .verifyComplete();
 
-            Mono<ResponseEntity<AggregatedGdprExport>> result = gdprController.exportData(mockJwt);
+            verify(orchestrationService, never()).findArchive(any(), any());
+        }
 
-            StepVerifier.create(result)
+        @Test
+        @DisplayName("should serve the archive of a finished export as a file")
+        void shouldServeArchive(@TempDir Path dir) throws Exception {
+            GdprExportJobStatus export = exportStatus(GdprExportJobStatus.Status.COMPLETED);
+            Path archive = Files.writeString(dir.resolve("export.ndjson.gz"), "archive");
+            when(orchestrationService.findExport(export.exportId(), userId)).thenReturn(Optional.of(export));
+            when(orchestrationService.findArchive(export.exportId(), userId)).thenReturn(Optional.of(archive));
+
+            StepVerifier.create(gdprController.downloadExport(mockJwt, export.exportId(), null, null))
                     .assertNext(response -> {
                         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-                        assertThat(response.getBody().hasErrors()).isTrue();
+                        assertThat(response.getHeaders().getContentType()).hasToString("application/gzip");
+                        assertThat(response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+                        assertThat(response.getBody()).isInstanceOf(FileSystemResource.class);
+                        assertThat(((FileSystemResource) response.getBody()).getFile().toPath()).isEqualTo(archive);
+                    })
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("should stream through the archive of an export started on another instance")
+        void shouldRelayDownloadFromPeer() {
+            UUID exportId = UUID.randomUUID();
+            Flux<DataBuffer> body = Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[]{1, 2, 3}));
+            when(orchestrationService.findExport(exportId, userId)).thenReturn(Optional.empty());
+            when(peerClient.hasPeers()).thenReturn(true);
+            when(peerClient.download(exportId, "token", "bytes=0-2"))
+                    .thenReturn(Mono.just(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).body(body)));
+
+            StepVerifier.create(gdprController.downloadExport(mockJwt, exportId, "bytes=0-2", null))
+                    .assertNext(response -> {
+                        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+                        assertThat(response.getBody()).isSameAs(body);
                     })
                     .verifyComplete();
+
+            verify(orchestrationService, never()).findArchive(any(), any());
+        }
+
+        @Test
+        @DisplayName("should return not found when no instance holds the export")
+        void shouldReturnNotFoundWhenNoPeerHoldsExport() {
+            UUID exportId = UUID.randomUUID();
+            when(orchestrationService.findExport(exportId, userId)).thenReturn(Optional.empty());
+            when(peerClient.hasPeers()).thenReturn(true);
+            when(peerClient.download(exportId, "token", null)).thenReturn(Mono.empty());
+
+            StepVerifier.create(gdprController.downloadExport(mockJwt, exportId, null, null))
+                    .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND))
+                    .verifyComplete();
         }
     }
 
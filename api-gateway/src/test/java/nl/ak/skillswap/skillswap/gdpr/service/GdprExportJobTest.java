@@ -0,0 +1,206 @@
+package nl.ak.skillswap.skillswap.gdpr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportChunk;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GdprExportJob")
+class GdprExportJobTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final UUID exportId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+
+    private static final Duration INACTIVITY_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration MAX_DURATION = Duration.ofMinutes(30);
+    private final AtomicLong clock = new AtomicLong();
+
+    private final List<String> finishedServices = new ArrayList<>();
+    private final List<GdprExportJobStatus> finishedExports = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    private Path path;
+    private GdprExportJob job;
+
+    @BeforeEach
+    void setUp() {
+        path = dir.resolve(exportId + ".ndjson.gz");
+        GdprExportArchive archive = new GdprExportArchive(path, objectMapper, exportId, userId, Instant.now());
+        job = new GdprExportJob(exportId, userId, Instant.now(), List.of("user-service", "message-service"), archive,
+                new GdprExportJob.Listener() {
+                    @Override
+                    public void serviceFinished(String service, GdprExportJob.ServiceState state, Duration elapsed) {
+                        finishedServices.add(service + ":" + state);
+                    }
+
+                    @Override
+                    public void exportFinished(GdprExportJobStatus status) {
+                        finishedExports.add(status);
+                    }
+                }, clock::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private GdprExportResponse response(boolean success, Object data, String error) {
+        return new GdprExportResponse(exportId, "user-service", userId, Instant.now(), success, error, data);
+    }
+
+    private GdprExportChunk chunk(int sequence, boolean last, String... lines) {
+        String data = lines.length == 0 ? "" : String.join("\n", lines) + "\n";
+        return new GdprExportChunk(exportId, "message-service", userId, sequence, last, lines.length, data);
+    }
+
+    private List<JsonNode> archiveLines() throws Exception {
+        List<JsonNode> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("should write responses and chunks to the archive and complete once every service is done")
+    void shouldCompleteArchive() throws Exception {
+        job.addResponse(response(true, Map.of("email", "a@example.com"), null));
+        job.addChunk(chunk(0, false, "{\"type\":\"message\",\"body\":\"hi\"}"));
+        assertThat(job.finished()).isFalse();
+
+        job.addChunk(chunk(1, true, "{\"type\":\"summary\",\"totalMessagesSent\":1}"));
+
+        GdprExportJobStatus status = job.status();
+        assertThat(status.status()).isEqualTo(GdprExportJobStatus.Status.COMPLETED);
+        assertThat(status.services()).containsEntry("user-service", "COMPLETED").containsEntry("message-service", "COMPLETED");
+        assertThat(status.sizeBytes()).isEqualTo(Files.size(path));
+        assertThat(finishedServices).containsExactly("user-service:COMPLETED", "message-service:COMPLETED");
+        assertThat(finishedExports).hasSize(1);
+
+        List<JsonNode> lines = archiveLines();
+        assertThat(lines).extracting(line -> line.get("type").asText())
+                .containsExactly("header", "data", "record", "record", "summary");
+        assertThat(lines.get(1).at("/data/email").asText()).isEqualTo("a@example.com");
+        assertThat(lines.get(2).get("service").asText()).isEqualTo("message-service");
+        assertThat(lines.get(2).at("/record/body").asText()).isEqualTo("hi");
+        assertThat(lines.get(4).get("status").asText()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    @DisplayName("should write chunks in sequence order and ignore redeliveries")
+    void shouldOrderChunks() throws Exception {
+        job.addChunk(chunk(2, true, "{\"n\":3}"));
+        job.addChunk(chunk(1, false, "{\"n\":2}"));
+        assertThat(job.status().services()).containsEntry("message-service", "RECEIVING");
+
+        job.addChunk(chunk(0, false, "{\"n\":1}"));
+        job.addChunk(chunk(1, false, "{\"n\":2}"));
+        job.addResponse(response(true, Map.of(), null));
+
+        assertThat(archiveLines()).filteredOn(line -> line.get("type").asText().equals("record"))
+                .extracting(line -> line.at("/record/n").asInt())
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    @DisplayName("should finish as partial when a service fails")
+    void shouldRecordServiceFailure() throws Exception {
+        job.addResponse(response(false, null, "User not found"));
+        job.addChunk(chunk(0, true));
+
+        GdprExportJobStatus status = job.status();
+        assertThat(status.status()).isEqualTo(GdprExportJobStatus.Status.PARTIAL);
+        assertThat(status.errors()).containsEntry("user-service", "User not found");
+        assertThat(status.downloadable()).isTrue();
+        assertThat(archiveLines()).extracting(line -> line.get("type").asText())
+                .containsExactly("header", "error", "summary");
+    }
+
+    @Test
+    @DisplayName("should mark services that stopped sending as timed out")
+    void shouldExpire() {
+        job.addResponse(response(true, Map.of(), null));
+        job.addChunk(chunk(0, false, "{\"n\":1}"));
+
+        advanceSeconds(29);
+        assertThat(job.expireInactive(INACTIVITY_TIMEOUT, MAX_DURATION)).isEmpty();
+        advanceSeconds(1);
+        assertThat(job.expireInactive(INACTIVITY_TIMEOUT, MAX_DURATION)).containsExactly("message-service");
+
+        GdprExportJobStatus status = job.status();
+        assertThat(status.status()).isEqualTo(GdprExportJobStatus.Status.PARTIAL);
+        assertThat(status.services()).containsEntry("message-service", "TIMED_OUT");
+        assertThat(finishedServices).contains("message-service:TIMED_OUT");
+
+        // A chunk that arrives after the timeout is ignored
+        job.addChunk(chunk(1, true, "{\"n\":2}"));
+        assertThat(job.status().services()).containsEntry("message-service", "TIMED_OUT");
+        assertThat(finishedExports).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("should keep a service that is still sending chunks past the timeout")
+    void shouldNotExpireWhileReceiving() {
+        job.addResponse(response(true, Map.of(), null));
+        for (int sequence = 0; sequence < 10; sequence++) {
+            advanceSeconds(20);
+            job.addChunk(chunk(sequence, false, "{\"n\":" + sequence + "}"));
+            assertThat(job.expireInactive(INACTIVITY_TIMEOUT, MAX_DURATION)).isEmpty();
+        }
+        job.addChunk(chunk(10, true));
+
+        assertThat(job.status().status()).isEqualTo(GdprExportJobStatus.Status.COMPLETED);
+        assertThat(job.status().services()).containsEntry("message-service", "COMPLETED");
+    }
+
+    @Test
+    @DisplayName("should time out a service still sending once the export exceeds its maximum duration")
+    void shouldExpireAfterMaxDuration() {
+        job.addResponse(response(true, Map.of(), null));
+        for (int sequence = 0; sequence < 90; sequence++) {
+            advanceSeconds(20);
+            job.addChunk(chunk(sequence, false, "{\"n\":" + sequence + "}"));
+        }
+
+        assertThat(job.expireInactive(INACTIVITY_TIMEOUT, MAX_DURATION)).containsExactly("message-service");
+        assertThat(job.status().errors())
+                .containsEntry("message-service", "Export did not complete within the maximum duration");
+    }
+
+    @Test
+    @DisplayName("should remove the archive when discarded")
+    void shouldDiscardArchive() {
+        job.discard();
+
+        assertThat(path).doesNotExist();
+    }
+}
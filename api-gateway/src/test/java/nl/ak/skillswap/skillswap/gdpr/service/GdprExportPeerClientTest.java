@@ -0,0 +1,89 @@
+package nl.ak.skillswap.skillswap.gdpr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GdprExportPeerClient")
+class GdprExportPeerClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final UUID exportId = UUID.randomUUID();
+    private final List<ClientRequest> requests = new ArrayList<>();
+
+    private GdprExportPeerClient client(String heldBy, String... peers) {
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            requests.add(request);
+            if (!request.url().getHost().equals(heldBy)) {
+                return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+            }
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(json(new GdprExportJobStatus(exportId, GdprExportJobStatus.Status.RUNNING, Instant.now(),
+                            null, Map.of(), Map.of(), 0)))
+                    .build());
+        });
+        return new GdprExportPeerClient(builder, List.of(peers), 1_000);
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    @DisplayName("should ask the peers in turn with the user's token and return the first that holds the export")
+    void shouldFindExportOnPeer() {
+        GdprExportPeerClient client = client("gateway-2", "http://gateway-1:8081", "http://gateway-2:8081", "http://gateway-3:8081");
+
+        StepVerifier.create(client.findExport(exportId, "token"))
+                .assertNext(response -> {
+                    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+                    assertThat(response.getBody().exportId()).isEqualTo(exportId);
+                })
+                .verifyComplete();
+
+        assertThat(requests).extracting(request -> request.url().getHost()).containsExactly("gateway-1", "gateway-2");
+        assertThat(requests).allSatisfy(request -> {
+            assertThat(request.url().getPath()).isEqualTo("/api/gdpr/export/" + exportId);
+            assertThat(request.headers().getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer token");
+            assertThat(request.headers().getFirst(GdprExportPeerClient.FORWARDED_HEADER)).isEqualTo("true");
+        });
+    }
+
+    @Test
+    @DisplayName("should complete empty when no peer holds the export")
+    void shouldCompleteEmptyWhenNotHeld() {
+        GdprExportPeerClient client = client("elsewhere", "http://gateway-1:8081", " ");
+
+        assertThat(client.hasPeers()).isTrue();
+        StepVerifier.create(client.findExport(exportId, "token")).verifyComplete();
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("should have no peers when none are configured")
+    void shouldHaveNoPeersByDefault() {
+        assertThat(client("elsewhere").hasPeers()).isFalse();
+    }
+}
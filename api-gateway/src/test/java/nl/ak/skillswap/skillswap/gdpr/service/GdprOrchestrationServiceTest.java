@@ -0,0 +1,109 @@
+package nl.ak.skillswap.skillswap.gdpr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportChunk;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportJobStatus;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportRequest;
+import nl.ak.skillswap.skillswap.gdpr.dto.GdprExportResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GdprOrchestrationService")
+class GdprOrchestrationServiceTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Queue replyQueue = new AnonymousQueue();
+    private final UUID userId = UUID.randomUUID();
+
+    private GdprOrchestrationService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new GdprOrchestrationService(rabbitTemplate, objectMapper, new SimpleMeterRegistry(), replyQueue);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 30);
+        ReflectionTestUtils.setField(service, "exportDirectory", dir.toString());
+        ReflectionTestUtils.setField(service, "retentionMinutes", 60L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private Message reply(String type, Object payload) throws Exception {
+        MessageProperties properties = new MessageProperties();
+        properties.setType(type);
+        return new Message(objectMapper.writeValueAsBytes(payload), properties);
+    }
+
+    @Test
+    @DisplayName("should name this instance's reply queue in every export request")
+    void shouldSendReplyQueue() {
+        GdprExportJobStatus export = service.startExport(userId, userId.toString()).block();
+
+        ArgumentCaptor<GdprExportRequest> requests = ArgumentCaptor.forClass(GdprExportRequest.class);
+        verify(rabbitTemplate).convertAndSend(eq("gdpr.export.user-service"), requests.capture());
+        verify(rabbitTemplate).convertAndSend(eq("gdpr.export.message-service"), any(Object.class));
+        assertThat(requests.getValue().replyTo()).isEqualTo(replyQueue.getName());
+        assertThat(requests.getValue().correlationId()).isEqualTo(export.exportId());
+    }
+
+    @Test
+    @DisplayName("should route responses and chunks on the reply queue to their export by message type")
+    void shouldRouteRepliesByType() throws Exception {
+        UUID exportId = service.startExport(userId, userId.toString()).block().exportId();
+
+        service.handleExportReply(reply("gdpr.export.response", new GdprExportResponse(
+                exportId, "user-service", userId, Instant.now(), true, null, Map.of("email", "a@example.com"))));
+        service.handleExportReply(reply("gdpr.export.chunk", new GdprExportChunk(
+                exportId, "message-service", userId, 0, true, 1, "{\"type\":\"summary\"}\n")));
+
+        GdprExportJobStatus status = service.findExport(exportId, userId).orElseThrow();
+        assertThat(status.status()).isEqualTo(GdprExportJobStatus.Status.COMPLETED);
+        assertThat(service.findArchive(exportId, userId)).isPresent();
+        assertThat(service.findExport(exportId, UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should ignore replies of an unknown type")
+    void shouldIgnoreUnknownReplies() throws Exception {
+        UUID exportId = service.startExport(userId, userId.toString()).block().exportId();
+
+        service.handleExportReply(reply("gdpr.export.unknown", Map.of("correlationId", exportId)));
+
+        assertThat(service.findExport(exportId, userId).orElseThrow().status())
+                .isEqualTo(GdprExportJobStatus.Status.RUNNING);
+    }
+}
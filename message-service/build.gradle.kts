@@ -2,6 +2,7 @@ plugins {
     java
     id("org.springframework.boot") version "3.5.5"
     id("io.spring.dependency-management") version "1.1.7"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 
@@ -39,6 +40,7 @@ dependencies {
     // Redis for caching, sessions, and rate limiting
     implementation("org.springframework.boot:spring-boot-starter-data-redis")
     implementation("org.springframework.boot:spring-boot-starter-cache")
+    implementation("com.github.ben-manes.caffeine:caffeine")
 
     // RabbitMQ for event-driven messaging
     implementation("org.springframework.boot:spring-boot-starter-amqp")
@@ -74,8 +76,41 @@ dependencies {
     testImplementation("org.testcontainers:postgresql:1.20.4")
     testImplementation("org.testcontainers:rabbitmq:1.20.4")
     testImplementation("com.redis:testcontainers-redis:2.2.2")
+
+    // Microbenchmarks in src/jmh; run with ./gradlew :message-service:jmh
+    jmh("org.springframework:spring-test")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+tasks.named<Test>("test") {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+}
+
+// Throughput/latency comparisons against real containers; run explicitly with ./gradlew :message-service:benchmark
+tasks.register<Test>("benchmark") {
+    description = "Runs the @Tag(\"benchmark\") tests."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    testLogging {
+        showStandardStreams = true
+    }
+    outputs.upToDateWhen { false }
+}
+
+jmh {
+    // Narrow a run with -PjmhIncludes=MessageSanitizer
+    includes.set(listOf((findProperty("jmhIncludes") as String?) ?: ".*"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
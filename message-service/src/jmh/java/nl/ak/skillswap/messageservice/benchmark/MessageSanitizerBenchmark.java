@@ -0,0 +1,72 @@
+package nl.ak.skillswap.messageservice.benchmark;
+
+import nl.ak.skillswap.messageservice.service.MessageSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.owasp.encoder.Encode;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sanitizer cost on a short chat line and on a maximum-length message, comparing the
+ * single pass with the previous regex-and-encode chain.
+ *
+ * Run with {@code ./gradlew :message-service:jmh -PjmhIncludes=MessageSanitizer};
+ * add {@code -prof gc} through {@code jmh.profilers} to see allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageSanitizerBenchmark {
+
+    private static final String SHORT = "Hey! Are we still on for the guitar lesson at 5? 🎸";
+
+    private static final String PARAGRAPH = "I'd love to swap some Spanish practice for help with <b>React</b> & "
+            + "\"hooks\".\r\nWhen works for you?\n\n\n\n\tCheers – Ana\u0007 ";
+
+    @Param({"short", "long"})
+    public String size;
+
+    private MessageSanitizer sanitizer;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        sanitizer = new MessageSanitizer();
+        ReflectionTestUtils.setField(sanitizer, "maxMessageLength", 2000);
+        ReflectionTestUtils.setField(sanitizer, "minMessageLength", 1);
+
+        input = "short".equals(size) ? SHORT : longMessage();
+    }
+
+    private static String longMessage() {
+        StringBuilder sb = new StringBuilder(2000);
+        while (sb.length() + PARAGRAPH.length() <= 2000) {
+            sb.append(PARAGRAPH);
+        }
+        sb.append("x".repeat(2000 - sb.length()));
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String singlePass() {
+        return sanitizer.sanitize(input);
+    }
+
+    @Benchmark
+    public String regexChain() {
+        String cleaned = input.trim()
+                .replaceAll("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]", "")
+                .replaceAll("\\r\\n", "\n")
+                .replaceAll("\\r", "\n")
+                .replaceAll("\\n{4,}", "\n\n\n");
+        return Encode.forHtml(cleaned);
+    }
+}
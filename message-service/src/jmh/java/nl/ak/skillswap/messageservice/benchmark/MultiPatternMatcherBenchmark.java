@@ -0,0 +1,79 @@
+package nl.ak.skillswap.messageservice.benchmark;
+
+import nl.ak.skillswap.messageservice.support.MultiPatternMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content safety scan of a clean 2000-character message (the common case: nothing matches, so
+ * the whole text is read) as the pattern list grows. The automaton should stay flat while the
+ * lowercase-and-contains loop grows with every pattern.
+ *
+ * Run with {@code ./gradlew :message-service:jmh -PjmhIncludes=MultiPatternMatcher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MultiPatternMatcherBenchmark {
+
+    private static final List<String> BASE_PATTERNS = List.of(
+            "<script", "javascript:", "onerror=", "onclick=", "onload=", "eval(", "document.cookie"
+    );
+
+    @Param({"7", "50", "200", "500"})
+    public int patternCount;
+
+    private List<String> patterns;
+    private MultiPatternMatcher matcher;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        patterns = new ArrayList<>(BASE_PATTERNS);
+        while (patterns.size() < patternCount) {
+            // Moderation-style terms: lowercase words of 5-12 letters
+            patterns.add(word(random, 5 + random.nextInt(8)));
+        }
+        matcher = MultiPatternMatcher.of(patterns);
+
+        StringBuilder sb = new StringBuilder(2000);
+        while (sb.length() < 2000) {
+            sb.append("Happy to trade Python lessons for help with my Portuguese, ");
+        }
+        text = sb.substring(0, 2000);
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public boolean automaton() {
+        return matcher.containsAny(text);
+    }
+
+    @Benchmark
+    public boolean lowercaseContains() {
+        String lower = text.toLowerCase();
+        for (String pattern : patterns) {
+            if (lower.contains(pattern)) return true;
+        }
+        return false;
+    }
+}
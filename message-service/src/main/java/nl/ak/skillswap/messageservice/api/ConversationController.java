@@ -2,6 +2,7 @@ package nl.ak.skillswap.messageservice.api;
 
 import lombok.RequiredArgsConstructor;
 import nl.ak.skillswap.messageservice.api.dto.ConversationDto;
+import nl.ak.skillswap.messageservice.api.dto.UnreadBadgeDto;
 import nl.ak.skillswap.messageservice.domain.Conversation;
 import nl.ak.skillswap.messageservice.service.ConversationService;
 import nl.ak.skillswap.messageservice.service.MessageService;
@@ -11,6 +12,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -27,6 +29,7 @@ public class ConversationController {
         AuthenticatedUserContext ctx = userContextResolver.resolve(authentication);
         UUID me = ctx.databaseId();
         List<Conversation> conversations = conversationService.listForUser(me);
+        Map<UUID, Long> unread = messageService.unreadCounts(me);
 
         return conversations.stream()
                 .map(c -> new ConversationDto(
@@ -34,8 +37,17 @@ public class ConversationController {
                         c.otherParticipant(me),
                         c.getCreatedAt(),
                         c.getLastMessageAt(),
-                        messageService.unreadCount(me, c.getId())
+                        unread.getOrDefault(c.getId(), 0L)
                 ))
                 .toList();
     }
+
+    /**
+     * Total unread messages across all conversations, for the notification badge.
+     */
+    @GetMapping("/unread")
+    public UnreadBadgeDto unreadBadge(Authentication authentication) {
+        UUID me = userContextResolver.resolve(authentication).databaseId();
+        return new UnreadBadgeDto(messageService.totalUnread(me));
+    }
 }
@@ -3,19 +3,26 @@ package nl.ak.skillswap.messageservice.api;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import nl.ak.skillswap.messageservice.api.dto.MessageDto;
+import nl.ak.skillswap.messageservice.api.dto.MessageSearchResponse;
 import nl.ak.skillswap.messageservice.api.dto.PageResponse;
 import nl.ak.skillswap.messageservice.api.dto.SendMessageRequest;
+import nl.ak.skillswap.messageservice.api.dto.SyncResponse;
 import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.service.MessagePage;
+import nl.ak.skillswap.messageservice.service.MessageSearchService;
 import nl.ak.skillswap.messageservice.service.MessageService;
 import nl.ak.skillswap.messageservice.support.AuthenticatedUserContext;
+import nl.ak.skillswap.messageservice.support.BadRequestException;
+import nl.ak.skillswap.messageservice.support.MessageCursor;
+import nl.ak.skillswap.messageservice.support.SearchCursor;
 import nl.ak.skillswap.messageservice.support.UserContextResolver;
-import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
@@ -23,6 +30,7 @@ import java.util.UUID;
 public class MessageController {
 
     private final MessageService messageService;
+    private final MessageSearchService messageSearchService;
     private final UserContextResolver userContextResolver;
 
     // Send message to another user (creates conversation if missing)
@@ -37,26 +45,78 @@ public class MessageController {
         return toDto(m);
     }
 
-    // List messages in a conversation (cursor pagination by createdAt)
+    // List messages in a conversation, newest first (keyset pagination by (createdAt, id)).
+    // Page back with before=olderCursor, forward with after=newerCursor, or centre on a message with around.
     @GetMapping("/conversation/{conversationId}")
     public PageResponse<MessageDto> list(
             Authentication authentication,
             @PathVariable UUID conversationId,
-            @RequestParam(required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
-            Instant before,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) UUID around,
             @RequestParam(defaultValue = "50") int size
     ) {
         AuthenticatedUserContext ctx = userContextResolver.resolve(authentication);
-        List<Message> items = messageService.listMessages(ctx.databaseId(), conversationId, before, size);
-        boolean hasMore = items.size() == Math.min(Math.max(size, 1), 100);
+        long anchors = Stream.of(before, after, around).filter(Objects::nonNull).count();
+        if (anchors > 1) throw new BadRequestException("Use only one of before, after or around");
 
+        MessagePage page;
+        if (around != null) {
+            page = messageService.listAround(ctx.databaseId(), conversationId, around, size);
+        } else if (after != null) {
+            page = messageService.listMessages(ctx.databaseId(), conversationId,
+                    MessageCursor.decode(after, MessageCursor.Direction.AFTER), MessageCursor.Direction.AFTER, size);
+        } else {
+            page = messageService.listMessages(ctx.databaseId(), conversationId,
+                    MessageCursor.decode(before, MessageCursor.Direction.BEFORE), MessageCursor.Direction.BEFORE, size);
+        }
+
+        List<Message> items = page.messages();
+        if (items.isEmpty()) {
+            return new PageResponse<>(List.of(), page.hasMore());
+        }
         return new PageResponse<>(
                 items.stream().map(this::toDto).toList(),
-                hasMore
+                page.hasMore(),
+                MessageCursor.of(items.getLast()).encode(),
+                MessageCursor.of(items.getFirst()).encode()
+        );
+    }
+
+    // Full-text search in the caller's conversations, or in one with conversationId; best match first.
+    // Page on with cursor=nextCursor. Open a hit in context with the list endpoint's around parameter.
+    @GetMapping("/search")
+    public MessageSearchResponse search(
+            Authentication authentication,
+            @RequestParam String q,
+            @RequestParam(required = false) UUID conversationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        AuthenticatedUserContext ctx = userContextResolver.resolve(authentication);
+        MessageSearchService.SearchPage page = messageSearchService.search(
+                ctx.databaseId(), q, conversationId, SearchCursor.decode(cursor), size);
+
+        SearchCursor next = page.nextCursor();
+        return new MessageSearchResponse(
+                page.hits().stream().map(hit -> toDto(hit.message())).toList(),
+                page.hasMore(),
+                next == null ? null : next.encode()
         );
     }
 
+    // Catch up after a reconnect: every new message and read-state change after the given inbox sequence.
+    // Without since, only the current position is returned.
+    @GetMapping("/sync")
+    public SyncResponse sync(
+            Authentication authentication,
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "200") int limit
+    ) {
+        AuthenticatedUserContext ctx = userContextResolver.resolve(authentication);
+        return SyncResponse.from(messageService.sync(ctx.databaseId(), since, limit));
+    }
+
     // Mark entire conversation as read for current user
     @PostMapping("/conversation/{conversationId}/read")
     public int markRead(Authentication authentication, @PathVariable UUID conversationId) {
@@ -64,6 +124,13 @@ public class MessageController {
         return messageService.markRead(ctx.databaseId(), conversationId);
     }
 
+    // Mark every conversation as read for current user; returns the number of conversations that had unread messages
+    @PostMapping("/read-all")
+    public int markAllRead(Authentication authentication) {
+        AuthenticatedUserContext ctx = userContextResolver.resolve(authentication);
+        return messageService.markAllRead(ctx.databaseId());
+    }
+
     private MessageDto toDto(Message m) {
         return new MessageDto(
                 m.getId(),
@@ -3,8 +3,8 @@ package nl.ak.skillswap.messageservice.api;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.messageservice.service.RateLimitingService;
-import nl.ak.skillswap.messageservice.service.RealTimeMessagingService;
 import nl.ak.skillswap.messageservice.service.ConversationService;
+import nl.ak.skillswap.messageservice.service.TypingCoalescer;
 import nl.ak.skillswap.messageservice.support.ForbiddenException;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -23,7 +23,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class WebSocketController {
 
-    private final RealTimeMessagingService realTimeMessagingService;
+    private final TypingCoalescer typingCoalescer;
     private final RateLimitingService rateLimitingService;
     private final ConversationService conversationService;
 
@@ -35,20 +35,22 @@ public class WebSocketController {
     public void handleTyping(@Payload TypingMessage message, Principal principal) {
         UUID userId = extractUserId(principal);
 
-        // Rate limit typing indicators to prevent spam
-        rateLimitingService.checkTypingRateLimit(userId);
+        // Rate limit typing indicators to prevent spam; excess indicators are dropped
+        if (!rateLimitingService.checkTypingRateLimit(userId)) {
+            return;
+        }
 
         // Validate user is part of the conversation
-        var conversation = conversationService.getOrThrow(message.conversationId());
-        if (!conversation.involves(userId)) {
+        var members = conversationService.getMembers(message.conversationId());
+        if (!members.involves(userId)) {
             log.warn("User {} attempted typing indicator for conversation they're not in: {}",
                     userId, message.conversationId());
             throw new ForbiddenException("Not part of this conversation");
         }
 
-        // Send typing indicator to the other participant
-        UUID otherUserId = conversation.otherParticipant(userId);
-        realTimeMessagingService.sendTypingIndicator(userId, otherUserId, message.conversationId(), message.isTyping());
+        // Send typing indicator to the other participant; repeated frames are coalesced
+        UUID otherUserId = members.otherParticipant(userId);
+        typingCoalescer.onTyping(userId, otherUserId, message.conversationId(), message.isTyping());
     }
 
     private UUID extractUserId(Principal principal) {
@@ -0,0 +1,14 @@
+package nl.ak.skillswap.messageservice.api.dto;
+
+import java.util.List;
+
+/**
+ * @param items      hits, best match first
+ * @param hasMore    whether more hits follow
+ * @param nextCursor pass as {@code cursor} to get the next page; {@code null} when empty
+ */
+public record MessageSearchResponse(
+        List<MessageDto> items,
+        boolean hasMore,
+        String nextCursor
+) {}
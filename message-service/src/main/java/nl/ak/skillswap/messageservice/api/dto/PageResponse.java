@@ -2,7 +2,18 @@ package nl.ak.skillswap.messageservice.api.dto;
 
 import java.util.List;
 
+/**
+ * @param hasMore     whether more items exist in the direction that was paged
+ * @param olderCursor pass as {@code before} to get the page before this one; {@code null} when empty
+ * @param newerCursor pass as {@code after} to get the page after this one; {@code null} when empty
+ */
 public record PageResponse<T>(
         List<T> items,
-        boolean hasMore
-) {}
+        boolean hasMore,
+        String olderCursor,
+        String newerCursor
+) {
+    public PageResponse(List<T> items, boolean hasMore) {
+        this(items, hasMore, null, null);
+    }
+}
@@ -0,0 +1,48 @@
+package nl.ak.skillswap.messageservice.api.dto;
+
+import nl.ak.skillswap.messageservice.service.InboxSyncService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inbox changes after a sequence number.
+ *
+ * @param lastSeq pass as {@code since} on the next sync
+ * @param hasMore whether more changes are waiting; sync again right away
+ */
+public record SyncResponse(
+        List<Change> changes,
+        long lastSeq,
+        boolean hasMore
+) {
+    /**
+     * {@code message} is set for MESSAGE changes; {@code readerId}/{@code readAt} for READ changes.
+     */
+    public record Change(
+            long seq,
+            InboxSyncService.ChangeType type,
+            UUID conversationId,
+            MessageDto message,
+            UUID readerId,
+            Instant readAt
+    ) {}
+
+    public static SyncResponse from(InboxSyncService.InboxChanges changes) {
+        return new SyncResponse(
+                changes.changes().stream()
+                        .map(c -> new Change(
+                                c.seq(),
+                                c.type(),
+                                c.conversationId(),
+                                c.message() == null ? null : MessageDto.from(c.message()),
+                                c.readerId(),
+                                c.readAt()
+                        ))
+                        .toList(),
+                changes.lastSeq(),
+                changes.hasMore()
+        );
+    }
+}
@@ -0,0 +1,5 @@
+package nl.ak.skillswap.messageservice.api.dto;
+
+public record UnreadBadgeDto(
+        long totalUnread
+) {}
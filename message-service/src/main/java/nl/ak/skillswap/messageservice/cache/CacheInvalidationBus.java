@@ -0,0 +1,82 @@
+package nl.ak.skillswap.messageservice.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Propagates L1 invalidations between message-service instances over Redis pub/sub.
+ *
+ * Messages have the form {@code originNode|E|cacheName|key} for an eviction and
+ * {@code originNode|C|cacheName|} for a clear. An instance ignores its own messages,
+ * since it already applied the change locally before publishing.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "cache:invalidate";
+
+    private static final char SEPARATOR = '|';
+
+    private final StringRedisTemplate redis;
+    private final NodeIdentity nodeIdentity;
+
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    void register(TwoTierCache cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    void publishEvict(String cacheName, String key) {
+        publish("E", cacheName, key);
+    }
+
+    void publishClear(String cacheName) {
+        publish("C", cacheName, "");
+    }
+
+    private void publish(String operation, String cacheName, String key) {
+        String payload = nodeIdentity.nodeId() + SEPARATOR + operation + SEPARATOR + cacheName + SEPARATOR + key;
+        try {
+            redis.convertAndSend(CHANNEL, payload);
+        } catch (Exception e) {
+            // Other instances fall back to the L1 TTL for this entry
+            log.warn("Failed to publish cache invalidation for {}:{} - {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length < 4) {
+            log.warn("Ignoring malformed cache invalidation: {}", payload);
+            return;
+        }
+        if (parts[0].equals(nodeIdentity.nodeId())) {
+            return;
+        }
+
+        TwoTierCache cache = caches.get(parts[2]);
+        if (cache == null) {
+            return;
+        }
+
+        if ("C".equals(parts[1])) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[3]);
+        }
+        log.debug("Applied remote cache invalidation {} on {}:{}", parts[1], parts[2], parts[3]);
+    }
+}
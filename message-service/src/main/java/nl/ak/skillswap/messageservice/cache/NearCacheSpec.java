@@ -0,0 +1,14 @@
+package nl.ak.skillswap.messageservice.cache;
+
+import java.time.Duration;
+
+/**
+ * Limits for the in-process (L1) tier of a cache.
+ * The TTL should be shorter than the Redis TTL: it bounds how long an instance can
+ * serve a stale entry if an invalidation message is lost.
+ *
+ * @param maximumSize maximum number of entries kept in memory
+ * @param ttl         time after write after which an entry is dropped from memory
+ */
+public record NearCacheSpec(long maximumSize, Duration ttl) {
+}
@@ -0,0 +1,182 @@
+package nl.ak.skillswap.messageservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A cache with a bounded in-process tier (L1) in front of a shared Redis cache (L2).
+ *
+ * Reads try L1 first and only go to Redis on an L1 miss; L2 hits are copied into L1.
+ * Evictions and clears are applied to both tiers and broadcast to the other instances
+ * through the {@link CacheInvalidationBus}. Puts are not broadcast: the cached values are
+ * derived from user-service data, so a put on another instance can only hold the same value.
+ */
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final CacheInvalidationBus invalidationBus;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    public TwoTierCache(String name, Cache remote, NearCacheSpec spec,
+                        CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(spec.maximumSize())
+                .expireAfterWrite(spec.ttl())
+                .build();
+
+        this.l1Hits = requests(meterRegistry, "l1", "hit");
+        this.l1Misses = requests(meterRegistry, "l1", "miss");
+        this.l2Hits = requests(meterRegistry, "l2", "hit");
+        this.l2Misses = requests(meterRegistry, "l2", "miss");
+        Gauge.builder("cache.tier.size", local, c -> c.estimatedSize())
+                .description("Entries held in the in-process tier")
+                .tag("cache", name)
+                .tag("tier", "l1")
+                .register(meterRegistry);
+    }
+
+    private Counter requests(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("cache.tier.requests")
+                .description("Cache lookups per tier and result")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        l1Misses.increment();
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        local.put(localKey, wrapper.get());
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        if (value != null) {
+            local.put(localKey(key), value);
+        } else {
+            local.invalidate(localKey(key));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(localKey(key));
+        invalidationBus.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = remote.evictIfPresent(key);
+        local.invalidate(localKey(key));
+        invalidationBus.publishEvict(name, localKey(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationBus.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = remote.invalidate();
+        local.invalidateAll();
+        invalidationBus.publishClear(name);
+        return invalidated;
+    }
+
+    /**
+     * Drop an entry from this instance's L1 only, on request of another instance.
+     */
+    void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    /**
+     * Drop all entries from this instance's L1 only, on request of another instance.
+     */
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    /**
+     * Redis stores keys as strings as well, so two keys that are equal for L2 are equal for L1.
+     */
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,58 @@
+package nl.ak.skillswap.messageservice.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache manager that puts an in-process tier in front of the caches of a remote manager.
+ * Only caches with a {@link NearCacheSpec} get an L1; all others are returned as-is.
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private final CacheManager remoteCacheManager;
+    private final Map<String, NearCacheSpec> nearCacheSpecs;
+    private final CacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager remoteCacheManager, Map<String, NearCacheSpec> nearCacheSpecs,
+                               CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.nearCacheSpecs = Map.copyOf(nearCacheSpecs);
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    private Cache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        NearCacheSpec spec = nearCacheSpecs.get(name);
+        if (remote == null || spec == null) {
+            return remote;
+        }
+
+        TwoTierCache cache = new TwoTierCache(name, remote, spec, invalidationBus, meterRegistry);
+        invalidationBus.register(cache);
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+}
@@ -1,5 +1,10 @@
 package nl.ak.skillswap.messageservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import nl.ak.skillswap.messageservice.cache.CacheInvalidationBus;
+import nl.ak.skillswap.messageservice.cache.NearCacheSpec;
+import nl.ak.skillswap.messageservice.cache.TwoTierCacheManager;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,13 +22,32 @@ import java.util.Map;
 /**
  * Redis cache configuration for optimizing performance.
  * Different TTLs for different cache types based on data volatility.
+ * Hot, rarely changing caches additionally get a bounded in-process tier in front of Redis.
  */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     CacheInvalidationBus invalidationBus,
+                                     MeterRegistry meterRegistry) {
+        RedisCacheManager redisCacheManager = redisCacheManager(connectionFactory);
+        redisCacheManager.afterPropertiesSet();
+
+        Map<String, NearCacheSpec> nearCaches = new HashMap<>();
+
+        // Resolved on every authenticated request; L1 TTL bounds staleness if an invalidation is lost
+        nearCaches.put("user-id-mapping", new NearCacheSpec(10_000, Duration.ofMinutes(10)));
+
+        nearCaches.put("user-exists", new NearCacheSpec(10_000, Duration.ofMinutes(5)));
+
+        nearCaches.put("user-can-message", new NearCacheSpec(10_000, Duration.ofMinutes(1)));
+
+        return new TwoTierCacheManager(redisCacheManager, nearCaches, invalidationBus, meterRegistry);
+    }
+
+    private RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(10))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
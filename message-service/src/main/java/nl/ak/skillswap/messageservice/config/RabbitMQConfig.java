@@ -1,17 +1,20 @@
 package nl.ak.skillswap.messageservice.config;
 
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * RabbitMQ configuration for event-driven messaging.
- * Supports message broadcasting across multiple service instances.
+ * Real-time deliveries go to the node that holds the recipient's WebSocket session.
  */
 @Configuration
 public class RabbitMQConfig {
@@ -19,10 +22,17 @@ public class RabbitMQConfig {
     @Value("${app.messaging.exchange}")
     private String exchange;
 
-    @Value("${app.messaging.routingKeyMessageCreated}")
-    private String messageCreatedRoutingKey;
+    @Value("${app.messaging.delivery-exchange}")
+    private String deliveryExchangeName;
 
-    public static final String MESSAGE_CREATED_QUEUE = "message.created.websocket";
+    @Value("${app.messaging.delivery-queue.expires-ms:60000}")
+    private int deliveryQueueExpiresMs;
+
+    @Value("${app.messaging.delivery-queue.message-ttl-ms:60000}")
+    private int deliveryMessageTtlMs;
+
+    public static final String NODE_DELIVERY_QUEUE_PREFIX = "message.delivery.";
+    public static final String MESSAGE_CREATED_LISTENER_FACTORY = "messageCreatedListenerFactory";
 
     // GDPR Queue names
     public static final String GDPR_EXPORT_QUEUE = "gdpr.export.message-service";
@@ -33,19 +43,62 @@ public class RabbitMQConfig {
         return new TopicExchange(exchange);
     }
 
+    // ==================== Real-time delivery ====================
+
+    /**
+     * Deliveries are routed by node ID, so each event reaches only the instance
+     * holding the recipient's WebSocket session.
+     */
     @Bean
-    public Queue messageCreatedQueue() {
-        return QueueBuilder.durable(MESSAGE_CREATED_QUEUE)
-                .withArgument("x-dead-letter-exchange", exchange + ".dlx")
-                .withArgument("x-dead-letter-routing-key", "dlq.message.created")
+    public DirectExchange deliveryExchange() {
+        return new DirectExchange(deliveryExchangeName);
+    }
+
+    /**
+     * This node's delivery queue. Node IDs change on restart, so the queue is removed once
+     * its node has been gone for a while, and deliveries that waited too long are dropped;
+     * reconnecting clients catch up through sync instead.
+     */
+    @Bean
+    public Queue nodeDeliveryQueue(NodeIdentity nodeIdentity) {
+        return QueueBuilder.durable(NODE_DELIVERY_QUEUE_PREFIX + nodeIdentity.nodeId())
+                .expires(deliveryQueueExpiresMs)
+                .ttl(deliveryMessageTtlMs)
                 .build();
     }
 
     @Bean
-    public Binding messageCreatedBinding(Queue messageCreatedQueue, TopicExchange skillswapExchange) {
-        return BindingBuilder.bind(messageCreatedQueue)
-                .to(skillswapExchange)
-                .with(messageCreatedRoutingKey);
+    public Binding nodeDeliveryBinding(Queue nodeDeliveryQueue, DirectExchange deliveryExchange,
+                                       NodeIdentity nodeIdentity) {
+        return BindingBuilder.bind(nodeDeliveryQueue)
+                .to(deliveryExchange)
+                .with(nodeIdentity.nodeId());
+    }
+
+    /**
+     * Batch listener for the WebSocket fan-out: each consumer takes up to {@code batch-size}
+     * events at a time, or whatever arrived within {@code receive-timeout-ms}.
+     */
+    @Bean(MESSAGE_CREATED_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory messageCreatedListenerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${app.messaging.consumer.batch-size:50}") int batchSize,
+            @Value("${app.messaging.consumer.prefetch:250}") int prefetch,
+            @Value("${app.messaging.consumer.concurrency:2}") int concurrency,
+            @Value("${app.messaging.consumer.max-concurrency:8}") int maxConcurrency,
+            @Value("${app.messaging.consumer.receive-timeout-ms:50}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        // The broker must be allowed to push at least one full batch
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(maxConcurrency, concurrency));
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        return factory;
     }
 
     // ==================== GDPR Queues ====================
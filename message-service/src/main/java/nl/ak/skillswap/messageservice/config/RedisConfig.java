@@ -1,10 +1,29 @@
 package nl.ak.skillswap.messageservice.config;
 
+import nl.ak.skillswap.messageservice.cache.CacheInvalidationBus;
+import nl.ak.skillswap.messageservice.service.ConversationTailCache;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
 @EnableCaching
 public class RedisConfig {
-    // You can add RedisCacheManager customization later if needed.
-}
\ No newline at end of file
+
+    /**
+     * Pub/sub subscriptions shared by this instance.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       CacheInvalidationBus cacheInvalidationBus,
+                                                                       ConversationTailCache conversationTailCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(CacheInvalidationBus.CHANNEL));
+        container.addMessageListener(conversationTailCache, new ChannelTopic(ConversationTailCache.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,26 @@
+package nl.ak.skillswap.messageservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * One shared pool for the {@code @Scheduled} background jobs; shut down with the context.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    /**
+     * Named {@code taskScheduler} so scheduled jobs use it rather than the WebSocket broker's scheduler.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${app.scheduling.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        return scheduler;
+    }
+}
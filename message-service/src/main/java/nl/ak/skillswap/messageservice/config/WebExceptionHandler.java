@@ -1,6 +1,7 @@
 package nl.ak.skillswap.messageservice.config;
 
 import nl.ak.skillswap.messageservice.service.UserIdResolverService;
+import nl.ak.skillswap.messageservice.support.BadRequestException;
 import nl.ak.skillswap.messageservice.support.ForbiddenException;
 import nl.ak.skillswap.messageservice.support.NotFoundException;
 import org.springframework.http.HttpStatus;
@@ -29,6 +30,15 @@ public class WebExceptionHandler {
         return pd;
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ProblemDetail badRequest(BadRequestException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        pd.setTitle("Bad Request");
+        pd.setDetail(ex.getMessage());
+        return pd;
+    }
+
     @ExceptionHandler(UserIdResolverService.UserResolutionException.class)
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
     public ProblemDetail userResolution(UserIdResolverService.UserResolutionException ex) {
@@ -2,6 +2,7 @@ package nl.ak.skillswap.messageservice.config;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.service.LocalPresenceRegistry;
 import nl.ak.skillswap.messageservice.service.WebSocketSessionService;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
@@ -14,7 +15,7 @@ import java.util.UUID;
 
 /**
  * Listens for WebSocket connection events and manages session tracking.
- * Integrates with Redis for horizontal scaling support.
+ * Keeps the local presence view and the shared Redis session registry in step.
  */
 @Slf4j
 @Component
@@ -22,6 +23,7 @@ import java.util.UUID;
 public class WebSocketEventListener {
 
     private final WebSocketSessionService sessionService;
+    private final LocalPresenceRegistry localPresence;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
@@ -30,6 +32,7 @@ public class WebSocketEventListener {
 
         if (accessor.getUser() instanceof UsernamePasswordAuthenticationToken auth) {
             if (auth.getPrincipal() instanceof UUID userId) {
+                localPresence.add(userId, sessionId);
                 sessionService.registerSession(userId, sessionId);
                 log.info("WebSocket connected: userId={}, sessionId={}", userId, sessionId);
             }
@@ -43,6 +46,7 @@ public class WebSocketEventListener {
 
         if (accessor.getUser() instanceof UsernamePasswordAuthenticationToken auth) {
             if (auth.getPrincipal() instanceof UUID userId) {
+                localPresence.remove(userId, sessionId);
                 sessionService.removeSession(userId, sessionId);
                 log.info("WebSocket disconnected: userId={}, sessionId={}", userId, sessionId);
             }
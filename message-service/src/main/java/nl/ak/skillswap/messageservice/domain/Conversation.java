@@ -36,6 +36,10 @@ public class Conversation {
         if (createdAt == null) createdAt = Instant.now();
     }
 
+    public ConversationMembers members() {
+        return new ConversationMembers(id, userLowId, userHighId);
+    }
+
     public boolean involves(UUID userId) {
         return userLowId.equals(userId) || userHighId.equals(userId);
     }
@@ -0,0 +1,20 @@
+package nl.ak.skillswap.messageservice.domain;
+
+import java.util.UUID;
+
+/**
+ * The two participants of a conversation. Fixed when the conversation is created,
+ * so it can be cached for as long as the conversation exists.
+ */
+public record ConversationMembers(UUID conversationId, UUID userLowId, UUID userHighId) {
+
+    public boolean involves(UUID userId) {
+        return userLowId.equals(userId) || userHighId.equals(userId);
+    }
+
+    public UUID otherParticipant(UUID me) {
+        if (userLowId.equals(me)) return userHighId;
+        if (userHighId.equals(me)) return userLowId;
+        throw new IllegalArgumentException("User is not part of the conversation");
+    }
+}
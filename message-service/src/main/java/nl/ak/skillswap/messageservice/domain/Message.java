@@ -2,6 +2,7 @@ package nl.ak.skillswap.messageservice.domain;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.springframework.data.domain.Persistable;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -13,7 +14,7 @@ import java.util.UUID;
 @Builder
 @Entity
 @Table(name = "messages")
-public class Message {
+public class Message implements Persistable<UUID> {
 
     @Id
     private UUID id;
@@ -21,7 +22,8 @@ public class Message {
     @Column(name = "conversation_id", nullable = false)
     private UUID conversationId;
 
-    @Column(name = "sender_id", nullable = false)
+    // Null once a GDPR deletion has anonymized the sender
+    @Column(name = "sender_id")
     private UUID senderId;
 
     @Column(name = "recipient_id", nullable = false)
@@ -33,12 +35,40 @@ public class Message {
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
+    // Derived from the recipient's read watermark by the MessageRepository queries; the column
+    // itself only holds reads from before watermarks existed
     @Column(name = "read_at")
     private Instant readAt;
 
+    // Position in the sender's and recipient's inbox sequence (see InboxSequenceAllocator)
+    @Column(name = "sender_seq")
+    private Long senderSeq;
+
+    @Column(name = "recipient_seq")
+    private Long recipientSeq;
+
+    // Ids are assigned up front, so without this save() would look the id up first, and a lookup
+    // by id alone has to visit every monthly partition
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @Builder.Default
+    private boolean persisted = false;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
     @PrePersist
     void prePersist() {
         if (id == null) id = UUID.randomUUID();
         if (createdAt == null) createdAt = Instant.now();
     }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
 }
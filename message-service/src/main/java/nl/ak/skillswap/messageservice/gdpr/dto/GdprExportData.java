@@ -1,29 +1,39 @@
 package nl.ak.skillswap.messageservice.gdpr.dto;
 
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
 import java.time.Instant;
-import java.util.List;
 import java.util.UUID;
 
 /**
- * GDPR export data from message-service.
- * Contains all messages and conversations for a user.
+ * GDPR export data from message-service, one NDJSON line per record.
+ * An export is a {@link Header}, the user's conversations, the messages they sent and received,
+ * and a closing {@link ExportSummary}. Each line carries its kind in a {@code type} property.
  */
-public record GdprExportData(
-        String serviceName,
-        Instant exportedAt,
-        List<ConversationExport> conversations,
-        List<MessageExport> messagesSent,
-        List<MessageExport> messagesReceived,
-        ExportSummary summary
-) {
-    public record ConversationExport(
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = GdprExportData.Header.class, name = "header"),
+        @JsonSubTypes.Type(value = GdprExportData.ConversationExport.class, name = "conversation"),
+        @JsonSubTypes.Type(value = GdprExportData.MessageExport.class, name = "message"),
+        @JsonSubTypes.Type(value = GdprExportData.ExportSummary.class, name = "summary")
+})
+public sealed interface GdprExportData {
+
+    record Header(
+            String serviceName,
+            UUID userId,
+            Instant exportedAt
+    ) implements GdprExportData {}
+
+    record ConversationExport(
             UUID id,
             UUID otherUserId,
             Instant createdAt,
             Instant lastMessageAt
-    ) {}
+    ) implements GdprExportData {}
 
-    public record MessageExport(
+    record MessageExport(
             UUID id,
             UUID conversationId,
             UUID otherPartyId,
@@ -31,22 +41,11 @@ public record GdprExportData(
             Instant createdAt,
             Instant readAt,
             boolean isSent
-    ) {}
+    ) implements GdprExportData {}
 
-    public record ExportSummary(
+    record ExportSummary(
             int totalConversations,
             int totalMessagesSent,
             int totalMessagesReceived
-    ) {}
-
-    public static GdprExportData empty() {
-        return new GdprExportData(
-                "message-service",
-                Instant.now(),
-                List.of(),
-                List.of(),
-                List.of(),
-                new ExportSummary(0, 0, 0)
-        );
-    }
+    ) implements GdprExportData {}
 }
@@ -0,0 +1,18 @@
+package nl.ak.skillswap.messageservice.gdpr.event;
+
+import java.util.UUID;
+
+/**
+ * One part of a service's GDPR export, sent to the API Gateway as the export is read.
+ * Chunks of an export share its correlation ID and are numbered from 0; the gateway joins
+ * their NDJSON in sequence order once it has every chunk up to the one marked {@code last}.
+ */
+public record GdprExportChunk(
+        UUID correlationId,
+        String serviceName,
+        UUID userId,
+        int sequence,
+        boolean last,
+        int lines,
+        String data  // NDJSON, one GdprExportData record per line
+) {}
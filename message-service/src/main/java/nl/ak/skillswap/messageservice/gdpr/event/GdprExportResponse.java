@@ -5,7 +5,8 @@ import java.util.UUID;
 
 /**
  * Response containing GDPR export data from a service.
- * Sent back to API Gateway for aggregation.
+ * Sent back to API Gateway for aggregation. Message-service streams a successful export as
+ * {@link GdprExportChunk}s and only uses this response to report a failure.
  */
 public record GdprExportResponse(
         UUID correlationId,
@@ -2,12 +2,15 @@ package nl.ak.skillswap.messageservice.gdpr.listener;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData;
 import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest;
+import nl.ak.skillswap.messageservice.gdpr.event.GdprExportChunk;
 import nl.ak.skillswap.messageservice.gdpr.event.GdprExportRequest;
 import nl.ak.skillswap.messageservice.gdpr.event.GdprExportResponse;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJobRunner;
 import nl.ak.skillswap.messageservice.gdpr.service.MessageGdprService;
-import nl.ak.skillswap.messageservice.service.InternalUserServiceClient;
+import nl.ak.skillswap.messageservice.service.UserIdResolverService;
+import nl.ak.skillswap.messageservice.service.UserLookupBatcher;
+import nl.ak.skillswap.messageservice.service.UserValidationService;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
@@ -24,61 +27,78 @@ import java.util.UUID;
 public class GdprEventListener {
 
     private static final String SERVICE_NAME = "message-service";
+    private static final String EXCHANGE = "skillswap.events";
+    private static final String EXPORT_CHUNK_ROUTING_KEY = "gdpr.export.chunk";
+    private static final String EXPORT_RESPONSE_ROUTING_KEY = "gdpr.export.response";
 
     private final MessageGdprService gdprService;
+    private final GdprDeletionJobRunner deletionJobRunner;
     private final RabbitTemplate rabbitTemplate;
-    private final InternalUserServiceClient userServiceClient;
+    private final UserLookupBatcher userLookupBatcher;
+    private final UserIdResolverService userIdResolverService;
+    private final UserValidationService userValidationService;
 
     /**
      * Handle GDPR export request.
-     * Exports user data and sends response to reply queue.
+     * Streams the user's data to the gateway as export chunks, or sends an error response.
      */
     @RabbitListener(queues = "${app.gdpr.queue.export:gdpr.export.message-service}")
     public void handleExportRequest(GdprExportRequest request) {
         log.info("Received GDPR export request: correlationId={}, userId={}, externalId={}",
                 request.correlationId(), request.userId(), request.userExternalId());
 
-        GdprExportResponse response;
         try {
             // Resolve external ID (Keycloak sub) to database UUID
             // Messages are stored with database UUIDs, not Keycloak external IDs
-            UUID databaseUserId = userServiceClient.resolveExternalIdToDatabaseId(request.userExternalId())
+            UUID databaseUserId = userLookupBatcher.resolveDatabaseId(request.userExternalId())
                     .orElseThrow(() -> new RuntimeException("User not found for external ID: " + request.userExternalId()));
 
             log.debug("Resolved external ID {} to database ID {}", request.userExternalId(), databaseUserId);
 
-            GdprExportData exportData = gdprService.exportUserData(databaseUserId);
-
-            response = GdprExportResponse.success(
-                    request.correlationId(),
-                    SERVICE_NAME,
-                    request.userId(),
-                    exportData
-            );
+            // Chunks go out while the export is read; the gateway joins them by correlation ID
+            gdprService.exportUserData(databaseUserId, (sequence, last, lines, ndjson) ->
+                    reply(request, EXPORT_CHUNK_ROUTING_KEY, new GdprExportChunk(
+                            request.correlationId(),
+                            SERVICE_NAME,
+                            request.userId(),
+                            sequence,
+                            last,
+                            lines,
+                            ndjson
+                    )));
 
             log.info("GDPR export completed successfully for user {}", request.userId());
 
         } catch (Exception e) {
             log.error("GDPR export failed for user {}: {}", request.userId(), e.getMessage(), e);
-            response = GdprExportResponse.error(
+            // Supersedes any chunks already sent for this export
+            reply(request, EXPORT_RESPONSE_ROUTING_KEY, GdprExportResponse.error(
                     request.correlationId(),
                     SERVICE_NAME,
                     request.userId(),
                     e.getMessage()
-            );
+            ));
         }
+    }
 
-        // Send response to reply queue
-        rabbitTemplate.convertAndSend(
-                "skillswap.events",
-                "gdpr.export.response",
-                response
-        );
+    /**
+     * Send a chunk or response to the gateway instance that asked, typed by its routing key.
+     * Without a reply queue it goes to the shared exchange under that routing key.
+     */
+    private void reply(GdprExportRequest request, String type, Object payload) {
+        if (request.replyTo() == null) {
+            rabbitTemplate.convertAndSend(EXCHANGE, type, payload);
+            return;
+        }
+        rabbitTemplate.convertAndSend("", request.replyTo(), payload, message -> {
+            message.getMessageProperties().setType(type);
+            return message;
+        });
     }
 
     /**
      * Handle GDPR deletion request.
-     * Deletes/anonymizes user data. This is fire-and-forget.
+     * Queues a job that deletes/anonymizes the user's data. This is fire-and-forget.
      */
     @RabbitListener(queues = "${app.gdpr.queue.deletion:gdpr.deletion.message-service}")
     public void handleDeletionRequest(GdprDeletionRequest request) {
@@ -88,20 +108,21 @@ public class GdprEventListener {
         try {
             // Resolve external ID (Keycloak sub) to database UUID
             // Messages are stored with database UUIDs, not Keycloak external IDs
-            UUID databaseUserId = userServiceClient.resolveExternalIdToDatabaseId(request.userExternalId())
+            UUID databaseUserId = userLookupBatcher.resolveDatabaseId(request.userExternalId())
                     .orElseThrow(() -> new RuntimeException("User not found for external ID: " + request.userExternalId()));
 
             log.debug("Resolved external ID {} to database ID {}", request.userExternalId(), databaseUserId);
 
-            MessageGdprService.DeletionResult result = gdprService.deleteUserData(databaseUserId, request.deletionType());
+            // Runs in batches in the background; progress is kept on the job under the correlation ID
+            deletionJobRunner.submit(request.correlationId(), databaseUserId, request.deletionType());
 
-            log.info("GDPR deletion completed for user {}: {} anonymized, {} deleted",
-                    request.userId(), result.messagesAnonymized(), result.messagesDeleted());
+            // Cached lookups would otherwise keep the deleted user alive on every instance
+            userIdResolverService.evict(request.userExternalId());
+            userValidationService.evictUserExists(databaseUserId);
 
         } catch (Exception e) {
+            // Only the job could not be queued; failures of the job itself are retried by the runner
             log.error("GDPR deletion failed for user {}: {}", request.userId(), e.getMessage(), e);
-            // In production, you might want to send this to a dead-letter queue
-            // or notify administrators
         }
     }
 }
@@ -0,0 +1,54 @@
+package nl.ak.skillswap.messageservice.gdpr.service;
+
+import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest;
+
+import java.util.UUID;
+
+/**
+ * A persisted GDPR deletion and how far it got, see {@link GdprDeletionJobRunner}.
+ */
+public record GdprDeletionJob(
+        UUID correlationId,
+        UUID userId,
+        GdprDeletionRequest.DeletionType deletionType,
+        Phase phase,
+        Status status,
+        int messagesAnonymized,
+        int messagesDeleted,
+        int conversationsDeleted,
+        int attempts,
+        String lastError
+) {
+
+    /**
+     * The steps of a deletion, in order. Batched phases repeat until a batch comes back short.
+     */
+    public enum Phase {
+        ANONYMIZE_SENT(true),
+        DELETE_RECEIVED(true),
+        DELETE_READ_STATE(false),
+        DELETE_CONVERSATIONS(true),
+        DONE(false);
+
+        private final boolean batched;
+
+        Phase(boolean batched) {
+            this.batched = batched;
+        }
+
+        public boolean batched() {
+            return batched;
+        }
+
+        public Phase next() {
+            return this == DONE ? DONE : values()[ordinal() + 1];
+        }
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
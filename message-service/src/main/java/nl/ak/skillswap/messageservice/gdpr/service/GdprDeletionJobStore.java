@@ -0,0 +1,162 @@
+package nl.ak.skillswap.messageservice.gdpr.service;
+
+import lombok.RequiredArgsConstructor;
+import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJob.Phase;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJob.Status;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The {@code gdpr_deletion_jobs} table: one row per deletion request, keyed by its correlation ID.
+ *
+ * A runner claims a job with a lease and must still hold it to record progress, so two nodes
+ * never work on the same job.
+ */
+@Component
+@RequiredArgsConstructor
+public class GdprDeletionJobStore {
+
+    private static final String COLUMNS = """
+            correlation_id, user_id, deletion_type, phase, status,
+            messages_anonymized, messages_deleted, conversations_deleted, attempts, last_error
+            """;
+
+    // A redelivered request leaves its job alone; a new request for a failed job starts it over
+    private static final String CREATE = """
+            INSERT INTO gdpr_deletion_jobs (correlation_id, user_id, deletion_type, phase, status)
+            VALUES (?, ?, ?, ?, 'PENDING')
+            ON CONFLICT (correlation_id) DO UPDATE
+               SET status = 'PENDING', attempts = 0, last_error = NULL, locked_until = NULL,
+                   finished_at = NULL, updated_at = now()
+             WHERE gdpr_deletion_jobs.status = 'FAILED'
+            """;
+
+    private static final String CLAIM = """
+            UPDATE gdpr_deletion_jobs
+               SET locked_by = ?, locked_until = now() + make_interval(secs => ?),
+                   status = 'RUNNING', updated_at = now()
+             WHERE correlation_id = (SELECT correlation_id FROM gdpr_deletion_jobs
+                                      WHERE finished_at IS NULL
+                                        AND (locked_until IS NULL OR locked_until < now())
+                                      ORDER BY created_at
+                                      LIMIT 1
+                                        FOR UPDATE SKIP LOCKED)
+            RETURNING %s
+            """.formatted(COLUMNS);
+
+    // The counter column comes from the phase, see counterColumn
+    private static final String RECORD_BATCH = """
+            UPDATE gdpr_deletion_jobs
+               SET phase = ?, status = ?, %s = %s + ?, attempts = 0, last_error = NULL,
+                   locked_until = CASE WHEN ? THEN NULL ELSE now() + make_interval(secs => ?) END,
+                   finished_at = CASE WHEN ? THEN now() END, updated_at = now()
+             WHERE correlation_id = ? AND locked_by = ?
+            RETURNING %s
+            """;
+
+    private static final String RECORD_FAILURE = """
+            UPDATE gdpr_deletion_jobs
+               SET attempts = attempts + 1, last_error = ?, locked_by = NULL,
+                   locked_until = now() + make_interval(secs => ?),
+                   status = CASE WHEN attempts + 1 >= ? THEN 'FAILED' ELSE status END,
+                   finished_at = CASE WHEN attempts + 1 >= ? THEN now() END,
+                   updated_at = now()
+             WHERE correlation_id = ? AND locked_by = ?
+            RETURNING %s
+            """.formatted(COLUMNS);
+
+    private static final String RELEASE = """
+            UPDATE gdpr_deletion_jobs SET locked_by = NULL, locked_until = NULL, updated_at = now()
+             WHERE correlation_id = ? AND locked_by = ?
+            """;
+
+    private static final String FIND = "SELECT " + COLUMNS + " FROM gdpr_deletion_jobs WHERE correlation_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Persist a new job, or restart a failed one with the same correlation ID.
+     *
+     * @return whether the job will run
+     */
+    public boolean create(UUID correlationId, UUID userId, GdprDeletionRequest.DeletionType type) {
+        return jdbcTemplate.update(CREATE, correlationId, userId, type.name(), Phase.ANONYMIZE_SENT.name()) > 0;
+    }
+
+    /**
+     * Lease the oldest unfinished job that no node holds.
+     */
+    public Optional<GdprDeletionJob> claim(String nodeId, long leaseMs) {
+        return jdbcTemplate.query(CLAIM, JOB_MAPPER, nodeId, leaseMs / 1000.0).stream().findFirst();
+    }
+
+    /**
+     * Record a batch in the transaction that ran it and extend the lease.
+     *
+     * @param phase    the phase the batch belonged to
+     * @param next     the phase to run next; {@link Phase#DONE} completes the job
+     * @param affected rows the batch changed
+     * @return the job after the batch, or empty if this node no longer holds it
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<GdprDeletionJob> recordBatch(UUID correlationId, String nodeId, Phase phase, Phase next,
+                                                 int affected, long leaseMs) {
+        String counter = counterColumn(phase);
+        boolean done = next == Phase.DONE;
+        List<GdprDeletionJob> jobs = jdbcTemplate.query(RECORD_BATCH.formatted(counter, counter, COLUMNS), JOB_MAPPER,
+                next.name(), (done ? Status.COMPLETED : Status.RUNNING).name(), affected,
+                done, leaseMs / 1000.0, done, correlationId, nodeId);
+        return jobs.stream().findFirst();
+    }
+
+    /**
+     * Record a failed batch and give up the lease. The job is retried after {@code retryDelayMs}
+     * unless this was attempt {@code maxAttempts} in a row, which fails it.
+     */
+    public Optional<GdprDeletionJob> recordFailure(UUID correlationId, String nodeId, String error,
+                                                   long retryDelayMs, int maxAttempts) {
+        return jdbcTemplate.query(RECORD_FAILURE, JOB_MAPPER,
+                error, retryDelayMs / 1000.0, maxAttempts, maxAttempts, correlationId, nodeId).stream().findFirst();
+    }
+
+    /**
+     * Give up the lease so another node can continue the job right away.
+     */
+    public void release(UUID correlationId, String nodeId) {
+        jdbcTemplate.update(RELEASE, correlationId, nodeId);
+    }
+
+    public Optional<GdprDeletionJob> find(UUID correlationId) {
+        return jdbcTemplate.query(FIND, JOB_MAPPER, correlationId).stream().findFirst();
+    }
+
+    // Phases without a counter add their (zero) rows to a column that ignores them
+    private static String counterColumn(Phase phase) {
+        return switch (phase) {
+            case ANONYMIZE_SENT -> "messages_anonymized";
+            case DELETE_RECEIVED -> "messages_deleted";
+            case DELETE_CONVERSATIONS, DELETE_READ_STATE, DONE -> "conversations_deleted";
+        };
+    }
+
+    private static final RowMapper<GdprDeletionJob> JOB_MAPPER = (rs, rowNum) -> new GdprDeletionJob(
+            rs.getObject("correlation_id", UUID.class),
+            rs.getObject("user_id", UUID.class),
+            GdprDeletionRequest.DeletionType.valueOf(rs.getString("deletion_type")),
+            Phase.valueOf(rs.getString("phase")),
+            Status.valueOf(rs.getString("status")),
+            rs.getInt("messages_anonymized"),
+            rs.getInt("messages_deleted"),
+            rs.getInt("conversations_deleted"),
+            rs.getInt("attempts"),
+            rs.getString("last_error")
+    );
+}
@@ -0,0 +1,76 @@
+package nl.ak.skillswap.messageservice.gdpr.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes export records as NDJSON and hands them on in chunks of about {@code chunkBytes}.
+ * Only the current chunk is held in memory; a record larger than a chunk gets a chunk of its own.
+ * Not thread-safe.
+ */
+public class GdprExportWriter {
+
+    /**
+     * Receives each chunk as it fills. The chunk marked {@code last} closes the export.
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+        void accept(int sequence, boolean last, int lines, String ndjson);
+    }
+
+    private final ObjectWriter lineWriter;
+    private final int chunkBytes;
+    private final ChunkSink sink;
+
+    private final ByteArrayOutputStream buffer;
+    private int lines;
+    private int sequence;
+    private boolean finished;
+
+    public GdprExportWriter(ObjectMapper objectMapper, int chunkBytes, ChunkSink sink) {
+        this.lineWriter = objectMapper.writerFor(GdprExportData.class);
+        this.chunkBytes = chunkBytes;
+        this.sink = sink;
+        this.buffer = new ByteArrayOutputStream(chunkBytes);
+    }
+
+    public void write(GdprExportData record) {
+        if (finished) throw new IllegalStateException("Export already finished");
+        byte[] line;
+        try {
+            line = lineWriter.writeValueAsBytes(record);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (lines > 0 && buffer.size() + line.length + 1 > chunkBytes) {
+            flush(false);
+        }
+        buffer.write(line, 0, line.length);
+        buffer.write('\n');
+        lines++;
+    }
+
+    /**
+     * Send the remaining records as the last chunk, which may be empty.
+     *
+     * @return the number of chunks sent
+     */
+    public int finish() {
+        if (finished) throw new IllegalStateException("Export already finished");
+        flush(true);
+        finished = true;
+        return sequence;
+    }
+
+    private void flush(boolean last) {
+        sink.accept(sequence++, last, lines, buffer.toString(StandardCharsets.UTF_8));
+        buffer.reset();
+        lines = 0;
+    }
+}
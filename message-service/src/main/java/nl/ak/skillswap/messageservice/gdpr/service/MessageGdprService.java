@@ -1,24 +1,30 @@
 package nl.ak.skillswap.messageservice.gdpr.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.ak.skillswap.messageservice.domain.Conversation;
-import nl.ak.skillswap.messageservice.domain.Message;
 import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData;
 import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData.*;
-import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest;
-import nl.ak.skillswap.messageservice.repository.ConversationRepository;
-import nl.ak.skillswap.messageservice.repository.MessageRepository;
+import nl.ak.skillswap.messageservice.service.ConversationMembershipCache;
+import nl.ak.skillswap.messageservice.service.ConversationTailCache;
+import nl.ak.skillswap.messageservice.service.InboxSyncService;
+import nl.ak.skillswap.messageservice.service.ReadStateService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
 import java.time.Instant;
-import java.util.List;
+import java.time.OffsetDateTime;
+import java.util.Iterator;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Service handling GDPR operations for message-service.
- * Provides data export and deletion/anonymization capabilities.
+ * Provides data export and the batches of deletion/anonymization jobs.
  */
 @Slf4j
 @Service
@@ -27,145 +33,174 @@ public class MessageGdprService {
 
     private static final String SERVICE_NAME = "message-service";
 
-    private final MessageRepository messageRepository;
-    private final ConversationRepository conversationRepository;
+    private static final String EXPORT_CONVERSATIONS = """
+            SELECT id, CASE WHEN user_low_id = ? THEN user_high_id ELSE user_low_id END AS other_user_id,
+                   created_at, last_message_at
+              FROM conversations
+             WHERE user_low_id = ? OR user_high_id = ?
+             ORDER BY created_at, id
+            """;
+
+    // read_at as in MessageRepository.SELECT_WITH_READ_STATE; the sequence order follows the per-user index
+    private static final String EXPORT_MESSAGES = """
+            SELECT m.id, m.conversation_id, m.%s AS other_party_id, m.body, m.created_at,
+                   coalesce(m.read_at, CASE WHEN (m.created_at, m.id) <= (p.last_read_created_at, p.last_read_message_id)
+                                            THEN p.last_read_at END) AS read_at
+              FROM messages m
+              LEFT JOIN conversation_participants p
+                ON p.conversation_id = m.conversation_id AND p.user_id = m.recipient_id
+             WHERE m.%s = ?
+             ORDER BY m.%s
+            """;
+
+    private static final String ANONYMIZE_SENT_BATCH = """
+            UPDATE messages m
+               SET sender_id = NULL, body = '[Message from deleted user]'
+              FROM (SELECT id, created_at FROM messages WHERE sender_id = ? LIMIT ?) b
+             WHERE m.id = b.id AND m.created_at = b.created_at
+            """;
+
+    private static final String DELETE_RECEIVED_BATCH = """
+            DELETE FROM messages m
+             USING (SELECT id, created_at FROM messages WHERE recipient_id = ? LIMIT ?) b
+             WHERE m.id = b.id AND m.created_at = b.created_at
+            """;
+
+    // Conversations that still hold messages, like the anonymized ones, stay for the other participant
+    private static final String DELETE_EMPTY_CONVERSATIONS_BATCH = """
+            DELETE FROM conversations c
+             USING (SELECT id FROM conversations e
+                     WHERE (e.user_low_id = ? OR e.user_high_id = ?)
+                       AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.conversation_id = e.id)
+                     LIMIT ?) b
+             WHERE c.id = b.id
+            """;
+
+    private static final String EXPORT_SENT_MESSAGES = EXPORT_MESSAGES.formatted("recipient_id", "sender_id", "sender_seq");
+    private static final String EXPORT_RECEIVED_MESSAGES = EXPORT_MESSAGES.formatted("sender_id", "recipient_id", "recipient_seq");
+
+    private final InboxSyncService inboxSyncService;
+    private final ConversationMembershipCache membershipCache;
+    private final ReadStateService readStateService;
+    private final ConversationTailCache tailCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.gdpr.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    @Value("${app.gdpr.export.chunk-bytes:262144}")
+    private int exportChunkBytes;
 
     /**
      * Export all user data for GDPR compliance.
      * Includes all conversations and messages (sent and received).
      *
-     * @param userId the user's ID (Keycloak external ID)
-     * @return complete export data
+     * Rows are read through server-side cursors of {@code app.gdpr.export.fetch-size} rows and
+     * written straight to NDJSON chunks of about {@code app.gdpr.export.chunk-bytes}, so memory
+     * use does not grow with the number of messages. Each chunk is handed to {@code sink} as it
+     * fills, while the export is still being read.
+     *
+     * @param userId the user's database ID
+     * @param sink   receives the chunks in order; the last one is marked as such
+     * @return the summary that closes the export
      */
     @Transactional(readOnly = true)
-    public GdprExportData exportUserData(UUID userId) {
+    public ExportSummary exportUserData(UUID userId, GdprExportWriter.ChunkSink sink) {
         log.info("GDPR export requested for user: {}", userId);
 
-        // Get all conversations
-        List<Conversation> conversations = conversationRepository.findAllByUserId(userId);
-        List<ConversationExport> conversationExports = conversations.stream()
-                .map(c -> new ConversationExport(
-                        c.getId(),
-                        c.otherParticipant(userId),
-                        c.getCreatedAt(),
-                        c.getLastMessageAt()
-                ))
-                .toList();
-
-        // Get all messages sent by user
-        List<Message> sentMessages = messageRepository.findBySenderId(userId);
-        List<MessageExport> sentExports = sentMessages.stream()
-                .map(m -> toMessageExport(m, true))
-                .toList();
-
-        // Get all messages received by user
-        List<Message> receivedMessages = messageRepository.findByRecipientId(userId);
-        List<MessageExport> receivedExports = receivedMessages.stream()
-                .map(m -> toMessageExport(m, false))
-                .toList();
-
-        ExportSummary summary = new ExportSummary(
-                conversations.size(),
-                sentMessages.size(),
-                receivedMessages.size()
-        );
+        GdprExportWriter writer = new GdprExportWriter(objectMapper, exportChunkBytes, sink);
+        writer.write(new Header(SERVICE_NAME, userId, Instant.now()));
 
-        log.info("GDPR export completed for user {}: {} conversations, {} sent, {} received",
-                userId, summary.totalConversations(), summary.totalMessagesSent(), summary.totalMessagesReceived());
+        int conversations = stream(EXPORT_CONVERSATIONS, CONVERSATION_MAPPER, writer, userId, userId, userId);
+        int sent = stream(EXPORT_SENT_MESSAGES, messageMapper(true), writer, userId);
+        int received = stream(EXPORT_RECEIVED_MESSAGES, messageMapper(false), writer, userId);
 
-        return new GdprExportData(
-                SERVICE_NAME,
-                Instant.now(),
-                conversationExports,
-                sentExports,
-                receivedExports,
-                summary
-        );
+        ExportSummary summary = new ExportSummary(conversations, sent, received);
+        writer.write(summary);
+        int chunks = writer.finish();
+
+        log.info("GDPR export completed for user {}: {} conversations, {} sent, {} received in {} chunks",
+                userId, summary.totalConversations(), summary.totalMessagesSent(), summary.totalMessagesReceived(), chunks);
+        return summary;
     }
 
     /**
-     * Delete/anonymize user data for GDPR compliance.
+     * Run one batch of a GDPR deletion, see {@link GdprDeletionJobRunner}.
      * Strategy:
      * - Anonymize messages SENT by user (preserves conversation for recipient)
      * - Delete messages RECEIVED by user (removes their inbox)
+     * - Delete the user's read state and inbox sequence
      * - Clean up empty conversations
      *
-     * @param userId the user's ID (Keycloak external ID)
-     * @param deletionType type of deletion (FULL or ANONYMIZE)
-     * @return deletion result summary
+     * Batched phases change at most {@code batchSize} rows per call, so no transaction holds many
+     * row locks or writes much WAL at once.
+     *
+     * @param userId the user's database ID
+     * @return the number of rows changed; fewer than {@code batchSize} ends a batched phase
      */
     @Transactional
-    public DeletionResult deleteUserData(UUID userId, GdprDeletionRequest.DeletionType deletionType) {
-        log.info("GDPR deletion requested for user: {}, type: {}", userId, deletionType);
-
-        int messagesAnonymized = 0;
-        int messagesDeleted = 0;
-        int conversationsDeleted = 0;
-
-        if (deletionType == GdprDeletionRequest.DeletionType.FULL) {
-            // Full deletion: delete all messages involving this user
-            messagesDeleted += messageRepository.deleteMessagesByRecipient(userId);
-
-            // For sent messages, we anonymize to preserve conversation history for other party
-            messagesAnonymized = messageRepository.anonymizeMessagesBySender(userId);
-        } else {
-            // Anonymize only: just anonymize sent messages, keep received
-            messagesAnonymized = messageRepository.anonymizeMessagesBySender(userId);
-            messagesDeleted = messageRepository.deleteMessagesByRecipient(userId);
+    public int deleteBatch(UUID userId, GdprDeletionJob.Phase phase, int batchSize) {
+        int affected = switch (phase) {
+            case ANONYMIZE_SENT -> jdbcTemplate.update(ANONYMIZE_SENT_BATCH, userId, batchSize);
+            case DELETE_RECEIVED -> jdbcTemplate.update(DELETE_RECEIVED_BATCH, userId, batchSize);
+            case DELETE_READ_STATE -> {
+                // Read events, read watermarks and the inbox sequence only describe the user's own inbox
+                inboxSyncService.deleteUserData(userId);
+                readStateService.deleteUserData(userId);
+                yield 0;
+            }
+            case DELETE_CONVERSATIONS -> jdbcTemplate.update(DELETE_EMPTY_CONVERSATIONS_BATCH, userId, userId, batchSize);
+            case DONE -> 0;
+        };
+
+        // Cached pages and memberships would otherwise keep what was just removed visible
+        if (phase == GdprDeletionJob.Phase.DELETE_CONVERSATIONS) {
+            membershipCache.evictUser(userId);
+        } else if (affected > 0) {
+            tailCache.evictUser(userId);
         }
+        return affected;
+    }
 
-        // Clean up empty conversations (no messages left)
-        conversationsDeleted = conversationRepository.deleteEmptyConversationsByUserId(userId);
-
-        log.info("GDPR deletion completed for user {}: {} anonymized, {} deleted, {} conversations removed",
-                userId, messagesAnonymized, messagesDeleted, conversationsDeleted);
-
-        return new DeletionResult(
-                SERVICE_NAME,
-                userId,
-                Instant.now(),
-                messagesAnonymized,
-                messagesDeleted,
-                conversationsDeleted,
-                true,
-                null
-        );
+    private <T extends GdprExportData> int stream(String sql, RowMapper<T> mapper, GdprExportWriter writer, Object... args) {
+        int count = 0;
+        try (Stream<T> rows = jdbcTemplate.queryForStream(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            // Inside the transaction this makes the driver read through a cursor instead of buffering every row
+            ps.setFetchSize(exportFetchSize);
+            for (int i = 0; i < args.length; i++) ps.setObject(i + 1, args[i]);
+            return ps;
+        }, mapper)) {
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                writer.write(it.next());
+                count++;
+            }
+        }
+        return count;
     }
 
-    private MessageExport toMessageExport(Message m, boolean isSent) {
-        return new MessageExport(
-                m.getId(),
-                m.getConversationId(),
-                isSent ? m.getRecipientId() : m.getSenderId(),
-                m.getBody(),
-                m.getCreatedAt(),
-                m.getReadAt(),
+    private static final RowMapper<ConversationExport> CONVERSATION_MAPPER = (rs, rowNum) -> new ConversationExport(
+            rs.getObject("id", UUID.class),
+            rs.getObject("other_user_id", UUID.class),
+            toInstant(rs.getObject("created_at", OffsetDateTime.class)),
+            toInstant(rs.getObject("last_message_at", OffsetDateTime.class))
+    );
+
+    private static RowMapper<MessageExport> messageMapper(boolean isSent) {
+        return (rs, rowNum) -> new MessageExport(
+                rs.getObject("id", UUID.class),
+                rs.getObject("conversation_id", UUID.class),
+                rs.getObject("other_party_id", UUID.class),
+                rs.getString("body"),
+                toInstant(rs.getObject("created_at", OffsetDateTime.class)),
+                toInstant(rs.getObject("read_at", OffsetDateTime.class)),
                 isSent
         );
     }
 
-    /**
-     * Result of a GDPR deletion operation.
-     */
-    public record DeletionResult(
-            String serviceName,
-            UUID userId,
-            Instant deletedAt,
-            int messagesAnonymized,
-            int messagesDeleted,
-            int conversationsDeleted,
-            boolean success,
-            String errorMessage
-    ) {
-        public static DeletionResult error(UUID userId, String errorMessage) {
-            return new DeletionResult(
-                    SERVICE_NAME,
-                    userId,
-                    Instant.now(),
-                    0, 0, 0,
-                    false,
-                    errorMessage
-            );
-        }
+    private static Instant toInstant(OffsetDateTime value) {
+        return value == null ? null : value.toInstant();
     }
 }
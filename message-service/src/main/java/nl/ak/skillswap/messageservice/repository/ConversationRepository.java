@@ -3,7 +3,6 @@ package nl.ak.skillswap.messageservice.repository;
 
 import nl.ak.skillswap.messageservice.domain.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -40,18 +39,4 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
         WHERE c.userLowId = :userId OR c.userHighId = :userId
     """)
     long countByUserId(@Param("userId") UUID userId);
-
-    /**
-     * Delete conversations where both users have been deleted
-     * (cleanup orphaned conversations)
-     */
-    @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("""
-        DELETE FROM Conversation c
-        WHERE (c.userLowId = :userId OR c.userHighId = :userId)
-          AND NOT EXISTS (
-              SELECT 1 FROM Message m WHERE m.conversationId = c.id
-          )
-    """)
-    int deleteEmptyConversationsByUserId(@Param("userId") UUID userId);
 }
@@ -1,77 +1,94 @@
 package nl.ak.skillswap.messageservice.repository;
 
 
-
-import io.lettuce.core.dynamic.annotation.Param;
 import nl.ak.skillswap.messageservice.domain.Message;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface MessageRepository extends JpaRepository<Message, UUID> {
 
-    // First page (no cursor)
-    List<Message> findByConversationIdOrderByCreatedAtDesc(UUID conversationId, Pageable pageable);
-
-    // Cursor page: createdAt < before
-    List<Message> findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc(
-            UUID conversationId,
-            Instant before,
-            Pageable pageable
+    /**
+     * Message columns with {@code read_at} derived from the recipient's read watermark
+     * (see {@code ReadStateService}). Rows read before watermarks existed keep their stored time.
+     */
+    String SELECT_WITH_READ_STATE = """
+        select m.id, m.conversation_id, m.sender_id, m.recipient_id, m.body, m.created_at,
+               coalesce(m.read_at,
+                        case when (m.created_at, m.id) <= (p.last_read_created_at, p.last_read_message_id)
+                             then p.last_read_at end) as read_at,
+               m.sender_seq, m.recipient_seq
+          from messages m
+          left join conversation_participants p
+            on p.conversation_id = m.conversation_id and p.user_id = m.recipient_id
+    """;
+
+    // Keyset pages over (createdAt, id), served by idx_messages_conversation_created_id.
+    // The plain created_at bound repeats the row comparison in a form the planner can use to
+    // skip the monthly partitions on the far side of the cursor.
+
+    @Query(value = SELECT_WITH_READ_STATE + """
+         where m.conversation_id = :conversationId
+         order by m.created_at desc, m.id desc
+         limit :limit
+    """, nativeQuery = true)
+    List<Message> findLatest(@Param("conversationId") UUID conversationId, @Param("limit") int limit);
+
+    // Older than the cursor, newest first
+    @Query(value = SELECT_WITH_READ_STATE + """
+         where m.conversation_id = :conversationId
+           and m.created_at <= :createdAt
+           and (m.created_at, m.id) < (:createdAt, :id)
+         order by m.created_at desc, m.id desc
+         limit :limit
+    """, nativeQuery = true)
+    List<Message> findBeforeCursor(
+            @Param("conversationId") UUID conversationId,
+            @Param("createdAt") Instant createdAt,
+            @Param("id") UUID id,
+            @Param("limit") int limit
     );
 
-    long countByConversationIdAndRecipientIdAndReadAtIsNull(UUID conversationId, UUID recipientId);
-
-    @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("""
-        update Message m
-           set m.readAt = :readAt
-         where m.conversationId = :conversationId
-           and m.recipientId = :recipientId
-           and m.readAt is null
-    """)
-    int markConversationRead(
+    // Newer than the cursor, oldest first
+    @Query(value = SELECT_WITH_READ_STATE + """
+         where m.conversation_id = :conversationId
+           and m.created_at >= :createdAt
+           and (m.created_at, m.id) > (:createdAt, :id)
+         order by m.created_at asc, m.id asc
+         limit :limit
+    """, nativeQuery = true)
+    List<Message> findAfterCursor(
             @Param("conversationId") UUID conversationId,
-            @Param("recipientId") UUID recipientId,
-            @Param("readAt") Instant readAt
+            @Param("createdAt") Instant createdAt,
+            @Param("id") UUID id,
+            @Param("limit") int limit
     );
 
-    // ==================== GDPR Operations ====================
-
-    /**
-     * Find all messages sent by a user (for GDPR export)
-     */
-    List<Message> findBySenderId(UUID senderId);
+    @Query(value = SELECT_WITH_READ_STATE + """
+         where m.conversation_id = :conversationId
+           and m.id = :id
+    """, nativeQuery = true)
+    Optional<Message> findInConversation(@Param("conversationId") UUID conversationId, @Param("id") UUID id);
+
+    // Messages to the recipient above their read watermark
+    @Query(value = """
+        select count(*) from messages m
+          left join conversation_participants p
+            on p.conversation_id = m.conversation_id and p.user_id = m.recipient_id
+         where m.conversation_id = :conversationId
+           and m.recipient_id = :recipientId
+           and m.read_at is null
+           and (p.user_id is null or (m.created_at >= p.last_read_created_at
+                                      and (m.created_at, m.id) > (p.last_read_created_at, p.last_read_message_id)))
+    """, nativeQuery = true)
+    long countUnread(@Param("conversationId") UUID conversationId, @Param("recipientId") UUID recipientId);
 
-    /**
-     * Find all messages received by a user (for GDPR export)
-     */
-    List<Message> findByRecipientId(UUID recipientId);
-
-    /**
-     * Anonymize messages sent by user (GDPR deletion - keeps conversation for recipient)
-     * Sets senderId to null and optionally clears body
-     */
-    @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("""
-        update Message m
-           set m.senderId = null,
-               m.body = '[Message from deleted user]'
-         where m.senderId = :userId
-    """)
-    int anonymizeMessagesBySender(@Param("userId") UUID userId);
-
-    /**
-     * Delete all messages received by user (GDPR deletion - removes user's inbox)
-     */
-    @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("delete from Message m where m.recipientId = :userId")
-    int deleteMessagesByRecipient(@Param("userId") UUID userId);
+    // ==================== GDPR Operations ====================
 
     /**
      * Count messages sent by user
@@ -0,0 +1,84 @@
+package nl.ak.skillswap.messageservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.domain.ConversationMembers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * In-process cache of conversation participants, for the authorization checks on typing
+ * indicators, history reads and mark-read.
+ *
+ * Participants never change, so entries are only dropped when a conversation is deleted, which
+ * happens on GDPR deletion of one of its users. Other instances do not hear about that
+ * deletion; the idle expiry bounds how long they keep the entry, and until then it only
+ * authorizes a participant for a conversation without messages.
+ */
+@Slf4j
+@Component
+public class ConversationMembershipCache {
+
+    private final Cache<UUID, ConversationMembers> members;
+
+    public ConversationMembershipCache(
+            @Value("${app.conversations.membership-cache.maximum-size:100000}") long maximumSize,
+            @Value("${app.conversations.membership-cache.expire-after-access-ms:3600000}") long expireAfterAccessMs,
+            MeterRegistry meterRegistry) {
+        this.members = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(Duration.ofMillis(expireAfterAccessMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, members, "conversation-members");
+    }
+
+    /**
+     * Members of the conversation, loading them on a miss. Conversations that do not exist are not cached.
+     */
+    public Optional<ConversationMembers> get(UUID conversationId,
+                                             Function<UUID, Optional<ConversationMembers>> loader) {
+        ConversationMembers cached = members.getIfPresent(conversationId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<ConversationMembers> loaded = loader.apply(conversationId);
+        loaded.ifPresent(m -> members.put(conversationId, m));
+        return loaded;
+    }
+
+    public void put(ConversationMembers conversationMembers) {
+        members.put(conversationMembers.conversationId(), conversationMembers);
+    }
+
+    /**
+     * Drop every cached conversation of the user. Inside a transaction this happens again after
+     * commit, so a lookup racing the deletion cannot leave the deleted conversation behind.
+     */
+    public void evictUser(UUID userId) {
+        evictNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(userId);
+                }
+            });
+        }
+    }
+
+    private void evictNow(UUID userId) {
+        members.asMap().values().removeIf(m -> m.involves(userId));
+        log.debug("Evicted cached conversations of user {}", userId);
+    }
+}
@@ -2,10 +2,13 @@ package nl.ak.skillswap.messageservice.service;
 
 import lombok.RequiredArgsConstructor;
 import nl.ak.skillswap.messageservice.domain.Conversation;
+import nl.ak.skillswap.messageservice.domain.ConversationMembers;
 import nl.ak.skillswap.messageservice.repository.ConversationRepository;
 import nl.ak.skillswap.messageservice.support.NotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.List;
@@ -16,13 +19,14 @@ import java.util.UUID;
 public class ConversationService {
 
     private final ConversationRepository conversationRepository;
+    private final ConversationMembershipCache membershipCache;
 
     @Transactional
     public Conversation getOrCreate(UUID me, UUID other) {
         UUID low = low(me, other);
         UUID high = high(me, other);
 
-        return conversationRepository.findByUserLowIdAndUserHighId(low, high)
+        Conversation conversation = conversationRepository.findByUserLowIdAndUserHighId(low, high)
                 .orElseGet(() -> conversationRepository.save(
                         Conversation.builder()
                                 .id(UUID.randomUUID())
@@ -32,6 +36,23 @@ public class ConversationService {
                                 .lastMessageAt(null)
                                 .build()
                 ));
+        // Cached after commit, so a rolled-back insert never leaves a conversation ID that grants access
+        ConversationMembers members = conversation.members();
+        runAfterCommit(() -> membershipCache.put(members));
+        return conversation;
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     @Transactional(readOnly = true)
@@ -40,6 +61,15 @@ public class ConversationService {
                 .orElseThrow(() -> new NotFoundException("Conversation not found"));
     }
 
+    /**
+     * Participants of the conversation, for authorization checks. Served from memory after the first lookup.
+     */
+    public ConversationMembers getMembers(UUID conversationId) {
+        return membershipCache.get(conversationId,
+                        id -> conversationRepository.findById(id).map(Conversation::members))
+                .orElseThrow(() -> new NotFoundException("Conversation not found"));
+    }
+
     @Transactional(readOnly = true)
     public List<Conversation> listForUser(UUID userId) {
         return conversationRepository
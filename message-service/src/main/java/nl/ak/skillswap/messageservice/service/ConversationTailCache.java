@@ -0,0 +1,494 @@
+package nl.ak.skillswap.messageservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.api.dto.MessageDto;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process cache of the newest messages of recently read conversations, so the first page of a
+ * conversation that just got a message is served without a database query.
+ *
+ * Each conversation keeps its last {@code messages-per-conversation} messages in a fixed-size ring
+ * buffer, filled from the database on a first-page miss and then appended to when a message is sent
+ * on this instance or arrives through a delivery event. Conversations are evicted whole, least
+ * recently used first, to keep the estimated size of all rings within {@code max-bytes}.
+ *
+ * Other instances hear about sends, reads and GDPR deletions over Redis pub/sub. A send makes
+ * their ring wait for the message's delivery event; until it arrives the ring is not served, and
+ * instances without the recipient's session simply reload it on the next read. A lost notification
+ * leaves a ring stale for at most {@code max-age-ms} after it was loaded.
+ *
+ * A load that overlaps a change to its conversation is not stored, so a ring never misses a
+ * message that was committed while it was being read.
+ */
+@Slf4j
+@Component
+public class ConversationTailCache implements MessageListener {
+
+    public static final String CHANNEL = "messages:tail";
+
+    private static final char SEPARATOR = '|';
+
+    // Rough heap cost of a cached message besides its body: the record, two UUIDs per id field, instants, string header
+    static final long MESSAGE_OVERHEAD_BYTES = 240;
+    static final long TAIL_OVERHEAD_BYTES = 160;
+
+    // Change stamps per stripe of conversations; a load is only stored if its stripe did not change meanwhile
+    private static final int STAMP_STRIPES = 1024;
+
+    private final StringRedisTemplate redis;
+    private final NodeIdentity nodeIdentity;
+    private final boolean enabled;
+    private final int capacity;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+    private final LongSupplier clock;
+
+    // Access-ordered, so iteration starts at the least recently used conversation; guarded by this
+    private final LinkedHashMap<UUID, Tail> tails = new LinkedHashMap<>(256, 0.75f, true);
+    private final long[] stamps = new long[STAMP_STRIPES];
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    @Autowired
+    public ConversationTailCache(StringRedisTemplate redis,
+                                 NodeIdentity nodeIdentity,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.messages.tail-cache.enabled:true}") boolean enabled,
+                                 @Value("${app.messages.tail-cache.messages-per-conversation:50}") int capacity,
+                                 @Value("${app.messages.tail-cache.max-bytes:67108864}") long maxBytes,
+                                 @Value("${app.messages.tail-cache.max-age-ms:300000}") long maxAgeMs) {
+        this(redis, nodeIdentity, meterRegistry, enabled, capacity, maxBytes, maxAgeMs, System::nanoTime);
+    }
+
+    ConversationTailCache(StringRedisTemplate redis, NodeIdentity nodeIdentity, MeterRegistry meterRegistry,
+                          boolean enabled, int capacity, long maxBytes, long maxAgeMs, LongSupplier clock) {
+        this.redis = redis;
+        this.nodeIdentity = nodeIdentity;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+        this.clock = clock;
+
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.evictions = Counter.builder("messages.tail.evictions")
+                .description("Conversations evicted from the tail cache to stay within its byte budget")
+                .register(meterRegistry);
+        Gauge.builder("messages.tail.hit.ratio", this, ConversationTailCache::hitRatio)
+                .description("Share of first-page reads served from the tail cache")
+                .register(meterRegistry);
+        Gauge.builder("messages.tail.bytes", this, ConversationTailCache::estimatedBytes)
+                .description("Estimated heap used by cached conversation tails")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("messages.tail.conversations", this, ConversationTailCache::size)
+                .description("Conversations with a cached tail")
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("messages.tail.requests")
+                .description("First-page reads by whether the tail cache could serve them")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Number of messages a load should fetch to fill a ring, plus one to tell whether the ring holds
+     * the whole conversation.
+     */
+    public int loadSize(int pageSize) {
+        return enabled ? Math.max(pageSize, capacity) + 1 : pageSize + 1;
+    }
+
+    /**
+     * The newest {@code pageSize} messages of the conversation, or {@code null} if they are not cached.
+     */
+    public MessagePage firstPage(UUID conversationId, int pageSize) {
+        if (!enabled) return null;
+        List<MessageDto> newestFirst;
+        boolean hasMore;
+        synchronized (this) {
+            Tail tail = tails.get(conversationId);
+            if (tail == null || !tail.servable(pageSize, clock.getAsLong() - maxAgeNanos)) {
+                misses.increment();
+                return null;
+            }
+            newestFirst = tail.newest(pageSize);
+            hasMore = newestFirst.size() < tail.size || !tail.complete;
+        }
+        hits.increment();
+        return new MessagePage(newestFirst.stream().map(ConversationTailCache::toMessage).toList(), hasMore);
+    }
+
+    /**
+     * Start loading a conversation's tail from the database. Pass the result to {@link #fill}.
+     */
+    public synchronized long beginLoad(UUID conversationId) {
+        return stamps[stripe(conversationId)];
+    }
+
+    /**
+     * Store a tail read from the database, unless the conversation changed since {@link #beginLoad}.
+     *
+     * @param newestFirst the newest messages, fetched with a limit of {@link #loadSize}
+     */
+    public void fill(UUID conversationId, List<Message> newestFirst, long stamp) {
+        if (!enabled) return;
+        Tail tail = new Tail(capacity);
+        for (int i = Math.min(newestFirst.size(), capacity) - 1; i >= 0; i--) {
+            tail.add(MessageDto.from(newestFirst.get(i)));
+        }
+        tail.complete = newestFirst.size() <= capacity;
+
+        synchronized (this) {
+            if (stamps[stripe(conversationId)] != stamp) return;
+            tail.loadedAt = clock.getAsLong();
+            Tail previous = tails.put(conversationId, tail);
+            if (previous != null) bytes -= previous.bytes;
+            bytes += tail.bytes;
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * Add messages committed on this instance and tell the other instances about them.
+     */
+    public void appendSent(Collection<Message> messages) {
+        if (!enabled || messages.isEmpty()) return;
+        for (Message message : messages) {
+            append(MessageDto.from(message));
+            publish("A", message.getConversationId(), message.getId().toString());
+        }
+    }
+
+    /**
+     * Add a message that arrived through a delivery event. May arrive more than once.
+     */
+    public void appendDelivered(MessageDto message) {
+        if (!enabled) return;
+        append(message);
+    }
+
+    /**
+     * Apply a read watermark committed on this instance and have the other instances drop the conversation.
+     */
+    public void markRead(UUID conversationId, UUID readerId, ReadStateService.Watermark watermark, Instant readAt) {
+        if (!enabled) return;
+        synchronized (this) {
+            touch(conversationId);
+            Tail tail = tails.get(conversationId);
+            if (tail != null) tail.markRead(readerId, watermark, readAt);
+        }
+        publish("I", conversationId, "");
+    }
+
+    /**
+     * Drop a conversation's tail here and on the other instances.
+     */
+    public void invalidate(UUID conversationId) {
+        if (!enabled) return;
+        invalidateLocal(conversationId);
+        publish("I", conversationId, "");
+    }
+
+    /**
+     * Drop every tail with messages of the user, here and on the other instances. Inside a
+     * transaction this happens again after commit, so a load racing the deletion cannot bring the
+     * user's messages back.
+     */
+    public void evictUser(UUID userId) {
+        if (!enabled) return;
+        evictUserLocal(userId);
+        publish("U", userId, "");
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictUserLocal(userId);
+                    publish("U", userId, "");
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length < 4) {
+            log.warn("Ignoring malformed tail cache notification: {}", payload);
+            return;
+        }
+        if (parts[0].equals(nodeIdentity.nodeId()) || !enabled) {
+            return;
+        }
+
+        try {
+            UUID id = UUID.fromString(parts[2]);
+            switch (parts[1]) {
+                case "A" -> awaitMessage(id, UUID.fromString(parts[3]));
+                case "I" -> invalidateLocal(id);
+                case "U" -> evictUserLocal(id);
+                default -> log.warn("Ignoring unknown tail cache notification: {}", payload);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed tail cache notification: {}", payload);
+        }
+    }
+
+    synchronized int size() {
+        return tails.size();
+    }
+
+    synchronized long estimatedBytes() {
+        return bytes;
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private synchronized void append(MessageDto message) {
+        touch(message.conversationId());
+        Tail tail = tails.get(message.conversationId());
+        if (tail == null) return;
+
+        long before = tail.bytes;
+        tail.insert(message);
+        bytes += tail.bytes - before;
+        evictOverBudget();
+    }
+
+    private synchronized void awaitMessage(UUID conversationId, UUID messageId) {
+        touch(conversationId);
+        Tail tail = tails.get(conversationId);
+        if (tail != null && !tail.contains(messageId)) tail.await(messageId);
+    }
+
+    private synchronized void invalidateLocal(UUID conversationId) {
+        touch(conversationId);
+        Tail tail = tails.remove(conversationId);
+        if (tail != null) bytes -= tail.bytes;
+    }
+
+    private synchronized void evictUserLocal(UUID userId) {
+        for (int i = 0; i < stamps.length; i++) stamps[i]++;
+        Iterator<Tail> it = tails.values().iterator();
+        while (it.hasNext()) {
+            Tail tail = it.next();
+            if (tail.involves(userId)) {
+                bytes -= tail.bytes;
+                it.remove();
+            }
+        }
+        log.debug("Evicted cached conversation tails of user {}", userId);
+    }
+
+    // Called with the lock held
+    private void touch(UUID conversationId) {
+        stamps[stripe(conversationId)]++;
+    }
+
+    // Called with the lock held
+    private void evictOverBudget() {
+        Iterator<Map.Entry<UUID, Tail>> it = tails.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private void publish(String operation, UUID id, String argument) {
+        String payload = nodeIdentity.nodeId() + SEPARATOR + operation + SEPARATOR + id + SEPARATOR + argument;
+        try {
+            redis.convertAndSend(CHANNEL, payload);
+        } catch (Exception e) {
+            // Other instances reload the conversation once their copy reaches max-age
+            log.warn("Failed to publish tail cache notification for {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static int stripe(UUID conversationId) {
+        return (conversationId.hashCode() & 0x7fffffff) % STAMP_STRIPES;
+    }
+
+    private static long sizeOf(MessageDto message) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * message.body().length();
+    }
+
+    private static Message toMessage(MessageDto dto) {
+        return Message.builder()
+                .id(dto.id())
+                .conversationId(dto.conversationId())
+                .senderId(dto.senderId())
+                .recipientId(dto.recipientId())
+                .body(dto.body())
+                .createdAt(dto.createdAt())
+                .readAt(dto.readAt())
+                .build();
+    }
+
+    /**
+     * The newest messages of one conversation, oldest to newest in a ring of fixed capacity.
+     * Not thread-safe; used under the cache's lock.
+     */
+    static final class Tail {
+
+        private final MessageDto[] ring;
+        private int start;
+        int size;
+        long bytes = TAIL_OVERHEAD_BYTES;
+        // Whether the ring holds every message of the conversation
+        boolean complete;
+        long loadedAt;
+        // Messages sent through another instance whose delivery event has not arrived here yet
+        private Set<UUID> awaited;
+
+        Tail(int capacity) {
+            this.ring = new MessageDto[capacity];
+        }
+
+        boolean servable(int pageSize, long loadedAfter) {
+            return (awaited == null || awaited.isEmpty())
+                    && loadedAt - loadedAfter > 0
+                    && (pageSize <= size || complete);
+        }
+
+        MessageDto get(int index) {
+            return ring[(start + index) % ring.length];
+        }
+
+        private void set(int index, MessageDto message) {
+            ring[(start + index) % ring.length] = message;
+        }
+
+        List<MessageDto> newest(int count) {
+            int n = Math.min(count, size);
+            List<MessageDto> result = new ArrayList<>(n);
+            for (int i = size - 1; i >= size - n; i--) result.add(get(i));
+            return result;
+        }
+
+        /**
+         * Append a message known to be newer than every message in the ring.
+         */
+        void add(MessageDto message) {
+            if (size == ring.length) {
+                bytes -= sizeOf(get(0));
+                set(0, message);
+                start = (start + 1) % ring.length;
+            } else {
+                set(size++, message);
+            }
+            bytes += sizeOf(message);
+        }
+
+        /**
+         * Insert a message at its position in (createdAt, id) order, ignoring one already present.
+         * A message older than a full ring is not among the newest and is dropped.
+         */
+        void insert(MessageDto message) {
+            if (awaited != null) awaited.remove(message.id());
+            if (contains(message.id())) return;
+
+            int position = size;
+            while (position > 0 && isAfter(get(position - 1), message)) position--;
+            if (position == size) {
+                add(message);
+                return;
+            }
+            if (size == ring.length) {
+                complete = false;
+                if (position == 0) return;
+                // Drop the oldest to make room, shifting the older part down one slot
+                bytes -= sizeOf(get(0));
+                for (int i = 0; i < position - 1; i++) set(i, get(i + 1));
+                set(position - 1, message);
+            } else {
+                for (int i = size; i > position; i--) set(i, get(i - 1));
+                set(position, message);
+                size++;
+            }
+            bytes += sizeOf(message);
+        }
+
+        boolean contains(UUID messageId) {
+            for (int i = 0; i < size; i++) {
+                if (get(i).id().equals(messageId)) return true;
+            }
+            return false;
+        }
+
+        void await(UUID messageId) {
+            if (awaited == null) awaited = new HashSet<>();
+            awaited.add(messageId);
+        }
+
+        void markRead(UUID readerId, ReadStateService.Watermark watermark, Instant readAt) {
+            for (int i = 0; i < size; i++) {
+                MessageDto m = get(i);
+                if (m.readAt() == null && m.recipientId().equals(readerId) && !isAfter(m, watermark)) {
+                    set(i, new MessageDto(m.id(), m.conversationId(), m.senderId(), m.recipientId(),
+                            m.body(), m.createdAt(), readAt));
+                }
+            }
+        }
+
+        boolean involves(UUID userId) {
+            for (int i = 0; i < size; i++) {
+                MessageDto m = get(i);
+                if (userId.equals(m.senderId()) || userId.equals(m.recipientId())) return true;
+            }
+            return false;
+        }
+
+        private static boolean isAfter(MessageDto a, MessageDto b) {
+            int byTime = a.createdAt().compareTo(b.createdAt());
+            return byTime > 0 || (byTime == 0 && compareIds(a.id(), b.id()) > 0);
+        }
+
+        private static boolean isAfter(MessageDto m, ReadStateService.Watermark watermark) {
+            int byTime = m.createdAt().compareTo(watermark.createdAt());
+            return byTime > 0 || (byTime == 0 && compareIds(m.id(), watermark.messageId()) > 0);
+        }
+
+        // Postgres orders uuids by their unsigned bytes; UUID.compareTo compares signed halves
+        private static int compareIds(UUID a, UUID b) {
+            int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+            return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+        }
+    }
+}
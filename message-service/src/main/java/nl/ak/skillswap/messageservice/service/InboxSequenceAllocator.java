@@ -0,0 +1,70 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import nl.ak.skillswap.messageservice.domain.Message;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Hands out per-user inbox sequence numbers.
+ *
+ * A range is reserved with one upsert on {@code user_sequences}, which keeps that user's row locked
+ * until the surrounding transaction commits. A concurrent writer for the same user waits for the
+ * commit, so a user's sequence numbers become visible in order and a client reading
+ * {@code seq > since} can never miss a lower number that commits later. Users are always locked in
+ * ascending id order so two transactions touching the same pair of users cannot deadlock.
+ */
+@Component
+@RequiredArgsConstructor
+public class InboxSequenceAllocator {
+
+    private static final String RESERVE = """
+            INSERT INTO user_sequences (user_id, last_seq)
+            VALUES (?, ?)
+            ON CONFLICT (user_id) DO UPDATE SET last_seq = user_sequences.last_seq + EXCLUDED.last_seq
+            RETURNING last_seq
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Reserve {@code count} numbers per user.
+     *
+     * @return the first reserved number per user
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<UUID, Long> reserve(Map<UUID, Integer> counts) {
+        Map<UUID, Long> first = new HashMap<>(counts.size());
+        new TreeMap<>(counts).forEach((userId, count) -> {
+            Long last = jdbcTemplate.queryForObject(RESERVE, Long.class, userId, count);
+            first.put(userId, last - count + 1);
+        });
+        return first;
+    }
+
+    /**
+     * Assign sender and recipient sequence numbers to messages about to be inserted, in list order.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void assign(List<Message> messages) {
+        Map<UUID, Integer> counts = new HashMap<>();
+        for (Message m : messages) {
+            counts.merge(m.getSenderId(), 1, Integer::sum);
+            counts.merge(m.getRecipientId(), 1, Integer::sum);
+        }
+
+        Map<UUID, Long> next = reserve(counts);
+        for (Message m : messages) {
+            m.setSenderSeq(next.merge(m.getSenderId(), 1L, Long::sum) - 1);
+            m.setRecipientSeq(next.merge(m.getRecipientId(), 1L, Long::sum) - 1);
+        }
+    }
+}
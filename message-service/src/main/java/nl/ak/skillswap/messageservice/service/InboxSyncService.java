@@ -0,0 +1,166 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import nl.ak.skillswap.messageservice.domain.Message;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Change feed of a user's inbox, ordered by their inbox sequence.
+ *
+ * Messages carry the sequence numbers of both participants; read-state changes are recorded in
+ * {@code read_events} for both participants, and a message's read time comes from its recipient's
+ * read watermark. Catching up after a reconnect is one keyset scan per
+ * source over {@code (user, seq)} indexes, merged by sequence.
+ */
+@Service
+@RequiredArgsConstructor
+public class InboxSyncService {
+
+    private static final String INSERT_READ_EVENT = """
+            INSERT INTO read_events (user_id, seq, conversation_id, reader_id, read_at)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private static final String CHANGES_SINCE = """
+            SELECT * FROM (
+                (SELECT 'MESSAGE' AS kind, m.recipient_seq AS seq, m.conversation_id, m.id AS message_id,
+                        m.sender_id, m.recipient_id, m.body, m.created_at,
+                        coalesce(m.read_at, CASE WHEN (m.created_at, m.id) <= (p.last_read_created_at, p.last_read_message_id)
+                                                 THEN p.last_read_at END) AS read_at,
+                        NULL::uuid AS reader_id
+                   FROM messages m
+                   LEFT JOIN conversation_participants p
+                     ON p.conversation_id = m.conversation_id AND p.user_id = m.recipient_id
+                  WHERE m.recipient_id = ? AND m.recipient_seq > ?
+                  ORDER BY m.recipient_seq
+                  LIMIT ?)
+                UNION ALL
+                (SELECT 'MESSAGE', m.sender_seq, m.conversation_id, m.id,
+                        m.sender_id, m.recipient_id, m.body, m.created_at,
+                        coalesce(m.read_at, CASE WHEN (m.created_at, m.id) <= (p.last_read_created_at, p.last_read_message_id)
+                                                 THEN p.last_read_at END),
+                        NULL::uuid
+                   FROM messages m
+                   LEFT JOIN conversation_participants p
+                     ON p.conversation_id = m.conversation_id AND p.user_id = m.recipient_id
+                  WHERE m.sender_id = ? AND m.sender_seq > ?
+                  ORDER BY m.sender_seq
+                  LIMIT ?)
+                UNION ALL
+                (SELECT 'READ', r.seq, r.conversation_id, NULL::uuid,
+                        NULL::uuid, NULL::uuid, NULL, NULL::timestamptz, r.read_at, r.reader_id
+                   FROM read_events r
+                  WHERE r.user_id = ? AND r.seq > ?
+                  ORDER BY r.seq
+                  LIMIT ?)
+            ) changes
+            ORDER BY seq
+            LIMIT ?
+            """;
+
+    private static final String CURRENT_SEQ = "SELECT last_seq FROM user_sequences WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InboxSequenceAllocator sequenceAllocator;
+
+    public enum ChangeType { MESSAGE, READ }
+
+    /**
+     * One change in a user's inbox. {@code message} is set for {@link ChangeType#MESSAGE};
+     * {@code readerId} and {@code readAt} for {@link ChangeType#READ}.
+     */
+    public record InboxChange(long seq, ChangeType type, UUID conversationId, Message message,
+                              UUID readerId, Instant readAt) {}
+
+    public record InboxChanges(List<InboxChange> changes, long lastSeq, boolean hasMore) {}
+
+    /**
+     * Record that {@code readerId} read a conversation, as a change for the reader (their other
+     * devices clear the badge) and for the other participant (read receipt).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRead(UUID conversationId, UUID readerId, UUID otherUserId, Instant readAt) {
+        Map<UUID, Long> seqs = sequenceAllocator.reserve(Map.of(readerId, 1, otherUserId, 1));
+        OffsetDateTime at = readAt.atOffset(ZoneOffset.UTC);
+        jdbcTemplate.batchUpdate(INSERT_READ_EVENT, List.of(
+                new Object[]{readerId, seqs.get(readerId), conversationId, readerId, at},
+                new Object[]{otherUserId, seqs.get(otherUserId), conversationId, readerId, at}
+        ));
+    }
+
+    /**
+     * Changes after {@code since}, oldest first.
+     *
+     * @param since last sequence number the client has seen, or {@code null} to only learn the
+     *              current position without receiving history
+     */
+    @Transactional(readOnly = true)
+    public InboxChanges changesSince(UUID userId, Long since, int limit) {
+        if (since == null) {
+            return new InboxChanges(List.of(), currentSeq(userId), false);
+        }
+
+        int fetch = limit + 1;
+        List<InboxChange> rows = jdbcTemplate.query(CHANGES_SINCE, CHANGE_MAPPER,
+                userId, since, fetch,
+                userId, since, fetch,
+                userId, since, fetch,
+                fetch);
+
+        boolean hasMore = rows.size() > limit;
+        List<InboxChange> changes = hasMore ? rows.subList(0, limit) : rows;
+        long lastSeq = changes.isEmpty() ? since : changes.getLast().seq();
+        return new InboxChanges(changes, lastSeq, hasMore);
+    }
+
+    /**
+     * Remove a user's read events and sequence (GDPR deletion).
+     */
+    @Transactional
+    public void deleteUserData(UUID userId) {
+        jdbcTemplate.update("DELETE FROM read_events WHERE user_id = ? OR reader_id = ?", userId, userId);
+        jdbcTemplate.update("DELETE FROM user_sequences WHERE user_id = ?", userId);
+    }
+
+    private long currentSeq(UUID userId) {
+        List<Long> seq = jdbcTemplate.queryForList(CURRENT_SEQ, Long.class, userId);
+        return seq.isEmpty() ? 0 : seq.getFirst();
+    }
+
+    private static final RowMapper<InboxChange> CHANGE_MAPPER = (rs, rowNum) -> {
+        ChangeType type = ChangeType.valueOf(rs.getString("kind"));
+        long seq = rs.getLong("seq");
+        UUID conversationId = rs.getObject("conversation_id", UUID.class);
+
+        if (type == ChangeType.READ) {
+            return new InboxChange(seq, type, conversationId, null,
+                    rs.getObject("reader_id", UUID.class), toInstant(rs.getObject("read_at", OffsetDateTime.class)));
+        }
+
+        Message message = Message.builder()
+                .id(rs.getObject("message_id", UUID.class))
+                .conversationId(conversationId)
+                .senderId(rs.getObject("sender_id", UUID.class))
+                .recipientId(rs.getObject("recipient_id", UUID.class))
+                .body(rs.getString("body"))
+                .createdAt(toInstant(rs.getObject("created_at", OffsetDateTime.class)))
+                .readAt(toInstant(rs.getObject("read_at", OffsetDateTime.class)))
+                .build();
+        return new InboxChange(seq, type, conversationId, message, null, null);
+    };
+
+    private static Instant toInstant(OffsetDateTime value) {
+        return value == null ? null : value.toInstant();
+    }
+}
@@ -6,8 +6,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Client for internal service-to-service calls to user-service.
@@ -59,5 +65,56 @@ public class InternalUserServiceClient {
         }
     }
 
-    private record IdResolutionResponse(UUID databaseId, String externalId, String displayName) {}
+    /**
+     * Resolve many external IDs with one call to user-service.
+     *
+     * @return resolved users keyed by external ID; unknown or inactive users are absent
+     */
+    public Map<String, IdResolutionResponse> resolveExternalIds(Collection<String> externalIds) {
+        log.debug("Batch resolving {} external IDs", externalIds.size());
+
+        BatchResolveResponse response = webClient.post()
+                .uri("/internal/users/resolve:batch")
+                .bodyValue(new BatchResolveRequest(List.copyOf(externalIds)))
+                .retrieve()
+                .bodyToMono(BatchResolveResponse.class)
+                .block();
+
+        if (response == null || response.resolved() == null) {
+            return Map.of();
+        }
+        return response.resolved().stream()
+                .collect(Collectors.toMap(IdResolutionResponse::externalId, Function.identity(), (a, b) -> a));
+    }
+
+    /**
+     * Check existence of many users with one call to user-service.
+     *
+     * @return the subset of the given IDs that belong to an active user
+     */
+    public Set<UUID> findExistingUsers(Collection<UUID> userIds) {
+        log.debug("Batch existence check for {} users", userIds.size());
+
+        BatchExistsResponse response = webClient.post()
+                .uri("/internal/users/exists:batch")
+                .bodyValue(new BatchExistsRequest(List.copyOf(userIds)))
+                .retrieve()
+                .bodyToMono(BatchExistsResponse.class)
+                .block();
+
+        if (response == null || response.existing() == null) {
+            return Set.of();
+        }
+        return Set.copyOf(response.existing());
+    }
+
+    public record IdResolutionResponse(UUID databaseId, String externalId, String displayName) {}
+
+    private record BatchResolveRequest(List<String> externalIds) {}
+
+    private record BatchResolveResponse(List<IdResolutionResponse> resolved) {}
+
+    private record BatchExistsRequest(List<UUID> ids) {}
+
+    private record BatchExistsResponse(List<UUID> existing) {}
 }
@@ -0,0 +1,52 @@
+package nl.ak.skillswap.messageservice.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users with a WebSocket session on this node, kept in memory.
+ *
+ * The in-memory STOMP broker can only reach these sessions, so this is the exact answer to
+ * "is a push from here worth sending" and never needs Redis. Lookups are a plain map read;
+ * {@link WebSocketSessionService} stays the source of truth across nodes.
+ */
+@Component
+public class LocalPresenceRegistry {
+
+    private final Map<UUID, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+
+    public void add(UUID userId, String sessionId) {
+        // Add inside the map operation so a concurrent remove() of the last session cannot detach the set
+        sessionsByUser.compute(userId, (k, sessions) -> {
+            sessions = sessions == null ? ConcurrentHashMap.newKeySet() : sessions;
+            sessions.add(sessionId);
+            return sessions;
+        });
+    }
+
+    public void remove(UUID userId, String sessionId) {
+        // Drop the entry together with its last session, atomically with respect to add()
+        sessionsByUser.computeIfPresent(userId, (k, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    public boolean isConnected(UUID userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    /**
+     * Snapshot of the local sessions per user.
+     */
+    public Map<UUID, Set<String>> snapshot() {
+        Map<UUID, Set<String>> copy = new HashMap<>(sessionsByUser.size());
+        sessionsByUser.forEach((userId, sessions) -> copy.put(userId, Set.copyOf(sessions)));
+        return copy;
+    }
+}
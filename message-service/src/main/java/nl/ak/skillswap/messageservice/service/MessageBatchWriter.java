@@ -0,0 +1,77 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.service.event.MessageOutbox;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes a group of messages in a single transaction.
+ * Messages are inserted as one JDBC batch and every touched conversation
+ * receives exactly one last_message_at update, however many messages it got.
+ * Inbox sequence numbers are reserved once per participant for the whole group,
+ * and the group's deliveries are queued in the outbox with one more batch.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageBatchWriter {
+
+    private static final String INSERT_MESSAGE = """
+            INSERT INTO messages (id, conversation_id, sender_id, recipient_id, body, created_at, read_at,
+                                  sender_seq, recipient_seq)
+            VALUES (?, ?, ?, ?, ?, ?, NULL, ?, ?)
+            """;
+
+    private static final String TOUCH_CONVERSATION = """
+            UPDATE conversations
+               SET last_message_at = ?
+             WHERE id = ?
+               AND (last_message_at IS NULL OR last_message_at < ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InboxSequenceAllocator sequenceAllocator;
+    private final MessageOutbox outbox;
+
+    @Transactional
+    public void writeBatch(List<Message> messages) {
+        if (messages.isEmpty()) return;
+
+        sequenceAllocator.assign(messages);
+
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE, messages, messages.size(), (ps, m) -> {
+            ps.setObject(1, m.getId());
+            ps.setObject(2, m.getConversationId());
+            ps.setObject(3, m.getSenderId());
+            ps.setObject(4, m.getRecipientId());
+            ps.setString(5, m.getBody());
+            ps.setObject(6, m.getCreatedAt().atOffset(ZoneOffset.UTC));
+            ps.setLong(7, m.getSenderSeq());
+            ps.setLong(8, m.getRecipientSeq());
+        });
+
+        Map<UUID, Instant> latestPerConversation = new LinkedHashMap<>();
+        for (Message m : messages) {
+            latestPerConversation.merge(m.getConversationId(), m.getCreatedAt(),
+                    (a, b) -> a.isAfter(b) ? a : b);
+        }
+
+        jdbcTemplate.batchUpdate(TOUCH_CONVERSATION, List.copyOf(latestPerConversation.entrySet()),
+                latestPerConversation.size(), (ps, e) -> {
+                    ps.setObject(1, e.getValue().atOffset(ZoneOffset.UTC));
+                    ps.setObject(2, e.getKey());
+                    ps.setObject(3, e.getValue().atOffset(ZoneOffset.UTC));
+                });
+
+        outbox.append(messages);
+    }
+}
@@ -0,0 +1,22 @@
+package nl.ak.skillswap.messageservice.service;
+
+import nl.ak.skillswap.messageservice.domain.Message;
+
+import java.util.List;
+
+/**
+ * A page of messages, newest first.
+ *
+ * @param hasMore whether more messages exist in the direction that was paged
+ */
+public record MessagePage(List<Message> messages, boolean hasMore) {
+
+    /**
+     * @param rows     rows fetched with a limit of {@code pageSize + 1}
+     * @param pageSize the requested page size
+     */
+    static MessagePage of(List<Message> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        return new MessagePage(hasMore ? rows.subList(0, pageSize) : rows, hasMore);
+    }
+}
@@ -0,0 +1,107 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of {@code messages} ahead of time and applies retention.
+ *
+ * Runs once per {@code interval-ms}: creates any missing partition from the current month up to
+ * {@code months-ahead} months ahead, then, if {@code retention.months} is set, detaches and drops
+ * the partitions that are entirely older than that many months before the current one. Dropping
+ * a partition removes its messages without touching any other row.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessagePartitionMaintainer {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("messages_p(\\d{6})");
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String CREATE_PARTITIONS = "SELECT create_message_partitions(?, ?)";
+
+    private static final String LIST_PARTITIONS = """
+            SELECT c.relname
+              FROM pg_inherits i
+              JOIN pg_class c ON c.oid = i.inhrelid
+             WHERE i.inhparent = 'messages'::regclass
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.messages.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    /**
+     * Full months of messages kept before the current month; 0 keeps everything.
+     */
+    @Value("${app.messages.retention.months:0}")
+    private int retentionMonths;
+
+    // No initial delay: partitions are topped up as soon as the node starts
+    @Scheduled(fixedDelayString = "${app.messages.partitions.interval-ms:3600000}")
+    void tick() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        try {
+            int created = createPartitions(current);
+            if (created > 0) {
+                log.info("Created {} message partitions", created);
+            }
+        } catch (RuntimeException e) {
+            // Another node may have created the same partition concurrently; the next run catches up
+            log.warn("Failed to create message partitions: {}", e.getMessage());
+        }
+        try {
+            dropExpiredPartitions(current);
+        } catch (RuntimeException e) {
+            log.warn("Failed to drop expired message partitions: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of partitions created
+     */
+    public int createPartitions(YearMonth current) {
+        Integer created = jdbcTemplate.queryForObject(CREATE_PARTITIONS, Integer.class,
+                current.atDay(1), monthsAhead + 1);
+        return created == null ? 0 : created;
+    }
+
+    /**
+     * Detach and drop every partition of a month before the retention window.
+     * Detaching concurrently lets sends and reads continue meanwhile.
+     *
+     * @return the months that were dropped
+     */
+    public List<YearMonth> dropExpiredPartitions(YearMonth current) {
+        if (retentionMonths <= 0) return List.of();
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+
+        List<YearMonth> dropped = new ArrayList<>();
+        for (String partition : jdbcTemplate.queryForList(LIST_PARTITIONS, String.class)) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) continue;
+            YearMonth month = YearMonth.parse(matcher.group(1), PARTITION_MONTH);
+            if (!month.isBefore(oldestKept)) continue;
+
+            jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION \"" + partition + "\" CONCURRENTLY");
+            jdbcTemplate.execute("DROP TABLE \"" + partition + "\"");
+            dropped.add(month);
+            log.info("Dropped message partition {} (retention {} months)", partition, retentionMonths);
+        }
+        return dropped;
+    }
+}
@@ -1,10 +1,15 @@
 package nl.ak.skillswap.messageservice.service;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.support.MultiPatternMatcher;
 import org.owasp.encoder.Encode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * Service for sanitizing message content to prevent XSS attacks.
  * OWASP Top 10: A7 - Cross-Site Scripting (XSS)
@@ -13,18 +18,52 @@ import org.springframework.stereotype.Service;
 @Service
 public class MessageSanitizer {
 
+    private static final Pattern CONTROL_CHARS = Pattern.compile("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]");
+    private static final Pattern CRLF = Pattern.compile("\\r\\n");
+    private static final Pattern CR = Pattern.compile("\\r");
+    private static final Pattern NEWLINE_RUN = Pattern.compile("\\n{4,}");
+
+    private static final int MAX_NEWLINE_RUN = 3;
+
+    // Common XSS patterns
+    private static final List<String> DEFAULT_UNSAFE_PATTERNS = List.of(
+            "<script", "javascript:", "onerror=", "onclick=", "onload=", "eval(", "document.cookie"
+    );
+
+    // Worst case is every character encoded as a 5-character entity
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
     @Value("${app.messages.max-length:2000}")
     private int maxMessageLength;
 
     @Value("${app.messages.min-length:1}")
     private int minMessageLength;
 
+    private MultiPatternMatcher unsafePatterns = MultiPatternMatcher.of(DEFAULT_UNSAFE_PATTERNS);
+
+    /**
+     * Moderation terms on top of the built-in XSS patterns.
+     */
+    @Value("${app.content-safety.additional-patterns:}")
+    void setAdditionalUnsafePatterns(List<String> additionalPatterns) {
+        List<String> patterns = new ArrayList<>(DEFAULT_UNSAFE_PATTERNS);
+        patterns.addAll(additionalPatterns);
+        this.unsafePatterns = MultiPatternMatcher.of(patterns);
+    }
+
     /**
      * Sanitize message content for safe storage and display.
      * - Trims whitespace
      * - Validates length
+     * - Removes control characters (except newlines and tabs)
+     * - Normalizes newlines and limits consecutive newlines to three
      * - Encodes HTML entities to prevent XSS
      *
+     * All steps run in one pass into a per-thread buffer. Input the single pass does not handle
+     * (C1 control characters, unpaired surrogates, Unicode noncharacters) takes the step-by-step
+     * path, which the single pass reproduces exactly for everything else.
+     *
      * @param rawContent the raw message content
      * @return sanitized content safe for storage and display
      * @throws IllegalArgumentException if content is invalid
@@ -34,34 +73,129 @@ public class MessageSanitizer {
             throw new IllegalArgumentException("Message content cannot be null");
         }
 
-        // Trim whitespace
-        String trimmed = rawContent.trim();
+        // Trim whitespace (same bounds as String.trim, without the copy)
+        int start = 0;
+        int end = rawContent.length();
+        while (start < end && rawContent.charAt(start) <= ' ') start++;
+        while (end > start && rawContent.charAt(end - 1) <= ' ') end--;
 
         // Validate length
-        if (trimmed.length() < minMessageLength) {
+        int length = end - start;
+        if (length < minMessageLength) {
             throw new IllegalArgumentException("Message is too short");
         }
 
-        if (trimmed.length() > maxMessageLength) {
+        if (length > maxMessageLength) {
             throw new IllegalArgumentException("Message exceeds maximum length of " + maxMessageLength + " characters");
         }
 
+        String encoded = sanitizeSinglePass(rawContent, start, end);
+        if (encoded == null) {
+            encoded = sanitizeStepwise(rawContent.substring(start, end));
+        }
+
+        log.debug("Sanitized message: original length={}, sanitized length={}",
+                rawContent.length(), encoded.length());
+
+        return encoded;
+    }
+
+    /**
+     * @return the sanitized text, or {@code null} if the input needs {@link #sanitizeStepwise}
+     */
+    private static String sanitizeSinglePass(String in, int start, int end) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+
+        boolean pendingCr = false;
+        int newlineRun = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = in.charAt(i);
+
+            // Remove control characters; they are invisible to the newline rules, as in the stepwise path
+            if ((c < 0x20 && c != '\t' && c != '\n' && c != '\r') || c == 0x7F) {
+                continue;
+            }
+
+            // Normalize \r\n and lone \r to \n: a \r is decided by the character that follows it
+            if (c == '\r') {
+                if (pendingCr) newlineRun = appendNewline(out, newlineRun);
+                pendingCr = true;
+                continue;
+            }
+            if (pendingCr) {
+                pendingCr = false;
+                newlineRun = appendNewline(out, newlineRun);
+                if (c == '\n') continue;
+            }
+            if (c == '\n') {
+                newlineRun = appendNewline(out, newlineRun);
+                continue;
+            }
+            newlineRun = 0;
+
+            // HTML encode, matching Encode.forHtml
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&#34;");
+                case '\'' -> out.append("&#39;");
+                default -> {
+                    if (c < 0x80) {
+                        out.append(c);
+                    } else if (c < 0xA0) {
+                        return null;
+                    } else if (Character.isHighSurrogate(c)) {
+                        if (i + 1 >= end || !Character.isLowSurrogate(in.charAt(i + 1))) return null;
+                        int codePoint = Character.toCodePoint(c, in.charAt(i + 1));
+                        if (isNoncharacter(codePoint)) return null;
+                        out.append(c).append(in.charAt(++i));
+                    } else if (Character.isLowSurrogate(c) || isNoncharacter(c)) {
+                        return null;
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        if (pendingCr) {
+            appendNewline(out, newlineRun);
+        }
+
+        String result = out.toString();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    private static int appendNewline(StringBuilder out, int run) {
+        if (run < MAX_NEWLINE_RUN) out.append('\n');
+        return run + 1;
+    }
+
+    private static boolean isNoncharacter(int codePoint) {
+        return (codePoint >= 0xFDD0 && codePoint <= 0xFDEF) || (codePoint & 0xFFFE) == 0xFFFE;
+    }
+
+    /**
+     * The sanitization steps one at a time, for input outside the single pass.
+     * Expects already trimmed content.
+     */
+    static String sanitizeStepwise(String trimmed) {
         // Remove null bytes and other control characters (except newlines and tabs)
-        String cleaned = trimmed.replaceAll("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]", "");
+        String cleaned = CONTROL_CHARS.matcher(trimmed).replaceAll("");
 
         // Normalize newlines
-        cleaned = cleaned.replaceAll("\\r\\n", "\n").replaceAll("\\r", "\n");
+        cleaned = CR.matcher(CRLF.matcher(cleaned).replaceAll("\n")).replaceAll("\n");
 
         // Limit consecutive newlines to prevent visual spam
-        cleaned = cleaned.replaceAll("\\n{4,}", "\n\n\n");
+        cleaned = NEWLINE_RUN.matcher(cleaned).replaceAll("\n\n\n");
 
         // HTML encode to prevent XSS when content is rendered
-        String encoded = Encode.forHtml(cleaned);
-
-        log.debug("Sanitized message: original length={}, sanitized length={}",
-                rawContent.length(), encoded.length());
-
-        return encoded;
+        return Encode.forHtml(cleaned);
     }
 
     /**
@@ -81,21 +215,13 @@ public class MessageSanitizer {
     /**
      * Validate that content doesn't contain suspicious patterns.
      * Returns true if content appears safe, false if suspicious.
+     * Checks the XSS patterns and any configured moderation terms, ignoring case.
      */
     public boolean isContentSafe(String content) {
         if (content == null) {
             return false;
         }
 
-        // Check for common XSS patterns
-        String lowerContent = content.toLowerCase();
-
-        return !lowerContent.contains("<script") &&
-                !lowerContent.contains("javascript:") &&
-                !lowerContent.contains("onerror=") &&
-                !lowerContent.contains("onclick=") &&
-                !lowerContent.contains("onload=") &&
-                !lowerContent.contains("eval(") &&
-                !lowerContent.contains("document.cookie");
+        return !unsafePatterns.containsAny(content);
     }
 }
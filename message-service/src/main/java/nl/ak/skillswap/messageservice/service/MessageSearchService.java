@@ -0,0 +1,132 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.support.BadRequestException;
+import nl.ak.skillswap.messageservice.support.ForbiddenException;
+import nl.ak.skillswap.messageservice.support.SearchCursor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Full-text search over the messages of the caller's conversations.
+ *
+ * Matches come from the {@code body_tsv} column, which indexes the decoded message text, using
+ * web-search syntax ({@code "exact phrase"}, {@code or}, {@code -excluded}). Hits are ordered by
+ * {@code ts_rank}, newest first among equal ranks, and paged with a {@link SearchCursor}.
+ */
+@Service
+@RequiredArgsConstructor
+public class MessageSearchService {
+
+    static final int MAX_QUERY_LENGTH = 200;
+
+    private static final String SEARCH = """
+            SELECT m.id, m.conversation_id, m.sender_id, m.recipient_id, m.body, m.created_at,
+                   coalesce(m.read_at, CASE WHEN (m.created_at, m.id) <= (p.last_read_created_at, p.last_read_message_id)
+                                            THEN p.last_read_at END) AS read_at,
+                   m.rank
+              FROM (SELECT m.id, m.conversation_id, m.sender_id, m.recipient_id, m.body, m.created_at, m.read_at,
+                           ts_rank(m.body_tsv, q.query) AS rank
+                      FROM messages m, websearch_to_tsquery('simple', ?) AS q(query)
+                     WHERE %s
+                       AND m.body_tsv @@ q.query) m
+              LEFT JOIN conversation_participants p
+                ON p.conversation_id = m.conversation_id AND p.user_id = m.recipient_id
+             WHERE %s
+             ORDER BY m.rank DESC, m.created_at DESC, m.id DESC
+             LIMIT ?
+            """;
+
+    private static final String IN_CONVERSATION = "m.conversation_id = ?";
+
+    private static final String IN_USER_CONVERSATIONS = """
+            m.conversation_id IN (SELECT c.id FROM conversations c WHERE c.user_low_id = ? OR c.user_high_id = ?)""";
+
+    private static final String AFTER_CURSOR = "(m.rank, m.created_at, m.id) < (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConversationService conversationService;
+
+    public record SearchHit(Message message, float rank) {}
+
+    /**
+     * @param hasMore whether more hits follow this page
+     */
+    public record SearchPage(List<SearchHit> hits, boolean hasMore) {
+
+        /**
+         * @return the cursor for the next page, or {@code null} when the page is empty
+         */
+        public SearchCursor nextCursor() {
+            if (hits.isEmpty()) return null;
+            SearchHit last = hits.getLast();
+            return new SearchCursor(last.rank(), last.message().getCreatedAt(), last.message().getId());
+        }
+    }
+
+    /**
+     * @param conversationId only search this conversation; {@code null} for all of the caller's conversations
+     * @param cursor         position after the last hit of the previous page; {@code null} for the best matches
+     */
+    @Transactional(readOnly = true)
+    public SearchPage search(UUID me, String query, UUID conversationId, SearchCursor cursor, int size) {
+        if (query == null || query.isBlank()) throw new BadRequestException("Search query is required");
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestException("Search query exceeds maximum length of " + MAX_QUERY_LENGTH + " characters");
+        }
+        if (conversationId != null && !conversationService.getMembers(conversationId).involves(me)) {
+            throw new ForbiddenException("Not allowed");
+        }
+        int pageSize = Math.min(Math.max(size, 1), 50);
+
+        List<Object> args = new ArrayList<>(8);
+        args.add(query.strip());
+        if (conversationId != null) {
+            args.add(conversationId);
+        } else {
+            args.add(me);
+            args.add(me);
+        }
+        if (cursor != null) {
+            args.add(cursor.rank());
+            args.add(cursor.createdAt().atOffset(ZoneOffset.UTC));
+            args.add(cursor.id());
+        }
+        // One extra row tells whether another page exists
+        args.add(pageSize + 1);
+
+        String sql = SEARCH.formatted(conversationId != null ? IN_CONVERSATION : IN_USER_CONVERSATIONS,
+                cursor != null ? AFTER_CURSOR : "TRUE");
+        List<SearchHit> rows = jdbcTemplate.query(sql, HIT_MAPPER, args.toArray());
+
+        boolean hasMore = rows.size() > pageSize;
+        return new SearchPage(hasMore ? rows.subList(0, pageSize) : rows, hasMore);
+    }
+
+    private static final RowMapper<SearchHit> HIT_MAPPER = (rs, rowNum) -> {
+        Message message = Message.builder()
+                .id(rs.getObject("id", UUID.class))
+                .conversationId(rs.getObject("conversation_id", UUID.class))
+                .senderId(rs.getObject("sender_id", UUID.class))
+                .recipientId(rs.getObject("recipient_id", UUID.class))
+                .body(rs.getString("body"))
+                .createdAt(toInstant(rs.getObject("created_at", OffsetDateTime.class)))
+                .readAt(toInstant(rs.getObject("read_at", OffsetDateTime.class)))
+                .build();
+        return new SearchHit(message, rs.getFloat("rank"));
+    };
+
+    private static Instant toInstant(OffsetDateTime value) {
+        return value == null ? null : value.toInstant();
+    }
+}
@@ -0,0 +1,226 @@
+package nl.ak.skillswap.messageservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.service.event.MessageOutboxRelay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group-commit pipeline for outgoing messages.
+ *
+ * Concurrent senders enqueue their prepared message and block until it is durable.
+ * A single flusher thread collects up to {@code max-batch-size} messages or waits at most
+ * {@code max-delay-ms}, then writes the whole group and its outbox rows in one transaction,
+ * increments the unread counters in one pipelined Redis round trip and wakes the outbox relay.
+ *
+ * Every caller gets back its own message or its own exception: if a group fails to commit,
+ * the messages are retried one by one so a single bad message cannot fail its neighbours.
+ * A sender that times out withdraws its message; only a group already being written can still commit it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageSendPipeline {
+
+    private final MessageBatchWriter batchWriter;
+    private final UnreadCounterService unreadCounterService;
+    private final MessageOutboxRelay outboxRelay;
+    private final ConversationTailCache tailCache;
+
+    @Value("${app.messages.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.messages.group-commit.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${app.messages.group-commit.max-delay-ms:5}")
+    private long maxDelayMs;
+
+    @Value("${app.messages.group-commit.submit-timeout-ms:5000}")
+    private long submitTimeoutMs;
+
+    private final BlockingQueue<PendingSend> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Group-commit send pipeline disabled, messages are written one transaction each");
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "message-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Group-commit send pipeline started (maxBatchSize={}, maxDelayMs={})", maxBatchSize, maxDelayMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (flusher == null) return;
+        try {
+            // The loop drains whatever is still queued before it exits
+            flusher.join(submitTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Sends that slipped in after the last drain, or were left behind by a join that timed out
+        List<PendingSend> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.result().completeExceptionally(
+                new IllegalStateException("Group-commit send pipeline stopped")));
+    }
+
+    public boolean isEnabled() {
+        return enabled && running;
+    }
+
+    /**
+     * Enqueue a fully prepared message and wait until its group has been committed.
+     *
+     * @return the persisted message
+     * @throws RuntimeException the failure that prevented this particular message from being written
+     */
+    public Message submit(Message message) {
+        if (!running) {
+            throw new IllegalStateException("Group-commit send pipeline is not running");
+        }
+
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        PendingSend pending = new PendingSend(message, result);
+        queue.add(pending);
+        // The flusher may have made its last pass between the check above and the add
+        if (!running && queue.remove(pending)) {
+            throw new IllegalStateException("Group-commit send pipeline is not running");
+        }
+
+        try {
+            return result.get(submitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw failure(e.getCause());
+        } catch (TimeoutException e) {
+            // Withdraw the send so the flusher skips it; if the flusher settled it first, that outcome stands
+            if (result.cancel(false)) {
+                throw new IllegalStateException("Timed out waiting for message " + message.getId() + " to commit", e);
+            }
+            if (result.state() == Future.State.SUCCESS) return result.resultNow();
+            throw failure(result.exceptionNow());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for message commit", e);
+        }
+    }
+
+    private static RuntimeException failure(Throwable cause) {
+        if (cause instanceof RuntimeException re) return re;
+        return new IllegalStateException("Message send failed", cause);
+    }
+
+    private void runFlushLoop() {
+        List<PendingSend> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        log.info("Group-commit send pipeline stopped");
+    }
+
+    /**
+     * Block for the first message, then keep collecting until the batch is full
+     * or the delay window that started with the first message has passed.
+     */
+    private void collect(List<PendingSend> batch) throws InterruptedException {
+        PendingSend first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) return;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            if (batch.size() >= maxBatchSize) break;
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+
+            PendingSend next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingSend> batch) {
+        // Senders that timed out have been told their message failed; writing it anyway would duplicate a retry
+        batch.removeIf(pending -> pending.result().isDone());
+        if (batch.isEmpty()) return;
+
+        List<Message> messages = batch.stream().map(PendingSend::message).toList();
+        try {
+            batchWriter.writeBatch(messages);
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} messages failed, retrying individually: {}", batch.size(), e.getMessage());
+            writeIndividually(batch);
+            return;
+        }
+        afterCommit(batch);
+    }
+
+    private void writeIndividually(List<PendingSend> batch) {
+        List<PendingSend> committed = new ArrayList<>(batch.size());
+        for (PendingSend pending : batch) {
+            if (pending.result().isDone()) continue;
+            try {
+                batchWriter.writeBatch(List.of(pending.message()));
+                committed.add(pending);
+            } catch (RuntimeException e) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+        afterCommit(committed);
+    }
+
+    /**
+     * Side effects that follow a successful commit. The messages and their deliveries are durable
+     * at this point, so failures here are logged rather than reported to the senders.
+     */
+    private void afterCommit(List<PendingSend> committed) {
+        if (committed.isEmpty()) return;
+
+        try {
+            unreadCounterService.incrementUnreadBatch(committed.stream().map(PendingSend::message).toList());
+        } catch (RuntimeException e) {
+            log.error("Failed to increment unread counters for {} messages: {}", committed.size(), e.getMessage());
+        }
+        outboxRelay.wakeUp();
+        tailCache.appendSent(committed.stream().map(PendingSend::message).toList());
+
+        committed.forEach(pending -> pending.result().complete(pending.message()));
+    }
+
+    private record PendingSend(Message message, CompletableFuture<Message> result) {
+    }
+}
@@ -3,17 +3,25 @@ package nl.ak.skillswap.messageservice.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.messageservice.domain.Conversation;
+import nl.ak.skillswap.messageservice.domain.ConversationMembers;
 import nl.ak.skillswap.messageservice.domain.Message;
 import nl.ak.skillswap.messageservice.repository.MessageRepository;
-import nl.ak.skillswap.messageservice.service.event.MessageCreatedEvent;
-import nl.ak.skillswap.messageservice.service.event.MessageEventPublisher;
+import nl.ak.skillswap.messageservice.service.event.MessageOutbox;
+import nl.ak.skillswap.messageservice.service.event.MessageOutboxRelay;
 import nl.ak.skillswap.messageservice.support.ForbiddenException;
-import org.springframework.data.domain.PageRequest;
+import nl.ak.skillswap.messageservice.support.MessageCursor;
+import nl.ak.skillswap.messageservice.support.NotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -24,13 +32,20 @@ public class MessageService {
     private final ConversationService conversationService;
     private final MessageRepository messageRepository;
     private final UnreadCounterService unreadCounterService;
-    private final MessageEventPublisher eventPublisher;
+    private final MessageOutbox outbox;
+    private final MessageOutboxRelay outboxRelay;
     private final UserValidationService userValidationService;
     private final RateLimitingService rateLimitingService;
     private final MessageSanitizer messageSanitizer;
     private final RealTimeMessagingService realTimeMessagingService;
 
-    @Transactional
+    private final MessageSendPipeline sendPipeline;
+    private final TransactionTemplate transactionTemplate;
+    private final InboxSequenceAllocator sequenceAllocator;
+    private final InboxSyncService inboxSyncService;
+    private final ReadStateService readStateService;
+    private final ConversationTailCache tailCache;
+
     public Message sendMessage(UUID me, UUID otherUserId, String body) {
         // OWASP: Rate limiting to prevent spam/DoS
         rateLimitingService.checkMessageRateLimit(me);
@@ -41,75 +56,223 @@ public class MessageService {
         // OWASP: Sanitize input to prevent XSS
         String sanitizedBody = messageSanitizer.sanitize(body);
 
+        if (sendPipeline.isEnabled()) {
+            // The conversation is resolved in its own short transaction so the group commit
+            // never references a row that is still uncommitted on this thread
+            Conversation conversation = conversationService.getOrCreate(me, otherUserId);
+            if (!conversation.involves(me)) {
+                throw new ForbiddenException("Not allowed");
+            }
+            return sendPipeline.submit(newMessage(conversation, me, otherUserId, sanitizedBody));
+        }
+
+        return transactionTemplate.execute(status -> persistMessage(me, otherUserId, sanitizedBody));
+    }
+
+    private Message persistMessage(UUID me, UUID otherUserId, String sanitizedBody) {
         Conversation conversation = conversationService.getOrCreate(me, otherUserId);
 
         if (!conversation.involves(me)) {
             throw new ForbiddenException("Not allowed");
         }
 
-        Instant now = Instant.now();
-        Message message = messageRepository.save(
-                Message.builder()
-                        .id(UUID.randomUUID())
-                        .conversationId(conversation.getId())
-                        .senderId(me)
-                        .recipientId(otherUserId)
-                        .body(sanitizedBody)
-                        .createdAt(now)
-                        .readAt(null)
-                        .build()
-        );
-
-        conversationService.touchLastMessage(conversation, now);
-
-        unreadCounterService.incrementUnread(otherUserId, conversation.getId());
-
-        eventPublisher.publishMessageCreated(new MessageCreatedEvent(
-                message.getId(),
-                message.getConversationId(),
-                message.getSenderId(),
-                message.getRecipientId(),
-                message.getCreatedAt()
-        ));
+        Message message = newMessage(conversation, me, otherUserId, sanitizedBody);
+        sequenceAllocator.assign(List.of(message));
+        message = messageRepository.save(message);
+
+        conversationService.touchLastMessage(conversation, message.getCreatedAt());
+
+        // The delivery is committed with the message; the relay publishes it
+        outbox.append(List.of(message));
+
+        // Counted after commit, so the counter never includes a message the database may still roll back
+        Message saved = message;
+        runAfterCommit(() -> {
+            try {
+                unreadCounterService.incrementUnread(saved);
+            } catch (RuntimeException e) {
+                log.error("Failed to increment unread counter for message {}: {}", saved.getId(), e.getMessage());
+            }
+            outboxRelay.wakeUp();
+            tailCache.appendSent(List.of(saved));
+        });
 
         return message;
     }
 
-    @Transactional(readOnly = true)
-    public List<Message> listMessages(UUID me, UUID conversationId, Instant before, int size) {
-        Conversation conversation = conversationService.getOrThrow(conversationId);
-        if (!conversation.involves(me)) throw new ForbiddenException("Not allowed");
+    private static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Message newMessage(Conversation conversation, UUID me, UUID otherUserId, String sanitizedBody) {
+        return Message.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversation.getId())
+                .senderId(me)
+                .recipientId(otherUserId)
+                .body(sanitizedBody)
+                // Stored at microsecond precision; truncating here keeps cursors from the send response exact
+                .createdAt(Instant.now().truncatedTo(ChronoUnit.MICROS))
+                .readAt(null)
+                .build();
+    }
+
+    /**
+     * One page of a conversation, newest first, positioned by a keyset cursor.
+     *
+     * @param cursor    position to page from; {@code null} for the latest messages
+     * @param direction {@link MessageCursor.Direction#BEFORE} for older messages,
+     *                  {@link MessageCursor.Direction#AFTER} for newer ones
+     */
+    // Not transactional: every path is one query, and a first page from the tail cache needs no connection
+    public MessagePage listMessages(UUID me, UUID conversationId, MessageCursor cursor,
+                                    MessageCursor.Direction direction, int size) {
+        requireParticipant(me, conversationId);
+        int pageSize = clampPageSize(size);
 
-        int pageSize = Math.min(Math.max(size, 1), 100);
-        var pageable = PageRequest.of(0, pageSize);
+        if (cursor == null) {
+            MessagePage cached = tailCache.firstPage(conversationId, pageSize);
+            if (cached != null) return cached;
 
-        if (before == null) {
-            return messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
+            long stamp = tailCache.beginLoad(conversationId);
+            List<Message> latest = messageRepository.findLatest(conversationId, tailCache.loadSize(pageSize));
+            tailCache.fill(conversationId, latest, stamp);
+            return MessagePage.of(latest, pageSize);
         }
-        return messageRepository.findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc(
-                conversationId, before, pageable
-        );
+
+        // One extra row tells whether another page exists without a count query
+        if (direction == MessageCursor.Direction.AFTER) {
+            List<Message> newer = messageRepository.findAfterCursor(
+                    conversationId, cursor.createdAt(), cursor.id(), pageSize + 1);
+            MessagePage page = MessagePage.of(newer, pageSize);
+            return new MessagePage(page.messages().reversed(), page.hasMore());
+        }
+        return MessagePage.of(messageRepository.findBeforeCursor(
+                conversationId, cursor.createdAt(), cursor.id(), pageSize + 1), pageSize);
+    }
+
+    /**
+     * A page centred on one message (e.g. jumping to a search hit), newest first.
+     * {@code hasMore} refers to older messages, like a regular first page.
+     */
+    @Transactional(readOnly = true)
+    public MessagePage listAround(UUID me, UUID conversationId, UUID messageId, int size) {
+        requireParticipant(me, conversationId);
+        int pageSize = clampPageSize(size);
+
+        Message anchor = messageRepository.findInConversation(conversationId, messageId)
+                .orElseThrow(() -> new NotFoundException("Message not found"));
+        MessageCursor position = MessageCursor.of(anchor);
+
+        int newerCount = (pageSize - 1) / 2;
+        int olderCount = pageSize - 1 - newerCount;
+        List<Message> newer = messageRepository.findAfterCursor(
+                conversationId, position.createdAt(), position.id(), newerCount);
+        MessagePage older = MessagePage.of(messageRepository.findBeforeCursor(
+                conversationId, position.createdAt(), position.id(), olderCount + 1), olderCount);
+
+        List<Message> items = new ArrayList<>(pageSize);
+        items.addAll(newer.reversed());
+        items.add(anchor);
+        items.addAll(older.messages());
+        return new MessagePage(items, older.hasMore());
+    }
+
+    private void requireParticipant(UUID me, UUID conversationId) {
+        ConversationMembers members = conversationService.getMembers(conversationId);
+        if (!members.involves(me)) throw new ForbiddenException("Not allowed");
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.min(Math.max(size, 1), 100);
     }
 
     @Transactional
     public int markRead(UUID me, UUID conversationId) {
-        Conversation conversation = conversationService.getOrThrow(conversationId);
-        if (!conversation.involves(me)) throw new ForbiddenException("Not allowed");
+        ConversationMembers members = conversationService.getMembers(conversationId);
+        if (!members.involves(me)) throw new ForbiddenException("Not allowed");
 
-        int updated = messageRepository.markConversationRead(conversationId, me, Instant.now());
-        unreadCounterService.clearUnread(me, conversationId);
+        Instant readAt = Instant.now();
+        ReadStateService.MarkReadResult result = readStateService.markRead(conversationId, me, readAt);
+        int updated = result.newlyRead();
+        // Cleared after commit, so a read that rolls back never leaves the counter emptied
+        runAfterCommit(() -> {
+            try {
+                unreadCounterService.clearUnread(me, conversationId, result.watermark());
+            } catch (RuntimeException e) {
+                log.error("Failed to clear unread counter of conversation {}: {}", conversationId, e.getMessage());
+            }
+            if (result.watermark() != null) {
+                tailCache.markRead(conversationId, me, result.watermark(), readAt);
+            }
+        });
 
         // Send read receipt notification to the other participant
-        UUID otherUserId = conversation.otherParticipant(me);
+        UUID otherUserId = members.otherParticipant(me);
         if (otherUserId != null && updated > 0) {
+            inboxSyncService.recordRead(conversationId, me, otherUserId, readAt);
             realTimeMessagingService.notifyMessagesRead(otherUserId, conversationId);
         }
 
         return updated;
     }
 
+    /**
+     * Mark every conversation of the user as read with one watermark statement.
+     *
+     * @return the number of conversations that had unread messages
+     */
+    @Transactional
+    public int markAllRead(UUID me) {
+        Instant readAt = Instant.now();
+        List<UUID> conversationIds = readStateService.markAllRead(me, readAt);
+        runAfterCommit(() -> {
+            try {
+                unreadCounterService.clearAllUnread(me);
+            } catch (RuntimeException e) {
+                log.error("Failed to clear unread counters of user {}: {}", me, e.getMessage());
+            }
+            conversationIds.forEach(tailCache::invalidate);
+        });
+
+        for (UUID conversationId : conversationIds) {
+            UUID otherUserId = conversationService.getMembers(conversationId).otherParticipant(me);
+            inboxSyncService.recordRead(conversationId, me, otherUserId, readAt);
+            realTimeMessagingService.notifyMessagesRead(otherUserId, conversationId);
+        }
+
+        return conversationIds.size();
+    }
+
+    /**
+     * Everything that changed in the user's inbox after {@code since}, for catching up after a reconnect.
+     */
+    public InboxSyncService.InboxChanges sync(UUID me, Long since, int limit) {
+        return inboxSyncService.changesSince(me, since, Math.min(Math.max(limit, 1), 500));
+    }
+
     @Transactional(readOnly = true)
     public long unreadCount(UUID me, UUID conversationId) {
         return unreadCounterService.getUnread(me, conversationId);
     }
+
+    /**
+     * Unread counts for all of the user's conversations in one Redis call.
+     */
+    public Map<UUID, Long> unreadCounts(UUID me) {
+        return unreadCounterService.getUnreadByConversation(me);
+    }
+
+    public long totalUnread(UUID me) {
+        return unreadCounterService.getTotalUnread(me);
+    }
 }
@@ -1,8 +1,5 @@
 package nl.ak.skillswap.messageservice.service;
 
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.distributed.proxy.ProxyManager;
 import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
 import io.lettuce.core.RedisClient;
@@ -10,37 +7,63 @@ import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.codec.StringCodec;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.support.HybridRateLimiter;
 import nl.ak.skillswap.messageservice.support.RateLimitExceededException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
-import java.util.function.Supplier;
 
 /**
  * Distributed rate limiting service using Bucket4j with Redis backend.
  * OWASP: Prevents API abuse, brute force attacks, and DoS attempts.
+ *
+ * Checks go through {@link HybridRateLimiter}: tokens are leased from Redis in chunks and served
+ * locally, and limiting continues per node while Redis is unreachable. Typing indicators are
+ * limited on the node holding the user's WebSocket session and never call Redis.
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class RateLimitingService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${app.rate-limiting.messages-per-minute:30}")
     private int messagesPerMinute;
 
     @Value("${app.rate-limiting.messages-burst:10}")
     private int messagesBurst;
 
+    @Value("${app.rate-limiting.lease-size:5}")
+    private int leaseSize;
+
+    @Value("${app.rate-limiting.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${app.rate-limiting.redis-timeout-ms:500}")
+    private long redisTimeoutMs;
+
+    @Value("${app.rate-limiting.redis-retry-ms:5000}")
+    private long redisRetryMs;
+
     @Value("${spring.data.redis.host:localhost}")
     private String redisHost;
 
     @Value("${spring.data.redis.port:6379}")
     private int redisPort;
 
-    private ProxyManager<String> proxyManager;
+    private HybridRateLimiter messageLimiter;
+    private HybridRateLimiter connectionLimiter;
+    private HybridRateLimiter typingLimiter;
 
     @PostConstruct
     public void init() {
@@ -48,11 +71,50 @@ public class RateLimitingService {
         StatefulRedisConnection<String, byte[]> connection = redisClient.connect(
                 RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE)
         );
+        // Fail fast so a slow Redis degrades to local limiting instead of stalling senders
+        connection.setTimeout(Duration.ofMillis(redisTimeoutMs));
 
-        this.proxyManager = LettuceBasedProxyManager.builderFor(connection)
+        ProxyManager<String> proxyManager = LettuceBasedProxyManager.builderFor(connection)
                 .build();
 
-        log.info("Rate limiting initialized: {} messages/min, burst: {}", messagesPerMinute, messagesBurst);
+        Duration idleTimeout = Duration.ofMillis(idleTimeoutMs);
+        Duration retryDelay = Duration.ofMillis(redisRetryMs);
+        messageLimiter = new HybridRateLimiter(
+                new HybridRateLimiter.Limit("messages", messagesBurst, messagesPerMinute, Duration.ofMinutes(1),
+                        Math.min(leaseSize, messagesBurst)),
+                proxyManager, idleTimeout, retryDelay, meterRegistry);
+        connectionLimiter = new HybridRateLimiter(
+                // Max 5 connections burst, 10 connections/minute
+                new HybridRateLimiter.Limit("ws-connections", 5, 10, Duration.ofMinutes(1), Math.min(leaseSize, 5)),
+                proxyManager, idleTimeout, retryDelay, meterRegistry);
+        typingLimiter = new HybridRateLimiter(
+                // Max 3 typing events burst, 10 per 10 seconds
+                new HybridRateLimiter.Limit("typing", 3, 10, Duration.ofSeconds(10), 0),
+                proxyManager, idleTimeout, retryDelay, meterRegistry);
+
+        log.info("Rate limiting initialized: {} messages/min, burst: {}, lease size: {}",
+                messagesPerMinute, messagesBurst, leaseSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        limiters().forEach(HybridRateLimiter::releaseAll);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limiting.reconcile-interval-ms:5000}",
+            initialDelayString = "${app.rate-limiting.reconcile-interval-ms:5000}")
+    void reconcile() {
+        for (HybridRateLimiter limiter : limiters()) {
+            try {
+                limiter.reconcile();
+            } catch (RuntimeException e) {
+                log.warn("Rate limit reconciliation failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private List<HybridRateLimiter> limiters() {
+        return List.of(messageLimiter, connectionLimiter, typingLimiter);
     }
 
     /**
@@ -62,11 +124,7 @@ public class RateLimitingService {
      * @throws RateLimitExceededException if rate limit exceeded
      */
     public void checkMessageRateLimit(UUID userId) {
-        String key = "rate:msg:" + userId;
-        Bucket bucket = proxyManager.builder()
-                .build(key, getMessageRateLimitConfig());
-
-        if (!bucket.tryConsume(1)) {
+        if (!messageLimiter.tryAcquire("rate:msg:" + userId)) {
             log.warn("Rate limit exceeded for user: {}", userId);
             throw new RateLimitExceededException("Too many messages. Please wait before sending more.");
         }
@@ -79,11 +137,7 @@ public class RateLimitingService {
      * @throws RateLimitExceededException if rate limit exceeded
      */
     public void checkConnectionRateLimit(UUID userId) {
-        String key = "rate:ws:" + userId;
-        Bucket bucket = proxyManager.builder()
-                .build(key, getConnectionRateLimitConfig());
-
-        if (!bucket.tryConsume(1)) {
+        if (!connectionLimiter.tryAcquire("rate:ws:" + userId)) {
             log.warn("WebSocket connection rate limit exceeded for user: {}", userId);
             throw new RateLimitExceededException("Too many connection attempts. Please wait.");
         }
@@ -91,42 +145,15 @@ public class RateLimitingService {
 
     /**
      * Check typing indicator rate limit (prevent spam).
+     *
+     * @return whether the typing indicator may be forwarded
      */
-    public void checkTypingRateLimit(UUID userId) {
-        String key = "rate:typing:" + userId;
-        Bucket bucket = proxyManager.builder()
-                .build(key, getTypingRateLimitConfig());
-
-        if (!bucket.tryConsume(1)) {
+    public boolean checkTypingRateLimit(UUID userId) {
+        if (!typingLimiter.tryAcquire("rate:typing:" + userId)) {
             // Silently ignore typing spam - no exception thrown
             log.debug("Typing rate limit exceeded for user: {}", userId);
+            return false;
         }
-    }
-
-    private Supplier<BucketConfiguration> getMessageRateLimitConfig() {
-        return () -> BucketConfiguration.builder()
-                .addLimit(Bandwidth.builder()
-                        .capacity(messagesBurst)
-                        .refillGreedy(messagesPerMinute, Duration.ofMinutes(1))
-                        .build())
-                .build();
-    }
-
-    private Supplier<BucketConfiguration> getConnectionRateLimitConfig() {
-        return () -> BucketConfiguration.builder()
-                .addLimit(Bandwidth.builder()
-                        .capacity(5)  // Max 5 connections burst
-                        .refillGreedy(10, Duration.ofMinutes(1))  // 10 connections/minute
-                        .build())
-                .build();
-    }
-
-    private Supplier<BucketConfiguration> getTypingRateLimitConfig() {
-        return () -> BucketConfiguration.builder()
-                .addLimit(Bandwidth.builder()
-                        .capacity(3)  // Max 3 typing events burst
-                        .refillGreedy(10, Duration.ofSeconds(10))  // 10 per 10 seconds
-                        .build())
-                .build();
+        return true;
     }
 }
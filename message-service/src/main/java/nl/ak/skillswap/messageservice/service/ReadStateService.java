@@ -0,0 +1,184 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read state as one watermark per (conversation, participant) in {@code conversation_participants}.
+ *
+ * A message is read when its {@code (created_at, id)} is at or below its recipient's watermark.
+ * Marking read is a single-row upsert that only ever moves the watermark forward; message rows
+ * are not touched. Queries derive {@code readAt} from the watermark (see {@code MessageRepository}).
+ */
+@Service
+@RequiredArgsConstructor
+public class ReadStateService {
+
+    /**
+     * Move the watermark to the newest message the reader received and count the messages that
+     * became read. All CTEs see the watermark as it was before the upsert; no row means it did not move.
+     */
+    private static final String MARK_READ = """
+            WITH previous AS (
+                SELECT last_read_created_at, last_read_message_id
+                  FROM conversation_participants
+                 WHERE conversation_id = ? AND user_id = ?
+            ), advanced AS (
+                INSERT INTO conversation_participants AS p
+                       (conversation_id, user_id, last_read_at, last_read_message_id, last_read_created_at)
+                SELECT ?, ?, ?, latest.id, latest.created_at
+                  FROM (SELECT m.id, m.created_at
+                          FROM messages m
+                         WHERE m.conversation_id = ? AND m.recipient_id = ?
+                         ORDER BY m.created_at DESC, m.id DESC
+                         LIMIT 1) latest
+                ON CONFLICT (conversation_id, user_id) DO UPDATE
+                   SET last_read_at = EXCLUDED.last_read_at,
+                       last_read_message_id = EXCLUDED.last_read_message_id,
+                       last_read_created_at = EXCLUDED.last_read_created_at
+                 WHERE (EXCLUDED.last_read_created_at, EXCLUDED.last_read_message_id)
+                       > (p.last_read_created_at, p.last_read_message_id)
+                RETURNING p.conversation_id, p.user_id, p.last_read_created_at, p.last_read_message_id
+            )
+            SELECT a.last_read_created_at, a.last_read_message_id, count(m.id) AS newly_read
+              FROM advanced a
+              LEFT JOIN previous pr ON true
+              LEFT JOIN messages m
+                ON m.conversation_id = a.conversation_id
+               AND m.recipient_id = a.user_id
+               AND m.read_at IS NULL
+               AND m.created_at BETWEEN coalesce(pr.last_read_created_at, '-infinity'::timestamptz) AND a.last_read_created_at
+               AND (m.created_at, m.id) <= (a.last_read_created_at, a.last_read_message_id)
+               AND (m.created_at, m.id) > (coalesce(pr.last_read_created_at, '-infinity'::timestamptz),
+                                           coalesce(pr.last_read_message_id, '00000000-0000-0000-0000-000000000000'::uuid))
+             GROUP BY a.last_read_created_at, a.last_read_message_id
+            """;
+
+    /**
+     * Move the watermarks of all of the user's conversations in one statement, one index probe per conversation.
+     */
+    private static final String MARK_ALL_READ = """
+            INSERT INTO conversation_participants AS p
+                   (conversation_id, user_id, last_read_at, last_read_message_id, last_read_created_at)
+            SELECT c.id, ?, ?, latest.id, latest.created_at
+              FROM conversations c
+             CROSS JOIN LATERAL (
+                    SELECT m.id, m.created_at
+                      FROM messages m
+                     WHERE m.conversation_id = c.id AND m.recipient_id = ?
+                     ORDER BY m.created_at DESC, m.id DESC
+                     LIMIT 1) latest
+             WHERE c.user_low_id = ? OR c.user_high_id = ?
+            ON CONFLICT (conversation_id, user_id) DO UPDATE
+               SET last_read_at = EXCLUDED.last_read_at,
+                   last_read_message_id = EXCLUDED.last_read_message_id,
+                   last_read_created_at = EXCLUDED.last_read_created_at
+             WHERE (EXCLUDED.last_read_created_at, EXCLUDED.last_read_message_id)
+                   > (p.last_read_created_at, p.last_read_message_id)
+            RETURNING p.conversation_id
+            """;
+
+    /**
+     * Unread messages per conversation of each user, counted above the watermark so only unread rows are read.
+     */
+    private static final String UNREAD_STATES = """
+            SELECT u.user_id, c.id AS conversation_id, n.unread, p.last_read_created_at, p.last_read_message_id
+              FROM unnest(?::uuid[]) AS u(user_id)
+              JOIN conversations c ON c.user_low_id = u.user_id OR c.user_high_id = u.user_id
+              LEFT JOIN conversation_participants p ON p.conversation_id = c.id AND p.user_id = u.user_id
+             CROSS JOIN LATERAL (
+                    SELECT count(*) AS unread
+                      FROM messages m
+                     WHERE m.conversation_id = c.id
+                       AND m.recipient_id = u.user_id
+                       AND m.read_at IS NULL
+                       AND m.created_at >= coalesce(p.last_read_created_at, '-infinity'::timestamptz)
+                       AND (m.created_at, m.id) > (coalesce(p.last_read_created_at, '-infinity'::timestamptz),
+                                                   coalesce(p.last_read_message_id, '00000000-0000-0000-0000-000000000000'::uuid))) n
+             WHERE n.unread > 0 OR p.user_id IS NOT NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Position of a read watermark: the last read message in {@code (created_at, id)} order.
+     */
+    public record Watermark(Instant createdAt, UUID messageId) {}
+
+    /**
+     * @param newlyRead number of messages that were unread before the call
+     * @param watermark the new watermark, or {@code null} if it did not move
+     */
+    public record MarkReadResult(int newlyRead, Watermark watermark) {
+
+        static final MarkReadResult UNCHANGED = new MarkReadResult(0, null);
+    }
+
+    /**
+     * Unread messages of one user in one conversation, with the user's watermark there if any.
+     */
+    public record ConversationReadState(UUID conversationId, long unread, Watermark watermark) {}
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public MarkReadResult markRead(UUID conversationId, UUID readerId, Instant readAt) {
+        OffsetDateTime at = readAt.atOffset(ZoneOffset.UTC);
+        List<MarkReadResult> rows = jdbcTemplate.query(MARK_READ,
+                (rs, rowNum) -> new MarkReadResult(rs.getInt("newly_read"), new Watermark(
+                        rs.getObject("last_read_created_at", OffsetDateTime.class).toInstant(),
+                        rs.getObject("last_read_message_id", UUID.class))),
+                conversationId, readerId,
+                conversationId, readerId, at,
+                conversationId, readerId);
+        return rows.isEmpty() ? MarkReadResult.UNCHANGED : rows.getFirst();
+    }
+
+    /**
+     * @return the conversations whose watermark moved, i.e. that had unread messages
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<UUID> markAllRead(UUID readerId, Instant readAt) {
+        return jdbcTemplate.queryForList(MARK_ALL_READ, UUID.class,
+                readerId, readAt.atOffset(ZoneOffset.UTC), readerId, readerId, readerId);
+    }
+
+    /**
+     * Unread counts of the given users from the database, for rebuilding their counters.
+     * Conversations without unread messages or a watermark are left out.
+     */
+    @Transactional(readOnly = true)
+    public Map<UUID, List<ConversationReadState>> unreadStates(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) return Map.of();
+        Map<UUID, List<ConversationReadState>> states = new HashMap<>();
+        jdbcTemplate.query(UNREAD_STATES, (RowCallbackHandler) rs -> {
+            OffsetDateTime createdAt = rs.getObject("last_read_created_at", OffsetDateTime.class);
+            Watermark watermark = createdAt == null ? null
+                    : new Watermark(createdAt.toInstant(), rs.getObject("last_read_message_id", UUID.class));
+            states.computeIfAbsent(rs.getObject("user_id", UUID.class), k -> new ArrayList<>())
+                    .add(new ConversationReadState(rs.getObject("conversation_id", UUID.class),
+                            rs.getLong("unread"), watermark));
+        }, (Object) userIds.stream().map(UUID::toString).toArray(String[]::new));
+        return states;
+    }
+
+    /**
+     * Remove a user's watermarks (GDPR deletion).
+     */
+    @Transactional
+    public void deleteUserData(UUID userId) {
+        jdbcTemplate.update("DELETE FROM conversation_participants WHERE user_id = ?", userId);
+    }
+}
@@ -12,6 +12,9 @@ import java.util.UUID;
 /**
  * Service for real-time message delivery via WebSocket.
  * Handles broadcasting messages to connected users.
+ *
+ * Pushes go through the in-memory broker, which only reaches sessions on this node, so
+ * presence is checked against {@link LocalPresenceRegistry} rather than Redis.
  */
 @Slf4j
 @Service
@@ -19,7 +22,7 @@ import java.util.UUID;
 public class RealTimeMessagingService {
 
     private final SimpMessagingTemplate messagingTemplate;
-    private final WebSocketSessionService sessionService;
+    private final LocalPresenceRegistry localPresence;
 
     /**
      * Send a new message to the recipient in real-time.
@@ -28,7 +31,7 @@ public class RealTimeMessagingService {
     public void sendMessageToUser(Message message) {
         UUID recipientId = message.getRecipientId();
 
-        if (sessionService.isUserOnline(recipientId)) {
+        if (localPresence.isConnected(recipientId)) {
             MessageDto dto = MessageDto.from(message);
 
             // Send to user's personal queue
@@ -41,16 +44,40 @@ public class RealTimeMessagingService {
 
             log.debug("Sent real-time message {} to user {}", message.getId(), recipientId);
         } else {
-            log.debug("User {} is offline, message {} will be retrieved on next poll",
+            log.debug("User {} is not connected here, message {} will be retrieved on next poll",
                     recipientId, message.getId());
         }
     }
 
+    /**
+     * Deliver a new message and, when known, the recipient's new unread count for its conversation.
+     * Checks presence once for both frames.
+     */
+    public void deliverNewMessage(MessageDto message, Long unreadCount) {
+        UUID recipientId = message.recipientId();
+
+        if (!localPresence.isConnected(recipientId)) {
+            log.debug("User {} is not connected here, message {} will be retrieved on next poll", recipientId, message.id());
+            return;
+        }
+
+        messagingTemplate.convertAndSendToUser(recipientId.toString(), "/queue/messages", message);
+        if (unreadCount != null) {
+            messagingTemplate.convertAndSendToUser(
+                    recipientId.toString(),
+                    "/queue/conversations",
+                    new ConversationUpdateNotification(message.conversationId(), unreadCount)
+            );
+        }
+
+        log.debug("Sent real-time message {} to user {}", message.id(), recipientId);
+    }
+
     /**
      * Notify a user about conversation updates (e.g., new message indicator).
      */
     public void notifyConversationUpdate(UUID userId, UUID conversationId, long unreadCount) {
-        if (sessionService.isUserOnline(userId)) {
+        if (localPresence.isConnected(userId)) {
             var notification = new ConversationUpdateNotification(conversationId, unreadCount);
 
             messagingTemplate.convertAndSendToUser(
@@ -68,7 +95,7 @@ public class RealTimeMessagingService {
      * Notify a user that their messages have been read.
      */
     public void notifyMessagesRead(UUID senderId, UUID conversationId) {
-        if (sessionService.isUserOnline(senderId)) {
+        if (localPresence.isConnected(senderId)) {
             var notification = new MessagesReadNotification(conversationId);
 
             messagingTemplate.convertAndSendToUser(
@@ -85,7 +112,7 @@ public class RealTimeMessagingService {
      * Broadcast typing indicator to the other participant.
      */
     public void sendTypingIndicator(UUID fromUserId, UUID toUserId, UUID conversationId, boolean isTyping) {
-        if (sessionService.isUserOnline(toUserId)) {
+        if (localPresence.isConnected(toUserId)) {
             var indicator = new TypingIndicator(conversationId, fromUserId, isTyping);
 
             messagingTemplate.convertAndSendToUser(
@@ -0,0 +1,52 @@
+package nl.ak.skillswap.messageservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps this node's WebSocket session lease alive and reaps the sessions of nodes that stopped
+ * renewing theirs. Runs once per {@code interval-ms}: one pipelined renewal for all local
+ * sessions, then a sweep over the other nodes' leases.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionLeaseKeeper {
+
+    private final WebSocketSessionService sessionService;
+    private final LocalPresenceRegistry localPresence;
+
+    // Set on shutdown so a tick still in flight does not renew the released lease
+    private volatile boolean stopped;
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        try {
+            sessionService.releaseLease();
+        } catch (RuntimeException e) {
+            log.warn("Failed to release WebSocket session lease: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.session-lease.interval-ms:10000}")
+    void tick() {
+        if (stopped) return;
+        try {
+            sessionService.renewLease(localPresence.snapshot());
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew WebSocket session lease: {}", e.getMessage());
+        }
+        try {
+            int reaped = sessionService.reapExpiredNodes();
+            if (reaped > 0) {
+                log.info("Reaped {} stale WebSocket sessions", reaped);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to reap stale WebSocket sessions: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package nl.ak.skillswap.messageservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Coalesces typing indicators per (conversation, typing user) before they reach the other participant.
+ *
+ * A "typing" frame is forwarded when a burst starts and then at most once per {@code forward-window-ms},
+ * however many frames the client sends. A "stopped typing" frame is forwarded only if "typing" was, and
+ * a burst that goes quiet for {@code idle-timeout-ms} is ended with an automatic "stopped typing".
+ *
+ * Idle deadlines live in a hashed timer wheel advanced by a scheduled tick every {@code tick-ms}. A state is
+ * placed in the wheel once per burst; later frames only move its deadline, and the wheel re-files the
+ * state when its slot comes round early. Deadlines are accurate to one tick.
+ */
+@Slf4j
+@Component
+public class TypingCoalescer {
+
+    private final RealTimeMessagingService realTimeMessagingService;
+    private final long forwardWindowNanos;
+    private final long idleTimeoutNanos;
+    private final long tickNanos;
+    private final LongSupplier clock;
+
+    private final Map<Key, TypingState> states = new ConcurrentHashMap<>();
+    private final List<ArrayDeque<TypingState>> wheel;
+    // Last tick the wheel has processed; guarded by the wheel
+    private long currentTick;
+
+    private final Counter forwarded;
+    private final Counter coalesced;
+    private final Counter expired;
+
+    @Autowired
+    public TypingCoalescer(RealTimeMessagingService realTimeMessagingService,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.websocket.typing.forward-window-ms:3000}") long forwardWindowMs,
+                           @Value("${app.websocket.typing.idle-timeout-ms:5000}") long idleTimeoutMs,
+                           @Value("${app.websocket.typing.tick-ms:250}") long tickMs,
+                           @Value("${app.websocket.typing.wheel-size:64}") int wheelSize) {
+        this(realTimeMessagingService, meterRegistry, forwardWindowMs, idleTimeoutMs, tickMs, wheelSize, System::nanoTime);
+        log.info("Typing indicator coalescer configured (forwardWindowMs={}, idleTimeoutMs={}, tickMs={}, wheelSize={})",
+                forwardWindowMs, idleTimeoutMs, tickMs, wheelSize);
+    }
+
+    TypingCoalescer(RealTimeMessagingService realTimeMessagingService, MeterRegistry meterRegistry,
+                    long forwardWindowMs, long idleTimeoutMs, long tickMs, int wheelSize, LongSupplier clock) {
+        this.realTimeMessagingService = realTimeMessagingService;
+        this.forwardWindowNanos = TimeUnit.MILLISECONDS.toNanos(forwardWindowMs);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.clock = clock;
+
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) wheel.add(new ArrayDeque<>());
+        this.currentTick = tickOf(clock.getAsLong());
+
+        this.forwarded = outcome(meterRegistry, "forwarded");
+        this.coalesced = outcome(meterRegistry, "coalesced");
+        this.expired = outcome(meterRegistry, "expired");
+        Gauge.builder("typing.indicators.active", states, Map::size)
+                .description("Typing bursts currently tracked")
+                .register(meterRegistry);
+    }
+
+    private static Counter outcome(MeterRegistry registry, String outcome) {
+        return Counter.builder("typing.indicators")
+                .description("Typing indicators by what the coalescer did with them")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Handle a typing frame from {@code fromUserId}, already authorized for the conversation.
+     */
+    public void onTyping(UUID fromUserId, UUID toUserId, UUID conversationId, boolean isTyping) {
+        Key key = new Key(conversationId, fromUserId);
+        long now = clock.getAsLong();
+
+        if (!isTyping) {
+            // Nothing to retract if "typing" was never forwarded or has already been ended
+            if (states.remove(key) != null) {
+                send(fromUserId, toUserId, conversationId, false);
+            } else {
+                coalesced.increment();
+            }
+            return;
+        }
+
+        // [0]: forward this frame, [1]: a new burst started
+        boolean[] outcome = new boolean[2];
+        TypingState state = states.compute(key, (k, existing) -> {
+            if (existing == null) {
+                outcome[0] = outcome[1] = true;
+                return new TypingState(k, toUserId, now, now + idleTimeoutNanos);
+            }
+            existing.deadline = now + idleTimeoutNanos;
+            if (now - existing.lastForwarded >= forwardWindowNanos) {
+                existing.lastForwarded = now;
+                outcome[0] = true;
+            }
+            return existing;
+        });
+
+        if (outcome[1]) {
+            schedule(state);
+        }
+        if (outcome[0]) {
+            send(fromUserId, toUserId, conversationId, true);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    /**
+     * Advance the wheel to the current time and end the bursts that went quiet.
+     */
+    @Scheduled(fixedRateString = "${app.websocket.typing.tick-ms:250}",
+            initialDelayString = "${app.websocket.typing.tick-ms:250}")
+    void tick() {
+        long now = clock.getAsLong();
+        List<TypingState> due = new ArrayList<>();
+        synchronized (wheel) {
+            long target = tickOf(now);
+            // After a long pause there is no point in visiting a slot more than once
+            long from = Math.max(currentTick + 1, target - wheel.size() + 1);
+            for (long t = from; t <= target; t++) {
+                ArrayDeque<TypingState> slot = wheel.get(slotOf(t));
+                for (int n = slot.size(); n > 0; n--) {
+                    due.add(slot.poll());
+                }
+            }
+            currentTick = Math.max(currentTick, target);
+        }
+
+        for (TypingState state : due) {
+            try {
+                expire(state, now);
+            } catch (RuntimeException e) {
+                log.debug("Failed to end typing indicator for {}: {}", state.key, e.getMessage());
+            }
+        }
+    }
+
+    private void expire(TypingState state, long now) {
+        boolean[] ended = new boolean[1];
+        states.computeIfPresent(state.key, (k, current) -> {
+            if (current != state || state.deadline - now > 0) return current;
+            ended[0] = true;
+            return null;
+        });
+
+        if (ended[0]) {
+            expired.increment();
+            send(state.key.userId(), state.toUserId, state.key.conversationId(), false);
+        } else if (states.get(state.key) == state) {
+            // Still typing: file the state again under its moved deadline
+            schedule(state);
+        }
+    }
+
+    private void schedule(TypingState state) {
+        synchronized (wheel) {
+            long tick = Math.max(tickOf(state.deadline + tickNanos - 1), currentTick + 1);
+            wheel.get(slotOf(tick)).add(state);
+        }
+    }
+
+    private void send(UUID fromUserId, UUID toUserId, UUID conversationId, boolean isTyping) {
+        forwarded.increment();
+        realTimeMessagingService.sendTypingIndicator(fromUserId, toUserId, conversationId, isTyping);
+    }
+
+    private long tickOf(long nanos) {
+        return Math.floorDiv(nanos, tickNanos);
+    }
+
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) wheel.size());
+    }
+
+    int activeBursts() {
+        return states.size();
+    }
+
+    private record Key(UUID conversationId, UUID userId) {
+    }
+
+    private static final class TypingState {
+        final Key key;
+        final UUID toUserId;
+        volatile long lastForwarded;
+        volatile long deadline;
+
+        TypingState(Key key, UUID toUserId, long lastForwarded, long deadline) {
+            this.key = key;
+            this.toUserId = toUserId;
+            this.lastForwarded = lastForwarded;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package nl.ak.skillswap.messageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compares recently changed unread counters with the database and repairs the ones that drifted.
+ * Runs once per {@code interval-ms}, in batches of {@code batch-size} users, until the queue of
+ * settled users is drained or {@code max-batches} have been checked.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnreadCounterReconciler {
+
+    private final UnreadCounterService unreadCounterService;
+
+    @Value("${app.unread.reconcile.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.unread.reconcile.max-batches:10}")
+    private int maxBatches;
+
+    @Scheduled(fixedDelayString = "${app.unread.reconcile.interval-ms:10000}",
+            initialDelayString = "${app.unread.reconcile.interval-ms:10000}")
+    void tick() {
+        try {
+            for (int batch = 0; batch < maxBatches; batch++) {
+                if (unreadCounterService.reconcile(batchSize) < batchSize) break;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to reconcile unread counters: {}", e.getMessage());
+        }
+    }
+}
@@ -1,32 +1,442 @@
 package nl.ak.skillswap.messageservice.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.domain.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Per-user unread counters.
+ *
+ * Each user has one hash {@code unread:{userId}} holding a field per conversation, a
+ * {@value #TOTAL_FIELD} field with the sum over all conversations, the read watermark of each
+ * conversation ({@code wm:{conversationId}}) and a {@value #VERSION_FIELD} bumped by every change.
+ * All of them are only ever changed together inside a Lua script, so the total a badge reads is
+ * always consistent with the per-conversation counts, and reads stay a single HGET.
+ *
+ * The counters heal themselves:
+ * <ul>
+ *   <li>A message at or below the stored watermark is not counted, so an increment that arrives
+ *       after the conversation was read cannot bring the count back.</li>
+ *   <li>A missing hash (evicted, flushed, or never built) is rebuilt from the database on first use.</li>
+ *   <li>Every change marks the user in {@value #RECONCILE_QUEUE}; once quiet for the settle time the
+ *       user is compared with the database by {@link #reconcile(int)} and repaired if the counts drifted.
+ *       The repair is a compare-and-set on the version, so it never overwrites a newer change.</li>
+ * </ul>
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UnreadCounterService {
 
+    static final String TOTAL_FIELD = "total";
+    static final String VERSION_FIELD = "ver";
+    static final String WATERMARK_PREFIX = "wm:";
+    static final String RECONCILE_QUEUE = "unread:reconcile";
+
+    /**
+     * KEYS[1] = unread hash, KEYS[2] = reconcile queue
+     * ARGV[1] = now (ms), ARGV[2] = userId, then conversationId, delta, message position per conversation.
+     * Returns the new count of each conversation in argument order, or nil if the hash must be rebuilt first.
+     */
+    private static final String INCREMENT_SCRIPT = """
+            local key = KEYS[1]
+            if redis.call('HEXISTS', key, 'total') == 0 then return false end
+            redis.call('ZADD', KEYS[2], ARGV[1], ARGV[2])
+            local sum = 0
+            local counts = {}
+            for i = 3, #ARGV, 3 do
+                local watermark = redis.call('HGET', key, 'wm:' .. ARGV[i])
+                if watermark and ARGV[i + 2] <= watermark then
+                    counts[#counts + 1] = tonumber(redis.call('HGET', key, ARGV[i]) or '0')
+                else
+                    local delta = tonumber(ARGV[i + 1])
+                    counts[#counts + 1] = redis.call('HINCRBY', key, ARGV[i], delta)
+                    sum = sum + delta
+                end
+            end
+            redis.call('HINCRBY', key, 'total', sum)
+            redis.call('HINCRBY', key, 'ver', 1)
+            return counts
+            """;
+
+    /**
+     * KEYS[1] = unread hash, KEYS[2] = reconcile queue
+     * ARGV[1] = now (ms), ARGV[2] = userId, ARGV[3] = conversationId, ARGV[4] = watermark position.
+     * Returns the number of unread messages that were cleared.
+     */
+    private static final String CLEAR_SCRIPT = """
+            local key = KEYS[1]
+            redis.call('ZADD', KEYS[2], ARGV[1], ARGV[2])
+            if redis.call('HEXISTS', key, 'total') == 0 then return 0 end
+            local field = 'wm:' .. ARGV[3]
+            local watermark = redis.call('HGET', key, field)
+            if watermark and ARGV[4] <= watermark then return 0 end
+            redis.call('HSET', key, field, ARGV[4])
+            redis.call('HINCRBY', key, 'ver', 1)
+            local count = tonumber(redis.call('HGET', key, ARGV[3]) or '0')
+            if count == 0 then return 0 end
+            redis.call('HDEL', key, ARGV[3])
+            local total = redis.call('HINCRBY', key, 'total', -count)
+            if total < 0 then redis.call('HSET', key, 'total', 0) end
+            return count
+            """;
+
+    /**
+     * KEYS[1] = unread hash
+     * ARGV[1] = expected version, or '' to only build a missing hash,
+     * then conversationId, count, watermark position ('' for none) per conversation.
+     * Returns 1 if the hash was written.
+     */
+    private static final String REBUILD_SCRIPT = """
+            local key = KEYS[1]
+            local version = redis.call('HGET', key, 'ver') or '0'
+            if ARGV[1] == '' then
+                if redis.call('HEXISTS', key, 'total') == 1 then return 0 end
+            elseif ARGV[1] ~= version then
+                return 0
+            end
+            redis.call('DEL', key)
+            local total = 0
+            for i = 2, #ARGV, 3 do
+                local count = tonumber(ARGV[i + 1])
+                if count > 0 then
+                    redis.call('HSET', key, ARGV[i], count)
+                    total = total + count
+                end
+                if ARGV[i + 2] ~= '' then
+                    redis.call('HSET', key, 'wm:' .. ARGV[i], ARGV[i + 2])
+                end
+            end
+            redis.call('HSET', key, 'total', total, 'ver', tonumber(version) + 1)
+            return 1
+            """;
+
+    /**
+     * KEYS[1] = reconcile queue, ARGV[1] = latest score to take (ms), ARGV[2] = batch size.
+     * Removes and returns the users that have been quiet since the cutoff.
+     */
+    private static final String POP_SETTLED_SCRIPT = """
+            local users = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            if #users > 0 then redis.call('ZREM', KEYS[1], unpack(users)) end
+            return users
+            """;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> INCREMENT = new DefaultRedisScript<>(INCREMENT_SCRIPT, List.class);
+    private static final RedisScript<Long> CLEAR = new DefaultRedisScript<>(CLEAR_SCRIPT, Long.class);
+    private static final RedisScript<Long> REBUILD = new DefaultRedisScript<>(REBUILD_SCRIPT, Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> POP_SETTLED = new DefaultRedisScript<>(POP_SETTLED_SCRIPT, List.class);
+
     private final StringRedisTemplate redis;
+    private final ReadStateService readStateService;
+
+    /**
+     * How long a user must go without counter changes before being reconciled, so a check never
+     * races a send or read that is still in flight.
+     */
+    @Value("${app.unread.reconcile.settle-ms:5000}")
+    private long settleMillis;
 
     private String key(UUID userId) {
         return "unread:" + userId;
     }
 
-    public void incrementUnread(UUID recipientId, UUID conversationId) {
-        redis.opsForHash().increment(key(recipientId), conversationId.toString(), 1);
+    /**
+     * Position of a message in {@code (created_at, id)} order as a string that sorts the same way,
+     * so the scripts can compare it with a watermark.
+     */
+    static String position(Instant createdAt, UUID messageId) {
+        long micros = Math.addExact(Math.multiplyExact(createdAt.getEpochSecond(), 1_000_000L),
+                createdAt.getNano() / 1_000);
+        return String.format("%017d:%s", micros, messageId);
+    }
+
+    /**
+     * Count a committed message as unread for its recipient.
+     *
+     * @return the recipient's new unread count for the conversation
+     */
+    public long incrementUnread(Message message) {
+        Map<UUID, Long> counts = incrementUnreadBatch(List.of(message)).get(message.getRecipientId());
+        return counts == null ? 0 : counts.getOrDefault(message.getConversationId(), 0L);
+    }
+
+    /**
+     * Count many committed messages in a single pipelined round trip, one script call per recipient.
+     * Recipients whose hash is missing are rebuilt from the database, which already holds the messages.
+     *
+     * @return recipientId -> (conversationId -> new unread count)
+     */
+    public Map<UUID, Map<UUID, Long>> incrementUnreadBatch(Collection<Message> messages) {
+        if (messages.isEmpty()) return Map.of();
+
+        // recipientId -> conversationId -> (delta, newest position)
+        Map<UUID, Map<UUID, Increment>> increments = new LinkedHashMap<>();
+        for (Message m : messages) {
+            increments.computeIfAbsent(m.getRecipientId(), k -> new LinkedHashMap<>())
+                    .merge(m.getConversationId(), new Increment(1, position(m.getCreatedAt(), m.getId())), Increment::plus);
+        }
+
+        byte[] script = INCREMENT_SCRIPT.getBytes(StandardCharsets.UTF_8);
+        byte[] now = bytes(Long.toString(System.currentTimeMillis()));
+        List<Object> replies = redis.executePipelined((RedisCallback<Object>) connection -> {
+            increments.forEach((recipientId, deltas) -> {
+                List<byte[]> keysAndArgs = new ArrayList<>(4 + deltas.size() * 3);
+                keysAndArgs.add(bytes(key(recipientId)));
+                keysAndArgs.add(bytes(RECONCILE_QUEUE));
+                keysAndArgs.add(now);
+                keysAndArgs.add(bytes(recipientId.toString()));
+                deltas.forEach((conversationId, increment) -> {
+                    keysAndArgs.add(bytes(conversationId.toString()));
+                    keysAndArgs.add(bytes(Long.toString(increment.delta())));
+                    keysAndArgs.add(bytes(increment.position()));
+                });
+                connection.scriptingCommands().eval(script, ReturnType.MULTI, 2, keysAndArgs.toArray(new byte[0][]));
+            });
+            return null;
+        });
+
+        // Replies come back in the order of the LinkedHashMap iteration above
+        Map<UUID, Map<UUID, Long>> counts = new HashMap<>(increments.size());
+        int i = 0;
+        for (Map.Entry<UUID, Map<UUID, Increment>> entry : increments.entrySet()) {
+            Object reply = i < replies.size() ? replies.get(i) : null;
+            i++;
+            List<UUID> conversations = List.copyOf(entry.getValue().keySet());
+            Map<UUID, Long> recipientCounts = new HashMap<>(conversations.size());
+            if (reply instanceof List<?> values) {
+                for (int j = 0; j < conversations.size() && j < values.size(); j++) {
+                    recipientCounts.put(conversations.get(j), parse(values.get(j)));
+                }
+            } else {
+                Map<UUID, Long> rebuilt = getUnreadByConversation(entry.getKey());
+                conversations.forEach(c -> recipientCounts.put(c, rebuilt.getOrDefault(c, 0L)));
+            }
+            counts.put(entry.getKey(), recipientCounts);
+        }
+        return counts;
+    }
+
+    /**
+     * Clear a conversation's count after its watermark moved. Messages at or below the watermark
+     * are not counted again, however late their increment arrives.
+     *
+     * @param watermark the new watermark, or {@code null} if it did not move
+     */
+    public void clearUnread(UUID recipientId, UUID conversationId, ReadStateService.Watermark watermark) {
+        if (watermark == null) {
+            // Nothing became read; a counter that still shows unread messages has drifted
+            requestReconcile(recipientId);
+            return;
+        }
+        redis.execute(CLEAR, List.of(key(recipientId), RECONCILE_QUEUE),
+                Long.toString(System.currentTimeMillis()), recipientId.toString(),
+                conversationId.toString(), position(watermark.createdAt(), watermark.messageId()));
+    }
+
+    /**
+     * Drop all of the user's counters, conversations and total alike. The next read rebuilds
+     * them from the database, and a reconcile follows in case that read saw the state before commit.
+     */
+    public void clearAllUnread(UUID recipientId) {
+        redis.delete(key(recipientId));
+        requestReconcile(recipientId);
+    }
+
+    /**
+     * Have the user's counters compared with the database once they have been quiet for the settle time.
+     */
+    public void requestReconcile(UUID userId) {
+        redis.opsForZSet().add(RECONCILE_QUEUE, userId.toString(), System.currentTimeMillis());
     }
 
-    public void clearUnread(UUID recipientId, UUID conversationId) {
-        redis.opsForHash().delete(key(recipientId), conversationId.toString());
+    /**
+     * Compare up to {@code batchSize} settled users with the database and repair drifted counters.
+     * Users whose hash does not exist are skipped; their next read builds it.
+     *
+     * @return the number of users checked; fewer than {@code batchSize} means the queue is drained
+     */
+    public int reconcile(int batchSize) {
+        long cutoff = System.currentTimeMillis() - settleMillis;
+        List<?> popped = redis.execute(POP_SETTLED, List.of(RECONCILE_QUEUE),
+                Long.toString(cutoff), Integer.toString(batchSize));
+        if (popped == null || popped.isEmpty()) return 0;
+        List<UUID> users = popped.stream().map(u -> UUID.fromString(u.toString())).toList();
+
+        // Snapshot the counters before reading the database: any change in between bumps the
+        // version, fails the compare-and-set below and queues the user again
+        List<Object> snapshots = redis.executePipelined((RedisCallback<Object>) connection -> {
+            users.forEach(userId -> connection.hashCommands().hGetAll(bytes(key(userId))));
+            return null;
+        });
+        Map<UUID, List<ReadStateService.ConversationReadState>> states = readStateService.unreadStates(users);
+
+        int repaired = 0;
+        for (int i = 0; i < users.size(); i++) {
+            UUID userId = users.get(i);
+            if (!(snapshots.get(i) instanceof Map<?, ?> current) || !current.containsKey(TOTAL_FIELD)) continue;
+
+            List<ReadStateService.ConversationReadState> expected = states.getOrDefault(userId, List.of());
+            if (matches(current, expected)) continue;
+
+            String version = String.valueOf(current.containsKey(VERSION_FIELD) ? current.get(VERSION_FIELD) : "0");
+            if (rebuild(userId, version, expected)) repaired++;
+        }
+        if (repaired > 0) {
+            log.info("Repaired drifted unread counters of {} of {} users", repaired, users.size());
+        }
+        return users.size();
+    }
+
+    private static boolean matches(Map<?, ?> current, List<ReadStateService.ConversationReadState> expected) {
+        Map<String, Long> counts = new HashMap<>();
+        long total = 0;
+        for (ReadStateService.ConversationReadState state : expected) {
+            if (state.unread() <= 0) continue;
+            counts.put(state.conversationId().toString(), state.unread());
+            total += state.unread();
+        }
+        if (parse(current.get(TOTAL_FIELD)) != total) return false;
+
+        int conversations = 0;
+        for (Map.Entry<?, ?> field : current.entrySet()) {
+            String name = field.getKey().toString();
+            if (name.equals(TOTAL_FIELD) || name.equals(VERSION_FIELD) || name.startsWith(WATERMARK_PREFIX)) continue;
+            long count = parse(field.getValue());
+            if (count == 0) continue;
+            if (!counts.getOrDefault(name, 0L).equals(count)) return false;
+            conversations++;
+        }
+        return conversations == counts.size();
+    }
+
+    /**
+     * Build the user's hash from the database if it does not exist. Concurrent builds may race with
+     * an increment, so the user is reconciled once things settle.
+     */
+    private void rebuildIfMissing(UUID userId) {
+        rebuild(userId, "", readStateService.unreadStates(List.of(userId)).getOrDefault(userId, List.of()));
+        requestReconcile(userId);
+    }
+
+    private boolean rebuild(UUID userId, String expectedVersion, List<ReadStateService.ConversationReadState> states) {
+        List<String> args = new ArrayList<>(1 + states.size() * 3);
+        args.add(expectedVersion);
+        for (ReadStateService.ConversationReadState state : states) {
+            ReadStateService.Watermark watermark = state.watermark();
+            args.add(state.conversationId().toString());
+            args.add(Long.toString(state.unread()));
+            args.add(watermark == null ? "" : position(watermark.createdAt(), watermark.messageId()));
+        }
+        Long written = redis.execute(REBUILD, List.of(key(userId)), args.toArray());
+        return written != null && written == 1;
     }
 
     public long getUnread(UUID recipientId, UUID conversationId) {
-        Object v = redis.opsForHash().get(key(recipientId), conversationId.toString());
+        List<Object> values = redis.opsForHash()
+                .multiGet(key(recipientId), List.<Object>of(conversationId.toString(), TOTAL_FIELD));
+        if (values.get(1) != null) return parse(values.get(0));
+
+        rebuildIfMissing(recipientId);
+        return parse(redis.opsForHash().get(key(recipientId), conversationId.toString()));
+    }
+
+    /**
+     * Current counts of many (recipient, conversation) pairs in one pipelined round trip.
+     * Recipients without counters yet are left out rather than rebuilt.
+     *
+     * @return recipientId -> (conversationId -> unread count)
+     */
+    public Map<UUID, Map<UUID, Long>> getUnreadBatch(Map<UUID, ? extends Collection<UUID>> conversationsByRecipient) {
+        if (conversationsByRecipient.isEmpty()) return Map.of();
+
+        List<Map.Entry<UUID, List<UUID>>> order = new ArrayList<>(conversationsByRecipient.size());
+        conversationsByRecipient.forEach((recipientId, conversations) ->
+                order.add(Map.entry(recipientId, List.copyOf(conversations))));
+        List<Object> replies = redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<UUID, List<UUID>> entry : order) {
+                List<byte[]> fields = new ArrayList<>(1 + entry.getValue().size());
+                fields.add(bytes(TOTAL_FIELD));
+                entry.getValue().forEach(conversationId -> fields.add(bytes(conversationId.toString())));
+                connection.hashCommands().hMGet(bytes(key(entry.getKey())), fields.toArray(new byte[0][]));
+            }
+            return null;
+        });
+
+        Map<UUID, Map<UUID, Long>> counts = new HashMap<>(order.size());
+        for (int i = 0; i < order.size() && i < replies.size(); i++) {
+            if (!(replies.get(i) instanceof List<?> values) || values.isEmpty() || values.get(0) == null) continue;
+            List<UUID> conversations = order.get(i).getValue();
+            Map<UUID, Long> recipientCounts = new HashMap<>(conversations.size());
+            for (int j = 0; j < conversations.size() && j + 1 < values.size(); j++) {
+                recipientCounts.put(conversations.get(j), parse(values.get(j + 1)));
+            }
+            counts.put(order.get(i).getKey(), recipientCounts);
+        }
+        return counts;
+    }
+
+    /**
+     * All per-conversation counts of a user in one HGETALL.
+     * Conversations without unread messages are absent from the map.
+     */
+    public Map<UUID, Long> getUnreadByConversation(UUID recipientId) {
+        Map<Object, Object> entries = getAllUnread(recipientId);
+        Map<UUID, Long> counts = new HashMap<>(entries.size());
+        entries.forEach((field, value) -> {
+            String name = field.toString();
+            if (name.equals(TOTAL_FIELD) || name.equals(VERSION_FIELD) || name.startsWith(WATERMARK_PREFIX)) return;
+            try {
+                long count = parse(value);
+                if (count > 0) counts.put(UUID.fromString(name), count);
+            } catch (IllegalArgumentException ignored) {
+                // Not a conversation field
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Total unread messages over all conversations: a single HGET.
+     */
+    public long getTotalUnread(UUID recipientId) {
+        Object total = redis.opsForHash().get(key(recipientId), TOTAL_FIELD);
+        if (total != null) return parse(total);
+
+        rebuildIfMissing(recipientId);
+        return parse(redis.opsForHash().get(key(recipientId), TOTAL_FIELD));
+    }
+
+    /**
+     * The raw hash, rebuilt first if it does not exist.
+     */
+    public Map<Object, Object> getAllUnread(UUID recipientId) {
+        Map<Object, Object> entries = redis.opsForHash().entries(key(recipientId));
+        if (entries.containsKey(TOTAL_FIELD)) return entries;
+
+        rebuildIfMissing(recipientId);
+        return redis.opsForHash().entries(key(recipientId));
+    }
+
+    private static long parse(Object v) {
         if (v == null) return 0;
         try {
             return Long.parseLong(v.toString());
@@ -35,7 +445,14 @@ public class UnreadCounterService {
         }
     }
 
-    public Map<Object, Object> getAllUnread(UUID recipientId) {
-        return redis.opsForHash().entries(key(recipientId));
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Increment(long delta, String position) {
+
+        Increment plus(Increment other) {
+            return new Increment(delta + other.delta, position.compareTo(other.position) >= 0 ? position : other.position);
+        }
     }
 }
@@ -3,6 +3,7 @@ package nl.ak.skillswap.messageservice.service;
 import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.messageservice.support.AuthenticatedUserContext;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -21,14 +22,17 @@ import java.util.UUID;
 public class UserIdResolverService {
 
     private final WebClient webClient;
+    private final UserLookupBatcher userLookupBatcher;
 
     public UserIdResolverService(
             @Value("${app.user-service.url}") String userServiceUrl,
-            WebClient.Builder webClientBuilder
+            WebClient.Builder webClientBuilder,
+            UserLookupBatcher userLookupBatcher
     ) {
         this.webClient = webClientBuilder
                 .baseUrl(userServiceUrl)
                 .build();
+        this.userLookupBatcher = userLookupBatcher;
     }
 
     /**
@@ -44,6 +48,25 @@ public class UserIdResolverService {
     public AuthenticatedUserContext resolve(String externalId, String bearerToken) {
         log.debug("Resolving external ID to database UUID: {}", externalId);
 
+        // Fast path: batched internal lookup shared with concurrent cache misses
+        try {
+            var resolved = userLookupBatcher.resolve(externalId);
+            if (resolved.isPresent()) {
+                return new AuthenticatedUserContext(
+                        resolved.get().databaseId(),
+                        resolved.get().externalId(),
+                        resolved.get().displayName()
+                );
+            }
+        } catch (Exception e) {
+            log.warn("Batched resolution failed for {}, falling back to direct call: {}", externalId, e.getMessage());
+        }
+
+        // Unknown to the internal lookup: the authenticated endpoint also provisions first-time users
+        return resolveDirect(externalId, bearerToken);
+    }
+
+    private AuthenticatedUserContext resolveDirect(String externalId, String bearerToken) {
         try {
             IdResolutionResponse response = webClient.get()
                     .uri("/api/users/resolve/{externalId}", externalId)
@@ -75,6 +98,14 @@ public class UserIdResolverService {
         }
     }
 
+    /**
+     * Drop a cached mapping on every instance, e.g. after the user was deleted.
+     */
+    @CacheEvict(value = "user-id-mapping", key = "#externalId")
+    public void evict(String externalId) {
+        log.debug("Evicted cached user ID mapping for {}", externalId);
+    }
+
     /**
      * Response from user-service /resolve/{externalId} endpoint.
      */
@@ -0,0 +1,90 @@
+package nl.ak.skillswap.messageservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.service.InternalUserServiceClient.IdResolutionResponse;
+import nl.ak.skillswap.messageservice.support.BatchingLoader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces concurrent user lookups into batch calls to user-service.
+ * Reconnect storms, GDPR jobs and cold caches after a deploy turn into a handful of
+ * {@code IN} queries instead of one HTTP call per user.
+ */
+@Slf4j
+@Service
+public class UserLookupBatcher {
+
+    private final BatchingLoader<String, IdResolutionResponse> resolveLoader;
+    private final BatchingLoader<UUID, Boolean> existsLoader;
+    private final long timeoutMillis;
+
+    public UserLookupBatcher(
+            InternalUserServiceClient userServiceClient,
+            @Value("${app.user-service.batch.max-size:200}") int maxBatchSize,
+            @Value("${app.user-service.batch.window-ms:2}") long windowMillis,
+            @Value("${app.user-service.batch.timeout-ms:3000}") long timeoutMillis
+    ) {
+        this.timeoutMillis = timeoutMillis;
+        this.resolveLoader = new BatchingLoader<>("user-resolve",
+                userServiceClient::resolveExternalIds, maxBatchSize, windowMillis);
+        this.existsLoader = new BatchingLoader<>("user-exists",
+                ids -> existenceMap(ids, userServiceClient.findExistingUsers(ids)), maxBatchSize, windowMillis);
+    }
+
+    /**
+     * Resolve an external ID (Keycloak sub) to the user's database record.
+     *
+     * @return the resolved user, or empty if the user is unknown, deleted or inactive
+     */
+    public Optional<IdResolutionResponse> resolve(String externalId) {
+        return Optional.ofNullable(await(resolveLoader.load(externalId)));
+    }
+
+    public Optional<UUID> resolveDatabaseId(String externalId) {
+        return resolve(externalId).map(IdResolutionResponse::databaseId);
+    }
+
+    /**
+     * @return true if an active user exists with this database ID or external ID
+     */
+    public boolean exists(UUID userId) {
+        return Boolean.TRUE.equals(await(existsLoader.load(userId)));
+    }
+
+    private <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("User lookup failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for user lookup", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for user lookup", e);
+        }
+    }
+
+    private static Map<UUID, Boolean> existenceMap(Set<UUID> requested, Set<UUID> existing) {
+        return requested.stream().collect(Collectors.toMap(Function.identity(), existing::contains));
+    }
+
+    @PreDestroy
+    public void close() {
+        resolveLoader.close();
+        existsLoader.close();
+    }
+}
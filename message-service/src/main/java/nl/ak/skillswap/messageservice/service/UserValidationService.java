@@ -3,14 +3,9 @@ package nl.ak.skillswap.messageservice.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.messageservice.support.NotFoundException;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.HttpStatus;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestClient;
 
 import java.util.UUID;
 
@@ -23,10 +18,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class UserValidationService {
 
-    private final RestClient.Builder restClientBuilder;
-
-    @Value("${app.user-service.url:http://localhost:8081}")
-    private String userServiceUrl;
+    private final UserLookupBatcher userLookupBatcher;
 
     /**
      * Validates that a user exists.
@@ -40,37 +32,22 @@ public class UserValidationService {
     public boolean validateUserExists(UUID userId) {
         log.debug("Validating user exists: {}", userId);
 
-        try {
-            RestClient client = restClientBuilder.baseUrl(userServiceUrl).build();
-
-            // Get JWT token from security context
-            String token = getCurrentToken();
-
-            // HEAD request to check user existence without fetching full profile
-            var requestSpec = client.head().uri("/api/users/{id}/exists", userId);
-            if (token != null) {
-                requestSpec.header("Authorization", "Bearer " + token);
-            }
-            requestSpec.retrieve().toBodilessEntity();
-
-            log.debug("User {} validated successfully", userId);
-            return true;
-        } catch (HttpClientErrorException e) {
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                log.debug("User {} not found", userId);
-                throw new NotFoundException("User not found: " + userId);
-            }
-            log.error("Error validating user {}: {}", userId, e.getMessage());
-            throw e;
+        // Batched with concurrent checks into a single call to user-service
+        if (!userLookupBatcher.exists(userId)) {
+            log.debug("User {} not found", userId);
+            throw new NotFoundException("User not found: " + userId);
         }
+
+        log.debug("User {} validated successfully", userId);
+        return true;
     }
 
-    private String getCurrentToken() {
-        var auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth instanceof JwtAuthenticationToken jwtAuth) {
-            return jwtAuth.getToken().getTokenValue();
-        }
-        return null;
+    /**
+     * Drop the cached existence check on every instance, e.g. after the user was deleted.
+     */
+    @CacheEvict(value = "user-exists", key = "#userId")
+    public void evictUserExists(UUID userId) {
+        log.debug("Evicted cached existence check for {}", userId);
     }
 
     /**
@@ -1,37 +1,79 @@
 package nl.ak.skillswap.messageservice.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 /**
  * Manages WebSocket session tracking in Redis for horizontal scaling.
- * Allows multiple service instances to know which users are connected.
+ * Allows multiple service instances to know which users are connected, and on which node.
+ *
+ * Keys:
+ * <ul>
+ *   <li>{@code ws:sessions:{userId}} - hash of session ID to the node holding the STOMP connection</li>
+ *   <li>{@code ws:node-sessions:{nodeId}} - hash of session ID to user ID, the reverse index per node</li>
+ *   <li>{@code ws:node:{nodeId}} - the node's lease, alive while the node keeps renewing it</li>
+ *   <li>{@code ws:nodes} - every node that may still own sessions</li>
+ * </ul>
+ * A node that stops renewing loses its lease, and {@link #reapExpiredNodes()} removes its sessions,
+ * so a crashed node no longer keeps its users "online".
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class WebSocketSessionService {
 
-    private static final String SESSION_PREFIX = "ws:session:";
-    private static final Duration SESSION_TTL = Duration.ofHours(24);
+    private static final String SESSION_PREFIX = "ws:sessions:";
+    private static final String NODE_SESSIONS_PREFIX = "ws:node-sessions:";
+    private static final String NODE_LEASE_PREFIX = "ws:node:";
+    private static final String NODES_KEY = "ws:nodes";
 
     private final StringRedisTemplate redisTemplate;
+    private final NodeIdentity nodeIdentity;
+    private final Duration leaseTtl;
+    // Outlives several missed renewals so a slow node is reaped through its lease, not by TTL
+    private final Duration sessionTtl;
+
+    public WebSocketSessionService(StringRedisTemplate redisTemplate,
+                                   NodeIdentity nodeIdentity,
+                                   @Value("${app.websocket.session-lease.ttl-ms:30000}") long leaseTtlMs) {
+        this.redisTemplate = redisTemplate;
+        this.nodeIdentity = nodeIdentity;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+        this.sessionTtl = leaseTtl.multipliedBy(4);
+    }
 
     /**
-     * Register a user's WebSocket session.
+     * Register a user's WebSocket session as owned by this node.
      * Called when user connects via WebSocket.
      */
     public void registerSession(UUID userId, String sessionId) {
-        String key = SESSION_PREFIX + userId;
-        redisTemplate.opsForSet().add(key, sessionId);
-        redisTemplate.expire(key, SESSION_TTL);
-        log.debug("Registered WebSocket session {} for user {}", sessionId, userId);
+        String nodeId = nodeIdentity.nodeId();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] userKey = bytes(SESSION_PREFIX + userId);
+            byte[] nodeKey = bytes(NODE_SESSIONS_PREFIX + nodeId);
+            connection.hashCommands().hSet(userKey, bytes(sessionId), bytes(nodeId));
+            connection.keyCommands().pExpire(userKey, sessionTtl.toMillis());
+            connection.hashCommands().hSet(nodeKey, bytes(sessionId), bytes(userId.toString()));
+            connection.setCommands().sAdd(bytes(NODES_KEY), bytes(nodeId));
+            return null;
+        });
+        log.debug("Registered WebSocket session {} for user {} on node {}", sessionId, userId, nodeId);
     }
 
     /**
@@ -39,8 +81,11 @@ public class WebSocketSessionService {
      * Called when user disconnects.
      */
     public void removeSession(UUID userId, String sessionId) {
-        String key = SESSION_PREFIX + userId;
-        redisTemplate.opsForSet().remove(key, sessionId);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hDel(bytes(SESSION_PREFIX + userId), bytes(sessionId));
+            connection.hashCommands().hDel(bytes(NODE_SESSIONS_PREFIX + nodeIdentity.nodeId()), bytes(sessionId));
+            return null;
+        });
         log.debug("Removed WebSocket session {} for user {}", sessionId, userId);
     }
 
@@ -49,7 +94,7 @@ public class WebSocketSessionService {
      */
     public boolean isUserOnline(UUID userId) {
         String key = SESSION_PREFIX + userId;
-        Long size = redisTemplate.opsForSet().size(key);
+        Long size = redisTemplate.opsForHash().size(key);
         return size != null && size > 0;
     }
 
@@ -58,15 +103,127 @@ public class WebSocketSessionService {
      */
     public Set<String> getUserSessions(UUID userId) {
         String key = SESSION_PREFIX + userId;
-        Set<String> sessions = redisTemplate.opsForSet().members(key);
-        return sessions != null ? sessions : Set.of();
+        Set<String> sessions = new HashSet<>();
+        redisTemplate.opsForHash().keys(key).forEach(field -> sessions.add(field.toString()));
+        return sessions;
     }
 
     /**
-     * Refresh session TTL (call periodically to keep session alive).
+     * Nodes holding at least one session of each given user, in one pipelined round trip.
+     * Users without sessions are absent from the map.
      */
-    public void refreshSession(UUID userId) {
-        String key = SESSION_PREFIX + userId;
-        redisTemplate.expire(key, SESSION_TTL);
+    public Map<UUID, Set<String>> getUserNodes(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) return Map.of();
+
+        List<UUID> order = List.copyOf(new HashSet<>(userIds));
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UUID userId : order) {
+                connection.hashCommands().hVals(bytes(SESSION_PREFIX + userId));
+            }
+            return null;
+        });
+
+        Map<UUID, Set<String>> nodes = new HashMap<>(order.size());
+        for (int i = 0; i < order.size() && i < replies.size(); i++) {
+            if (!(replies.get(i) instanceof Collection<?> values) || values.isEmpty()) continue;
+            Set<String> userNodes = new HashSet<>(values.size());
+            values.forEach(v -> userNodes.add(v.toString()));
+            nodes.put(order.get(i), userNodes);
+        }
+        return nodes;
+    }
+
+    /**
+     * Renew this node's lease and the sessions it holds, in one pipelined round trip.
+     * The sessions are written again as well, so a node that was reaped after a long pause
+     * (GC, network split) puts its still-open sessions back on its next renewal.
+     *
+     * @param localSessions userId -> session IDs connected to this node
+     */
+    public void renewLease(Map<UUID, Set<String>> localSessions) {
+        String nodeId = nodeIdentity.nodeId();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] nodeKey = bytes(NODE_SESSIONS_PREFIX + nodeId);
+            connection.stringCommands().set(bytes(NODE_LEASE_PREFIX + nodeId), bytes("1"),
+                    Expiration.from(leaseTtl), RedisStringCommands.SetOption.upsert());
+            connection.setCommands().sAdd(bytes(NODES_KEY), bytes(nodeId));
+
+            Map<byte[], byte[]> reverse = new HashMap<>();
+            localSessions.forEach((userId, sessions) -> {
+                if (sessions.isEmpty()) return;
+                byte[] userKey = bytes(SESSION_PREFIX + userId);
+                Map<byte[], byte[]> fields = new HashMap<>(sessions.size());
+                for (String sessionId : sessions) {
+                    fields.put(bytes(sessionId), bytes(nodeId));
+                    reverse.put(bytes(sessionId), bytes(userId.toString()));
+                }
+                connection.hashCommands().hMSet(userKey, fields);
+                connection.keyCommands().pExpire(userKey, sessionTtl.toMillis());
+            });
+            if (!reverse.isEmpty()) {
+                connection.hashCommands().hMSet(nodeKey, reverse);
+                connection.keyCommands().pExpire(nodeKey, sessionTtl.toMillis());
+            }
+            return null;
+        });
+        log.trace("Renewed lease of node {} with {} local users", nodeId, localSessions.size());
+    }
+
+    /**
+     * Remove the sessions of every node whose lease has expired.
+     * Safe to run on several nodes at once: every step is idempotent.
+     *
+     * @return the number of sessions removed
+     */
+    public int reapExpiredNodes() {
+        Set<String> nodes = redisTemplate.opsForSet().members(NODES_KEY);
+        if (nodes == null || nodes.isEmpty()) return 0;
+
+        List<String> candidates = new ArrayList<>(nodes);
+        candidates.remove(nodeIdentity.nodeId());
+        if (candidates.isEmpty()) return 0;
+
+        List<Object> alive = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String nodeId : candidates) {
+                connection.keyCommands().exists(bytes(NODE_LEASE_PREFIX + nodeId));
+            }
+            return null;
+        });
+
+        int reaped = 0;
+        for (int i = 0; i < candidates.size() && i < alive.size(); i++) {
+            if (Boolean.TRUE.equals(alive.get(i))) continue;
+            reaped += releaseNode(candidates.get(i));
+        }
+        return reaped;
+    }
+
+    /**
+     * Drop this node's lease and sessions, e.g. on shutdown when its connections are gone anyway.
+     */
+    public void releaseLease() {
+        releaseNode(nodeIdentity.nodeId());
+    }
+
+    private int releaseNode(String nodeId) {
+        String nodeKey = NODE_SESSIONS_PREFIX + nodeId;
+        Map<Object, Object> sessions = redisTemplate.opsForHash().entries(nodeKey);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            sessions.forEach((sessionId, userId) ->
+                    connection.hashCommands().hDel(bytes(SESSION_PREFIX + userId), bytes(sessionId.toString())));
+            connection.keyCommands().del(bytes(nodeKey), bytes(NODE_LEASE_PREFIX + nodeId));
+            connection.setCommands().sRem(bytes(NODES_KEY), bytes(nodeId));
+            return null;
+        });
+
+        if (!sessions.isEmpty()) {
+            log.info("Released {} WebSocket sessions of node {}", sessions.size(), nodeId);
+        }
+        return sessions.size();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
     }
 }
@@ -1,12 +1,40 @@
 package nl.ak.skillswap.messageservice.service.event;
 
+import nl.ak.skillswap.messageservice.api.dto.MessageDto;
+import nl.ak.skillswap.messageservice.domain.Message;
+
 import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Everything the consumer needs to deliver a new message, so fan-out never reads the database.
+ * Delivery is at-least-once: consumers can see the same {@code messageId} more than once.
+ *
+ * @param unreadCount the recipient's unread count for the conversation when the event was published,
+ *                    or {@code null} when the counter could not be read
+ */
 public record MessageCreatedEvent(
         UUID messageId,
         UUID conversationId,
         UUID senderId,
         UUID recipientId,
-        Instant createdAt
-) {}
\ No newline at end of file
+        String body,
+        Instant createdAt,
+        Long unreadCount
+) {
+    public static MessageCreatedEvent of(Message m, Long unreadCount) {
+        return new MessageCreatedEvent(
+                m.getId(),
+                m.getConversationId(),
+                m.getSenderId(),
+                m.getRecipientId(),
+                m.getBody(),
+                m.getCreatedAt(),
+                unreadCount
+        );
+    }
+
+    public MessageDto toMessageDto() {
+        return new MessageDto(messageId, conversationId, senderId, recipientId, body, createdAt, null);
+    }
+}
@@ -2,56 +2,50 @@ package nl.ak.skillswap.messageservice.service.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.api.dto.MessageDto;
 import nl.ak.skillswap.messageservice.config.RabbitMQConfig;
-import nl.ak.skillswap.messageservice.domain.Message;
-import nl.ak.skillswap.messageservice.repository.MessageRepository;
+import nl.ak.skillswap.messageservice.service.ConversationTailCache;
 import nl.ak.skillswap.messageservice.service.RealTimeMessagingService;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
- * Consumes message events from RabbitMQ and broadcasts via WebSocket.
- * This enables horizontal scaling - any instance can receive and broadcast.
+ * Consumes this node's message deliveries from RabbitMQ and pushes them via WebSocket.
+ * Events are routed here only for recipients with a session on this node, so the
+ * in-memory broker can always reach them.
+ *
+ * Events are self-contained and arrive in batches, so fan-out does not touch the database
+ * and is bounded by WebSocket writes alone.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class MessageEventConsumer {
 
-    private final MessageRepository messageRepository;
     private final RealTimeMessagingService realTimeMessagingService;
-
-    @RabbitListener(queues = RabbitMQConfig.MESSAGE_CREATED_QUEUE)
-    public void handleMessageCreated(MessageCreatedEvent event) {
-        log.debug("Received MessageCreatedEvent: messageId={}", event.messageId());
-
-        try {
-            // Fetch full message to send to recipient
-            Message message = messageRepository.findById(event.messageId())
-                    .orElse(null);
-
-            if (message != null) {
-                // Send real-time notification to recipient
-                realTimeMessagingService.sendMessageToUser(message);
-
-                // Notify about unread count update
-                long unreadCount = messageRepository.countByConversationIdAndRecipientIdAndReadAtIsNull(
-                        event.conversationId(),
-                        event.recipientId()
-                );
-                realTimeMessagingService.notifyConversationUpdate(
-                        event.recipientId(),
-                        event.conversationId(),
-                        unreadCount
-                );
-
+    private final ConversationTailCache tailCache;
+
+    @RabbitListener(
+            queues = "#{nodeDeliveryQueue.name}",
+            containerFactory = RabbitMQConfig.MESSAGE_CREATED_LISTENER_FACTORY
+    )
+    public void handleMessagesCreated(List<MessageCreatedEvent> events) {
+        log.debug("Received {} MessageCreatedEvents", events.size());
+
+        for (MessageCreatedEvent event : events) {
+            MessageDto message = event.toMessageDto();
+            // Keeps this instance's copy of the conversation servable after a send elsewhere
+            tailCache.appendDelivered(message);
+            try {
+                realTimeMessagingService.deliverNewMessage(message, event.unreadCount());
                 log.debug("Broadcasted message {} to user {}", event.messageId(), event.recipientId());
-            } else {
-                log.warn("Message not found: {}", event.messageId());
+            } catch (Exception e) {
+                // Failing the batch would redeliver messages that already went out; the recipient
+                // still gets this one from history or sync
+                log.error("Failed to broadcast message {}: {}", event.messageId(), e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("Failed to broadcast message {}: {}", event.messageId(), e.getMessage());
-            throw e; // Re-throw to trigger retry/DLQ
         }
     }
 }
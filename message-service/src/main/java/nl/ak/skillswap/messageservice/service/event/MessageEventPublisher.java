@@ -2,16 +2,25 @@ package nl.ak.skillswap.messageservice.service.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.service.WebSocketSessionService;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Publishes message events to RabbitMQ.
- * Events are published AFTER the current transaction commits to ensure
- * the message is visible in the database when consumers process the event.
+ * Called by {@link MessageOutboxRelay} with events whose messages are already committed.
+ *
+ * Each event is routed to the nodes that hold the recipient's WebSocket sessions, looked up
+ * at publish time. Recipients without sessions get no delivery; they read the message from
+ * history or sync when they connect.
  */
 @Slf4j
 @Component
@@ -19,39 +28,51 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 public class MessageEventPublisher {
 
     private final RabbitTemplate rabbitTemplate;
+    private final WebSocketSessionService sessionService;
 
-    @Value("${app.messaging.exchange}")
-    private String exchange;
+    @Value("${app.messaging.delivery-exchange}")
+    private String deliveryExchange;
 
-    @Value("${app.messaging.routingKeyMessageCreated}")
-    private String routingKey;
+    @Value("${app.messaging.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
 
     /**
-     * Publish a message created event after the current transaction commits.
-     * This ensures the message is visible in the database when the consumer processes it.
+     * Publish a group of events over a single channel and wait for the broker to confirm all of them.
+     *
+     * @throws RuntimeException if the sessions cannot be looked up or the broker does not confirm
+     *                          every event; the caller should retry the whole group
      */
-    public void publishMessageCreated(MessageCreatedEvent event) {
-        if (TransactionSynchronizationManager.isSynchronizationActive()) {
-            // Delay publishing until after the transaction commits
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                @Override
-                public void afterCommit() {
-                    doPublish(event);
+    public void publishMessageCreatedBatch(List<MessageCreatedEvent> events) {
+        if (events.isEmpty()) return;
+
+        Map<String, List<MessageCreatedEvent>> byNode = groupByNode(events);
+        if (byNode.isEmpty()) {
+            log.debug("No connected recipients for {} MessageCreatedEvents", events.size());
+            return;
+        }
+
+        rabbitTemplate.invoke(operations -> {
+            byNode.forEach((nodeId, nodeEvents) -> {
+                for (MessageCreatedEvent event : nodeEvents) {
+                    operations.convertAndSend(deliveryExchange, nodeId, event);
                 }
             });
-            log.debug("Scheduled MessageCreatedEvent for post-commit publishing: {}", event.messageId());
-        } else {
-            // No active transaction, publish immediately
-            doPublish(event);
-        }
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+        log.debug("Published {} MessageCreatedEvents to {} nodes", events.size(), byNode.size());
     }
 
-    private void doPublish(MessageCreatedEvent event) {
-        try {
-            rabbitTemplate.convertAndSend(exchange, routingKey, event);
-            log.debug("Published MessageCreatedEvent: {}", event.messageId());
-        } catch (Exception e) {
-            log.error("Failed to publish MessageCreatedEvent {}: {}", event.messageId(), e.getMessage());
+    private Map<String, List<MessageCreatedEvent>> groupByNode(List<MessageCreatedEvent> events) {
+        Map<UUID, Set<String>> nodesByRecipient = sessionService.getUserNodes(
+                events.stream().map(MessageCreatedEvent::recipientId).toList());
+
+        Map<String, List<MessageCreatedEvent>> byNode = new HashMap<>();
+        for (MessageCreatedEvent event : events) {
+            for (String nodeId : nodesByRecipient.getOrDefault(event.recipientId(), Set.of())) {
+                byNode.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(event);
+            }
         }
+        return byNode;
     }
 }
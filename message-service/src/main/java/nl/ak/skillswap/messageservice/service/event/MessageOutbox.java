@@ -0,0 +1,91 @@
+package nl.ak.skillswap.messageservice.service.event;
+
+import lombok.RequiredArgsConstructor;
+import nl.ak.skillswap.messageservice.domain.Message;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The {@code message_outbox} table: one row per message still to be delivered in real time.
+ *
+ * Rows are appended in the transaction that writes their messages, so a message is never
+ * committed without its delivery, and removed by {@link MessageOutboxRelay} once the broker
+ * has confirmed it.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageOutbox {
+
+    private static final String APPEND = """
+            INSERT INTO message_outbox (message_id, message_created_at) VALUES (?, ?)
+            """;
+
+    /**
+     * The oldest rows, locked so relays on other nodes skip them, with their messages.
+     * The message columns are null if the message was deleted in the meantime.
+     */
+    private static final String CLAIM = """
+            SELECT o.id AS outbox_id, o.queued_at,
+                   m.id, m.conversation_id, m.sender_id, m.recipient_id, m.body, m.created_at
+              FROM (SELECT id, message_id, message_created_at, queued_at
+                      FROM message_outbox
+                     ORDER BY id
+                     LIMIT ?
+                       FOR UPDATE SKIP LOCKED) o
+              LEFT JOIN messages m ON m.id = o.message_id AND m.created_at = o.message_created_at
+             ORDER BY o.id
+            """;
+
+    private static final String DELETE = """
+            DELETE FROM message_outbox WHERE id = ANY(?)
+            """;
+
+    /**
+     * @param message the message to deliver, or {@code null} if it no longer exists
+     */
+    public record Entry(long id, Instant queuedAt, Message message) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(List<Message> messages) {
+        jdbcTemplate.batchUpdate(APPEND, messages, messages.size(), (ps, m) -> {
+            ps.setObject(1, m.getId());
+            ps.setObject(2, m.getCreatedAt().atOffset(ZoneOffset.UTC));
+        });
+    }
+
+    /**
+     * Lock up to {@code limit} of the oldest rows until the current transaction ends.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Entry> claim(int limit) {
+        return jdbcTemplate.query(CLAIM, (rs, rowNum) -> {
+            UUID messageId = rs.getObject("id", UUID.class);
+            Message message = messageId == null ? null : Message.builder()
+                    .id(messageId)
+                    .conversationId(rs.getObject("conversation_id", UUID.class))
+                    .senderId(rs.getObject("sender_id", UUID.class))
+                    .recipientId(rs.getObject("recipient_id", UUID.class))
+                    .body(rs.getString("body"))
+                    .createdAt(rs.getObject("created_at", OffsetDateTime.class).toInstant())
+                    .build();
+            return new Entry(rs.getLong("outbox_id"),
+                    rs.getObject("queued_at", OffsetDateTime.class).toInstant(), message);
+        }, limit);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void delete(Collection<Long> ids) {
+        jdbcTemplate.update(DELETE, (Object) ids.toArray(new Long[0]));
+    }
+}
@@ -0,0 +1,184 @@
+package nl.ak.skillswap.messageservice.service.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.service.UnreadCounterService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the {@link MessageOutbox} to RabbitMQ, giving real-time deliveries at-least-once semantics.
+ *
+ * One thread per node claims up to {@code batch-size} of the oldest rows, publishes their events
+ * over one channel, waits for the broker's confirms and deletes the rows, all in one transaction.
+ * If anything fails the transaction rolls back and the rows are retried after {@code retry-delay-ms};
+ * consumers may therefore see an event twice. Rows are claimed with {@code SKIP LOCKED}, so every
+ * node can run a relay.
+ *
+ * Senders call {@link #wakeUp()} after commit, so a delivery normally leaves within one batch;
+ * {@code poll-interval-ms} only bounds how long rows committed by other nodes can wait.
+ *
+ * Events carry the recipient's unread count as it is when they are published.
+ */
+@Slf4j
+@Component
+public class MessageOutboxRelay {
+
+    private final MessageOutbox outbox;
+    private final MessageEventPublisher eventPublisher;
+    private final UnreadCounterService unreadCounterService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long retryDelayMs;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running;
+    private Thread worker;
+
+    private final DistributionSummary batchSizes;
+    private final Timer lag;
+    private final Counter failures;
+
+    public MessageOutboxRelay(MessageOutbox outbox,
+                              MessageEventPublisher eventPublisher,
+                              UnreadCounterService unreadCounterService,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.messaging.outbox.batch-size:100}") int batchSize,
+                              @Value("${app.messaging.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                              @Value("${app.messaging.outbox.retry-delay-ms:1000}") long retryDelayMs) {
+        this.outbox = outbox;
+        this.eventPublisher = eventPublisher;
+        this.unreadCounterService = unreadCounterService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.retryDelayMs = retryDelayMs;
+
+        this.batchSizes = DistributionSummary.builder("outbox.relay.batch.size")
+                .description("Outbox rows relayed per transaction")
+                .register(meterRegistry);
+        this.lag = Timer.builder("outbox.relay.lag")
+                .description("Time from writing an outbox row to the broker confirming its event")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.failures = Counter.builder("outbox.relay.failures")
+                .description("Relay batches rolled back to be retried")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::runRelayLoop, "message-outbox-relay");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Message outbox relay started (batchSize={}, pollIntervalMs={}, retryDelayMs={})",
+                batchSize, pollIntervalMs, retryDelayMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker == null) return;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Have the relay look at the outbox now instead of at its next poll.
+     */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) wakeUps.release();
+    }
+
+    private void runRelayLoop() {
+        while (running) {
+            long waitMs;
+            try {
+                waitMs = relayBatch() < batchSize ? pollIntervalMs : 0;
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Outbox relay batch failed, retrying in {} ms: {}", retryDelayMs, e.getMessage());
+                waitMs = retryDelayMs;
+            }
+            if (waitMs == 0) continue;
+            try {
+                if (wakeUps.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) wakeUps.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Relay one batch of the oldest outbox rows.
+     *
+     * @return the number of rows relayed; fewer than the batch size means the outbox is drained
+     */
+    int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<MessageOutbox.Entry> entries = outbox.claim(batchSize);
+            if (entries.isEmpty()) return 0;
+
+            List<Message> messages = entries.stream().map(MessageOutbox.Entry::message).filter(Objects::nonNull).toList();
+            eventPublisher.publishMessageCreatedBatch(events(messages));
+            outbox.delete(entries.stream().map(MessageOutbox.Entry::id).toList());
+
+            Instant now = Instant.now();
+            batchSizes.record(entries.size());
+            entries.forEach(entry -> lag.record(Duration.between(entry.queuedAt(), now)));
+            return entries.size();
+        });
+        return relayed == null ? 0 : relayed;
+    }
+
+    private List<MessageCreatedEvent> events(List<Message> messages) {
+        Map<UUID, Set<UUID>> conversationsByRecipient = new HashMap<>();
+        for (Message m : messages) {
+            conversationsByRecipient.computeIfAbsent(m.getRecipientId(), k -> new HashSet<>()).add(m.getConversationId());
+        }
+
+        Map<UUID, Map<UUID, Long>> unreadCounts;
+        try {
+            unreadCounts = unreadCounterService.getUnreadBatch(conversationsByRecipient);
+        } catch (RuntimeException e) {
+            // Deliver without counts rather than hold up the messages
+            log.warn("Failed to read unread counters for {} messages: {}", messages.size(), e.getMessage());
+            unreadCounts = Map.of();
+        }
+
+        List<MessageCreatedEvent> events = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            Long unreadCount = unreadCounts.getOrDefault(m.getRecipientId(), Map.of()).get(m.getConversationId());
+            events.add(MessageCreatedEvent.of(m, unreadCount));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,7 @@
+package nl.ak.skillswap.messageservice.support;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
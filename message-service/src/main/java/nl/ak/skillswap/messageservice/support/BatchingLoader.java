@@ -0,0 +1,108 @@
+package nl.ak.skillswap.messageservice.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects concurrent single-key lookups and answers them with one batch call.
+ *
+ * The first key that arrives opens a window of {@code windowMillis}; every key requested
+ * while the window is open joins the same batch. A batch is dispatched when the window
+ * closes or as soon as it holds {@code maxBatchSize} distinct keys. Concurrent requests
+ * for the same key share one future.
+ *
+ * @param <K> lookup key
+ * @param <V> looked-up value; keys missing from the batch result complete with {@code null}
+ */
+@Slf4j
+public class BatchingLoader<K, V> implements AutoCloseable {
+
+    private final String name;
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final int maxBatchSize;
+    private final long windowMillis;
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService dispatcher;
+
+    private Map<K, CompletableFuture<V>> pending = new HashMap<>();
+    private boolean flushScheduled;
+
+    public BatchingLoader(String name, Function<Set<K>, Map<K, V>> batchFunction,
+                          int maxBatchSize, long windowMillis) {
+        this.name = name;
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemon(name + "-timer"));
+        this.dispatcher = Executors.newCachedThreadPool(daemon(name + "-dispatch"));
+    }
+
+    public CompletableFuture<V> load(K key) {
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+
+        synchronized (this) {
+            future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new HashMap<>();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                timer.schedule(this::flushWindow, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null) {
+            Map<K, CompletableFuture<V>> batch = full;
+            dispatcher.execute(() -> dispatch(batch));
+        }
+        return future;
+    }
+
+    private void flushWindow() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        dispatcher.execute(() -> dispatch(batch));
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        log.debug("{}: dispatching batch of {} keys", name, batch.size());
+        try {
+            Map<K, V> results = batchFunction.apply(batch.keySet());
+            batch.forEach((key, future) -> future.complete(results.get(key)));
+        } catch (RuntimeException e) {
+            log.warn("{}: batch of {} keys failed: {}", name, batch.size(), e.getMessage());
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    private static ThreadFactory daemon(String threadName) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package nl.ak.skillswap.messageservice.support;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Token-bucket limiter with a local tier in front of a Redis-backed Bucket4j bucket.
+ *
+ * The Redis bucket per key stays the global limit. Instead of one compare-and-swap per check,
+ * a node leases up to {@code leaseSize} tokens at a time and hands them out from a local
+ * counter, so most checks never leave the process. After a key is refused, further checks are
+ * refused locally until the bucket has refilled one token. {@link #reconcile()} returns the
+ * unused tokens of idle keys to Redis and forgets those keys.
+ *
+ * With a lease size of 0, or while Redis is unreachable, each key gets a purely local bucket
+ * with the same bandwidth: limits are then enforced per node instead of being switched off.
+ */
+@Slf4j
+public class HybridRateLimiter {
+
+    /**
+     * @param capacity     burst size
+     * @param refillTokens tokens added per {@code refillPeriod}
+     * @param leaseSize    tokens leased from Redis per remote call; 0 keeps the limit node-local
+     */
+    public record Limit(String name, long capacity, long refillTokens, Duration refillPeriod, int leaseSize) {
+    }
+
+    private final Limit limit;
+    private final ProxyManager<String> proxyManager;
+    private final BucketConfiguration configuration;
+    private final Supplier<BucketConfiguration> configurationSupplier;
+    private final long nanosPerToken;
+    private final long idleNanos;
+    private final long remoteRetryNanos;
+
+    private final Map<String, KeyState> states = new ConcurrentHashMap<>();
+    private volatile long remoteDownUntil;
+
+    private final Counter localAllowed;
+    private final Counter remoteCalls;
+    private final Counter remoteFailures;
+    private final Counter fallbackChecks;
+
+    /**
+     * @param proxyManager     Redis bucket access; {@code null} limits locally only
+     * @param idleTimeout      keys unused this long are released by {@link #reconcile()}
+     * @param remoteRetryDelay how long to stay local-only after Redis fails
+     */
+    public HybridRateLimiter(Limit limit, ProxyManager<String> proxyManager,
+                             Duration idleTimeout, Duration remoteRetryDelay, MeterRegistry meterRegistry) {
+        this.limit = limit;
+        this.proxyManager = proxyManager;
+        this.configuration = BucketConfiguration.builder().addLimit(bandwidth(limit)).build();
+        this.configurationSupplier = () -> configuration;
+        this.nanosPerToken = Math.max(1, limit.refillPeriod().toNanos() / limit.refillTokens());
+        this.idleNanos = idleTimeout.toNanos();
+        this.remoteRetryNanos = remoteRetryDelay.toNanos();
+
+        this.localAllowed = checks(meterRegistry, "local");
+        this.remoteCalls = checks(meterRegistry, "remote");
+        this.fallbackChecks = checks(meterRegistry, "fallback");
+        this.remoteFailures = Counter.builder("ratelimit.remote.failures")
+                .description("Redis calls of the rate limiter that failed")
+                .tag("limit", limit.name())
+                .register(meterRegistry);
+    }
+
+    private Counter checks(MeterRegistry registry, String source) {
+        return Counter.builder("ratelimit.checks")
+                .description("Rate limit checks by where they were decided; local ones are Redis calls avoided")
+                .tag("limit", limit.name())
+                .tag("source", source)
+                .register(registry);
+    }
+
+    /**
+     * Take one token for the key.
+     *
+     * @return whether the caller is within the limit
+     */
+    public boolean tryAcquire(String key) {
+        KeyState state = states.computeIfAbsent(key, k -> new KeyState());
+        long now = System.nanoTime();
+        state.lastUsed = now;
+
+        if (!useRemote(now)) {
+            fallbackChecks.increment();
+            return state.fallback().tryConsume(1);
+        }
+
+        if (state.leased.tryTake()) {
+            localAllowed.increment();
+            return true;
+        }
+        if (now < state.refusedUntil) {
+            localAllowed.increment();
+            return false;
+        }
+
+        synchronized (state) {
+            // Another thread may have leased while this one waited
+            if (state.leased.tryTake()) {
+                localAllowed.increment();
+                return true;
+            }
+            return lease(key, state);
+        }
+    }
+
+    private boolean lease(String key, KeyState state) {
+        long granted;
+        try {
+            remoteCalls.increment();
+            granted = remote(key).tryConsumeAsMuchAsPossible(limit.leaseSize());
+        } catch (RuntimeException e) {
+            remoteFailures.increment();
+            remoteDownUntil = System.nanoTime() + remoteRetryNanos;
+            log.warn("Rate limiter '{}' cannot reach Redis, limiting locally for {} ms: {}",
+                    limit.name(), remoteRetryNanos / 1_000_000, e.getMessage());
+            fallbackChecks.increment();
+            return state.fallback().tryConsume(1);
+        }
+
+        if (granted == 0) {
+            state.refusedUntil = System.nanoTime() + nanosPerToken;
+            return false;
+        }
+        state.leased.add(granted - 1);
+        return true;
+    }
+
+    /**
+     * Return the leased tokens of keys idle for longer than the idle timeout and drop their state.
+     *
+     * @return the number of keys released
+     */
+    public int reconcile() {
+        long cutoff = System.nanoTime() - idleNanos;
+        int released = 0;
+        for (Map.Entry<String, KeyState> entry : states.entrySet()) {
+            KeyState state = entry.getValue();
+            if (state.lastUsed - cutoff > 0) continue;
+            if (!states.remove(entry.getKey(), state)) continue;
+            released++;
+            giveBack(entry.getKey(), state.leased.drain());
+        }
+        return released;
+    }
+
+    /**
+     * Return every leased token to Redis, e.g. on shutdown.
+     */
+    public void releaseAll() {
+        for (Map.Entry<String, KeyState> entry : states.entrySet()) {
+            giveBack(entry.getKey(), entry.getValue().leased.drain());
+        }
+        states.clear();
+    }
+
+    private void giveBack(String key, long tokens) {
+        if (tokens <= 0 || !useRemote(System.nanoTime())) return;
+        try {
+            remoteCalls.increment();
+            remote(key).addTokens(tokens);
+        } catch (RuntimeException e) {
+            remoteFailures.increment();
+            log.debug("Rate limiter '{}' could not return {} tokens for {}: {}",
+                    limit.name(), tokens, key, e.getMessage());
+        }
+    }
+
+    private boolean useRemote(long now) {
+        return proxyManager != null && limit.leaseSize() > 0 && now - remoteDownUntil >= 0;
+    }
+
+    private Bucket remote(String key) {
+        return proxyManager.builder().build(key, configurationSupplier);
+    }
+
+    int trackedKeys() {
+        return states.size();
+    }
+
+    private static Bandwidth bandwidth(Limit limit) {
+        return Bandwidth.builder()
+                .capacity(limit.capacity())
+                .refillGreedy(limit.refillTokens(), limit.refillPeriod())
+                .build();
+    }
+
+    private final class KeyState {
+        final LeasedTokens leased = new LeasedTokens();
+        volatile long lastUsed;
+        volatile long refusedUntil = System.nanoTime();
+        private volatile Bucket fallback;
+
+        Bucket fallback() {
+            Bucket bucket = fallback;
+            if (bucket == null) {
+                synchronized (this) {
+                    if (fallback == null) {
+                        fallback = Bucket.builder().addLimit(bandwidth(limit)).build();
+                    }
+                    bucket = fallback;
+                }
+            }
+            return bucket;
+        }
+    }
+
+    /**
+     * Tokens leased from Redis that this node has not handed out yet.
+     */
+    private static final class LeasedTokens {
+        private final AtomicLong tokens = new AtomicLong();
+
+        boolean tryTake() {
+            long current;
+            do {
+                current = tokens.get();
+                if (current <= 0) return false;
+            } while (!tokens.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        void add(long count) {
+            if (count > 0) tokens.addAndGet(count);
+        }
+
+        long drain() {
+            return tokens.getAndSet(0);
+        }
+    }
+}
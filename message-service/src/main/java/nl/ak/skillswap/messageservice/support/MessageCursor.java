@@ -0,0 +1,70 @@
+package nl.ak.skillswap.messageservice.support;
+
+import nl.ak.skillswap.messageservice.domain.Message;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of a message within a conversation: {@code (createdAt, id)}.
+ *
+ * Two messages can share a timestamp, so the id breaks ties and every position is unique.
+ * On the wire a cursor is an opaque base64url token of the microsecond timestamp (the precision
+ * Postgres stores) followed by the id. Plain ISO-8601 timestamps from older clients are still
+ * accepted and mean "strictly before/after this instant".
+ */
+public record MessageCursor(Instant createdAt, UUID id) {
+
+    /** Lowest possible id: a timestamp-only cursor excludes every row with that exact timestamp. */
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+    private static final UUID MAX_ID = new UUID(-1L, -1L);
+    private static final int TOKEN_BYTES = Long.BYTES * 3;
+
+    public enum Direction { BEFORE, AFTER }
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getCreatedAt().truncatedTo(ChronoUnit.MICROS), message.getId());
+    }
+
+    public String encode() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt);
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_BYTES)
+                .putLong(micros)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @param token     an encoded cursor or a legacy ISO-8601 instant
+     * @param direction the direction the token is used for; decides how a legacy instant is bounded
+     * @return the cursor, or {@code null} for a blank token
+     * @throws BadRequestException if the token cannot be decoded
+     */
+    public static MessageCursor decode(String token, Direction direction) {
+        if (token == null || token.isBlank()) return null;
+
+        try {
+            Instant legacy = Instant.parse(token);
+            return new MessageCursor(legacy, direction == Direction.BEFORE ? MIN_ID : MAX_ID);
+        } catch (DateTimeParseException ignored) {
+            // Not a timestamp, so it must be a cursor token
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (bytes.length != TOKEN_BYTES) throw new BadRequestException("Invalid cursor");
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Instant createdAt = Instant.EPOCH.plus(buffer.getLong(), ChronoUnit.MICROS);
+        return new MessageCursor(createdAt, new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
@@ -0,0 +1,30 @@
+package nl.ak.skillswap.messageservice.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Identifies this message-service instance among its peers.
+ * Uses {@code app.node-id} when set, otherwise a random ID that is unique per process start.
+ */
+@Slf4j
+@Component
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity(@Value("${app.node-id:}") String configuredNodeId) {
+        this.nodeId = StringUtils.hasText(configuredNodeId)
+                ? configuredNodeId
+                : UUID.randomUUID().toString();
+        log.info("Message-service node id: {}", nodeId);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+}
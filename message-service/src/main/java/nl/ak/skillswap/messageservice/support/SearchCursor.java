@@ -0,0 +1,50 @@
+package nl.ak.skillswap.messageservice.support;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of a search hit in ranked order: {@code (rank, createdAt, id)}, best match first.
+ *
+ * The rank is the exact {@code real} Postgres computed, so the next page continues right after
+ * the last hit even among equal ranks. On the wire it is an opaque base64url token, like
+ * {@link MessageCursor}.
+ */
+public record SearchCursor(float rank, Instant createdAt, UUID id) {
+
+    private static final int TOKEN_BYTES = Float.BYTES + Long.BYTES * 3;
+
+    public String encode() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt);
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_BYTES)
+                .putFloat(rank)
+                .putLong(micros)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @return the cursor, or {@code null} for a blank token
+     * @throws BadRequestException if the token cannot be decoded
+     */
+    public static SearchCursor decode(String token) {
+        if (token == null || token.isBlank()) return null;
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (bytes.length != TOKEN_BYTES) throw new BadRequestException("Invalid cursor");
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        float rank = buffer.getFloat();
+        Instant createdAt = Instant.EPOCH.plus(buffer.getLong(), ChronoUnit.MICROS);
+        return new SearchCursor(rank, createdAt, new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
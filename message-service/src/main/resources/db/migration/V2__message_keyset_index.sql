@@ -0,0 +1,8 @@
+-- Keyset pagination over (created_at, id): the id makes every position unique, so pages neither
+-- skip nor repeat messages that share a timestamp. The index serves both scan directions.
+
+CREATE INDEX idx_messages_conversation_created_id
+    ON messages(conversation_id, created_at DESC, id DESC);
+
+-- Superseded by the index above (same leading columns)
+DROP INDEX idx_messages_conversation_created;
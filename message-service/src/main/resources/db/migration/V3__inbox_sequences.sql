@@ -0,0 +1,48 @@
+-- Per-user inbox sequence: every change visible to a user (a message they sent or received, a
+-- conversation being read) gets the next number of that user's sequence. A reconnecting client
+-- asks for everything after the last number it saw instead of re-listing all conversations.
+
+CREATE TABLE user_sequences (
+                                user_id  UUID PRIMARY KEY,
+                                last_seq BIGINT NOT NULL
+);
+
+ALTER TABLE messages
+    ADD COLUMN sender_seq    BIGINT,
+    ADD COLUMN recipient_seq BIGINT;
+
+CREATE TABLE read_events (
+                             user_id         UUID        NOT NULL,
+                             seq             BIGINT      NOT NULL,
+                             conversation_id UUID        NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+                             reader_id       UUID        NOT NULL,
+                             read_at         TIMESTAMPTZ NOT NULL,
+
+                             PRIMARY KEY (user_id, seq)
+);
+
+-- Number existing messages per user in (created_at, id) order
+CREATE TEMPORARY TABLE message_seq_backfill ON COMMIT DROP AS
+SELECT user_id,
+       id,
+       role,
+       row_number() OVER (PARTITION BY user_id ORDER BY created_at, id, role) AS seq
+  FROM (SELECT sender_id AS user_id, id, created_at, 'S' AS role FROM messages WHERE sender_id IS NOT NULL
+        UNION ALL
+        SELECT recipient_id, id, created_at, 'R' FROM messages) participants;
+
+UPDATE messages m
+   SET sender_seq = b.seq
+  FROM message_seq_backfill b
+ WHERE b.id = m.id AND b.role = 'S';
+
+UPDATE messages m
+   SET recipient_seq = b.seq
+  FROM message_seq_backfill b
+ WHERE b.id = m.id AND b.role = 'R';
+
+INSERT INTO user_sequences (user_id, last_seq)
+SELECT user_id, max(seq) FROM message_seq_backfill GROUP BY user_id;
+
+CREATE INDEX idx_messages_sender_seq    ON messages(sender_id, sender_seq);
+CREATE INDEX idx_messages_recipient_seq ON messages(recipient_id, recipient_seq);
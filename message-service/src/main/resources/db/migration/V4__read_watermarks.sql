@@ -0,0 +1,26 @@
+-- Read state per participant as a watermark: every message to the user up to and including
+-- (last_read_created_at, last_read_message_id) in (created_at, id) order has been read, at
+-- last_read_at. Marking a conversation read moves the watermark instead of updating every unread
+-- message row.
+
+CREATE TABLE conversation_participants (
+                                           conversation_id      UUID        NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+                                           user_id              UUID        NOT NULL,
+                                           last_read_at         TIMESTAMPTZ NOT NULL,
+                                           last_read_message_id UUID        NOT NULL,
+                                           last_read_created_at TIMESTAMPTZ NOT NULL,
+
+                                           PRIMARY KEY (conversation_id, user_id)
+);
+
+-- Start each watermark at the newest message the recipient has read so far.
+-- messages.read_at keeps the times of reads from before this migration.
+INSERT INTO conversation_participants (conversation_id, user_id, last_read_at, last_read_message_id, last_read_created_at)
+SELECT DISTINCT ON (conversation_id, recipient_id)
+       conversation_id, recipient_id, read_at, id, created_at
+  FROM messages
+ WHERE read_at IS NOT NULL
+ ORDER BY conversation_id, recipient_id, created_at DESC, id DESC;
+
+-- read_at is no longer written, so every new row would stay in this partial index
+DROP INDEX idx_messages_recipient_unread;
@@ -0,0 +1,11 @@
+-- Transactional outbox for real-time deliveries: a row is written in the same transaction as its
+-- message and deleted by the relay once the broker has confirmed the delivery. Rows point at the
+-- message by (id, created_at) rather than copying it; a row whose message has since been deleted
+-- is simply dropped.
+
+CREATE TABLE message_outbox (
+                                id                 BIGSERIAL PRIMARY KEY,
+                                message_id         UUID        NOT NULL,
+                                message_created_at TIMESTAMPTZ NOT NULL,
+                                queued_at          TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,77 @@
+-- Messages are range-partitioned by month on created_at (UTC). Queries that bound created_at
+-- only visit the months they need, every partition keeps its own small indexes, and retention
+-- detaches and drops whole partitions instead of deleting rows.
+-- A primary key on a partitioned table must contain the partition key, so it becomes (id, created_at).
+
+-- Creates the monthly partitions for `months` months starting with the month of first_month,
+-- skipping those that exist. Called again by MessagePartitionMaintainer to stay ahead of time.
+CREATE FUNCTION create_message_partitions(first_month DATE, months INT) RETURNS INT
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    created        INT := 0;
+    month_start    DATE;
+    partition_name TEXT;
+BEGIN
+    FOR i IN 0 .. months - 1
+        LOOP
+            month_start := (make_date(extract(YEAR FROM first_month)::INT, extract(MONTH FROM first_month)::INT, 1)
+                + make_interval(months => i))::DATE;
+            partition_name := format('messages_p%s', to_char(month_start, 'YYYYMM'));
+            IF to_regclass(partition_name) IS NULL THEN
+                EXECUTE format('CREATE TABLE %I PARTITION OF messages FOR VALUES FROM (%L) TO (%L)',
+                               partition_name,
+                               month_start::TIMESTAMP AT TIME ZONE 'UTC',
+                               (month_start + INTERVAL '1 month')::TIMESTAMP AT TIME ZONE 'UTC');
+                created := created + 1;
+            END IF;
+        END LOOP;
+    RETURN created;
+END;
+$$;
+
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER INDEX messages_pkey RENAME TO messages_unpartitioned_pkey;
+ALTER INDEX idx_messages_conversation_created_id RENAME TO idx_messages_unpartitioned_conversation_created_id;
+ALTER INDEX idx_messages_sender_seq RENAME TO idx_messages_unpartitioned_sender_seq;
+ALTER INDEX idx_messages_recipient_seq RENAME TO idx_messages_unpartitioned_recipient_seq;
+
+CREATE TABLE messages (
+                          id              UUID          NOT NULL,
+                          conversation_id UUID          NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+                          sender_id       UUID          NOT NULL,
+                          recipient_id    UUID          NOT NULL,
+                          body            VARCHAR(2000) NOT NULL,
+                          created_at      TIMESTAMPTZ   NOT NULL DEFAULT now(),
+                          read_at         TIMESTAMPTZ,
+                          sender_seq      BIGINT,
+                          recipient_seq   BIGINT,
+
+                          PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Every month that has messages, and at least the past year, up to three months ahead
+DO
+$$
+    DECLARE
+        first_month DATE := date_trunc('month',
+                                       least(coalesce((SELECT min(created_at) FROM messages_unpartitioned), now()),
+                                             now() - INTERVAL '12 months') AT TIME ZONE 'UTC')::DATE;
+        this_month  DATE := date_trunc('month', now() AT TIME ZONE 'UTC')::DATE;
+    BEGIN
+        PERFORM create_message_partitions(first_month,
+                                          ((extract(YEAR FROM this_month) - extract(YEAR FROM first_month)) * 12
+                                              + extract(MONTH FROM this_month) - extract(MONTH FROM first_month))::INT + 4);
+    END
+$$;
+
+INSERT INTO messages (id, conversation_id, sender_id, recipient_id, body, created_at, read_at, sender_seq, recipient_seq)
+SELECT id, conversation_id, sender_id, recipient_id, body, created_at, read_at, sender_seq, recipient_seq
+  FROM messages_unpartitioned;
+
+DROP TABLE messages_unpartitioned;
+
+-- Created on the parent after loading, so each partition builds its index in one pass
+CREATE INDEX idx_messages_conversation_created_id ON messages(conversation_id, created_at DESC, id DESC);
+CREATE INDEX idx_messages_sender_seq ON messages(sender_id, sender_seq);
+CREATE INDEX idx_messages_recipient_seq ON messages(recipient_id, recipient_seq);
@@ -0,0 +1,20 @@
+-- Full-text search over message bodies. Bodies are stored HTML-encoded by MessageSanitizer, so the
+-- search vector is built from the decoded text: "Tom &amp; Jerry" is indexed as "tom", "jerry".
+-- The 'simple' configuration lowercases without stemming, since conversations are in many languages.
+
+-- Reverses the five entities MessageSanitizer produces; &amp; last, so "&amp;lt;" decodes to "&lt;"
+CREATE FUNCTION message_body_text(body TEXT) RETURNS TEXT
+    LANGUAGE sql
+    IMMUTABLE
+    PARALLEL SAFE
+RETURN replace(replace(replace(replace(replace(body,
+    '&lt;', '<'), '&gt;', '>'), '&#34;', '"'), '&#39;', ''''), '&amp;', '&');
+
+ALTER TABLE messages
+    ADD COLUMN body_tsv TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', message_body_text(body))) STORED;
+
+-- Search is always scoped to conversations, so the conversation id is part of the index: matches
+-- outside the caller's conversations are discarded in the index instead of being fetched and filtered
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX idx_messages_conversation_body_tsv ON messages USING gin (conversation_id, body_tsv);
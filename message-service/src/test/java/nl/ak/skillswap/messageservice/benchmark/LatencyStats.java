@@ -0,0 +1,38 @@
+package nl.ak.skillswap.messageservice.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latency samples of one benchmark run, summarised as percentiles.
+ */
+final class LatencyStats {
+
+    private final long[] sortedNanos;
+
+    private LatencyStats(long[] sortedNanos) {
+        this.sortedNanos = sortedNanos;
+    }
+
+    static LatencyStats of(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return new LatencyStats(sorted);
+    }
+
+    /**
+     * Nearest-rank percentile, {@code p} between 0 and 1.
+     */
+    double percentileMillis(double p) {
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * p50, p95 and p99 for a log line.
+     */
+    String summary() {
+        return String.format(Locale.ROOT, "p50 %.2f ms, p95 %.2f ms, p99 %.2f ms",
+                percentileMillis(0.50), percentileMillis(0.95), percentileMillis(0.99));
+    }
+}
@@ -0,0 +1,173 @@
+package nl.ak.skillswap.messageservice.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.integration.BaseIntegrationTest;
+import nl.ak.skillswap.messageservice.integration.TestSecurityConfig;
+import nl.ak.skillswap.messageservice.service.MessagePartitionMaintainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares conversation page reads and retention on the monthly-partitioned {@code messages} table
+ * with the same rows in a single unpartitioned table indexed as before partitioning.
+ *
+ * The dataset spreads {@code benchmark.partitioning.rows} messages (default two million) over
+ * two years of conversations. Not part of the regular test run: {@code ./gradlew :message-service:benchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@DisplayName("Message partitioning benchmark")
+@Import(TestSecurityConfig.class)
+class MessagePartitioningBenchmarkTest extends BaseIntegrationTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.partitioning.rows", 2_000_000);
+    private static final int CONVERSATIONS = 5_000;
+    private static final int MONTHS = 24;
+    private static final int PAGE_SIZE = 50;
+    private static final int WARMUP_QUERIES = 500;
+    private static final int QUERIES = 5_000;
+
+    private static final String CREATE_CONVERSATIONS = """
+            INSERT INTO conversations (id, user_low_id, user_high_id, created_at)
+            SELECT md5('conversation' || i)::uuid, md5('low' || i)::uuid, md5('high' || i)::uuid,
+                   now() - make_interval(months => ?)
+              FROM generate_series(0, ? - 1) i
+            """;
+
+    private static final String CREATE_MESSAGES = """
+            INSERT INTO messages (id, conversation_id, sender_id, recipient_id, body, created_at)
+            SELECT md5('message' || g)::uuid, md5('conversation' || g % ?)::uuid,
+                   md5('low' || g % ?)::uuid, md5('high' || g % ?)::uuid,
+                   'synthetic message ' || g,
+                   now() - random() * make_interval(days => ? * 30)
+              FROM generate_series(1, ?) g
+            """;
+
+    // The table as it was before partitioning: one heap, one index per access path
+    private static final String CREATE_UNPARTITIONED = """
+            CREATE TABLE messages_unpartitioned AS SELECT * FROM messages;
+            ALTER TABLE messages_unpartitioned ADD PRIMARY KEY (id);
+            CREATE INDEX idx_messages_unpartitioned_conversation_created_id
+                ON messages_unpartitioned(conversation_id, created_at DESC, id DESC);
+            ANALYZE messages_unpartitioned;
+            ANALYZE messages;
+            """;
+
+    private static final String FIRST_PAGE = """
+            SELECT id, sender_id, recipient_id, body, created_at FROM %s
+             WHERE conversation_id = ?
+             ORDER BY created_at DESC, id DESC
+             LIMIT ?
+            """;
+
+    private static final String CURSOR_PAGE = """
+            SELECT id, sender_id, recipient_id, body, created_at FROM %s
+             WHERE conversation_id = ?
+               AND created_at <= ?
+               AND (created_at, id) < (?, ?)
+             ORDER BY created_at DESC, id DESC
+             LIMIT ?
+            """;
+
+    private static final UUID MAX_ID = new UUID(-1L, -1L);
+
+    private List<UUID> conversationIds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessagePartitionMaintainer partitionMaintainer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE conversations CASCADE");
+        jdbcTemplate.queryForObject("SELECT create_message_partitions(?, ?)", Integer.class,
+                YearMonth.now(ZoneOffset.UTC).minusMonths(MONTHS + 1).atDay(1), MONTHS + 2);
+
+        jdbcTemplate.update(CREATE_CONVERSATIONS, MONTHS, CONVERSATIONS);
+        long begin = System.nanoTime();
+        jdbcTemplate.update(CREATE_MESSAGES, CONVERSATIONS, CONVERSATIONS, CONVERSATIONS, MONTHS, ROWS);
+        jdbcTemplate.execute(CREATE_UNPARTITIONED);
+        conversationIds = jdbcTemplate.queryForList("SELECT id FROM conversations", UUID.class);
+        log.info("Loaded {} messages in {} conversations ({} s)",
+                ROWS, CONVERSATIONS, (System.nanoTime() - begin) / 1_000_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS messages_unpartitioned");
+        jdbcTemplate.execute("TRUNCATE conversations CASCADE");
+        ReflectionTestUtils.setField(partitionMaintainer, "retentionMonths", 0);
+    }
+
+    @Test
+    @DisplayName("page reads and retention, unpartitioned vs partitioned")
+    void comparePartitioning() {
+        Instant cursor = Instant.now().minus(180, ChronoUnit.DAYS);
+
+        for (String table : new String[]{"messages_unpartitioned", "messages"}) {
+            String label = table.equals("messages") ? "partitioned" : "unpartitioned";
+            run(FIRST_PAGE.formatted(table), null, WARMUP_QUERIES);
+            log.info("first page, {}: {}", label, run(FIRST_PAGE.formatted(table), null, QUERIES).summary());
+            run(CURSOR_PAGE.formatted(table), cursor, WARMUP_QUERIES);
+            log.info("6 months back, {}: {}", label, run(CURSOR_PAGE.formatted(table), cursor, QUERIES).summary());
+        }
+
+        // Retention: everything before the last twelve months
+        Timestamp cutoff = Timestamp.from(YearMonth.now(ZoneOffset.UTC).minusMonths(12)
+                .atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        long expired = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM messages WHERE created_at < ?", Long.class, cutoff);
+
+        long begin = System.nanoTime();
+        int deleted = jdbcTemplate.update("DELETE FROM messages_unpartitioned WHERE created_at < ?", cutoff);
+        long deleteMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        ReflectionTestUtils.setField(partitionMaintainer, "retentionMonths", 12);
+        begin = System.nanoTime();
+        int droppedMonths = partitionMaintainer.dropExpiredPartitions(YearMonth.now(ZoneOffset.UTC)).size();
+        long dropMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        log.info("Retention of {} messages: DELETE {} ms, detach and drop {} partitions {} ms",
+                expired, deleteMillis, droppedMonths, dropMillis);
+
+        assertThat((long) deleted).isEqualTo(expired);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM messages", Long.class))
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT count(*) FROM messages_unpartitioned", Long.class));
+    }
+
+    private LatencyStats run(String sql, Instant cursor, int queries) {
+        long[] latencies = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            UUID conversationId = conversationIds.get(ThreadLocalRandom.current().nextInt(conversationIds.size()));
+            long begin = System.nanoTime();
+            if (cursor == null) {
+                jdbcTemplate.queryForList(sql, conversationId, PAGE_SIZE);
+            } else {
+                Timestamp createdAt = Timestamp.from(cursor);
+                jdbcTemplate.queryForList(sql, conversationId, createdAt, createdAt, MAX_ID, PAGE_SIZE);
+            }
+            latencies[i] = System.nanoTime() - begin;
+        }
+        return LatencyStats.of(latencies);
+    }
+}
@@ -0,0 +1,140 @@
+package nl.ak.skillswap.messageservice.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.integration.BaseIntegrationTest;
+import nl.ak.skillswap.messageservice.integration.TestSecurityConfig;
+import nl.ak.skillswap.messageservice.service.MessageSearchService;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Search latency for a heavy user: {@code benchmark.search.user-messages} messages (default 100k)
+ * in the user's conversations among {@code benchmark.search.other-messages} (default one million)
+ * of other users. Bodies are eight words from a skewed 5,000-word vocabulary, so low word numbers
+ * are common and high ones rare. Fails when any search's p95 exceeds
+ * {@code benchmark.search.p95-target-ms} (default 50 ms).
+ * Not part of the regular test run: {@code ./gradlew :message-service:benchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@DisplayName("Message search benchmark")
+@Import(TestSecurityConfig.class)
+class MessageSearchBenchmarkTest extends BaseIntegrationTest {
+
+    private static final int USER_MESSAGES = Integer.getInteger("benchmark.search.user-messages", 100_000);
+    private static final int OTHER_MESSAGES = Integer.getInteger("benchmark.search.other-messages", 1_000_000);
+    private static final int USER_CONVERSATIONS = 200;
+    private static final int OTHER_CONVERSATIONS = 20_000;
+    private static final int MONTHS = 12;
+    private static final int WARMUP_QUERIES = 200;
+    private static final int QUERIES = 2_000;
+    private static final int P95_TARGET_MS = Integer.getInteger("benchmark.search.p95-target-ms", 50);
+
+    private static final UUID USER = TestSecurityConfig.TEST_USER_DATABASE_ID;
+
+    // The user's conversations first, then conversations between other users
+    private static final String CREATE_CONVERSATIONS = """
+            INSERT INTO conversations (id, user_low_id, user_high_id, created_at)
+            SELECT md5('conversation' || i)::uuid,
+                   CASE WHEN i < ? THEN ? ELSE md5('low' || i)::uuid END,
+                   md5('high' || i)::uuid,
+                   now() - make_interval(months => ?)
+              FROM generate_series(0, ? - 1) i
+            """;
+
+    // Words are floor(random()^3 * 5000): w0 is in about a third of the messages, any one word above
+    // w3000 in under a tenth of a percent. The body subquery references g so it runs for every row.
+    private static final String CREATE_MESSAGES = """
+            INSERT INTO messages (id, conversation_id, sender_id, recipient_id, body, created_at)
+            SELECT md5('message' || g)::uuid, c.id, c.user_low_id, c.user_high_id,
+                   (SELECT string_agg('w' || floor(power(random(), 3) * 5000)::int, ' ')
+                      FROM generate_series(1, 8) w WHERE g > 0),
+                   now() - random() * make_interval(days => ? * 30)
+              FROM generate_series(1, ?) g
+              JOIN conversations c ON c.id = md5('conversation' || (? + g % ?))::uuid
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessageSearchService searchService;
+
+    private List<UUID> userConversations;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE conversations CASCADE");
+        jdbcTemplate.queryForObject("SELECT create_message_partitions(date_trunc('month', now() - make_interval(months => ?))::date, ?)",
+                Integer.class, MONTHS + 1, MONTHS + 2);
+
+        long begin = System.nanoTime();
+        jdbcTemplate.update(CREATE_CONVERSATIONS, USER_CONVERSATIONS, USER, MONTHS, USER_CONVERSATIONS + OTHER_CONVERSATIONS);
+        jdbcTemplate.update(CREATE_MESSAGES, MONTHS, USER_MESSAGES, 0, USER_CONVERSATIONS);
+        jdbcTemplate.update(CREATE_MESSAGES, MONTHS, OTHER_MESSAGES, USER_CONVERSATIONS, OTHER_CONVERSATIONS);
+        jdbcTemplate.execute("ANALYZE messages; ANALYZE conversations");
+        userConversations = jdbcTemplate.queryForList(
+                "SELECT id FROM conversations WHERE user_low_id = ?", UUID.class, USER);
+        log.info("Loaded {} + {} messages ({} s)",
+                USER_MESSAGES, OTHER_MESSAGES, (System.nanoTime() - begin) / 1_000_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE conversations CASCADE");
+    }
+
+    @Test
+    @DisplayName("first-page search latency for a user with 100k messages")
+    void searchLatency() {
+        assertThat(userConversations).hasSize(USER_CONVERSATIONS);
+
+        SoftAssertions softly = new SoftAssertions();
+        run(softly, "common word, all conversations", i -> "w" + i % 20, null);
+        run(softly, "rare word, all conversations", i -> "w" + (3000 + i % 2000), null);
+        run(softly, "two words, all conversations", i -> "w" + i % 50 + " w" + (100 + i % 400), null);
+        run(softly, "phrase, all conversations", i -> "\"w0 w" + i % 10 + "\"", null);
+        run(softly, "common word, one conversation", i -> "w" + i % 20, userConversations);
+        softly.assertAll();
+    }
+
+    private void run(SoftAssertions softly, String label, IntFunction<String> query, List<UUID> conversations) {
+        for (int i = 0; i < WARMUP_QUERIES; i++) search(query.apply(i), conversations);
+
+        long[] latencies = new long[QUERIES];
+        long hits = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            long begin = System.nanoTime();
+            hits += search(query.apply(i), conversations);
+            latencies[i] = System.nanoTime() - begin;
+        }
+        LatencyStats stats = LatencyStats.of(latencies);
+        log.info("{}: {}, {} hits per search", label, stats.summary(), (double) hits / QUERIES);
+
+        double p95 = stats.percentileMillis(0.95);
+        if (p95 > P95_TARGET_MS) {
+            log.warn("{}: p95 {} ms is over the {} ms target", label, p95, P95_TARGET_MS);
+        }
+        softly.assertThat(p95).as("p95 ms of %s", label).isLessThanOrEqualTo(P95_TARGET_MS);
+    }
+
+    private int search(String query, List<UUID> conversations) {
+        UUID conversationId = conversations == null ? null
+                : conversations.get(ThreadLocalRandom.current().nextInt(conversations.size()));
+        return searchService.search(USER, query, conversationId, null, 20).hits().size();
+    }
+}
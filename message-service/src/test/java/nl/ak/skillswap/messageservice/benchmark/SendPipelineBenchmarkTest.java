@@ -0,0 +1,139 @@
+package nl.ak.skillswap.messageservice.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.messageservice.integration.BaseIntegrationTest;
+import nl.ak.skillswap.messageservice.integration.TestSecurityConfig;
+import nl.ak.skillswap.messageservice.repository.ConversationRepository;
+import nl.ak.skillswap.messageservice.repository.MessageRepository;
+import nl.ak.skillswap.messageservice.service.ConversationService;
+import nl.ak.skillswap.messageservice.service.MessageSendPipeline;
+import nl.ak.skillswap.messageservice.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the per-message send path with the group-commit pipeline under concurrent load.
+ * Not part of the regular test run: {@code ./gradlew :message-service:benchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@DisplayName("Send pipeline benchmark")
+@Import(TestSecurityConfig.class)
+@TestPropertySource(properties = {
+        "app.messages.group-commit.enabled=true",
+        "app.messages.group-commit.max-batch-size=64",
+        "app.messages.group-commit.max-delay-ms=5"
+})
+class SendPipelineBenchmarkTest extends BaseIntegrationTest {
+
+    private static final int SENDER_THREADS = 32;
+    private static final int MESSAGES_PER_THREAD = 200;
+    private static final int WARMUP_MESSAGES_PER_THREAD = 20;
+    private static final int CONVERSATIONS = 64;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageSendPipeline sendPipeline;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    private final List<UUID[]> userPairs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        messageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        userPairs.clear();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            UUID[] pair = {UUID.randomUUID(), UUID.randomUUID()};
+            // Created up front so concurrent first sends do not race on the unique pair constraint
+            conversationService.getOrCreate(pair[0], pair[1]);
+            userPairs.add(pair);
+        }
+    }
+
+    @Test
+    @DisplayName("group commit vs per-message transactions")
+    void compareSendPaths() throws Exception {
+        ReflectionTestUtils.setField(sendPipeline, "enabled", false);
+        run(WARMUP_MESSAGES_PER_THREAD);
+        Result perMessage = run(MESSAGES_PER_THREAD);
+
+        ReflectionTestUtils.setField(sendPipeline, "enabled", true);
+        run(WARMUP_MESSAGES_PER_THREAD);
+        Result groupCommit = run(MESSAGES_PER_THREAD);
+
+        perMessage.log("per-message");
+        groupCommit.log("group-commit");
+
+        long expected = 2L * (WARMUP_MESSAGES_PER_THREAD + MESSAGES_PER_THREAD) * SENDER_THREADS;
+        assertThat(messageRepository.count()).isEqualTo(expected);
+    }
+
+    private Result run(int messagesPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(SENDER_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+
+        for (int t = 0; t < SENDER_THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                long[] latencies = new long[messagesPerThread];
+                start.await();
+                for (int i = 0; i < messagesPerThread; i++) {
+                    UUID[] pair = userPairs.get((thread + i) % CONVERSATIONS);
+                    long begin = System.nanoTime();
+                    messageService.sendMessage(pair[0], pair[1], "benchmark message " + i);
+                    latencies[i] = System.nanoTime() - begin;
+                }
+                return latencies;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        long[] all = new long[SENDER_THREADS * messagesPerThread];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+            offset += latencies.length;
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        return new Result(all.length / (elapsed / 1_000_000_000.0), LatencyStats.of(all));
+    }
+
+    private record Result(double throughput, LatencyStats latency) {
+
+        void log(String label) {
+            log.info("{}: {} msgs/s, {}", label, Math.round(throughput), latency.summary());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package nl.ak.skillswap.messageservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TwoTierCache")
+class TwoTierCacheTest {
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Cache remote;
+    private TwoTierCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        remote = spy(new ConcurrentMapCache("user-id-mapping", false));
+        cache = new TwoTierCache("user-id-mapping", remote,
+                new NearCacheSpec(100, Duration.ofMinutes(1)), invalidationBus, meterRegistry);
+    }
+
+    private double requests(String tier, String result) {
+        return meterRegistry.get("cache.tier.requests")
+                .tag("cache", "user-id-mapping")
+                .tag("tier", tier)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    @Nested
+    @DisplayName("get")
+    class Get {
+
+        @Test
+        @DisplayName("should serve repeated reads from L1 without touching Redis")
+        void shouldServeRepeatedReadsFromL1() {
+            cache.put("sub-1", "value");
+            clearInvocations(remote);
+
+            assertThat(cache.get("sub-1").get()).isEqualTo("value");
+            assertThat(cache.get("sub-1").get()).isEqualTo("value");
+
+            verify(remote, never()).get(any());
+            assertThat(requests("l1", "hit")).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should copy L2 hits into L1")
+        void shouldPromoteL2Hits() {
+            remote.put("sub-1", "value");
+
+            assertThat(cache.get("sub-1").get()).isEqualTo("value");
+            assertThat(cache.get("sub-1").get()).isEqualTo("value");
+
+            verify(remote, times(1)).get("sub-1");
+            assertThat(requests("l1", "miss")).isEqualTo(1);
+            assertThat(requests("l2", "hit")).isEqualTo(1);
+            assertThat(requests("l1", "hit")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should count misses in both tiers")
+        void shouldCountMissesInBothTiers() {
+            assertThat(cache.get("unknown")).isNull();
+
+            assertThat(requests("l1", "miss")).isEqualTo(1);
+            assertThat(requests("l2", "miss")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should load and store value on miss")
+        void shouldLoadOnMiss() {
+            String value = cache.get("sub-1", () -> "loaded");
+
+            assertThat(value).isEqualTo("loaded");
+            assertThat(remote.get("sub-1").get()).isEqualTo("loaded");
+            assertThat(cache.get("sub-1", () -> "other")).isEqualTo("loaded");
+        }
+
+        @Test
+        @DisplayName("should use the same key form as Redis")
+        void shouldNormalizeKeys() {
+            UUID userId = UUID.randomUUID();
+            cache.put(userId, true);
+
+            cache.evictLocal(userId.toString());
+
+            assertThat(cache.get(userId, Boolean.class)).isTrue();
+            assertThat(requests("l2", "hit")).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("invalidation")
+    class Invalidation {
+
+        @Test
+        @DisplayName("should evict from both tiers and broadcast")
+        void shouldEvictBothTiersAndBroadcast() {
+            cache.put("sub-1", "value");
+
+            cache.evict("sub-1");
+
+            assertThat(remote.get("sub-1")).isNull();
+            assertThat(cache.get("sub-1")).isNull();
+            verify(invalidationBus).publishEvict("user-id-mapping", "sub-1");
+        }
+
+        @Test
+        @DisplayName("should clear both tiers and broadcast")
+        void shouldClearBothTiersAndBroadcast() {
+            cache.put("sub-1", "value");
+
+            cache.clear();
+
+            assertThat(cache.get("sub-1")).isNull();
+            verify(invalidationBus).publishClear("user-id-mapping");
+        }
+
+        @Test
+        @DisplayName("should only drop L1 on remote eviction")
+        void shouldOnlyDropL1OnRemoteEviction() {
+            cache.put("sub-1", "value");
+
+            cache.evictLocal("sub-1");
+
+            assertThat(remote.get("sub-1").get()).isEqualTo("value");
+            assertThat(cache.get("sub-1").get()).isEqualTo("value");
+            assertThat(requests("l2", "hit")).isEqualTo(1);
+            verifyNoInteractions(invalidationBus);
+        }
+
+        @Test
+        @DisplayName("should not broadcast puts")
+        void shouldNotBroadcastPuts() {
+            cache.put("sub-1", "value");
+
+            verifyNoInteractions(invalidationBus);
+        }
+    }
+}
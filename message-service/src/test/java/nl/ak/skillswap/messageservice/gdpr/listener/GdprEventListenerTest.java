@@ -0,0 +1,114 @@
+package nl.ak.skillswap.messageservice.gdpr.listener;
+
+import nl.ak.skillswap.messageservice.gdpr.event.GdprExportChunk;
+import nl.ak.skillswap.messageservice.gdpr.event.GdprExportRequest;
+import nl.ak.skillswap.messageservice.gdpr.event.GdprExportResponse;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJobRunner;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprExportWriter;
+import nl.ak.skillswap.messageservice.gdpr.service.MessageGdprService;
+import nl.ak.skillswap.messageservice.service.UserIdResolverService;
+import nl.ak.skillswap.messageservice.service.UserLookupBatcher;
+import nl.ak.skillswap.messageservice.service.UserValidationService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GdprEventListener")
+class GdprEventListenerTest {
+
+    private static final String REPLY_QUEUE = "gdpr.export.reply.gateway.abc";
+
+    @Mock
+    private MessageGdprService gdprService;
+
+    @Mock
+    private GdprDeletionJobRunner deletionJobRunner;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private UserLookupBatcher userLookupBatcher;
+
+    @Mock
+    private UserIdResolverService userIdResolverService;
+
+    @Mock
+    private UserValidationService userValidationService;
+
+    @InjectMocks
+    private GdprEventListener listener;
+
+    private final UUID databaseUserId = UUID.randomUUID();
+
+    private GdprExportRequest request(String replyTo) {
+        return new GdprExportRequest(UUID.randomUUID(), UUID.randomUUID(), "kc-user", Instant.now(), replyTo);
+    }
+
+    // The export fits in one chunk
+    private void exportOneChunk() {
+        when(userLookupBatcher.resolveDatabaseId("kc-user")).thenReturn(Optional.of(databaseUserId));
+        when(gdprService.exportUserData(eq(databaseUserId), any())).thenAnswer(invocation -> {
+            invocation.<GdprExportWriter.ChunkSink>getArgument(1).accept(0, true, 1, "{\"type\":\"summary\"}\n");
+            return null;
+        });
+    }
+
+    @Test
+    @DisplayName("should stream export chunks to the reply queue of the gateway that asked")
+    void shouldReplyToRequestingGateway() {
+        exportOneChunk();
+
+        listener.handleExportRequest(request(REPLY_QUEUE));
+
+        ArgumentCaptor<MessagePostProcessor> postProcessor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(REPLY_QUEUE), any(GdprExportChunk.class), postProcessor.capture());
+        verify(rabbitTemplate, never()).convertAndSend(eq("skillswap.events"), anyString(), any(Object.class));
+
+        Message message = postProcessor.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertThat(message.getMessageProperties().getType()).isEqualTo("gdpr.export.chunk");
+    }
+
+    @Test
+    @DisplayName("should stream export chunks to the shared exchange when the request has no reply queue")
+    void shouldStreamOnSharedExchangeWithoutReplyQueue() {
+        exportOneChunk();
+
+        listener.handleExportRequest(request(null));
+
+        verify(rabbitTemplate).convertAndSend(eq("skillswap.events"), eq("gdpr.export.chunk"), any(GdprExportChunk.class));
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), any(), any(MessagePostProcessor.class));
+    }
+
+    @Test
+    @DisplayName("should send a failed export to the shared exchange when the request has no reply queue")
+    void shouldReplyWithErrorOnSharedExchange() {
+        when(userLookupBatcher.resolveDatabaseId("kc-user")).thenReturn(Optional.empty());
+
+        listener.handleExportRequest(request(null));
+
+        ArgumentCaptor<GdprExportResponse> response = ArgumentCaptor.forClass(GdprExportResponse.class);
+        verify(rabbitTemplate).convertAndSend(eq("skillswap.events"), eq("gdpr.export.response"), response.capture());
+        assertThat(response.getValue().success()).isFalse();
+        verifyNoInteractions(gdprService);
+    }
+}
@@ -0,0 +1,172 @@
+package nl.ak.skillswap.messageservice.gdpr.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest.DeletionType;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJob.Phase;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJob.Status;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GdprDeletionJobRunner")
+class GdprDeletionJobRunnerTest {
+
+    private static final String NODE = "node-1";
+    private static final int BATCH = 100;
+
+    @Mock
+    private GdprDeletionJobStore jobs;
+
+    @Mock
+    private MessageGdprService gdprService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private GdprDeletionJobRunner runner;
+
+    private final UUID correlationId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        runner = new GdprDeletionJobRunner(jobs, gdprService, transactionTemplate, new NodeIdentity(NODE),
+                new SimpleMeterRegistry(), BATCH, 0, 10000, 60000, 30000, 3);
+        // Run jobs on the test thread instead of starting the worker
+        ReflectionTestUtils.setField(runner, "running", true);
+
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(transactionStatus));
+        // Progress is recorded as the runner reports it
+        lenient().when(jobs.recordBatch(eq(correlationId), eq(NODE), any(), any(), anyInt(), anyLong()))
+                .thenAnswer(invocation -> Optional.of(job(invocation.getArgument(3), Status.RUNNING, 0)));
+    }
+
+    private GdprDeletionJob job(Phase phase, Status status, int attempts) {
+        return new GdprDeletionJob(correlationId, userId, DeletionType.FULL, phase, status, 0, 0, 0, attempts, null);
+    }
+
+    @Test
+    @DisplayName("should report no work when no job is open")
+    void shouldReportNoWork() {
+        when(jobs.claim(NODE, 60000)).thenReturn(Optional.empty());
+
+        assertThat(runner.runNextJob()).isFalse();
+
+        verifyNoInteractions(gdprService);
+    }
+
+    @Test
+    @DisplayName("should run full batches until one comes up short, then move to the next phase")
+    void shouldRunPhasesInBatches() {
+        when(jobs.claim(NODE, 60000)).thenReturn(Optional.of(job(Phase.ANONYMIZE_SENT, Status.PENDING, 0)));
+        when(gdprService.deleteBatch(userId, Phase.ANONYMIZE_SENT, BATCH)).thenReturn(BATCH, 30);
+        when(gdprService.deleteBatch(userId, Phase.DELETE_RECEIVED, BATCH)).thenReturn(0);
+        when(gdprService.deleteBatch(userId, Phase.DELETE_READ_STATE, BATCH)).thenReturn(0);
+        when(gdprService.deleteBatch(userId, Phase.DELETE_CONVERSATIONS, BATCH)).thenReturn(2);
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        InOrder order = inOrder(jobs);
+        order.verify(jobs).recordBatch(correlationId, NODE, Phase.ANONYMIZE_SENT, Phase.ANONYMIZE_SENT, BATCH, 60000);
+        order.verify(jobs).recordBatch(correlationId, NODE, Phase.ANONYMIZE_SENT, Phase.DELETE_RECEIVED, 30, 60000);
+        order.verify(jobs).recordBatch(correlationId, NODE, Phase.DELETE_RECEIVED, Phase.DELETE_READ_STATE, 0, 60000);
+        order.verify(jobs).recordBatch(correlationId, NODE, Phase.DELETE_READ_STATE, Phase.DELETE_CONVERSATIONS, 0, 60000);
+        order.verify(jobs).recordBatch(correlationId, NODE, Phase.DELETE_CONVERSATIONS, Phase.DONE, 2, 60000);
+        verify(jobs, never()).recordFailure(any(), anyString(), anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("should resume a job at its recorded phase")
+    void shouldResumeAtRecordedPhase() {
+        when(jobs.claim(NODE, 60000)).thenReturn(Optional.of(job(Phase.DELETE_CONVERSATIONS, Status.RUNNING, 1)));
+        when(gdprService.deleteBatch(userId, Phase.DELETE_CONVERSATIONS, BATCH)).thenReturn(1);
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        verify(gdprService, never()).deleteBatch(any(), eq(Phase.ANONYMIZE_SENT), anyInt());
+        verify(gdprService, never()).deleteBatch(any(), eq(Phase.DELETE_RECEIVED), anyInt());
+        verify(jobs).recordBatch(correlationId, NODE, Phase.DELETE_CONVERSATIONS, Phase.DONE, 1, 60000);
+    }
+
+    @Test
+    @DisplayName("should record a failed batch and stop")
+    void shouldRecordFailure() {
+        when(jobs.claim(NODE, 60000)).thenReturn(Optional.of(job(Phase.DELETE_RECEIVED, Status.RUNNING, 0)));
+        when(gdprService.deleteBatch(userId, Phase.DELETE_RECEIVED, BATCH))
+                .thenThrow(new QueryTimeoutException("statement timeout"));
+        when(jobs.recordFailure(correlationId, NODE, "statement timeout", 30000, 3))
+                .thenReturn(Optional.of(job(Phase.DELETE_RECEIVED, Status.RUNNING, 1)));
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        verify(jobs).recordFailure(correlationId, NODE, "statement timeout", 30000, 3);
+        verify(gdprService, never()).deleteBatch(any(), eq(Phase.DELETE_READ_STATE), anyInt());
+    }
+
+    @Test
+    @DisplayName("should roll back a batch and stop when another node took the job over")
+    void shouldStopWhenLeaseIsLost() {
+        when(jobs.claim(NODE, 60000)).thenReturn(Optional.of(job(Phase.ANONYMIZE_SENT, Status.RUNNING, 0)));
+        when(gdprService.deleteBatch(userId, Phase.ANONYMIZE_SENT, BATCH)).thenReturn(BATCH);
+        when(jobs.recordBatch(correlationId, NODE, Phase.ANONYMIZE_SENT, Phase.ANONYMIZE_SENT, BATCH, 60000))
+                .thenReturn(Optional.empty());
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        verify(transactionStatus).setRollbackOnly();
+        verify(gdprService, times(1)).deleteBatch(any(), any(), anyInt());
+        verify(jobs, never()).release(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("should hand the job back when the runner stops")
+    void shouldReleaseOnStop() {
+        ReflectionTestUtils.setField(runner, "running", false);
+        when(jobs.claim(NODE, 60000)).thenReturn(Optional.of(job(Phase.ANONYMIZE_SENT, Status.RUNNING, 0)));
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        verify(jobs).release(correlationId, NODE);
+        verifyNoInteractions(gdprService);
+    }
+
+    @Test
+    @DisplayName("should ignore a redelivered request")
+    void shouldIgnoreRedeliveredRequest() {
+        when(jobs.create(correlationId, userId, DeletionType.FULL)).thenReturn(true, false);
+
+        runner.submit(correlationId, userId, DeletionType.FULL);
+        runner.submit(correlationId, userId, DeletionType.FULL);
+
+        verify(jobs, times(2)).create(correlationId, userId, DeletionType.FULL);
+        assertThat(((Semaphore) ReflectionTestUtils.getField(runner, "wakeUps")).availablePermits())
+                .isEqualTo(1);
+    }
+}
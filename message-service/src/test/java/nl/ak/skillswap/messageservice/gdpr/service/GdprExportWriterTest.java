@@ -0,0 +1,85 @@
+package nl.ak.skillswap.messageservice.gdpr.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData.ExportSummary;
+import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData.MessageExport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("GdprExportWriter")
+class GdprExportWriterTest {
+
+    private record Chunk(int sequence, boolean last, int lines, String ndjson) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private GdprExportWriter writer(int chunkBytes) {
+        return new GdprExportWriter(objectMapper, chunkBytes,
+                (sequence, last, lines, ndjson) -> chunks.add(new Chunk(sequence, last, lines, ndjson)));
+    }
+
+    private static MessageExport message(String body) {
+        return new MessageExport(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), body, Instant.now(), null, true);
+    }
+
+    @Test
+    @DisplayName("should write one typed JSON record per line")
+    void shouldWriteTypedLines() throws Exception {
+        GdprExportWriter writer = writer(4096);
+        writer.write(message("Hello"));
+        writer.write(new ExportSummary(0, 1, 0));
+
+        assertThat(writer.finish()).isEqualTo(1);
+
+        String[] lines = chunks.getFirst().ndjson().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[0]).get("type").asText()).isEqualTo("message");
+        assertThat(objectMapper.readTree(lines[0]).get("body").asText()).isEqualTo("Hello");
+        assertThat(objectMapper.readTree(lines[1]).get("type").asText()).isEqualTo("summary");
+    }
+
+    @Test
+    @DisplayName("should send a chunk before it would exceed the chunk size, and only the final one as last")
+    void shouldFlushFullChunks() {
+        GdprExportWriter writer = writer(600);
+        for (int i = 0; i < 10; i++) writer.write(message("message " + i));
+        int sent = writer.finish();
+
+        assertThat(sent).isEqualTo(chunks.size()).isGreaterThan(1);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.ndjson().length()).isLessThanOrEqualTo(600));
+        assertThat(chunks).filteredOn(Chunk::last).containsExactly(chunks.getLast());
+        assertThat(chunks.stream().mapToInt(Chunk::lines).sum()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("should give a record larger than the chunk size a chunk of its own")
+    void shouldSendOversizedRecordAlone() {
+        GdprExportWriter writer = writer(300);
+        writer.write(message("short"));
+        writer.write(message("x".repeat(1000)));
+        writer.write(message("short"));
+        writer.finish();
+
+        assertThat(chunks).extracting(Chunk::lines).containsExactly(1, 1, 1);
+        assertThat(chunks.get(1).ndjson()).contains("x".repeat(1000));
+    }
+
+    @Test
+    @DisplayName("should send an empty last chunk when nothing remains")
+    void shouldSendEmptyLastChunk() {
+        GdprExportWriter writer = writer(300);
+
+        assertThat(writer.finish()).isEqualTo(1);
+        assertThat(chunks).containsExactly(new Chunk(0, true, 0, ""));
+        assertThatThrownBy(() -> writer.write(message("late"))).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -1,23 +1,37 @@
 package nl.ak.skillswap.messageservice.gdpr.service;
 
-import nl.ak.skillswap.messageservice.domain.Conversation;
-import nl.ak.skillswap.messageservice.domain.Message;
-import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData;
-import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest;
-import nl.ak.skillswap.messageservice.repository.ConversationRepository;
-import nl.ak.skillswap.messageservice.repository.MessageRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData.ConversationExport;
+import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData.ExportSummary;
+import nl.ak.skillswap.messageservice.gdpr.dto.GdprExportData.MessageExport;
+import nl.ak.skillswap.messageservice.service.ConversationMembershipCache;
+import nl.ak.skillswap.messageservice.service.ConversationTailCache;
+import nl.ak.skillswap.messageservice.service.InboxSyncService;
+import nl.ak.skillswap.messageservice.service.ReadStateService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -27,10 +41,22 @@ import static org.mockito.Mockito.*;
 class MessageGdprServiceTest {
 
     @Mock
-    private MessageRepository messageRepository;
+    private InboxSyncService inboxSyncService;
+
+    @Mock
+    private ConversationMembershipCache membershipCache;
+
+    @Mock
+    private ReadStateService readStateService;
 
     @Mock
-    private ConversationRepository conversationRepository;
+    private ConversationTailCache tailCache;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
 
     @InjectMocks
     private MessageGdprService messageGdprService;
@@ -42,211 +68,182 @@ class MessageGdprServiceTest {
     void setUp() {
         userId = UUID.randomUUID();
         otherUserId = UUID.randomUUID();
+        ReflectionTestUtils.setField(messageGdprService, "exportFetchSize", 500);
+        ReflectionTestUtils.setField(messageGdprService, "exportChunkBytes", 262144);
     }
 
     @Nested
     @DisplayName("exportUserData")
     class ExportUserData {
 
+        private record Chunk(int sequence, boolean last, int lines, String ndjson) {}
+
+        private final List<Chunk> chunks = new ArrayList<>();
+
+        private void stubRows(List<ConversationExport> conversations, List<MessageExport> sent, List<MessageExport> received) {
+            // Queried in this order: conversations, sent messages, received messages
+            doReturn(conversations.stream(), sent.stream(), received.stream())
+                    .when(jdbcTemplate).queryForStream(any(PreparedStatementCreator.class), any(RowMapper.class));
+        }
+
+        private ExportSummary export() {
+            return messageGdprService.exportUserData(userId,
+                    (sequence, last, lines, ndjson) -> chunks.add(new Chunk(sequence, last, lines, ndjson)));
+        }
+
+        private List<JsonNode> records() throws Exception {
+            List<JsonNode> records = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                for (String line : chunk.ndjson().split("\n")) records.add(objectMapper.readTree(line));
+            }
+            return records;
+        }
+
+        private MessageExport messageExport(boolean isSent, String body) {
+            return new MessageExport(UUID.randomUUID(), UUID.randomUUID(), otherUserId, body, Instant.now(), null, isSent);
+        }
+
         @Test
-        @DisplayName("should export all user data")
-        void shouldExportAllUserData() {
+        @DisplayName("should export all user data as NDJSON records")
+        void shouldExportAllUserData() throws Exception {
             UUID conversationId = UUID.randomUUID();
+            stubRows(
+                    List.of(new ConversationExport(conversationId, otherUserId, Instant.now(), Instant.now())),
+                    List.of(messageExport(true, "Hello")),
+                    List.of(messageExport(false, "Hi there")));
+
+            ExportSummary summary = export();
+
+            assertThat(summary).isEqualTo(new ExportSummary(1, 1, 1));
+            assertThat(chunks).singleElement().satisfies(chunk -> {
+                assertThat(chunk.sequence()).isZero();
+                assertThat(chunk.last()).isTrue();
+                assertThat(chunk.lines()).isEqualTo(5);
+            });
+
+            List<JsonNode> records = records();
+            assertThat(records).extracting(r -> r.get("type").asText())
+                    .containsExactly("header", "conversation", "message", "message", "summary");
+            assertThat(records.get(0).get("serviceName").asText()).isEqualTo("message-service");
+            assertThat(records.get(1).get("id").asText()).isEqualTo(conversationId.toString());
+            assertThat(records.get(2).get("body").asText()).isEqualTo("Hello");
+            assertThat(records.get(3).get("body").asText()).isEqualTo("Hi there");
+            assertThat(records.get(4).get("totalMessagesReceived").asInt()).isEqualTo(1);
+        }
 
-            // Ensure userId is "low" for the conversation
-            UUID low = userId.compareTo(otherUserId) <= 0 ? userId : otherUserId;
-            UUID high = userId.compareTo(otherUserId) <= 0 ? otherUserId : userId;
-
-            Conversation conversation = Conversation.builder()
-                    .id(conversationId)
-                    .userLowId(low)
-                    .userHighId(high)
-                    .createdAt(Instant.now())
-                    .lastMessageAt(Instant.now())
-                    .build();
-
-            Message sentMessage = Message.builder()
-                    .id(UUID.randomUUID())
-                    .conversationId(conversationId)
-                    .senderId(userId)
-                    .recipientId(otherUserId)
-                    .body("Hello")
-                    .createdAt(Instant.now())
-                    .build();
-
-            Message receivedMessage = Message.builder()
-                    .id(UUID.randomUUID())
-                    .conversationId(conversationId)
-                    .senderId(otherUserId)
-                    .recipientId(userId)
-                    .body("Hi there")
-                    .createdAt(Instant.now())
-                    .readAt(Instant.now())
-                    .build();
-
-            when(conversationRepository.findAllByUserId(userId)).thenReturn(List.of(conversation));
-            when(messageRepository.findBySenderId(userId)).thenReturn(List.of(sentMessage));
-            when(messageRepository.findByRecipientId(userId)).thenReturn(List.of(receivedMessage));
-
-            GdprExportData result = messageGdprService.exportUserData(userId);
-
-            assertThat(result.serviceName()).isEqualTo("message-service");
-            assertThat(result.exportedAt()).isNotNull();
-            assertThat(result.conversations()).hasSize(1);
-            assertThat(result.messagesSent()).hasSize(1);
-            assertThat(result.messagesReceived()).hasSize(1);
-            assertThat(result.summary().totalConversations()).isEqualTo(1);
-            assertThat(result.summary().totalMessagesSent()).isEqualTo(1);
-            assertThat(result.summary().totalMessagesReceived()).isEqualTo(1);
+        @Test
+        @DisplayName("should export header and summary when user has no data")
+        void shouldReturnEmptyDataWhenNoMessages() throws Exception {
+            stubRows(List.of(), List.of(), List.of());
+
+            ExportSummary summary = export();
+
+            assertThat(summary).isEqualTo(new ExportSummary(0, 0, 0));
+            assertThat(records()).extracting(r -> r.get("type").asText()).containsExactly("header", "summary");
         }
 
         @Test
-        @DisplayName("should return empty data when user has no messages")
-        void shouldReturnEmptyDataWhenNoMessages() {
-            when(conversationRepository.findAllByUserId(userId)).thenReturn(List.of());
-            when(messageRepository.findBySenderId(userId)).thenReturn(List.of());
-            when(messageRepository.findByRecipientId(userId)).thenReturn(List.of());
-
-            GdprExportData result = messageGdprService.exportUserData(userId);
-
-            assertThat(result.conversations()).isEmpty();
-            assertThat(result.messagesSent()).isEmpty();
-            assertThat(result.messagesReceived()).isEmpty();
-            assertThat(result.summary().totalConversations()).isEqualTo(0);
-            assertThat(result.summary().totalMessagesSent()).isEqualTo(0);
-            assertThat(result.summary().totalMessagesReceived()).isEqualTo(0);
+        @DisplayName("should split a large export into numbered chunks within the chunk size")
+        void shouldSplitIntoBoundedChunks() throws Exception {
+            ReflectionTestUtils.setField(messageGdprService, "exportChunkBytes", 1024);
+            List<MessageExport> sent = new ArrayList<>();
+            for (int i = 0; i < 50; i++) sent.add(messageExport(true, "message " + i));
+            stubRows(List.of(), sent, List.of());
+
+            assertThat(export().totalMessagesSent()).isEqualTo(50);
+
+            assertThat(chunks).hasSizeGreaterThan(5);
+            assertThat(chunks).extracting(Chunk::sequence)
+                    .containsExactlyElementsOf(IntStream.range(0, chunks.size()).boxed().toList());
+            assertThat(chunks).filteredOn(Chunk::last).containsExactly(chunks.getLast());
+            assertThat(chunks).allSatisfy(chunk ->
+                    assertThat(chunk.ndjson().getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(1024));
+            assertThat(chunks.stream().mapToInt(Chunk::lines).sum()).isEqualTo(52);
+            assertThat(records()).hasSize(52);
         }
 
         @Test
-        @DisplayName("should correctly identify sent vs received messages")
-        void shouldCorrectlyIdentifySentVsReceivedMessages() {
-            Message sentMessage = Message.builder()
-                    .id(UUID.randomUUID())
-                    .conversationId(UUID.randomUUID())
-                    .senderId(userId)
-                    .recipientId(otherUserId)
-                    .body("Sent message")
-                    .createdAt(Instant.now())
-                    .build();
-
-            Message receivedMessage = Message.builder()
-                    .id(UUID.randomUUID())
-                    .conversationId(UUID.randomUUID())
-                    .senderId(otherUserId)
-                    .recipientId(userId)
-                    .body("Received message")
-                    .createdAt(Instant.now())
-                    .build();
-
-            when(conversationRepository.findAllByUserId(userId)).thenReturn(List.of());
-            when(messageRepository.findBySenderId(userId)).thenReturn(List.of(sentMessage));
-            when(messageRepository.findByRecipientId(userId)).thenReturn(List.of(receivedMessage));
-
-            GdprExportData result = messageGdprService.exportUserData(userId);
-
-            assertThat(result.messagesSent()).hasSize(1);
-            assertThat(result.messagesSent().get(0).isSent()).isTrue();
-            assertThat(result.messagesSent().get(0).otherPartyId()).isEqualTo(otherUserId);
-
-            assertThat(result.messagesReceived()).hasSize(1);
-            assertThat(result.messagesReceived().get(0).isSent()).isFalse();
-            assertThat(result.messagesReceived().get(0).otherPartyId()).isEqualTo(otherUserId);
+        @DisplayName("should read rows through a cursor with the configured fetch size")
+        void shouldUseFetchSize() throws Exception {
+            stubRows(List.of(), List.of(), List.of());
+            export();
+
+            ArgumentCaptor<PreparedStatementCreator> creators = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+            verify(jdbcTemplate, times(3)).queryForStream(creators.capture(), any(RowMapper.class));
+
+            Connection connection = mock(Connection.class);
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(connection.prepareStatement(anyString())).thenReturn(statement);
+            creators.getAllValues().getLast().createPreparedStatement(connection);
+
+            verify(statement).setFetchSize(500);
+            verify(statement).setObject(1, userId);
         }
     }
 
     @Nested
-    @DisplayName("deleteUserData")
-    class DeleteUserData {
+    @DisplayName("deleteBatch")
+    class DeleteBatch {
 
         @Test
-        @DisplayName("should perform full deletion")
-        void shouldPerformFullDeletion() {
-            when(messageRepository.deleteMessagesByRecipient(userId)).thenReturn(5);
-            when(messageRepository.anonymizeMessagesBySender(userId)).thenReturn(3);
-            when(conversationRepository.deleteEmptyConversationsByUserId(userId)).thenReturn(2);
-
-            MessageGdprService.DeletionResult result = messageGdprService.deleteUserData(
-                    userId, GdprDeletionRequest.DeletionType.FULL);
-
-            assertThat(result.success()).isTrue();
-            assertThat(result.serviceName()).isEqualTo("message-service");
-            assertThat(result.userId()).isEqualTo(userId);
-            assertThat(result.messagesDeleted()).isEqualTo(5);
-            assertThat(result.messagesAnonymized()).isEqualTo(3);
-            assertThat(result.conversationsDeleted()).isEqualTo(2);
-            assertThat(result.errorMessage()).isNull();
-
-            verify(messageRepository).deleteMessagesByRecipient(userId);
-            verify(messageRepository).anonymizeMessagesBySender(userId);
-            verify(conversationRepository).deleteEmptyConversationsByUserId(userId);
-        }
+        @DisplayName("should anonymize one batch of sent messages")
+        void shouldAnonymizeSentBatch() {
+            when(jdbcTemplate.update(anyString(), eq(userId), eq(100))).thenReturn(100);
 
-        @Test
-        @DisplayName("should perform anonymize deletion")
-        void shouldPerformAnonymizeDeletion() {
-            when(messageRepository.anonymizeMessagesBySender(userId)).thenReturn(3);
-            when(messageRepository.deleteMessagesByRecipient(userId)).thenReturn(5);
-            when(conversationRepository.deleteEmptyConversationsByUserId(userId)).thenReturn(1);
-
-            MessageGdprService.DeletionResult result = messageGdprService.deleteUserData(
-                    userId, GdprDeletionRequest.DeletionType.ANONYMIZE);
-
-            assertThat(result.success()).isTrue();
-            assertThat(result.messagesAnonymized()).isEqualTo(3);
-            assertThat(result.messagesDeleted()).isEqualTo(5);
-            assertThat(result.conversationsDeleted()).isEqualTo(1);
+            int affected = messageGdprService.deleteBatch(userId, GdprDeletionJob.Phase.ANONYMIZE_SENT, 100);
+
+            assertThat(affected).isEqualTo(100);
+            ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+            verify(jdbcTemplate).update(sql.capture(), eq(userId), eq(100));
+            assertThat(sql.getValue()).contains("SET sender_id = NULL").contains("LIMIT ?");
+            verify(tailCache).evictUser(userId);
         }
 
         @Test
-        @DisplayName("should handle case with no data to delete")
-        void shouldHandleNoDataToDelete() {
-            when(messageRepository.deleteMessagesByRecipient(userId)).thenReturn(0);
-            when(messageRepository.anonymizeMessagesBySender(userId)).thenReturn(0);
-            when(conversationRepository.deleteEmptyConversationsByUserId(userId)).thenReturn(0);
-
-            MessageGdprService.DeletionResult result = messageGdprService.deleteUserData(
-                    userId, GdprDeletionRequest.DeletionType.FULL);
-
-            assertThat(result.success()).isTrue();
-            assertThat(result.messagesDeleted()).isEqualTo(0);
-            assertThat(result.messagesAnonymized()).isEqualTo(0);
-            assertThat(result.conversationsDeleted()).isEqualTo(0);
+        @DisplayName("should delete one batch of received messages")
+        void shouldDeleteReceivedBatch() {
+            when(jdbcTemplate.update(anyString(), eq(userId), eq(100))).thenReturn(42);
+
+            int affected = messageGdprService.deleteBatch(userId, GdprDeletionJob.Phase.DELETE_RECEIVED, 100);
+
+            assertThat(affected).isEqualTo(42);
+            ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+            verify(jdbcTemplate).update(sql.capture(), eq(userId), eq(100));
+            assertThat(sql.getValue()).startsWith("DELETE FROM messages");
+            verify(tailCache).evictUser(userId);
         }
 
         @Test
-        @DisplayName("should set deletedAt timestamp")
-        void shouldSetDeletedAtTimestamp() {
-            Instant before = Instant.now();
-
-            when(messageRepository.deleteMessagesByRecipient(userId)).thenReturn(0);
-            when(messageRepository.anonymizeMessagesBySender(userId)).thenReturn(0);
-            when(conversationRepository.deleteEmptyConversationsByUserId(userId)).thenReturn(0);
+        @DisplayName("should leave caches alone when a batch changed nothing")
+        void shouldNotEvictWhenNothingChanged() {
+            when(jdbcTemplate.update(anyString(), eq(userId), eq(100))).thenReturn(0);
 
-            MessageGdprService.DeletionResult result = messageGdprService.deleteUserData(
-                    userId, GdprDeletionRequest.DeletionType.FULL);
+            int affected = messageGdprService.deleteBatch(userId, GdprDeletionJob.Phase.DELETE_RECEIVED, 100);
 
-            assertThat(result.deletedAt()).isAfterOrEqualTo(before);
+            assertThat(affected).isZero();
+            verifyNoInteractions(tailCache, membershipCache);
         }
-    }
 
-    @Nested
-    @DisplayName("DeletionResult.error")
-    class DeletionResultError {
+        @Test
+        @DisplayName("should delete read state in a single step")
+        void shouldDeleteReadState() {
+            int affected = messageGdprService.deleteBatch(userId, GdprDeletionJob.Phase.DELETE_READ_STATE, 100);
+
+            assertThat(affected).isZero();
+            verify(inboxSyncService).deleteUserData(userId);
+            verify(readStateService).deleteUserData(userId);
+            verifyNoInteractions(jdbcTemplate);
+        }
 
         @Test
-        @DisplayName("should create error result with correct values")
-        void shouldCreateErrorResultWithCorrectValues() {
-            String errorMessage = "Something went wrong";
-
-            MessageGdprService.DeletionResult result = MessageGdprService.DeletionResult.error(userId, errorMessage);
-
-            assertThat(result.success()).isFalse();
-            assertThat(result.userId()).isEqualTo(userId);
-            assertThat(result.errorMessage()).isEqualTo(errorMessage);
-            assertThat(result.messagesDeleted()).isEqualTo(0);
-            assertThat(result.messagesAnonymized()).isEqualTo(0);
-            assertThat(result.conversationsDeleted()).isEqualTo(0);
-            assertThat(result.deletedAt()).isNotNull();
+        @DisplayName("should delete empty conversations and evict memberships")
+        void shouldDeleteEmptyConversations() {
+            when(jdbcTemplate.update(anyString(), eq(userId), eq(userId), eq(100))).thenReturn(2);
+
+            int affected = messageGdprService.deleteBatch(userId, GdprDeletionJob.Phase.DELETE_CONVERSATIONS, 100);
+
+            assertThat(affected).isEqualTo(2);
+            verify(membershipCache).evictUser(userId);
         }
     }
 }
@@ -21,6 +21,8 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -53,6 +55,7 @@ class ConversationControllerIntegrationTest extends BaseIntegrationTest {
 
     private Conversation conversation1;
     private Conversation conversation2;
+    private Message latestUnread;
     private UUID user3Id;
 
     @BeforeEach
@@ -112,18 +115,33 @@ class ConversationControllerIntegrationTest extends BaseIntegrationTest {
                 .createdAt(Instant.now().minus(30, ChronoUnit.MINUTES))
                 .build());
 
-        messageRepository.save(Message.builder()
+        latestUnread = messageRepository.save(Message.builder()
                 .id(UUID.randomUUID())
                 .conversationId(conversation1.getId())
                 .senderId(TestSecurityConfig.TEST_USER_2_DATABASE_ID)
                 .recipientId(TestSecurityConfig.TEST_USER_DATABASE_ID)
                 .body("Unread message 2")
-                .createdAt(Instant.now().minus(15, ChronoUnit.MINUTES))
+                .createdAt(Instant.now().minus(15, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MICROS))
+                .build());
+
+        // Redis unread counters are built from these messages on first read
+    }
+
+    private Message receiveInConversation2() {
+        return messageRepository.save(Message.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversation2.getId())
+                .senderId(user3Id)
+                .recipientId(TestSecurityConfig.TEST_USER_DATABASE_ID)
+                .body("Unread message 3")
+                .createdAt(Instant.now().truncatedTo(ChronoUnit.MICROS))
                 .build());
+    }
 
-        // Set up Redis unread counters to match the messages
-        unreadCounterService.incrementUnread(TestSecurityConfig.TEST_USER_DATABASE_ID, conversation1.getId());
-        unreadCounterService.incrementUnread(TestSecurityConfig.TEST_USER_DATABASE_ID, conversation1.getId());
+    private void markConversation1Read() throws Exception {
+        mockMvc.perform(post("/api/messages/conversation/" + conversation1.getId() + "/read")
+                        .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                .andExpect(status().isOk());
     }
 
     @Nested
@@ -192,4 +210,100 @@ class ConversationControllerIntegrationTest extends BaseIntegrationTest {
                     .andExpect(status().isUnauthorized());
         }
     }
+
+    @Nested
+    @DisplayName("GET /api/conversations/unread")
+    class GetUnreadBadge {
+
+        @Test
+        @DisplayName("should return total unread across conversations")
+        void shouldReturnTotalUnread() throws Exception {
+            unreadCounterService.incrementUnread(receiveInConversation2());
+
+            mockMvc.perform(get("/api/conversations/unread")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalUnread", is(3)));
+        }
+
+        @Test
+        @DisplayName("should decrease total when a conversation is cleared")
+        void shouldDecreaseTotalWhenConversationCleared() throws Exception {
+            markConversation1Read();
+
+            mockMvc.perform(get("/api/conversations/unread")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalUnread", is(0)));
+        }
+
+        @Test
+        @DisplayName("should return 401 without authentication")
+        void shouldReturn401WithoutAuthentication() throws Exception {
+            mockMvc.perform(get("/api/conversations/unread"))
+                    .andExpect(status().isUnauthorized());
+        }
+    }
+
+    @Nested
+    @DisplayName("self-healing unread counters")
+    class SelfHealing {
+
+        private final String key = "unread:" + TestSecurityConfig.TEST_USER_DATABASE_ID;
+
+        private long totalUnread() {
+            return unreadCounterService.getTotalUnread(TestSecurityConfig.TEST_USER_DATABASE_ID);
+        }
+
+        @Test
+        @DisplayName("should rebuild a missing counter from the database")
+        void shouldRebuildMissingCounter() {
+            assertThat(totalUnread()).isEqualTo(2);
+
+            redisTemplate.delete(key);
+
+            assertThat(totalUnread()).isEqualTo(2);
+            assertThat(unreadCounterService.getUnread(TestSecurityConfig.TEST_USER_DATABASE_ID, conversation1.getId()))
+                    .isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should not count a message again once its conversation was read")
+        void shouldIgnoreIncrementBelowWatermark() throws Exception {
+            assertThat(totalUnread()).isEqualTo(2);
+            markConversation1Read();
+
+            // A late increment for a message the reader has already seen
+            unreadCounterService.incrementUnread(latestUnread);
+
+            assertThat(totalUnread()).isZero();
+        }
+
+        @Test
+        @DisplayName("should repair a drifted counter when reconciling")
+        void shouldRepairDriftedCounter() {
+            assertThat(totalUnread()).isEqualTo(2);
+            redisTemplate.opsForHash().put(key, conversation1.getId().toString(), "50");
+            redisTemplate.opsForHash().put(key, "total", "99");
+
+            unreadCounterService.requestReconcile(TestSecurityConfig.TEST_USER_DATABASE_ID);
+            unreadCounterService.reconcile(100);
+
+            assertThat(totalUnread()).isEqualTo(2);
+            assertThat(unreadCounterService.getUnreadByConversation(TestSecurityConfig.TEST_USER_DATABASE_ID))
+                    .containsExactly(entry(conversation1.getId(), 2L));
+        }
+
+        @Test
+        @DisplayName("should leave a counter that matches the database untouched")
+        void shouldLeaveMatchingCounter() {
+            unreadCounterService.incrementUnread(receiveInConversation2());
+            Object version = redisTemplate.opsForHash().get(key, "ver");
+
+            unreadCounterService.reconcile(100);
+
+            assertThat(redisTemplate.opsForHash().get(key, "ver")).isEqualTo(version);
+            assertThat(totalUnread()).isEqualTo(3);
+        }
+    }
 }
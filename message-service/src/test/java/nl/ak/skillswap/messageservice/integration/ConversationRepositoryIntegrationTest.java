@@ -1,7 +1,6 @@
 package nl.ak.skillswap.messageservice.integration;
 
 import nl.ak.skillswap.messageservice.domain.Conversation;
-import nl.ak.skillswap.messageservice.domain.Message;
 import nl.ak.skillswap.messageservice.repository.ConversationRepository;
 import nl.ak.skillswap.messageservice.repository.MessageRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,7 +8,6 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -177,41 +175,4 @@ class ConversationRepositoryIntegrationTest extends BaseIntegrationTest {
             assertThat(count).isZero();
         }
     }
-
-    @Nested
-    @DisplayName("deleteEmptyConversationsByUserId")
-    @Transactional
-    class DeleteEmptyConversationsByUserId {
-
-        @Test
-        @DisplayName("should delete empty conversations for user")
-        void shouldDeleteEmptyConversationsForUser() {
-            // conversation1 and conversation2 have no messages, so they are "empty"
-            int deleted = conversationRepository.deleteEmptyConversationsByUserId(user1Id);
-
-            assertThat(deleted).isEqualTo(2);
-            assertThat(conversationRepository.findAllByUserId(user1Id)).isEmpty();
-        }
-
-        @Test
-        @DisplayName("should not delete conversations with messages")
-        void shouldNotDeleteConversationsWithMessages() {
-            // Add a message to conversation1
-            messageRepository.save(Message.builder()
-                    .id(UUID.randomUUID())
-                    .conversationId(conversation1.getId())
-                    .senderId(user1Id)
-                    .recipientId(user2Id)
-                    .body("Test message")
-                    .createdAt(Instant.now())
-                    .build());
-
-            int deleted = conversationRepository.deleteEmptyConversationsByUserId(user1Id);
-
-            // Only conversation2 should be deleted (empty)
-            assertThat(deleted).isEqualTo(1);
-            assertThat(conversationRepository.findById(conversation1.getId())).isPresent();
-            assertThat(conversationRepository.findById(conversation2.getId())).isEmpty();
-        }
-    }
 }
@@ -0,0 +1,209 @@
+package nl.ak.skillswap.messageservice.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ak.skillswap.messageservice.domain.Conversation;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.gdpr.event.GdprDeletionRequest.DeletionType;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJob;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJob.Phase;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJobRunner;
+import nl.ak.skillswap.messageservice.gdpr.service.GdprDeletionJobStore;
+import nl.ak.skillswap.messageservice.gdpr.service.MessageGdprService;
+import nl.ak.skillswap.messageservice.repository.ConversationRepository;
+import nl.ak.skillswap.messageservice.repository.MessageRepository;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GDPR deletion job Integration Tests")
+class GdprDeletionJobIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private GdprDeletionJobStore jobs;
+
+    @Autowired
+    private MessageGdprService gdprService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private GdprDeletionJobRunner runner;
+
+    private UUID userId;
+    private UUID friendId;
+    private UUID strangerId;
+    private Conversation sharedConversation;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM gdpr_deletion_jobs");
+
+        // Batches of two make every batched phase take more than one round
+        runner = new GdprDeletionJobRunner(jobs, gdprService, transactionTemplate, new NodeIdentity("test-node"),
+                new SimpleMeterRegistry(), 2, 0, 3600000, 60000, 0, 3);
+        ReflectionTestUtils.setField(runner, "running", true);
+
+        userId = UUID.randomUUID();
+        friendId = UUID.randomUUID();
+        strangerId = UUID.randomUUID();
+
+        // The user sends three messages to a friend and receives two back
+        sharedConversation = conversation(userId, friendId);
+        Instant start = Instant.now().minus(1, ChronoUnit.HOURS);
+        for (int i = 0; i < 5; i++) {
+            boolean sent = i % 2 == 0;
+            message(sharedConversation, sent ? userId : friendId, sent ? friendId : userId, start.plusSeconds(i));
+        }
+
+        // A stranger only ever wrote to the user; nothing of this conversation survives
+        Conversation strangerConversation = conversation(userId, strangerId);
+        message(strangerConversation, strangerId, userId, start);
+    }
+
+    private Conversation conversation(UUID a, UUID b) {
+        return conversationRepository.save(Conversation.builder()
+                .id(UUID.randomUUID())
+                .userLowId(a.compareTo(b) < 0 ? a : b)
+                .userHighId(a.compareTo(b) < 0 ? b : a)
+                .createdAt(Instant.now().minus(1, ChronoUnit.DAYS))
+                .build());
+    }
+
+    private void message(Conversation conversation, UUID senderId, UUID recipientId, Instant createdAt) {
+        messageRepository.save(Message.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversation.getId())
+                .senderId(senderId)
+                .recipientId(recipientId)
+                .body("Hello")
+                .createdAt(createdAt)
+                .build());
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+
+    @Test
+    @DisplayName("should anonymize sent messages and remove received messages and emptied conversations")
+    void shouldDeleteUserData() {
+        UUID correlationId = UUID.randomUUID();
+        assertThat(jobs.create(correlationId, userId, DeletionType.FULL)).isTrue();
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        GdprDeletionJob job = jobs.find(correlationId).orElseThrow();
+        assertThat(job.status()).isEqualTo(GdprDeletionJob.Status.COMPLETED);
+        assertThat(job.phase()).isEqualTo(Phase.DONE);
+        assertThat(job.messagesAnonymized()).isEqualTo(3);
+        assertThat(job.messagesDeleted()).isEqualTo(3);
+        assertThat(job.conversationsDeleted()).isEqualTo(1);
+
+        assertThat(count("SELECT count(*) FROM messages WHERE sender_id IS NULL AND conversation_id = ?",
+                sharedConversation.getId())).isEqualTo(3);
+        assertThat(count("SELECT count(*) FROM messages WHERE recipient_id = ?", userId)).isZero();
+        assertThat(count("SELECT count(*) FROM conversations")).isEqualTo(1);
+        assertThat(runner.runNextJob()).isFalse();
+    }
+
+    @Test
+    @DisplayName("should ignore a redelivered request for a known job")
+    void shouldIgnoreRedeliveredRequest() {
+        UUID correlationId = UUID.randomUUID();
+
+        assertThat(jobs.create(correlationId, userId, DeletionType.FULL)).isTrue();
+        assertThat(jobs.create(correlationId, userId, DeletionType.FULL)).isFalse();
+    }
+
+    @Test
+    @DisplayName("should take over a job whose lease ran out and resume at its last batch")
+    void shouldResumeAfterLostLease() {
+        UUID correlationId = UUID.randomUUID();
+        jobs.create(correlationId, userId, DeletionType.FULL);
+
+        // A node runs one batch, then dies; its lease of zero has expired by the next claim
+        jobs.claim("crashed-node", 0).orElseThrow();
+        transactionTemplate.executeWithoutResult(status -> {
+            int affected = gdprService.deleteBatch(userId, Phase.ANONYMIZE_SENT, 2);
+            jobs.recordBatch(correlationId, "crashed-node", Phase.ANONYMIZE_SENT, Phase.ANONYMIZE_SENT, affected, 0);
+        });
+
+        assertThat(runner.runNextJob()).isTrue();
+
+        GdprDeletionJob job = jobs.find(correlationId).orElseThrow();
+        assertThat(job.status()).isEqualTo(GdprDeletionJob.Status.COMPLETED);
+        assertThat(job.messagesAnonymized()).isEqualTo(3);
+        assertThat(job.messagesDeleted()).isEqualTo(3);
+
+        // The crashed node can no longer record progress on the job
+        Boolean recorded = transactionTemplate.execute(status ->
+                jobs.recordBatch(correlationId, "crashed-node", Phase.DELETE_RECEIVED, Phase.DONE, 0, 0).isPresent());
+        assertThat(recorded).isFalse();
+    }
+
+    @Nested
+    @DisplayName("deleteBatch")
+    class DeleteBatch {
+
+        @Test
+        @DisplayName("should anonymize at most one batch of sent messages")
+        void shouldAnonymizeOneBatchOfSentMessages() {
+            assertThat(gdprService.deleteBatch(userId, Phase.ANONYMIZE_SENT, 2)).isEqualTo(2);
+
+            assertThat(count("SELECT count(*) FROM messages WHERE sender_id IS NULL AND body = '[Message from deleted user]'"))
+                    .isEqualTo(2);
+            assertThat(count("SELECT count(*) FROM messages WHERE sender_id = ?", userId)).isEqualTo(1);
+
+            assertThat(gdprService.deleteBatch(userId, Phase.ANONYMIZE_SENT, 2)).isEqualTo(1);
+            assertThat(gdprService.deleteBatch(userId, Phase.ANONYMIZE_SENT, 2)).isZero();
+        }
+
+        @Test
+        @DisplayName("should delete only messages received by the user")
+        void shouldDeleteOnlyReceivedMessages() {
+            assertThat(gdprService.deleteBatch(userId, Phase.DELETE_RECEIVED, 2)).isEqualTo(2);
+            assertThat(gdprService.deleteBatch(userId, Phase.DELETE_RECEIVED, 2)).isEqualTo(1);
+            assertThat(gdprService.deleteBatch(userId, Phase.DELETE_RECEIVED, 2)).isZero();
+
+            assertThat(count("SELECT count(*) FROM messages WHERE recipient_id = ?", userId)).isZero();
+            // Messages the user sent to the friend are left for the anonymize phase
+            assertThat(count("SELECT count(*) FROM messages WHERE recipient_id = ?", friendId)).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should delete only the user's conversations that have no messages left")
+        void shouldDeleteOnlyEmptyConversations() {
+            assertThat(gdprService.deleteBatch(userId, Phase.DELETE_CONVERSATIONS, 10)).isZero();
+
+            // Removing the stranger's only message empties that conversation
+            jdbcTemplate.update("DELETE FROM messages WHERE sender_id = ?", strangerId);
+
+            assertThat(gdprService.deleteBatch(userId, Phase.DELETE_CONVERSATIONS, 10)).isEqualTo(1);
+            assertThat(conversationRepository.findById(sharedConversation.getId())).isPresent();
+            assertThat(count("SELECT count(*) FROM conversations")).isEqualTo(1);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package nl.ak.skillswap.messageservice.integration;
 
+import com.jayway.jsonpath.JsonPath;
 import nl.ak.skillswap.messageservice.domain.Conversation;
 import nl.ak.skillswap.messageservice.domain.Message;
 import nl.ak.skillswap.messageservice.repository.ConversationRepository;
 import nl.ak.skillswap.messageservice.repository.MessageRepository;
 import nl.ak.skillswap.messageservice.support.AuthenticatedUserContext;
+import nl.ak.skillswap.messageservice.support.MessageCursor;
 import nl.ak.skillswap.messageservice.support.UserContextResolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,10 +16,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,6 +50,9 @@ class MessageControllerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private UserContextResolver userContextResolver;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private Conversation conversation;
     private Message message1;
     private Message message2;
@@ -53,6 +61,7 @@ class MessageControllerIntegrationTest extends BaseIntegrationTest {
     void setUp() {
         messageRepository.deleteAll();
         conversationRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM user_sequences");
 
         // Setup mock to return test user
         when(userContextResolver.resolve(any())).thenReturn(new AuthenticatedUserContext(
@@ -75,7 +84,8 @@ class MessageControllerIntegrationTest extends BaseIntegrationTest {
                 .lastMessageAt(Instant.now())
                 .build());
 
-        Instant now = Instant.now();
+        // Postgres keeps microseconds; match it so cursors built here equal the stored positions
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
 
         // Create test messages
         message1 = messageRepository.save(Message.builder()
@@ -220,6 +230,94 @@ class MessageControllerIntegrationTest extends BaseIntegrationTest {
                     .andExpect(jsonPath("$.items[0].id", is(message1.getId().toString())));
         }
 
+        @Test
+        @DisplayName("should page back and forth with returned cursors")
+        void shouldPageWithReturnedCursors() throws Exception {
+            String olderCursor = MessageCursor.of(message2).encode();
+
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("size", "1")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[0].id", is(message2.getId().toString())))
+                    .andExpect(jsonPath("$.olderCursor", is(olderCursor)));
+
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("size", "1")
+                            .param("before", olderCursor)
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[0].id", is(message1.getId().toString())))
+                    .andExpect(jsonPath("$.hasMore", is(false)));
+
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("after", MessageCursor.of(message1).encode())
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)))
+                    .andExpect(jsonPath("$.items[0].id", is(message2.getId().toString())));
+        }
+
+        @Test
+        @DisplayName("should not skip messages that share a timestamp")
+        void shouldNotSkipMessagesWithSameTimestamp() throws Exception {
+            Message twin = messageRepository.save(Message.builder()
+                    .id(UUID.randomUUID())
+                    .conversationId(conversation.getId())
+                    .senderId(TestSecurityConfig.TEST_USER_DATABASE_ID)
+                    .recipientId(TestSecurityConfig.TEST_USER_2_DATABASE_ID)
+                    .body("Same moment")
+                    .createdAt(message2.getCreatedAt())
+                    .build());
+            // Postgres orders UUIDs bytewise, which matches their lowercase hex form
+            boolean twinFirst = twin.getId().toString().compareTo(message2.getId().toString()) > 0;
+            Message first = twinFirst ? twin : message2;
+            Message second = twinFirst ? message2 : twin;
+
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("size", "1")
+                            .param("before", MessageCursor.of(first).encode())
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)))
+                    .andExpect(jsonPath("$.items[0].id", is(second.getId().toString())))
+                    .andExpect(jsonPath("$.hasMore", is(true)));
+        }
+
+        @Test
+        @DisplayName("should centre the page on a message with around")
+        void shouldListAroundMessage() throws Exception {
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("around", message1.getId().toString())
+                            .param("size", "3")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(2)))
+                    .andExpect(jsonPath("$.items[0].id", is(message2.getId().toString())))
+                    .andExpect(jsonPath("$.items[1].id", is(message1.getId().toString())));
+        }
+
+        @Test
+        @DisplayName("should return 400 for a malformed cursor")
+        void shouldReturn400ForMalformedCursor() throws Exception {
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("before", "garbage!")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        @DisplayName("should return 400 when combining before and after")
+        void shouldReturn400ForConflictingCursors() throws Exception {
+            String cursor = MessageCursor.of(message1).encode();
+
+            mockMvc.perform(get("/api/messages/conversation/" + conversation.getId())
+                            .param("before", cursor)
+                            .param("after", cursor)
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isBadRequest());
+        }
+
         @Test
         @DisplayName("should return 404 for non-existent conversation")
         void shouldReturn404ForNonExistentConversation() throws Exception {
@@ -244,7 +342,7 @@ class MessageControllerIntegrationTest extends BaseIntegrationTest {
                     .andExpect(content().string("1")); // 1 message from user 2 to user 1
 
             // Verify message was marked as read
-            Message readMessage = messageRepository.findById(message2.getId()).orElseThrow();
+            Message readMessage = messageRepository.findInConversation(conversation.getId(), message2.getId()).orElseThrow();
             assertThat(readMessage.getReadAt()).isNotNull();
         }
 
@@ -261,4 +359,178 @@ class MessageControllerIntegrationTest extends BaseIntegrationTest {
                     .andExpect(content().string("0"));
         }
     }
+
+    @Nested
+    @DisplayName("GET /api/messages/search")
+    class Search {
+
+        private Message saveMessage(UUID conversationId, UUID senderId, UUID recipientId, String body) {
+            return messageRepository.save(Message.builder()
+                    .id(UUID.randomUUID())
+                    .conversationId(conversationId)
+                    .senderId(senderId)
+                    .recipientId(recipientId)
+                    .body(body)
+                    .createdAt(Instant.now().truncatedTo(ChronoUnit.MICROS))
+                    .build());
+        }
+
+        private Conversation otherUsersConversation() {
+            return conversationRepository.save(Conversation.builder()
+                    .id(UUID.randomUUID())
+                    .userLowId(new UUID(0L, 1L))
+                    .userHighId(new UUID(0L, 2L))
+                    .createdAt(Instant.now())
+                    .build());
+        }
+
+        @Test
+        @DisplayName("should find messages in the caller's conversations, best match first")
+        void shouldFindMessagesInOwnConversations() throws Exception {
+            saveMessage(conversation.getId(), TestSecurityConfig.TEST_USER_DATABASE_ID,
+                    TestSecurityConfig.TEST_USER_2_DATABASE_ID, "hello hello, are you there?");
+            Conversation other = otherUsersConversation();
+            saveMessage(other.getId(), other.getUserLowId(), other.getUserHighId(), "hello from strangers");
+
+            mockMvc.perform(get("/api/messages/search")
+                            .param("q", "Hello")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(3)))
+                    .andExpect(jsonPath("$.items[0].body", is("hello hello, are you there?")))
+                    .andExpect(jsonPath("$.items[*].conversationId", everyItem(is(conversation.getId().toString()))))
+                    .andExpect(jsonPath("$.hasMore", is(false)));
+        }
+
+        @Test
+        @DisplayName("should match the decoded text of HTML-encoded bodies")
+        void shouldMatchDecodedText() throws Exception {
+            mockMvc.perform(post("/api/messages/to/" + TestSecurityConfig.TEST_USER_2_DATABASE_ID)
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID)))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    {"body": "Tom & Jerry's \\"show\\""}
+                                    """))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/api/messages/search")
+                            .param("q", "jerry show")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)));
+
+            mockMvc.perform(get("/api/messages/search")
+                            .param("q", "amp")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(0)));
+        }
+
+        @Test
+        @DisplayName("should page through hits without gaps or repeats")
+        void shouldPageThroughHits() throws Exception {
+            saveMessage(conversation.getId(), TestSecurityConfig.TEST_USER_DATABASE_ID,
+                    TestSecurityConfig.TEST_USER_2_DATABASE_ID, "Hello again");
+
+            MvcResult first = mockMvc.perform(get("/api/messages/search")
+                            .param("q", "hello")
+                            .param("conversationId", conversation.getId().toString())
+                            .param("size", "2")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(2)))
+                    .andExpect(jsonPath("$.hasMore", is(true)))
+                    .andReturn();
+            String body = first.getResponse().getContentAsString();
+            String nextCursor = JsonPath.read(body, "$.nextCursor");
+            List<String> firstIds = JsonPath.read(body, "$.items[*].id");
+
+            mockMvc.perform(get("/api/messages/search")
+                            .param("q", "hello")
+                            .param("conversationId", conversation.getId().toString())
+                            .param("size", "2")
+                            .param("cursor", nextCursor)
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)))
+                    .andExpect(jsonPath("$.items[0].id", not(in(firstIds))))
+                    .andExpect(jsonPath("$.hasMore", is(false)));
+        }
+
+        @Test
+        @DisplayName("should return 403 for a conversation the caller is not part of")
+        void shouldReturn403ForOtherConversation() throws Exception {
+            Conversation other = otherUsersConversation();
+
+            mockMvc.perform(get("/api/messages/search")
+                            .param("q", "hello")
+                            .param("conversationId", other.getId().toString())
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isForbidden());
+        }
+
+        @Test
+        @DisplayName("should return 400 for a blank query")
+        void shouldReturn400ForBlankQuery() throws Exception {
+            mockMvc.perform(get("/api/messages/search")
+                            .param("q", "  ")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/messages/sync")
+    class Sync {
+
+        @Test
+        @DisplayName("should return new messages and read changes after the given sequence")
+        void shouldReturnChangesAfterSequence() throws Exception {
+            mockMvc.perform(get("/api/messages/sync")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.changes", hasSize(0)))
+                    .andExpect(jsonPath("$.lastSeq", is(0)));
+
+            mockMvc.perform(post("/api/messages/to/" + TestSecurityConfig.TEST_USER_2_DATABASE_ID)
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID)))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    {"body": "While you were away"}
+                                    """))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(post("/api/messages/conversation/" + conversation.getId() + "/read")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/api/messages/sync")
+                            .param("since", "0")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.changes", hasSize(2)))
+                    .andExpect(jsonPath("$.changes[0].type", is("MESSAGE")))
+                    .andExpect(jsonPath("$.changes[0].message.body", is("While you were away")))
+                    .andExpect(jsonPath("$.changes[1].type", is("READ")))
+                    .andExpect(jsonPath("$.changes[1].readerId", is(TestSecurityConfig.TEST_USER_DATABASE_ID.toString())))
+                    .andExpect(jsonPath("$.lastSeq", is(2)))
+                    .andExpect(jsonPath("$.hasMore", is(false)));
+
+            mockMvc.perform(get("/api/messages/sync")
+                            .param("since", "1")
+                            .param("limit", "1")
+                            .with(jwt().jwt(builder -> builder.subject(TestSecurityConfig.TEST_EXTERNAL_ID))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.changes", hasSize(1)))
+                    .andExpect(jsonPath("$.changes[0].seq", is(2)))
+                    .andExpect(jsonPath("$.hasMore", is(false)));
+        }
+
+        @Test
+        @DisplayName("should return 401 without authentication")
+        void shouldReturn401WithoutAuthentication() throws Exception {
+            mockMvc.perform(get("/api/messages/sync").param("since", "0"))
+                    .andExpect(status().isUnauthorized());
+        }
+    }
 }
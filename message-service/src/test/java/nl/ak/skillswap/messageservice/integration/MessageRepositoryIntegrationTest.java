@@ -4,13 +4,13 @@ import nl.ak.skillswap.messageservice.domain.Conversation;
 import nl.ak.skillswap.messageservice.domain.Message;
 import nl.ak.skillswap.messageservice.repository.ConversationRepository;
 import nl.ak.skillswap.messageservice.repository.MessageRepository;
+import nl.ak.skillswap.messageservice.service.ReadStateService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -85,77 +85,69 @@ class MessageRepositoryIntegrationTest extends BaseIntegrationTest {
     }
 
     @Nested
-    @DisplayName("findByConversationIdOrderByCreatedAtDesc")
-    class FindByConversationIdOrdered {
+    @DisplayName("findLatest")
+    class FindLatest {
 
         @Test
-        @DisplayName("should find messages ordered by createdAt descending")
-        void shouldFindMessagesOrderedByCreatedAtDesc() {
-            List<Message> results = messageRepository.findByConversationIdOrderByCreatedAtDesc(
-                    conversation.getId(), PageRequest.of(0, 10));
-
-            assertThat(results).hasSize(3);
-            assertThat(results.get(0).getId()).isEqualTo(message3.getId());
-            assertThat(results.get(1).getId()).isEqualTo(message2.getId());
-            assertThat(results.get(2).getId()).isEqualTo(message1.getId());
+        @DisplayName("should find messages newest first")
+        void shouldFindMessagesNewestFirst() {
+            List<Message> results = messageRepository.findLatest(conversation.getId(), 10);
+
+            assertThat(results).extracting(Message::getId)
+                    .containsExactly(message3.getId(), message2.getId(), message1.getId());
         }
 
         @Test
-        @DisplayName("should respect pagination")
-        void shouldRespectPagination() {
-            List<Message> page1 = messageRepository.findByConversationIdOrderByCreatedAtDesc(
-                    conversation.getId(), PageRequest.of(0, 2));
-            List<Message> page2 = messageRepository.findByConversationIdOrderByCreatedAtDesc(
-                    conversation.getId(), PageRequest.of(1, 2));
-
-            assertThat(page1).hasSize(2);
-            assertThat(page2).hasSize(1);
+        @DisplayName("should respect the limit")
+        void shouldRespectLimit() {
+            List<Message> results = messageRepository.findLatest(conversation.getId(), 2);
+
+            assertThat(results).extracting(Message::getId)
+                    .containsExactly(message3.getId(), message2.getId());
         }
 
         @Test
         @DisplayName("should return empty for non-existent conversation")
         void shouldReturnEmptyForNonExistentConversation() {
-            List<Message> results = messageRepository.findByConversationIdOrderByCreatedAtDesc(
-                    UUID.randomUUID(), PageRequest.of(0, 10));
+            List<Message> results = messageRepository.findLatest(UUID.randomUUID(), 10);
 
             assertThat(results).isEmpty();
         }
     }
 
     @Nested
-    @DisplayName("findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc")
-    class FindByConversationIdWithCursor {
+    @DisplayName("findBeforeCursor")
+    class FindBeforeCursor {
 
         @Test
         @DisplayName("should find messages before cursor")
         void shouldFindMessagesBeforeCursor() {
-            List<Message> results = messageRepository.findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc(
-                    conversation.getId(), message3.getCreatedAt(), PageRequest.of(0, 10));
+            List<Message> results = messageRepository.findBeforeCursor(
+                    conversation.getId(), message3.getCreatedAt(), message3.getId(), 10);
 
-            assertThat(results).hasSize(2);
-            assertThat(results.get(0).getId()).isEqualTo(message2.getId());
-            assertThat(results.get(1).getId()).isEqualTo(message1.getId());
+            assertThat(results).extracting(Message::getId)
+                    .containsExactly(message2.getId(), message1.getId());
         }
 
         @Test
         @DisplayName("should return empty when no messages before cursor")
         void shouldReturnEmptyWhenNoMessagesBeforeCursor() {
-            List<Message> results = messageRepository.findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc(
-                    conversation.getId(), message1.getCreatedAt(), PageRequest.of(0, 10));
+            List<Message> results = messageRepository.findBeforeCursor(
+                    conversation.getId(), message1.getCreatedAt(), message1.getId(), 10);
 
             assertThat(results).isEmpty();
         }
     }
 
     @Nested
-    @DisplayName("countByConversationIdAndRecipientIdAndReadAtIsNull")
+    @DisplayName("countUnread")
     class CountUnreadMessages {
 
         @Test
         @DisplayName("should count unread messages for recipient")
         void shouldCountUnreadMessagesForRecipient() {
             // User2 received message1 and message3 (both unread)
-            long count = messageRepository.countByConversationIdAndRecipientIdAndReadAtIsNull(
+            long count = messageRepository.countUnread(
                     conversation.getId(), user2Id);
 
             assertThat(count).isEqualTo(2);
@@ -168,7 +160,7 @@ class MessageRepositoryIntegrationTest extends BaseIntegrationTest {
             message1.setReadAt(Instant.now());
             messageRepository.save(message1);
 
-            long count = messageRepository.countByConversationIdAndRecipientIdAndReadAtIsNull(
+            long count = messageRepository.countUnread(
                     conversation.getId(), user2Id);
 
             assertThat(count).isEqualTo(1);
@@ -183,7 +175,7 @@ class MessageRepositoryIntegrationTest extends BaseIntegrationTest {
             message3.setReadAt(Instant.now());
             messageRepository.saveAll(List.of(message1, message2, message3));
 
-            long count = messageRepository.countByConversationIdAndRecipientIdAndReadAtIsNull(
+            long count = messageRepository.countUnread(
                     conversation.getId(), user2Id);
 
             assertThat(count).isZero();
@@ -191,26 +183,44 @@ class MessageRepositoryIntegrationTest extends BaseIntegrationTest {
     }
 
     @Nested
-    @DisplayName("markConversationRead")
-    @Transactional
-    class MarkConversationRead {
+    @DisplayName("read watermark")
+    class ReadWatermark {
+
+        @Autowired
+        private ReadStateService readStateService;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        private int markRead(Instant readAt) {
+            return transactionTemplate.execute(status -> readStateService.markRead(conversation.getId(), user2Id, readAt))
+                    .newlyRead();
+        }
+
+        private List<UUID> markAllRead() {
+            return transactionTemplate.execute(status -> readStateService.markAllRead(user2Id, Instant.now()));
+        }
+
+        private Message latest(UUID messageId) {
+            return messageRepository.findLatest(conversation.getId(), 10).stream()
+                    .filter(m -> m.getId().equals(messageId))
+                    .findFirst()
+                    .orElseThrow();
+        }
 
         @Test
         @DisplayName("should mark all unread messages as read for recipient")
         void shouldMarkAllUnreadMessagesAsRead() {
             Instant readAt = Instant.now();
 
-            int updated = messageRepository.markConversationRead(
-                    conversation.getId(), user2Id, readAt);
+            int updated = markRead(readAt);
 
             assertThat(updated).isEqualTo(2); // message1 and message3
-
-            // Verify messages are marked as read
-            Message updatedMessage1 = messageRepository.findById(message1.getId()).orElseThrow();
-            Message updatedMessage3 = messageRepository.findById(message3.getId()).orElseThrow();
-
-            assertThat(updatedMessage1.getReadAt()).isNotNull();
-            assertThat(updatedMessage3.getReadAt()).isNotNull();
+            assertThat(latest(message1.getId()).getReadAt()).isNotNull();
+            assertThat(latest(message3.getId()).getReadAt()).isNotNull();
+            // Messages to the other participant are not affected
+            assertThat(latest(message2.getId()).getReadAt()).isNull();
+            assertThat(messageRepository.countUnread(conversation.getId(), user2Id)).isZero();
         }
 
         @Test
@@ -221,93 +231,73 @@ class MessageRepositoryIntegrationTest extends BaseIntegrationTest {
             messageRepository.save(message1);
 
             Instant newReadAt = Instant.now();
-            int updated = messageRepository.markConversationRead(
-                    conversation.getId(), user2Id, newReadAt);
+            int updated = markRead(newReadAt);
 
             assertThat(updated).isEqualTo(1); // Only message3
 
             // Verify original readAt is preserved
-            Message reloadedMessage1 = messageRepository.findById(message1.getId()).orElseThrow();
-            assertThat(reloadedMessage1.getReadAt()).isBefore(newReadAt);
+            assertThat(latest(message1.getId()).getReadAt()).isBefore(newReadAt);
         }
-    }
-
-    @Nested
-    @DisplayName("findBySenderId")
-    class FindBySenderId {
 
         @Test
-        @DisplayName("should find all messages sent by user")
-        void shouldFindAllMessagesSentByUser() {
-            List<Message> results = messageRepository.findBySenderId(user1Id);
+        @DisplayName("should count nothing when marking read twice")
+        void shouldBeIdempotent() {
+            markRead(Instant.now());
 
-            assertThat(results).hasSize(2);
-            assertThat(results).extracting(Message::getId)
-                    .containsExactlyInAnyOrder(message1.getId(), message3.getId());
+            assertThat(markRead(Instant.now())).isZero();
         }
 
         @Test
-        @DisplayName("should return empty for user with no sent messages")
-        void shouldReturnEmptyForUserWithNoSentMessages() {
-            List<Message> results = messageRepository.findBySenderId(UUID.randomUUID());
-
-            assertThat(results).isEmpty();
+        @DisplayName("should leave messages after the watermark unread")
+        void shouldLeaveNewerMessagesUnread() {
+            markRead(Instant.now());
+
+            Message newer = messageRepository.save(Message.builder()
+                    .id(UUID.randomUUID())
+                    .conversationId(conversation.getId())
+                    .senderId(user1Id)
+                    .recipientId(user2Id)
+                    .body("After reading")
+                    .createdAt(Instant.now().plus(1, ChronoUnit.MINUTES))
+                    .build());
+
+            assertThat(messageRepository.countUnread(conversation.getId(), user2Id)).isEqualTo(1);
+            assertThat(latest(newer.getId()).getReadAt()).isNull();
+            assertThat(markRead(Instant.now())).isEqualTo(1);
         }
-    }
-
-    @Nested
-    @DisplayName("findByRecipientId")
-    class FindByRecipientId {
 
         @Test
-        @DisplayName("should find all messages received by user")
-        void shouldFindAllMessagesReceivedByUser() {
-            List<Message> results = messageRepository.findByRecipientId(user2Id);
+        @DisplayName("should mark all conversations read and return those that had unread messages")
+        void shouldMarkAllConversationsRead() {
+            assertThat(markAllRead()).containsExactly(conversation.getId());
+            assertThat(messageRepository.countUnread(conversation.getId(), user2Id)).isZero();
 
-            assertThat(results).hasSize(2);
-            assertThat(results).extracting(Message::getId)
-                    .containsExactlyInAnyOrder(message1.getId(), message3.getId());
+            assertThat(markAllRead()).isEmpty();
         }
 
         @Test
-        @DisplayName("should return empty for user with no received messages")
-        void shouldReturnEmptyForUserWithNoReceivedMessages() {
-            List<Message> results = messageRepository.findByRecipientId(UUID.randomUUID());
-
-            assertThat(results).isEmpty();
+        @DisplayName("should report unread counts and watermarks for rebuilding counters")
+        void shouldReportUnreadStates() {
+            assertThat(readStateService.unreadStates(List.of(user2Id)).get(user2Id))
+                    .singleElement()
+                    .satisfies(state -> {
+                        assertThat(state.conversationId()).isEqualTo(conversation.getId());
+                        assertThat(state.unread()).isEqualTo(2);
+                        assertThat(state.watermark()).isNull();
+                    });
+
+            markRead(Instant.now());
+
+            assertThat(readStateService.unreadStates(List.of(user2Id)).get(user2Id))
+                    .singleElement()
+                    .satisfies(state -> {
+                        assertThat(state.unread()).isZero();
+                        assertThat(state.watermark().messageId()).isEqualTo(message3.getId());
+                    });
         }
     }
 
-    // Note: anonymizeMessagesBySender tests are skipped because the database schema
-    // has sender_id NOT NULL constraint. The GDPR anonymization would need a schema
-    // change to allow nullable sender_id for proper GDPR compliance.
-
-    @Nested
-    @DisplayName("deleteMessagesByRecipient")
-    @Transactional
-    class DeleteMessagesByRecipient {
-
-        @Test
-        @DisplayName("should delete all messages received by user")
-        void shouldDeleteAllMessagesReceivedByUser() {
-            int deleted = messageRepository.deleteMessagesByRecipient(user2Id);
-
-            assertThat(deleted).isEqualTo(2);
-
-            // Verify messages are deleted
-            assertThat(messageRepository.findById(message1.getId())).isEmpty();
-            assertThat(messageRepository.findById(message3.getId())).isEmpty();
-        }
-
-        @Test
-        @DisplayName("should not delete messages received by other users")
-        void shouldNotDeleteMessagesReceivedByOtherUsers() {
-            messageRepository.deleteMessagesByRecipient(user2Id);
-
-            // Message2 (received by user1) should still exist
-            assertThat(messageRepository.findById(message2.getId())).isPresent();
-        }
-    }
+    // Note: the batched GDPR deletion statements are covered by GdprDeletionJobIntegrationTest.
 
     @Nested
     @DisplayName("countBySenderId")
@@ -78,7 +78,7 @@ public class TestSecurityConfig {
         // Default behavior: no rate limiting in tests
         doNothing().when(mockService).checkMessageRateLimit(any());
         doNothing().when(mockService).checkConnectionRateLimit(any());
-        doNothing().when(mockService).checkTypingRateLimit(any());
+        when(mockService.checkTypingRateLimit(any())).thenReturn(true);
 
         return mockService;
     }
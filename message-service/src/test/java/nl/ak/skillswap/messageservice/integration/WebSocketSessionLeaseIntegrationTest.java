@@ -0,0 +1,115 @@
+package nl.ak.skillswap.messageservice.integration;
+
+import nl.ak.skillswap.messageservice.service.WebSocketSessionService;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("WebSocket session lease Integration Tests")
+class WebSocketSessionLeaseIntegrationTest extends BaseIntegrationTest {
+
+    private static final long LEASE_TTL_MS = 200;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    // Two nodes sharing the test Redis
+    private String localNodeId;
+    private String otherNodeId;
+    private WebSocketSessionService localNode;
+    private WebSocketSessionService otherNode;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        localNodeId = "node-" + UUID.randomUUID();
+        otherNodeId = "node-" + UUID.randomUUID();
+        localNode = new WebSocketSessionService(redisTemplate, new NodeIdentity(localNodeId), LEASE_TTL_MS);
+        otherNode = new WebSocketSessionService(redisTemplate, new NodeIdentity(otherNodeId), LEASE_TTL_MS);
+        userId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        localNode.releaseLease();
+        otherNode.releaseLease();
+        redisTemplate.delete("ws:sessions:" + userId);
+    }
+
+    private void connect(WebSocketSessionService node, String sessionId) {
+        node.registerSession(userId, sessionId);
+        node.renewLease(Map.of(userId, Set.of(sessionId)));
+    }
+
+    private void awaitLeaseExpired(String nodeId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Boolean.TRUE.equals(redisTemplate.hasKey("ws:node:" + nodeId))) {
+            assertThat(System.nanoTime()).as("lease of %s expires", nodeId).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private Map<Object, Object> userSessions() {
+        return redisTemplate.opsForHash().entries("ws:sessions:" + userId);
+    }
+
+    private Set<String> nodes() {
+        return redisTemplate.opsForSet().members("ws:nodes");
+    }
+
+    @Test
+    @DisplayName("should remove the sessions of a node whose lease expired")
+    void shouldReapExpiredNode() throws InterruptedException {
+        connect(localNode, "local-session");
+        connect(otherNode, "other-session");
+
+        awaitLeaseExpired(otherNodeId);
+
+        assertThat(localNode.reapExpiredNodes()).isEqualTo(1);
+        assertThat(userSessions()).containsOnlyKeys("local-session");
+        assertThat(nodes()).contains(localNodeId).doesNotContain(otherNodeId);
+        assertThat(redisTemplate.hasKey("ws:node-sessions:" + otherNodeId)).isFalse();
+    }
+
+    @Test
+    @DisplayName("should never reap the local node, even when its own lease expired")
+    void shouldNotReapLocalNode() throws InterruptedException {
+        connect(localNode, "local-session");
+
+        awaitLeaseExpired(localNodeId);
+
+        assertThat(localNode.reapExpiredNodes()).isZero();
+        assertThat(userSessions()).containsEntry("local-session", localNodeId);
+        assertThat(nodes()).contains(localNodeId);
+    }
+
+    @Test
+    @DisplayName("should write the sessions of a reaped node back on its next renewal")
+    void shouldRestoreSessionsOnRenewalAfterReap() throws InterruptedException {
+        connect(otherNode, "other-session");
+        awaitLeaseExpired(otherNodeId);
+        assertThat(localNode.reapExpiredNodes()).isEqualTo(1);
+        assertThat(localNode.isUserOnline(userId)).isFalse();
+
+        // The node was only paused; its connection is still open
+        otherNode.renewLease(Map.of(userId, Set.of("other-session")));
+
+        assertThat(userSessions()).containsEntry("other-session", otherNodeId);
+        assertThat(nodes()).contains(otherNodeId);
+        assertThat(redisTemplate.opsForHash().entries("ws:node-sessions:" + otherNodeId))
+                .containsEntry("other-session", userId.toString());
+        assertThat(localNode.reapExpiredNodes()).isZero();
+    }
+}
@@ -1,6 +1,8 @@
 package nl.ak.skillswap.messageservice.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.ak.skillswap.messageservice.domain.Conversation;
+import nl.ak.skillswap.messageservice.domain.ConversationMembers;
 import nl.ak.skillswap.messageservice.repository.ConversationRepository;
 import nl.ak.skillswap.messageservice.support.NotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,7 +13,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.List;
@@ -30,6 +35,10 @@ class ConversationServiceTest {
     @Mock
     private ConversationRepository conversationRepository;
 
+    @Spy
+    private ConversationMembershipCache membershipCache =
+            new ConversationMembershipCache(1_000, 60_000, new SimpleMeterRegistry());
+
     @InjectMocks
     private ConversationService conversationService;
 
@@ -175,6 +184,97 @@ class ConversationServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("getMembers")
+    class GetMembers {
+
+        @Test
+        @DisplayName("should load members once and serve later checks from memory")
+        void shouldCacheMembersAfterFirstLookup() {
+            Conversation existing = Conversation.builder()
+                    .id(conversationId)
+                    .userLowId(userId1)
+                    .userHighId(userId2)
+                    .createdAt(Instant.now())
+                    .build();
+            when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(existing));
+
+            ConversationMembers first = conversationService.getMembers(conversationId);
+            ConversationMembers second = conversationService.getMembers(conversationId);
+
+            assertThat(first).isEqualTo(new ConversationMembers(conversationId, userId1, userId2));
+            assertThat(second).isEqualTo(first);
+            verify(conversationRepository, times(1)).findById(conversationId);
+        }
+
+        @Test
+        @DisplayName("should not hit the database for a conversation returned by getOrCreate")
+        void shouldServeMembersOfCreatedConversation() {
+            when(conversationRepository.findByUserLowIdAndUserHighId(userId1, userId2))
+                    .thenReturn(Optional.empty());
+            when(conversationRepository.save(any(Conversation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            Conversation created = conversationService.getOrCreate(userId2, userId1);
+            ConversationMembers members = conversationService.getMembers(created.getId());
+
+            assertThat(members.involves(userId1)).isTrue();
+            assertThat(members.otherParticipant(userId1)).isEqualTo(userId2);
+            verify(conversationRepository, never()).findById(any());
+        }
+
+        @Test
+        @DisplayName("should cache members of a created conversation only after commit")
+        void shouldCacheCreatedConversationAfterCommit() {
+            when(conversationRepository.findByUserLowIdAndUserHighId(userId1, userId2))
+                    .thenReturn(Optional.empty());
+            when(conversationRepository.save(any(Conversation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                conversationService.getOrCreate(userId1, userId2);
+                verify(membershipCache, never()).put(any());
+
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                verify(membershipCache).put(any());
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("should throw NotFoundException and cache nothing when not found")
+        void shouldThrowAndNotCacheWhenNotFound() {
+            when(conversationRepository.findById(conversationId)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> conversationService.getMembers(conversationId))
+                    .isInstanceOf(NotFoundException.class);
+            assertThatThrownBy(() -> conversationService.getMembers(conversationId))
+                    .isInstanceOf(NotFoundException.class);
+
+            verify(conversationRepository, times(2)).findById(conversationId);
+        }
+
+        @Test
+        @DisplayName("should reload members after the user's conversations are evicted")
+        void shouldReloadAfterEviction() {
+            Conversation existing = Conversation.builder()
+                    .id(conversationId)
+                    .userLowId(userId1)
+                    .userHighId(userId2)
+                    .createdAt(Instant.now())
+                    .build();
+            when(conversationRepository.findById(conversationId))
+                    .thenReturn(Optional.of(existing))
+                    .thenReturn(Optional.empty());
+
+            conversationService.getMembers(conversationId);
+            membershipCache.evictUser(userId2);
+
+            assertThatThrownBy(() -> conversationService.getMembers(conversationId))
+                    .isInstanceOf(NotFoundException.class);
+        }
+    }
+
     @Nested
     @DisplayName("listForUser")
     class ListForUser {
@@ -0,0 +1,274 @@
+package nl.ak.skillswap.messageservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ak.skillswap.messageservice.api.dto.MessageDto;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.support.NodeIdentity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConversationTailCache")
+class ConversationTailCacheTest {
+
+    @Mock
+    private StringRedisTemplate redis;
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1_000));
+
+    private ConversationTailCache cache;
+
+    private final UUID conversationId = UUID.randomUUID();
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final Instant start = Instant.parse("2024-03-01T10:00:00Z");
+    private int sent;
+
+    @BeforeEach
+    void setUp() {
+        // Three messages per conversation, one-minute max age
+        cache = cache(1 << 20);
+    }
+
+    private ConversationTailCache cache(long maxBytes) {
+        return new ConversationTailCache(redis, new NodeIdentity("node-a"), new SimpleMeterRegistry(),
+                true, 3, maxBytes, 60_000, clock::get);
+    }
+
+    private Message message(UUID conversation, UUID from, UUID to) {
+        return Message.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversation)
+                .senderId(from)
+                .recipientId(to)
+                .body("message " + sent)
+                .createdAt(start.plusSeconds(sent++))
+                .build();
+    }
+
+    /**
+     * {@code count} messages, oldest first.
+     */
+    private List<Message> history(int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) messages.add(message(conversationId, alice, bob));
+        return messages;
+    }
+
+    private void load(ConversationTailCache target, UUID conversation, List<Message> oldestFirst) {
+        long stamp = target.beginLoad(conversation);
+        target.fill(conversation, oldestFirst.reversed(), stamp);
+    }
+
+    private List<UUID> firstPageIds(int pageSize) {
+        MessagePage page = cache.firstPage(conversationId, pageSize);
+        return page == null ? null : page.messages().stream().map(Message::getId).toList();
+    }
+
+    private void receive(String payload) {
+        cache.onMessage(new DefaultMessage(ConversationTailCache.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Nested
+    @DisplayName("first page")
+    class FirstPage {
+
+        @Test
+        @DisplayName("should miss until the conversation is loaded, then serve it newest first")
+        void shouldServeAfterLoad() {
+            List<Message> messages = history(2);
+
+            assertThat(cache.firstPage(conversationId, 2)).isNull();
+            load(cache, conversationId, messages);
+
+            MessagePage page = cache.firstPage(conversationId, 2);
+            assertThat(page.messages()).extracting(Message::getId)
+                    .containsExactly(messages.get(1).getId(), messages.get(0).getId());
+            assertThat(page.hasMore()).isFalse();
+            assertThat(cache.hitRatio()).isEqualTo(0.5);
+        }
+
+        @Test
+        @DisplayName("should serve pages up to the ring size and report older messages")
+        void shouldReportOlderMessages() {
+            List<Message> messages = history(4);
+            load(cache, conversationId, messages);
+
+            assertThat(cache.firstPage(conversationId, 2).hasMore()).isTrue();
+            assertThat(cache.firstPage(conversationId, 3).hasMore()).isTrue();
+            assertThat(cache.firstPage(conversationId, 4)).isNull();
+        }
+
+        @Test
+        @DisplayName("should serve any page size when the ring holds the whole conversation")
+        void shouldServeWholeConversation() {
+            load(cache, conversationId, history(2));
+
+            MessagePage page = cache.firstPage(conversationId, 50);
+            assertThat(page.messages()).hasSize(2);
+            assertThat(page.hasMore()).isFalse();
+        }
+
+        @Test
+        @DisplayName("should reload a tail older than max-age")
+        void shouldExpireOldTails() {
+            load(cache, conversationId, history(2));
+
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+            assertThat(cache.firstPage(conversationId, 2)).isNull();
+        }
+
+        @Test
+        @DisplayName("should not store a load that overlapped a send")
+        void shouldDiscardRacingLoad() {
+            List<Message> messages = history(2);
+            long stamp = cache.beginLoad(conversationId);
+            cache.appendSent(List.of(message(conversationId, bob, alice)));
+
+            cache.fill(conversationId, messages.reversed(), stamp);
+
+            assertThat(cache.firstPage(conversationId, 2)).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("appends")
+    class Appends {
+
+        @Test
+        @DisplayName("should add sent messages and drop the oldest from a full ring")
+        void shouldAppendToRing() {
+            List<Message> messages = history(3);
+            load(cache, conversationId, messages);
+
+            Message reply = message(conversationId, bob, alice);
+            cache.appendSent(List.of(reply));
+
+            assertThat(firstPageIds(3)).containsExactly(reply.getId(), messages.get(2).getId(), messages.get(1).getId());
+            verify(redis).convertAndSend(ConversationTailCache.CHANNEL,
+                    "node-a|A|" + conversationId + "|" + reply.getId());
+        }
+
+        @Test
+        @DisplayName("should keep the ring ordered when messages commit out of order, ignoring duplicates")
+        void shouldInsertInOrder() {
+            List<Message> messages = history(1);
+            Message earlier = message(conversationId, alice, bob);
+            Message later = message(conversationId, bob, alice);
+            load(cache, conversationId, messages);
+
+            cache.appendSent(List.of(later));
+            cache.appendDelivered(MessageDto.from(earlier));
+            cache.appendDelivered(MessageDto.from(later));
+
+            assertThat(firstPageIds(3)).containsExactly(later.getId(), earlier.getId(), messages.get(0).getId());
+        }
+
+        @Test
+        @DisplayName("should not serve a ring while a message sent elsewhere has not been delivered here")
+        void shouldWaitForRemoteSend() {
+            load(cache, conversationId, history(1));
+            Message remote = message(conversationId, bob, alice);
+
+            receive("node-b|A|" + conversationId + "|" + remote.getId());
+            assertThat(cache.firstPage(conversationId, 2)).isNull();
+
+            cache.appendDelivered(MessageDto.from(remote));
+            assertThat(firstPageIds(2)).first().isEqualTo(remote.getId());
+        }
+
+        @Test
+        @DisplayName("should ignore its own notifications")
+        void shouldIgnoreOwnNotifications() {
+            load(cache, conversationId, history(1));
+
+            receive("node-a|I|" + conversationId + "|");
+
+            assertThat(cache.firstPage(conversationId, 1)).isNotNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("invalidation")
+    class Invalidation {
+
+        @Test
+        @DisplayName("should mark messages to the reader as read up to the watermark")
+        void shouldApplyReadWatermark() {
+            List<Message> messages = history(3);
+            load(cache, conversationId, messages);
+            Instant readAt = start.plusSeconds(60);
+
+            Message last = messages.get(1);
+            cache.markRead(conversationId, bob, new ReadStateService.Watermark(last.getCreatedAt(), last.getId()), readAt);
+
+            assertThat(cache.firstPage(conversationId, 3).messages()).extracting(Message::getReadAt)
+                    .containsExactly(null, readAt, readAt);
+        }
+
+        @Test
+        @DisplayName("should drop a conversation when another instance changes it")
+        void shouldDropOnRemoteInvalidation() {
+            load(cache, conversationId, history(1));
+
+            receive("node-b|I|" + conversationId + "|");
+
+            assertThat(cache.firstPage(conversationId, 1)).isNull();
+            assertThat(cache.estimatedBytes()).isZero();
+        }
+
+        @Test
+        @DisplayName("should drop every conversation with messages of a deleted user")
+        void shouldEvictUser() {
+            UUID otherConversation = UUID.randomUUID();
+            load(cache, conversationId, history(1));
+            load(cache, otherConversation, List.of(message(otherConversation, bob, UUID.randomUUID())));
+
+            cache.evictUser(alice);
+
+            assertThat(cache.firstPage(conversationId, 1)).isNull();
+            assertThat(cache.firstPage(otherConversation, 1)).isNotNull();
+            verify(redis).convertAndSend(ConversationTailCache.CHANNEL, "node-a|U|" + alice + "|");
+        }
+
+        @Test
+        @DisplayName("should evict the least recently used conversations to stay within the byte budget")
+        void shouldEvictLeastRecentlyUsed() {
+            UUID second = UUID.randomUUID();
+            UUID third = UUID.randomUUID();
+            long oneMessageTail = ConversationTailCache.TAIL_OVERHEAD_BYTES
+                    + ConversationTailCache.MESSAGE_OVERHEAD_BYTES + 2L * "message 0".length();
+            cache = cache(2 * oneMessageTail);
+
+            load(cache, conversationId, List.of(message(conversationId, alice, bob)));
+            load(cache, second, List.of(message(second, alice, bob)));
+            cache.firstPage(conversationId, 1);
+            load(cache, third, List.of(message(third, alice, bob)));
+
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.firstPage(second, 1)).isNull();
+            assertThat(cache.firstPage(conversationId, 1)).isNotNull();
+            assertThat(cache.estimatedBytes()).isLessThanOrEqualTo(2 * oneMessageTail);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package nl.ak.skillswap.messageservice.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LocalPresenceRegistry")
+class LocalPresenceRegistryTest {
+
+    private final LocalPresenceRegistry registry = new LocalPresenceRegistry();
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    @DisplayName("should report a user as connected while any session is open")
+    void shouldTrackUntilLastSessionCloses() {
+        registry.add(userId, "s1");
+        registry.add(userId, "s2");
+
+        registry.remove(userId, "s1");
+        assertThat(registry.isConnected(userId)).isTrue();
+
+        registry.remove(userId, "s2");
+        assertThat(registry.isConnected(userId)).isFalse();
+        assertThat(registry.snapshot()).doesNotContainKey(userId);
+    }
+
+    @Test
+    @DisplayName("should ignore removal of unknown sessions")
+    void shouldIgnoreUnknownSessions() {
+        registry.remove(userId, "never-added");
+        registry.add(userId, "s1");
+        registry.remove(userId, "other");
+
+        assertThat(registry.isConnected(userId)).isTrue();
+        assertThat(registry.snapshot()).containsEntry(userId, Set.of("s1"));
+    }
+
+    @Test
+    @DisplayName("should keep a session added while the user's last other session is removed")
+    void shouldKeepSessionAddedDuringRemoval() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                registry.add(userId, "old");
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> removal = executor.submit(() -> {
+                    barrier.await();
+                    registry.remove(userId, "old");
+                    return null;
+                });
+                Future<?> addition = executor.submit(() -> {
+                    barrier.await();
+                    registry.add(userId, "new");
+                    return null;
+                });
+                removal.get();
+                addition.get();
+
+                assertThat(registry.snapshot()).as("round %d", i).containsEntry(userId, Set.of("new"));
+                registry.remove(userId, "new");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
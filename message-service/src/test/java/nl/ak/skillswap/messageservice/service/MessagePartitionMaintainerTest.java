@@ -0,0 +1,74 @@
+package nl.ak.skillswap.messageservice.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessagePartitionMaintainer")
+class MessagePartitionMaintainerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private MessagePartitionMaintainer maintainer;
+
+    private final YearMonth current = YearMonth.of(2026, 3);
+
+    @Test
+    @DisplayName("should create partitions from the current month through months-ahead")
+    void shouldCreateAhead() {
+        ReflectionTestUtils.setField(maintainer, "monthsAhead", 3);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(), any())).thenReturn(1);
+
+        assertThat(maintainer.createPartitions(current)).isEqualTo(1);
+
+        verify(jdbcTemplate).queryForObject(anyString(), eq(Integer.class), eq(current.atDay(1)), eq(4));
+    }
+
+    @Test
+    @DisplayName("should detach and drop only partitions before the retention window")
+    void shouldDropExpiredPartitions() {
+        ReflectionTestUtils.setField(maintainer, "retentionMonths", 12);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("messages_p202502", "messages_p202503", "messages_p202603", "messages_archive"));
+
+        assertThat(maintainer.dropExpiredPartitions(current)).containsExactly(YearMonth.of(2025, 2));
+
+        verify(jdbcTemplate).execute("ALTER TABLE messages DETACH PARTITION \"messages_p202502\" CONCURRENTLY");
+        verify(jdbcTemplate).execute("DROP TABLE \"messages_p202502\"");
+        verify(jdbcTemplate, times(2)).execute(anyString());
+    }
+
+    @Test
+    @DisplayName("should keep every partition when retention is disabled")
+    void shouldKeepEverythingWithoutRetention() {
+        assertThat(maintainer.dropExpiredPartitions(current)).isEmpty();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("should still apply retention when creating partitions fails")
+    void shouldApplyRetentionWhenCreateFails() {
+        ReflectionTestUtils.setField(maintainer, "retentionMonths", 1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(), any()))
+                .thenThrow(new IllegalStateException("db down"));
+
+        maintainer.tick();
+
+        verify(jdbcTemplate).queryForList(anyString(), eq(String.class));
+    }
+}
@@ -8,6 +8,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Random;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -134,6 +136,59 @@ class MessageSanitizerTest {
         }
     }
 
+    @Nested
+    @DisplayName("single pass")
+    class SinglePass {
+
+        private static final String[] ALPHABET = {
+                "a", "Z", " ", "\t", "\n", "\r", "\r\n", "\u0000", "\u0007", "\u000B", "\u001F", "\u007F",
+                "&", "<", ">", "\"", "'", "é", "€", "\u00A0", "\u0085", "\u2028", "\uFDD0", "\uFFFE",
+                "\uD83D\uDE00", "\uD83D", "\uDE00"
+        };
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "line1\r\u0001\nline2",
+                "a\r\r\nb",
+                "a\n\u0000\n\u0007\n\n\nb",
+                "tail\r\u007F",
+                "\uD83D\u0001\uDE00 joined by removal",
+                "smile \uD83D\uDE00 & <b>'quoted'</b>",
+                "c1 control \u0085 and nonchar \uFDD0"
+        })
+        @DisplayName("should match the step-by-step sanitization on edge cases")
+        void shouldMatchStepwiseOnEdgeCases(String input) {
+            assertThat(messageSanitizer.sanitize(input))
+                    .isEqualTo(MessageSanitizer.sanitizeStepwise(input.trim()));
+        }
+
+        @Test
+        @DisplayName("should match the step-by-step sanitization on random input")
+        void shouldMatchStepwiseOnRandomInput() {
+            Random random = new Random(42);
+            for (int n = 0; n < 20_000; n++) {
+                StringBuilder input = new StringBuilder("x");
+                int parts = random.nextInt(40);
+                for (int i = 0; i < parts; i++) {
+                    input.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+                }
+                input.append('y');
+
+                String raw = input.toString();
+                assertThat(messageSanitizer.sanitize(raw))
+                        .as("input %s", raw.chars().mapToObj(Integer::toHexString).toList())
+                        .isEqualTo(MessageSanitizer.sanitizeStepwise(raw.trim()));
+            }
+        }
+
+        @Test
+        @DisplayName("should encode a full-length message of specials")
+        void shouldEncodeFullLengthSpecials() {
+            String result = messageSanitizer.sanitize("<".repeat(2000));
+            assertThat(result).isEqualTo("&lt;".repeat(2000));
+        }
+    }
+
     @Nested
     @DisplayName("sanitizeForWebSocket")
     class SanitizeForWebSocket {
@@ -0,0 +1,195 @@
+package nl.ak.skillswap.messageservice.service;
+
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.service.event.MessageOutboxRelay;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageSendPipeline")
+class MessageSendPipelineTest {
+
+    @Mock
+    private MessageBatchWriter batchWriter;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    @Mock
+    private MessageOutboxRelay outboxRelay;
+
+    @Mock
+    private ConversationTailCache tailCache;
+
+    @InjectMocks
+    private MessageSendPipeline pipeline;
+
+    private final UUID conversationId = UUID.randomUUID();
+    private final UUID senderId = UUID.randomUUID();
+    private final UUID recipientId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pipeline, "enabled", true);
+        ReflectionTestUtils.setField(pipeline, "maxBatchSize", 16);
+        ReflectionTestUtils.setField(pipeline, "maxDelayMs", 50L);
+        ReflectionTestUtils.setField(pipeline, "submitTimeoutMs", 5000L);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+    }
+
+    private Message message(String body) {
+        return Message.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversationId)
+                .senderId(senderId)
+                .recipientId(recipientId)
+                .body(body)
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("should commit concurrent sends as one group and return each caller its own message")
+    void shouldGroupConcurrentSends() throws Exception {
+        int senders = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        try {
+            List<Message> sent = new ArrayList<>();
+            List<Future<Message>> results = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                Message m = message("msg" + i);
+                sent.add(m);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return pipeline.submit(m);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < senders; i++) {
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS)).isSameAs(sent.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Message>> batches = ArgumentCaptor.forClass(List.class);
+        verify(batchWriter, atMost(senders)).writeBatch(batches.capture());
+        assertThat(batches.getAllValues().stream().mapToInt(List::size).sum()).isEqualTo(senders);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Message>> counted = ArgumentCaptor.forClass(List.class);
+        verify(unreadCounterService, atLeastOnce()).incrementUnreadBatch(counted.capture());
+        long totalIncrements = counted.getAllValues().stream().mapToLong(List::size).sum();
+        assertThat(totalIncrements).isEqualTo(senders);
+        verify(outboxRelay, atLeastOnce()).wakeUp();
+    }
+
+    @Test
+    @DisplayName("should fail only the offending caller when a group cannot be committed")
+    void shouldIsolateFailuresToTheirOwnCaller() throws Exception {
+        Message good = message("good");
+        Message bad = message("bad");
+
+        doAnswer(invocation -> {
+            List<Message> batch = invocation.getArgument(0);
+            if (batch.contains(bad)) throw new DataIntegrityViolationException("conversation was deleted");
+            return null;
+        }).when(batchWriter).writeBatch(anyList());
+
+        CompletableFuture<Message> goodResult = CompletableFuture.supplyAsync(() -> pipeline.submit(good));
+        CompletableFuture<Message> badResult = CompletableFuture.supplyAsync(() -> pipeline.submit(bad));
+
+        assertThat(goodResult.get(5, TimeUnit.SECONDS)).isSameAs(good);
+        assertThatThrownBy(() -> badResult.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("should complete sends and wake the relay when the counters cannot be updated")
+    void shouldCompleteSendsWhenRedisFails() throws Exception {
+        when(unreadCounterService.incrementUnreadBatch(anyList())).thenThrow(new IllegalStateException("redis down"));
+
+        Message m = message("hello");
+        assertThat(CompletableFuture.supplyAsync(() -> pipeline.submit(m)).get(5, TimeUnit.SECONDS)).isSameAs(m);
+
+        verify(outboxRelay).wakeUp();
+    }
+
+    @Test
+    @DisplayName("should not write a send whose caller already timed out")
+    void shouldSkipTimedOutSends() throws Exception {
+        ReflectionTestUtils.setField(pipeline, "submitTimeoutMs", 200L);
+        Message blocking = message("blocking");
+        Message late = message("late");
+
+        // Hold the flusher inside the first write so the next send waits in the queue
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            List<Message> batch = invocation.getArgument(0);
+            if (batch.contains(blocking)) {
+                writing.countDown();
+                release.await();
+            }
+            return null;
+        }).when(batchWriter).writeBatch(anyList());
+
+        CompletableFuture.runAsync(() -> pipeline.submit(blocking));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> pipeline.submit(late))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Timed out");
+
+        release.countDown();
+        pipeline.stop();
+
+        verify(batchWriter, never()).writeBatch(argThat((List<Message> batch) -> batch.contains(late)));
+        verify(tailCache, never()).appendSent(argThat((List<Message> batch) -> batch.contains(late)));
+    }
+
+    @Test
+    @DisplayName("should reject submissions when not running")
+    void shouldRejectWhenStopped() {
+        pipeline.stop();
+
+        assertThat(pipeline.isEnabled()).isFalse();
+        assertThatThrownBy(() -> pipeline.submit(message("late")))
+                .isInstanceOf(IllegalStateException.class);
+        verify(batchWriter, never()).writeBatch(any());
+    }
+}
@@ -1,11 +1,14 @@
 package nl.ak.skillswap.messageservice.service;
 
 import nl.ak.skillswap.messageservice.domain.Conversation;
+import nl.ak.skillswap.messageservice.domain.ConversationMembers;
 import nl.ak.skillswap.messageservice.domain.Message;
 import nl.ak.skillswap.messageservice.repository.MessageRepository;
-import nl.ak.skillswap.messageservice.service.event.MessageCreatedEvent;
-import nl.ak.skillswap.messageservice.service.event.MessageEventPublisher;
+import nl.ak.skillswap.messageservice.service.event.MessageOutbox;
+import nl.ak.skillswap.messageservice.service.event.MessageOutboxRelay;
 import nl.ak.skillswap.messageservice.support.ForbiddenException;
+import nl.ak.skillswap.messageservice.support.MessageCursor;
+import nl.ak.skillswap.messageservice.support.NotFoundException;
 import nl.ak.skillswap.messageservice.support.RateLimitExceededException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,15 +19,21 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -42,7 +51,10 @@ class MessageServiceTest {
     private UnreadCounterService unreadCounterService;
 
     @Mock
-    private MessageEventPublisher eventPublisher;
+    private MessageOutbox outbox;
+
+    @Mock
+    private MessageOutboxRelay outboxRelay;
 
     @Mock
     private UserValidationService userValidationService;
@@ -56,6 +68,24 @@ class MessageServiceTest {
     @Mock
     private RealTimeMessagingService realTimeMessagingService;
 
+    @Mock
+    private MessageSendPipeline sendPipeline;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private InboxSequenceAllocator sequenceAllocator;
+
+    @Mock
+    private InboxSyncService inboxSyncService;
+
+    @Mock
+    private ReadStateService readStateService;
+
+    @Mock
+    private ConversationTailCache tailCache;
+
     @InjectMocks
     private MessageService messageService;
 
@@ -80,6 +110,13 @@ class MessageServiceTest {
                 .userHighId(high)
                 .createdAt(Instant.now())
                 .build();
+
+        // Run the per-message transaction callback inline
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // Behave like a disabled tail cache unless a test says otherwise
+        lenient().when(tailCache.loadSize(anyInt())).thenAnswer(invocation -> invocation.<Integer>getArgument(0) + 1);
     }
 
     @Nested
@@ -107,8 +144,9 @@ class MessageServiceTest {
             assertThat(result.getReadAt()).isNull();
 
             verify(conversationService).touchLastMessage(eq(conversation), any(Instant.class));
-            verify(unreadCounterService).incrementUnread(recipientId, conversationId);
-            verify(eventPublisher).publishMessageCreated(any(MessageCreatedEvent.class));
+            verify(outbox).append(List.of(result));
+            verify(unreadCounterService).incrementUnread(result);
+            verify(outboxRelay).wakeUp();
         }
 
         @Test
@@ -136,6 +174,26 @@ class MessageServiceTest {
             verify(messageRepository, never()).save(any());
         }
 
+        @Test
+        @DisplayName("should clear the unread counter only after commit")
+        void shouldClearCounterAfterCommit() {
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            ReadStateService.Watermark watermark = new ReadStateService.Watermark(Instant.now(), UUID.randomUUID());
+            when(readStateService.markRead(eq(conversationId), eq(senderId), any(Instant.class)))
+                    .thenReturn(new ReadStateService.MarkReadResult(5, watermark));
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                messageService.markRead(senderId, conversationId);
+                verify(unreadCounterService, never()).clearUnread(any(), any(), any());
+
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                verify(unreadCounterService).clearUnread(senderId, conversationId, watermark);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
         @Test
         @DisplayName("should throw ForbiddenException when user not in conversation")
         void shouldThrowForbiddenWhenUserNotInConversation() {
@@ -159,23 +217,70 @@ class MessageServiceTest {
         }
 
         @Test
-        @DisplayName("should publish message created event with correct data")
-        void shouldPublishEventWithCorrectData() {
+        @DisplayName("should queue the delivery even when the unread counter cannot be updated")
+        void shouldQueueDeliveryWhenCounterFails() {
             doNothing().when(rateLimitingService).checkMessageRateLimit(senderId);
             when(userValidationService.canSendMessageTo(senderId, recipientId)).thenReturn(true);
             when(messageSanitizer.sanitize(any())).thenReturn("test");
             when(conversationService.getOrCreate(senderId, recipientId)).thenReturn(conversation);
             when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+            when(unreadCounterService.incrementUnread(any(Message.class))).thenThrow(new IllegalStateException("redis down"));
+
+            Message result = messageService.sendMessage(senderId, recipientId, "test");
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<Message>> queued = ArgumentCaptor.forClass(List.class);
+            verify(outbox).append(queued.capture());
+            assertThat(queued.getValue()).singleElement().satisfies(message -> {
+                assertThat(message.getSenderId()).isEqualTo(senderId);
+                assertThat(message.getRecipientId()).isEqualTo(recipientId);
+                assertThat(message.getConversationId()).isEqualTo(conversationId);
+                assertThat(message.getBody()).isEqualTo("test");
+            });
+            assertThat(result.getBody()).isEqualTo("test");
+            verify(outboxRelay).wakeUp();
+        }
 
-            messageService.sendMessage(senderId, recipientId, "test");
+        @Test
+        @DisplayName("should hand message to group-commit pipeline when enabled")
+        void shouldUseGroupCommitPipelineWhenEnabled() {
+            when(sendPipeline.isEnabled()).thenReturn(true);
+            when(userValidationService.canSendMessageTo(senderId, recipientId)).thenReturn(true);
+            when(messageSanitizer.sanitize(any())).thenReturn("test");
+            when(conversationService.getOrCreate(senderId, recipientId)).thenReturn(conversation);
+            when(sendPipeline.submit(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-            ArgumentCaptor<MessageCreatedEvent> eventCaptor = ArgumentCaptor.forClass(MessageCreatedEvent.class);
-            verify(eventPublisher).publishMessageCreated(eventCaptor.capture());
+            Message result = messageService.sendMessage(senderId, recipientId, "test");
 
-            MessageCreatedEvent event = eventCaptor.getValue();
-            assertThat(event.senderId()).isEqualTo(senderId);
-            assertThat(event.recipientId()).isEqualTo(recipientId);
-            assertThat(event.conversationId()).isEqualTo(conversationId);
+            assertThat(result.getConversationId()).isEqualTo(conversationId);
+            assertThat(result.getRecipientId()).isEqualTo(recipientId);
+            assertThat(result.getBody()).isEqualTo("test");
+
+            verify(transactionTemplate, never()).execute(any());
+            verify(messageRepository, never()).save(any());
+            verify(unreadCounterService, never()).incrementUnread(any());
+            verify(outbox, never()).append(any());
+        }
+
+        @Test
+        @DisplayName("should not submit to group-commit pipeline when user not in conversation")
+        void shouldNotSubmitWhenNotInConversationWithGroupCommit() {
+            Conversation otherConversation = Conversation.builder()
+                    .id(UUID.randomUUID())
+                    .userLowId(UUID.randomUUID())
+                    .userHighId(UUID.randomUUID())
+                    .createdAt(Instant.now())
+                    .build();
+
+            when(sendPipeline.isEnabled()).thenReturn(true);
+            when(userValidationService.canSendMessageTo(senderId, recipientId)).thenReturn(true);
+            when(messageSanitizer.sanitize(any())).thenReturn("test");
+            when(conversationService.getOrCreate(senderId, recipientId)).thenReturn(otherConversation);
+
+            assertThatThrownBy(() -> messageService.sendMessage(senderId, recipientId, "test"))
+                    .isInstanceOf(ForbiddenException.class);
+
+            verify(sendPipeline, never()).submit(any());
         }
     }
 
@@ -189,67 +294,161 @@ class MessageServiceTest {
             Message message1 = Message.builder().id(UUID.randomUUID()).body("msg1").build();
             Message message2 = Message.builder().id(UUID.randomUUID()).body("msg2").build();
 
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
-            when(messageRepository.findByConversationIdOrderByCreatedAtDesc(eq(conversationId), any(PageRequest.class)))
-                    .thenReturn(List.of(message1, message2));
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(messageRepository.findLatest(conversationId, 21)).thenReturn(List.of(message1, message2));
+
+            MessagePage result = messageService.listMessages(senderId, conversationId, null, MessageCursor.Direction.BEFORE, 20);
+
+            assertThat(result.messages()).containsExactly(message1, message2);
+            assertThat(result.hasMore()).isFalse();
+        }
+
+        @Test
+        @DisplayName("should report more messages when an extra row is returned")
+        void shouldReportHasMoreFromExtraRow() {
+            Message message1 = Message.builder().id(UUID.randomUUID()).body("msg1").build();
+            Message message2 = Message.builder().id(UUID.randomUUID()).body("msg2").build();
+
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(messageRepository.findLatest(conversationId, 2)).thenReturn(List.of(message1, message2));
 
-            List<Message> result = messageService.listMessages(senderId, conversationId, null, 20);
+            MessagePage result = messageService.listMessages(senderId, conversationId, null, MessageCursor.Direction.BEFORE, 1);
 
-            assertThat(result).hasSize(2);
-            assertThat(result).containsExactly(message1, message2);
+            assertThat(result.messages()).containsExactly(message1);
+            assertThat(result.hasMore()).isTrue();
         }
 
         @Test
-        @DisplayName("should use cursor pagination when before timestamp provided")
+        @DisplayName("should serve the first page from the tail cache")
+        void shouldServeFirstPageFromTailCache() {
+            MessagePage cached = new MessagePage(List.of(Message.builder().id(UUID.randomUUID()).body("msg").build()), true);
+
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(tailCache.firstPage(conversationId, 20)).thenReturn(cached);
+
+            assertThat(messageService.listMessages(senderId, conversationId, null, MessageCursor.Direction.BEFORE, 20))
+                    .isSameAs(cached);
+            verifyNoInteractions(messageRepository);
+        }
+
+        @Test
+        @DisplayName("should fill the tail cache with a full ring on a miss")
+        void shouldFillTailCacheOnMiss() {
+            List<Message> latest = List.of(
+                    Message.builder().id(UUID.randomUUID()).body("msg2").build(),
+                    Message.builder().id(UUID.randomUUID()).body("msg1").build());
+
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(tailCache.loadSize(1)).thenReturn(51);
+            when(tailCache.beginLoad(conversationId)).thenReturn(7L);
+            when(messageRepository.findLatest(conversationId, 51)).thenReturn(latest);
+
+            MessagePage result = messageService.listMessages(senderId, conversationId, null, MessageCursor.Direction.BEFORE, 1);
+
+            assertThat(result.messages()).containsExactly(latest.getFirst());
+            assertThat(result.hasMore()).isTrue();
+            verify(tailCache).fill(conversationId, latest, 7L);
+        }
+
+        @Test
+        @DisplayName("should page older messages before the cursor")
         void shouldUseCursorPaginationWhenBeforeProvided() {
-            Instant before = Instant.now();
+            MessageCursor cursor = new MessageCursor(Instant.now(), UUID.randomUUID());
 
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
-            when(messageRepository.findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc(
-                    eq(conversationId), eq(before), any(PageRequest.class)))
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(messageRepository.findBeforeCursor(conversationId, cursor.createdAt(), cursor.id(), 21))
                     .thenReturn(List.of());
 
-            messageService.listMessages(senderId, conversationId, before, 20);
+            messageService.listMessages(senderId, conversationId, cursor, MessageCursor.Direction.BEFORE, 20);
+
+            verify(messageRepository).findBeforeCursor(conversationId, cursor.createdAt(), cursor.id(), 21);
+        }
+
+        @Test
+        @DisplayName("should page newer messages after the cursor and return them newest first")
+        void shouldPageAfterCursorNewestFirst() {
+            MessageCursor cursor = new MessageCursor(Instant.now(), UUID.randomUUID());
+            Message older = Message.builder().id(UUID.randomUUID()).body("older").build();
+            Message newer = Message.builder().id(UUID.randomUUID()).body("newer").build();
+
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(messageRepository.findAfterCursor(conversationId, cursor.createdAt(), cursor.id(), 21))
+                    .thenReturn(List.of(older, newer));
 
-            verify(messageRepository).findByConversationIdAndCreatedAtBeforeOrderByCreatedAtDesc(
-                    eq(conversationId), eq(before), any(PageRequest.class));
+            MessagePage result = messageService.listMessages(senderId, conversationId, cursor, MessageCursor.Direction.AFTER, 20);
+
+            assertThat(result.messages()).containsExactly(newer, older);
+            assertThat(result.hasMore()).isFalse();
         }
 
         @Test
         @DisplayName("should clamp page size to 1-100 range")
         void shouldClampPageSize() {
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
-            when(messageRepository.findByConversationIdOrderByCreatedAtDesc(eq(conversationId), any(PageRequest.class)))
-                    .thenReturn(List.of());
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
 
-            // Test minimum clamping
-            messageService.listMessages(senderId, conversationId, null, -5);
-            ArgumentCaptor<PageRequest> captor1 = ArgumentCaptor.forClass(PageRequest.class);
-            verify(messageRepository).findByConversationIdOrderByCreatedAtDesc(eq(conversationId), captor1.capture());
-            assertThat(captor1.getValue().getPageSize()).isEqualTo(1);
+            // Test minimum clamping (one extra row is fetched to detect more pages)
+            messageService.listMessages(senderId, conversationId, null, MessageCursor.Direction.BEFORE, -5);
+            verify(messageRepository).findLatest(conversationId, 2);
 
             // Test maximum clamping
-            reset(messageRepository);
-            when(messageRepository.findByConversationIdOrderByCreatedAtDesc(eq(conversationId), any(PageRequest.class)))
-                    .thenReturn(List.of());
-            messageService.listMessages(senderId, conversationId, null, 500);
-            ArgumentCaptor<PageRequest> captor2 = ArgumentCaptor.forClass(PageRequest.class);
-            verify(messageRepository).findByConversationIdOrderByCreatedAtDesc(eq(conversationId), captor2.capture());
-            assertThat(captor2.getValue().getPageSize()).isEqualTo(100);
+            messageService.listMessages(senderId, conversationId, null, MessageCursor.Direction.BEFORE, 500);
+            verify(messageRepository).findLatest(conversationId, 101);
         }
 
         @Test
         @DisplayName("should throw ForbiddenException when user not in conversation")
         void shouldThrowForbiddenWhenUserNotInConversation() {
             UUID outsider = UUID.randomUUID();
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
 
-            assertThatThrownBy(() -> messageService.listMessages(outsider, conversationId, null, 20))
+            assertThatThrownBy(() -> messageService.listMessages(outsider, conversationId, null, MessageCursor.Direction.BEFORE, 20))
                     .isInstanceOf(ForbiddenException.class)
                     .hasMessage("Not allowed");
         }
     }
 
+    @Nested
+    @DisplayName("listAround")
+    class ListAround {
+
+        @Test
+        @DisplayName("should centre the page on the anchor message")
+        void shouldCentreOnAnchor() {
+            Message anchor = Message.builder().id(UUID.randomUUID()).conversationId(conversationId)
+                    .createdAt(Instant.parse("2024-01-01T12:00:00Z")).build();
+            Message newer1 = Message.builder().id(UUID.randomUUID()).build();
+            Message newer2 = Message.builder().id(UUID.randomUUID()).build();
+            Message older1 = Message.builder().id(UUID.randomUUID()).build();
+            Message older2 = Message.builder().id(UUID.randomUUID()).build();
+            Message older3 = Message.builder().id(UUID.randomUUID()).build();
+
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(messageRepository.findInConversation(conversationId, anchor.getId())).thenReturn(Optional.of(anchor));
+            when(messageRepository.findAfterCursor(conversationId, anchor.getCreatedAt(), anchor.getId(), 2))
+                    .thenReturn(List.of(newer1, newer2));
+            when(messageRepository.findBeforeCursor(conversationId, anchor.getCreatedAt(), anchor.getId(), 3))
+                    .thenReturn(List.of(older1, older2, older3));
+
+            MessagePage result = messageService.listAround(senderId, conversationId, anchor.getId(), 5);
+
+            assertThat(result.messages()).containsExactly(newer2, newer1, anchor, older1, older2);
+            assertThat(result.hasMore()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should throw NotFoundException for a message from another conversation")
+        void shouldRejectAnchorFromOtherConversation() {
+            Message foreign = Message.builder().id(UUID.randomUUID()).conversationId(UUID.randomUUID())
+                    .createdAt(Instant.now()).build();
+
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(messageRepository.findInConversation(conversationId, foreign.getId())).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> messageService.listAround(senderId, conversationId, foreign.getId(), 5))
+                    .isInstanceOf(NotFoundException.class);
+        }
+    }
+
     @Nested
     @DisplayName("markRead")
     class MarkRead {
@@ -257,28 +456,31 @@ class MessageServiceTest {
         @Test
         @DisplayName("should mark messages as read and notify sender")
         void shouldMarkMessagesAsReadAndNotifySender() {
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
-            when(messageRepository.markConversationRead(eq(conversationId), eq(senderId), any(Instant.class)))
-                    .thenReturn(5);
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            ReadStateService.Watermark watermark = new ReadStateService.Watermark(Instant.now(), UUID.randomUUID());
+            when(readStateService.markRead(eq(conversationId), eq(senderId), any(Instant.class)))
+                    .thenReturn(new ReadStateService.MarkReadResult(5, watermark));
 
             int result = messageService.markRead(senderId, conversationId);
 
             assertThat(result).isEqualTo(5);
-            verify(unreadCounterService).clearUnread(senderId, conversationId);
+            verify(unreadCounterService).clearUnread(senderId, conversationId, watermark);
+            verify(inboxSyncService).recordRead(eq(conversationId), eq(senderId), eq(recipientId), any(Instant.class));
             verify(realTimeMessagingService).notifyMessagesRead(recipientId, conversationId);
         }
 
         @Test
         @DisplayName("should not notify if no messages were updated")
         void shouldNotNotifyIfNoMessagesUpdated() {
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
-            when(messageRepository.markConversationRead(eq(conversationId), eq(senderId), any(Instant.class)))
-                    .thenReturn(0);
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(readStateService.markRead(eq(conversationId), eq(senderId), any(Instant.class)))
+                    .thenReturn(ReadStateService.MarkReadResult.UNCHANGED);
 
             int result = messageService.markRead(senderId, conversationId);
 
             assertThat(result).isEqualTo(0);
-            verify(unreadCounterService).clearUnread(senderId, conversationId);
+            verify(unreadCounterService).clearUnread(senderId, conversationId, null);
+            verify(inboxSyncService, never()).recordRead(any(), any(), any(), any());
             verify(realTimeMessagingService, never()).notifyMessagesRead(any(), any());
         }
 
@@ -286,12 +488,66 @@ class MessageServiceTest {
         @DisplayName("should throw ForbiddenException when user not in conversation")
         void shouldThrowForbiddenWhenUserNotInConversation() {
             UUID outsider = UUID.randomUUID();
-            when(conversationService.getOrThrow(conversationId)).thenReturn(conversation);
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
 
             assertThatThrownBy(() -> messageService.markRead(outsider, conversationId))
                     .isInstanceOf(ForbiddenException.class);
 
-            verify(messageRepository, never()).markConversationRead(any(), any(), any());
+            verify(readStateService, never()).markRead(any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("markAllRead")
+    class MarkAllRead {
+
+        @Test
+        @DisplayName("should move all watermarks at once and notify each conversation that had unread messages")
+        void shouldMarkAllAndNotifyPerConversation() {
+            UUID otherConversationId = UUID.randomUUID();
+            UUID otherUserId = UUID.randomUUID();
+            when(readStateService.markAllRead(eq(senderId), any(Instant.class)))
+                    .thenReturn(List.of(conversationId, otherConversationId));
+            when(conversationService.getMembers(conversationId)).thenReturn(conversation.members());
+            when(conversationService.getMembers(otherConversationId))
+                    .thenReturn(new ConversationMembers(otherConversationId, senderId, otherUserId));
+
+            int result = messageService.markAllRead(senderId);
+
+            assertThat(result).isEqualTo(2);
+            verify(unreadCounterService).clearAllUnread(senderId);
+            verify(inboxSyncService).recordRead(eq(conversationId), eq(senderId), eq(recipientId), any(Instant.class));
+            verify(inboxSyncService).recordRead(eq(otherConversationId), eq(senderId), eq(otherUserId), any(Instant.class));
+            verify(realTimeMessagingService).notifyMessagesRead(recipientId, conversationId);
+            verify(realTimeMessagingService).notifyMessagesRead(otherUserId, otherConversationId);
+        }
+
+        @Test
+        @DisplayName("should drop the unread counters only after commit")
+        void shouldClearCountersAfterCommit() {
+            when(readStateService.markAllRead(eq(senderId), any(Instant.class))).thenReturn(List.of());
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                messageService.markAllRead(senderId);
+                verify(unreadCounterService, never()).clearAllUnread(any());
+
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                verify(unreadCounterService).clearAllUnread(senderId);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("should not notify anyone when nothing was unread")
+        void shouldNotNotifyWhenNothingUnread() {
+            when(readStateService.markAllRead(eq(senderId), any(Instant.class))).thenReturn(List.of());
+
+            assertThat(messageService.markAllRead(senderId)).isZero();
+
+            verify(unreadCounterService).clearAllUnread(senderId);
+            verifyNoInteractions(inboxSyncService, realTimeMessagingService);
         }
     }
 
@@ -308,5 +564,26 @@ class MessageServiceTest {
 
             assertThat(result).isEqualTo(10L);
         }
+
+        @Test
+        @DisplayName("should return all per-conversation counts in one lookup")
+        void shouldReturnAllUnreadCounts() {
+            UUID otherConversationId = UUID.randomUUID();
+            when(unreadCounterService.getUnreadByConversation(senderId))
+                    .thenReturn(Map.of(conversationId, 3L, otherConversationId, 1L));
+
+            Map<UUID, Long> result = messageService.unreadCounts(senderId);
+
+            assertThat(result).containsEntry(conversationId, 3L).containsEntry(otherConversationId, 1L);
+            verify(unreadCounterService, never()).getUnread(any(), any());
+        }
+
+        @Test
+        @DisplayName("should return total unread from the badge counter")
+        void shouldReturnTotalUnread() {
+            when(unreadCounterService.getTotalUnread(senderId)).thenReturn(4L);
+
+            assertThat(messageService.totalUnread(senderId)).isEqualTo(4L);
+        }
     }
 }
@@ -0,0 +1,64 @@
+package nl.ak.skillswap.messageservice.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SessionLeaseKeeper")
+class SessionLeaseKeeperTest {
+
+    @Mock
+    private WebSocketSessionService sessionService;
+
+    @Mock
+    private LocalPresenceRegistry localPresence;
+
+    @InjectMocks
+    private SessionLeaseKeeper keeper;
+
+    @Test
+    @DisplayName("should renew the lease with the local sessions and then reap expired nodes")
+    void shouldRenewThenReap() {
+        Map<UUID, Set<String>> local = Map.of(UUID.randomUUID(), Set.of("s1"));
+        when(localPresence.snapshot()).thenReturn(local);
+
+        keeper.tick();
+
+        var order = inOrder(sessionService);
+        order.verify(sessionService).renewLease(local);
+        order.verify(sessionService).reapExpiredNodes();
+    }
+
+    @Test
+    @DisplayName("should still reap when renewal fails")
+    void shouldReapWhenRenewalFails() {
+        when(localPresence.snapshot()).thenReturn(Map.of());
+        doThrow(new IllegalStateException("redis down")).when(sessionService).renewLease(any());
+
+        keeper.tick();
+
+        verify(sessionService).reapExpiredNodes();
+    }
+
+    @Test
+    @DisplayName("should release the lease on shutdown and not renew it afterwards")
+    void shouldReleaseOnStop() {
+        keeper.stop();
+        keeper.tick();
+
+        verify(sessionService).releaseLease();
+        verify(sessionService, never()).renewLease(any());
+        verifyNoInteractions(localPresence);
+    }
+}
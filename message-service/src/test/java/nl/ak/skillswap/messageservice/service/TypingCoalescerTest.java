@@ -0,0 +1,184 @@
+package nl.ak.skillswap.messageservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TypingCoalescer")
+class TypingCoalescerTest {
+
+    @Mock
+    private RealTimeMessagingService realTimeMessagingService;
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1_000));
+
+    private TypingCoalescer coalescer;
+
+    private UUID alice;
+    private UUID bob;
+    private UUID conversationId;
+
+    @BeforeEach
+    void setUp() {
+        // 3s forward window, 5s idle timeout, 250ms ticks on a 4-slot wheel (1s per revolution)
+        coalescer = new TypingCoalescer(realTimeMessagingService, new SimpleMeterRegistry(),
+                3_000, 5_000, 250, 4, clock::get);
+        alice = UUID.randomUUID();
+        bob = UUID.randomUUID();
+        conversationId = UUID.randomUUID();
+    }
+
+    private void advance(long millis) {
+        // Tick as the timer thread would, so the wheel sees every slot
+        for (long step = 0; step < millis; step += 250) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(Math.min(250, millis - step)));
+            coalescer.tick();
+        }
+    }
+
+    @Nested
+    @DisplayName("typing")
+    class Typing {
+
+        @Test
+        @DisplayName("should forward the first frame and coalesce repeats within the window")
+        void shouldCoalesceRepeatsWithinWindow() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+            advance(500);
+            coalescer.onTyping(alice, bob, conversationId, true);
+            advance(500);
+            coalescer.onTyping(alice, bob, conversationId, true);
+
+            verify(realTimeMessagingService, times(1)).sendTypingIndicator(alice, bob, conversationId, true);
+        }
+
+        @Test
+        @DisplayName("should forward again once the window has passed")
+        void shouldForwardAgainAfterWindow() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+            advance(3_000);
+            coalescer.onTyping(alice, bob, conversationId, true);
+
+            verify(realTimeMessagingService, times(2)).sendTypingIndicator(alice, bob, conversationId, true);
+        }
+
+        @Test
+        @DisplayName("should track each conversation and user separately")
+        void shouldTrackKeysSeparately() {
+            UUID otherConversation = UUID.randomUUID();
+
+            coalescer.onTyping(alice, bob, conversationId, true);
+            coalescer.onTyping(bob, alice, conversationId, true);
+            coalescer.onTyping(alice, bob, otherConversation, true);
+
+            verify(realTimeMessagingService, times(3)).sendTypingIndicator(any(), any(), any(), eq(true));
+            assertThat(coalescer.activeBursts()).isEqualTo(3);
+        }
+    }
+
+    @Nested
+    @DisplayName("stopped typing")
+    class Stopped {
+
+        @Test
+        @DisplayName("should forward an explicit stop once and forget the burst")
+        void shouldForwardStop() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+            coalescer.onTyping(alice, bob, conversationId, false);
+            coalescer.onTyping(alice, bob, conversationId, false);
+
+            verify(realTimeMessagingService, times(1)).sendTypingIndicator(alice, bob, conversationId, false);
+            assertThat(coalescer.activeBursts()).isZero();
+        }
+
+        @Test
+        @DisplayName("should drop a stop when typing was never forwarded")
+        void shouldDropStopWithoutTyping() {
+            coalescer.onTyping(alice, bob, conversationId, false);
+
+            verifyNoInteractions(realTimeMessagingService);
+        }
+
+        @Test
+        @DisplayName("should not end a burst twice after an explicit stop")
+        void shouldNotExpireAfterExplicitStop() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+            coalescer.onTyping(alice, bob, conversationId, false);
+            advance(10_000);
+
+            verify(realTimeMessagingService, times(1)).sendTypingIndicator(alice, bob, conversationId, false);
+        }
+    }
+
+    @Nested
+    @DisplayName("idle timeout")
+    class IdleTimeout {
+
+        @Test
+        @DisplayName("should send stopped typing when the burst goes quiet")
+        void shouldExpireQuietBurst() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+
+            advance(4_750);
+            verify(realTimeMessagingService, never()).sendTypingIndicator(any(), any(), any(), eq(false));
+
+            advance(500);
+            verify(realTimeMessagingService).sendTypingIndicator(alice, bob, conversationId, false);
+            assertThat(coalescer.activeBursts()).isZero();
+        }
+
+        @Test
+        @DisplayName("should keep the burst alive while frames keep arriving")
+        void shouldExtendDeadlineOnActivity() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+            for (int i = 0; i < 6; i++) {
+                advance(2_000);
+                coalescer.onTyping(alice, bob, conversationId, true);
+            }
+
+            verify(realTimeMessagingService, never()).sendTypingIndicator(any(), any(), any(), eq(false));
+
+            advance(5_500);
+            verify(realTimeMessagingService).sendTypingIndicator(alice, bob, conversationId, false);
+        }
+
+        @Test
+        @DisplayName("should expire bursts after a pause longer than a wheel revolution")
+        void shouldCatchUpAfterLongPause() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+            coalescer.tick();
+
+            verify(realTimeMessagingService).sendTypingIndicator(alice, bob, conversationId, false);
+        }
+
+        @Test
+        @DisplayName("should keep ticking when sending a stop fails")
+        void shouldSurviveSendFailure() {
+            coalescer.onTyping(alice, bob, conversationId, true);
+            coalescer.onTyping(bob, alice, conversationId, true);
+            lenient().doThrow(new IllegalStateException("broker down"))
+                    .when(realTimeMessagingService).sendTypingIndicator(eq(alice), any(), any(), eq(false));
+
+            advance(5_500);
+
+            verify(realTimeMessagingService).sendTypingIndicator(bob, alice, conversationId, false);
+            assertThat(coalescer.activeBursts()).isZero();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package nl.ak.skillswap.messageservice.service.event;
+
+import nl.ak.skillswap.messageservice.api.dto.MessageDto;
+import nl.ak.skillswap.messageservice.service.ConversationTailCache;
+import nl.ak.skillswap.messageservice.service.RealTimeMessagingService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageEventConsumer")
+class MessageEventConsumerTest {
+
+    @Mock
+    private RealTimeMessagingService realTimeMessagingService;
+
+    @Mock
+    private ConversationTailCache tailCache;
+
+    @InjectMocks
+    private MessageEventConsumer consumer;
+
+    private MessageCreatedEvent event(String body, Long unreadCount) {
+        return new MessageCreatedEvent(
+                UUID.randomUUID(),
+                UUID.randomUUID(),
+                UUID.randomUUID(),
+                UUID.randomUUID(),
+                body,
+                Instant.now(),
+                unreadCount
+        );
+    }
+
+    @Test
+    @DisplayName("should deliver every event in the batch from its own payload")
+    void shouldDeliverFromPayload() {
+        MessageCreatedEvent first = event("hello", 1L);
+        MessageCreatedEvent second = event("again", 2L);
+
+        consumer.handleMessagesCreated(List.of(first, second));
+
+        ArgumentCaptor<MessageDto> delivered = ArgumentCaptor.forClass(MessageDto.class);
+        verify(realTimeMessagingService).deliverNewMessage(delivered.capture(), eq(1L));
+        verify(realTimeMessagingService).deliverNewMessage(any(MessageDto.class), eq(2L));
+
+        MessageDto dto = delivered.getValue();
+        assertThat(dto.id()).isEqualTo(first.messageId());
+        assertThat(dto.recipientId()).isEqualTo(first.recipientId());
+        assertThat(dto.body()).isEqualTo("hello");
+        assertThat(dto.readAt()).isNull();
+    }
+
+    @Test
+    @DisplayName("should add delivered messages to this instance's conversation tails")
+    void shouldAppendToTailCache() {
+        MessageCreatedEvent event = event("hello", 1L);
+
+        consumer.handleMessagesCreated(List.of(event));
+
+        verify(tailCache).appendDelivered(argThat(dto -> dto.id().equals(event.messageId())));
+    }
+
+    @Test
+    @DisplayName("should keep delivering the rest of the batch when one delivery fails")
+    void shouldIsolateDeliveryFailures() {
+        MessageCreatedEvent failing = event("boom", 1L);
+        MessageCreatedEvent ok = event("fine", 1L);
+        lenient().doThrow(new IllegalStateException("socket closed"))
+                .when(realTimeMessagingService)
+                .deliverNewMessage(argThat(dto -> dto.id().equals(failing.messageId())), any());
+
+        consumer.handleMessagesCreated(List.of(failing, ok));
+
+        verify(realTimeMessagingService).deliverNewMessage(argThat(dto -> dto.id().equals(ok.messageId())), eq(1L));
+    }
+}
@@ -0,0 +1,120 @@
+package nl.ak.skillswap.messageservice.service.event;
+
+import nl.ak.skillswap.messageservice.service.WebSocketSessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageEventPublisher")
+class MessageEventPublisherTest {
+
+    private static final String DELIVERY_EXCHANGE = "skillswap.delivery";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private WebSocketSessionService sessionService;
+
+    @InjectMocks
+    private MessageEventPublisher publisher;
+
+    private final UUID onlineOnOneNode = UUID.randomUUID();
+    private final UUID onlineOnTwoNodes = UUID.randomUUID();
+    private final UUID offline = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(publisher, "deliveryExchange", DELIVERY_EXCHANGE);
+        ReflectionTestUtils.setField(publisher, "confirmTimeoutMs", 5000L);
+    }
+
+    private MessageCreatedEvent eventFor(UUID recipientId) {
+        return new MessageCreatedEvent(
+                UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), recipientId, "hi", Instant.now(), 1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runRabbitCallbacks() {
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                .thenAnswer(invocation -> ((RabbitOperations.OperationsCallback<Object>) invocation.getArgument(0))
+                        .doInRabbit(rabbitTemplate));
+    }
+
+    @Test
+    @DisplayName("should send each event only to the nodes holding the recipient's sessions")
+    void shouldRouteToOwningNodes() {
+        runRabbitCallbacks();
+        when(sessionService.getUserNodes(anyCollection())).thenReturn(Map.of(
+                onlineOnOneNode, Set.of("node-a"),
+                onlineOnTwoNodes, Set.of("node-a", "node-b")
+        ));
+        MessageCreatedEvent first = eventFor(onlineOnOneNode);
+        MessageCreatedEvent second = eventFor(onlineOnTwoNodes);
+        MessageCreatedEvent third = eventFor(offline);
+
+        publisher.publishMessageCreatedBatch(List.of(first, second, third));
+
+        verify(rabbitTemplate).invoke(any(RabbitOperations.OperationsCallback.class));
+        verify(rabbitTemplate).convertAndSend(DELIVERY_EXCHANGE, "node-a", first);
+        verify(rabbitTemplate).convertAndSend(DELIVERY_EXCHANGE, "node-a", second);
+        verify(rabbitTemplate).convertAndSend(DELIVERY_EXCHANGE, "node-b", second);
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), eq(third));
+        verify(rabbitTemplate).waitForConfirmsOrDie(5000L);
+    }
+
+    @Test
+    @DisplayName("should fail the batch when the broker does not confirm it")
+    void shouldFailWhenNotConfirmed() {
+        runRabbitCallbacks();
+        when(sessionService.getUserNodes(anyCollection())).thenReturn(Map.of(onlineOnOneNode, Set.of("node-a")));
+        doThrow(new AmqpException("nack")).when(rabbitTemplate).waitForConfirmsOrDie(anyLong());
+
+        assertThatThrownBy(() -> publisher.publishMessageCreatedBatch(List.of(eventFor(onlineOnOneNode))))
+                .isInstanceOf(AmqpException.class);
+    }
+
+    @Test
+    @DisplayName("should not touch the broker when no recipient is connected")
+    void shouldSkipBrokerWhenNobodyIsOnline() {
+        when(sessionService.getUserNodes(anyCollection())).thenReturn(Map.of());
+
+        publisher.publishMessageCreatedBatch(List.of(eventFor(offline)));
+
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    @DisplayName("should fail the batch when session lookup fails")
+    void shouldFailWhenLookupFails() {
+        when(sessionService.getUserNodes(anyCollection())).thenThrow(new IllegalStateException("redis down"));
+
+        assertThatThrownBy(() -> publisher.publishMessageCreatedBatch(List.of(eventFor(onlineOnOneNode))))
+                .isInstanceOf(IllegalStateException.class);
+
+        verifyNoInteractions(rabbitTemplate);
+    }
+}
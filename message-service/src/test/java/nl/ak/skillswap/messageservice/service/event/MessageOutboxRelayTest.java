@@ -0,0 +1,135 @@
+package nl.ak.skillswap.messageservice.service.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ak.skillswap.messageservice.domain.Message;
+import nl.ak.skillswap.messageservice.service.UnreadCounterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageOutboxRelay")
+class MessageOutboxRelayTest {
+
+    @Mock
+    private MessageOutbox outbox;
+
+    @Mock
+    private MessageEventPublisher eventPublisher;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private MessageOutboxRelay relay;
+
+    private final UUID conversationId = UUID.randomUUID();
+    private final UUID recipientId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        relay = new MessageOutboxRelay(outbox, eventPublisher, unreadCounterService, transactionTemplate,
+                new SimpleMeterRegistry(), 10, 1000, 1000);
+
+        // Run the relay transaction inline
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private MessageOutbox.Entry entry(long id, String body) {
+        Message message = Message.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversationId)
+                .senderId(UUID.randomUUID())
+                .recipientId(recipientId)
+                .body(body)
+                .createdAt(Instant.now())
+                .build();
+        return new MessageOutbox.Entry(id, Instant.now(), message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MessageCreatedEvent> published() {
+        ArgumentCaptor<List<MessageCreatedEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher).publishMessageCreatedBatch(events.capture());
+        return events.getValue();
+    }
+
+    @Test
+    @DisplayName("should publish a batch and delete its rows once confirmed")
+    void shouldPublishAndDelete() {
+        when(outbox.claim(10)).thenReturn(List.of(entry(1, "first"), entry(2, "second")));
+        when(unreadCounterService.getUnreadBatch(anyMap())).thenReturn(Map.of(recipientId, Map.of(conversationId, 2L)));
+
+        assertThat(relay.relayBatch()).isEqualTo(2);
+
+        assertThat(published()).extracting(MessageCreatedEvent::body).containsExactly("first", "second");
+        assertThat(published()).extracting(MessageCreatedEvent::unreadCount).containsOnly(2L);
+        verify(outbox).delete(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("should keep the rows when the broker does not confirm")
+    void shouldKeepRowsWhenPublishFails() {
+        when(outbox.claim(10)).thenReturn(List.of(entry(1, "first")));
+        doThrow(new AmqpException("nack")).when(eventPublisher).publishMessageCreatedBatch(anyList());
+
+        assertThatThrownBy(() -> relay.relayBatch()).isInstanceOf(AmqpException.class);
+
+        verify(outbox, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("should publish without unread counts when the counters cannot be read")
+    void shouldPublishWithoutCountsWhenRedisFails() {
+        when(outbox.claim(10)).thenReturn(List.of(entry(1, "first")));
+        when(unreadCounterService.getUnreadBatch(anyMap())).thenThrow(new IllegalStateException("redis down"));
+
+        relay.relayBatch();
+
+        assertThat(published()).singleElement().satisfies(event -> assertThat(event.unreadCount()).isNull());
+        verify(outbox).delete(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("should drop rows whose message was deleted")
+    void shouldDropRowsOfDeletedMessages() {
+        when(outbox.claim(10)).thenReturn(List.of(new MessageOutbox.Entry(1, Instant.now(), null), entry(2, "kept")));
+
+        relay.relayBatch();
+
+        assertThat(published()).extracting(MessageCreatedEvent::body).containsExactly("kept");
+        verify(outbox).delete(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("should do nothing when the outbox is empty")
+    void shouldDoNothingWhenEmpty() {
+        when(outbox.claim(10)).thenReturn(List.of());
+
+        assertThat(relay.relayBatch()).isZero();
+
+        verifyNoInteractions(eventPublisher, unreadCounterService);
+    }
+}
@@ -0,0 +1,99 @@
+package nl.ak.skillswap.messageservice.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("BatchingLoader")
+class BatchingLoaderTest {
+
+    private final List<Set<String>> batches = new CopyOnWriteArrayList<>();
+    private BatchingLoader<String, Integer> loader;
+
+    @AfterEach
+    void tearDown() {
+        if (loader != null) loader.close();
+    }
+
+    private Map<String, Integer> lengths(Set<String> keys) {
+        batches.add(Set.copyOf(keys));
+        return keys.stream()
+                .filter(k -> !k.startsWith("missing"))
+                .collect(Collectors.toMap(Function.identity(), String::length));
+    }
+
+    @Test
+    @DisplayName("should answer lookups within one window with a single batch call")
+    void shouldCoalesceLookupsWithinWindow() throws Exception {
+        loader = new BatchingLoader<>("test", this::lengths, 100, 50);
+
+        CompletableFuture<Integer> a = loader.load("a");
+        CompletableFuture<Integer> bb = loader.load("bb");
+        CompletableFuture<Integer> ccc = loader.load("ccc");
+
+        assertThat(a.get(1, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(bb.get(1, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThat(ccc.get(1, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(batches).containsExactly(Set.of("a", "bb", "ccc"));
+    }
+
+    @Test
+    @DisplayName("should share one future for duplicate keys")
+    void shouldDeduplicateKeys() throws Exception {
+        loader = new BatchingLoader<>("test", this::lengths, 100, 50);
+
+        CompletableFuture<Integer> first = loader.load("same");
+        CompletableFuture<Integer> second = loader.load("same");
+
+        assertThat(first).isSameAs(second);
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo(4);
+        assertThat(batches).containsExactly(Set.of("same"));
+    }
+
+    @Test
+    @DisplayName("should complete missing keys with null")
+    void shouldCompleteMissingKeysWithNull() throws Exception {
+        loader = new BatchingLoader<>("test", this::lengths, 100, 10);
+
+        assertThat(loader.load("missing-1").get(1, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("should dispatch immediately once the batch is full")
+    void shouldDispatchWhenFull() throws Exception {
+        loader = new BatchingLoader<>("test", this::lengths, 2, 10_000);
+
+        CompletableFuture<Integer> a = loader.load("a");
+        CompletableFuture<Integer> b = loader.load("b");
+
+        assertThat(a.get(1, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(b.get(1, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(batches).containsExactly(Set.of("a", "b"));
+    }
+
+    @Test
+    @DisplayName("should fail every lookup of a failed batch")
+    void shouldPropagateBatchFailure() {
+        loader = new BatchingLoader<>("test", keys -> {
+            throw new IllegalStateException("user-service down");
+        }, 100, 10);
+
+        CompletableFuture<Integer> a = loader.load("a");
+        CompletableFuture<Integer> b = loader.load("b");
+
+        assertThatThrownBy(() -> a.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> b.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
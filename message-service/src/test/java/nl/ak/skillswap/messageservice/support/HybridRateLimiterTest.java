@@ -0,0 +1,117 @@
+package nl.ak.skillswap.messageservice.support;
+
+import io.github.bucket4j.distributed.BucketProxy;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.proxy.RemoteBucketBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("HybridRateLimiter")
+class HybridRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @SuppressWarnings("unchecked")
+    private final ProxyManager<String> proxyManager = mock(ProxyManager.class);
+    @SuppressWarnings("unchecked")
+    private final RemoteBucketBuilder<String> builder = mock(RemoteBucketBuilder.class);
+    private final BucketProxy remote = mock(BucketProxy.class);
+
+    @BeforeEach
+    void setUp() {
+        when(proxyManager.builder()).thenReturn(builder);
+        when(builder.build(anyString(), any())).thenReturn(remote);
+    }
+
+    private HybridRateLimiter limiter(int leaseSize, ProxyManager<String> proxy, Duration idleTimeout) {
+        return new HybridRateLimiter(
+                new HybridRateLimiter.Limit("test", 10, 10, Duration.ofHours(1), leaseSize),
+                proxy, idleTimeout, Duration.ofMinutes(1), meterRegistry);
+    }
+
+    private double checks(String source) {
+        return meterRegistry.get("ratelimit.checks").tag("source", source).counter().count();
+    }
+
+    @Test
+    @DisplayName("should serve leased tokens locally with one Redis call per lease")
+    void shouldServeLeaseLocally() {
+        when(remote.tryConsumeAsMuchAsPossible(5)).thenReturn(5L);
+        HybridRateLimiter limiter = limiter(5, proxyManager, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("user")).isTrue();
+        }
+
+        verify(remote, times(1)).tryConsumeAsMuchAsPossible(5);
+        assertThat(checks("remote")).isEqualTo(1);
+        assertThat(checks("local")).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("should refuse locally after Redis refused, until a token has refilled")
+    void shouldRememberRefusal() {
+        when(remote.tryConsumeAsMuchAsPossible(5)).thenReturn(0L);
+        HybridRateLimiter limiter = limiter(5, proxyManager, Duration.ofMinutes(1));
+
+        assertThat(limiter.tryAcquire("user")).isFalse();
+        assertThat(limiter.tryAcquire("user")).isFalse();
+        assertThat(limiter.tryAcquire("user")).isFalse();
+
+        verify(remote, times(1)).tryConsumeAsMuchAsPossible(5);
+    }
+
+    @Test
+    @DisplayName("should keep limiting per node when Redis fails")
+    void shouldFallBackToLocalBucket() {
+        when(remote.tryConsumeAsMuchAsPossible(anyLong())).thenThrow(new IllegalStateException("redis down"));
+        HybridRateLimiter limiter = limiter(5, proxyManager, Duration.ofMinutes(1));
+
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.tryAcquire("user")) allowed++;
+        }
+
+        assertThat(allowed).isEqualTo(10);
+        verify(remote, times(1)).tryConsumeAsMuchAsPossible(anyLong());
+        assertThat(meterRegistry.get("ratelimit.remote.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should never call Redis for node-local limits")
+    void shouldStayLocalWithoutLease() {
+        HybridRateLimiter limiter = limiter(0, proxyManager, Duration.ofMinutes(1));
+
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.tryAcquire("user")) allowed++;
+        }
+
+        assertThat(allowed).isEqualTo(10);
+        verifyNoInteractions(remote);
+    }
+
+    @Test
+    @DisplayName("should return unused tokens of idle keys to Redis")
+    void shouldReturnUnusedTokensOnReconcile() {
+        when(remote.tryConsumeAsMuchAsPossible(5)).thenReturn(5L);
+        HybridRateLimiter limiter = limiter(5, proxyManager, Duration.ZERO);
+
+        limiter.tryAcquire("user");
+        limiter.tryAcquire("user");
+
+        assertThat(limiter.reconcile()).isEqualTo(1);
+        verify(remote).addTokens(3);
+        assertThat(limiter.trackedKeys()).isZero();
+    }
+}
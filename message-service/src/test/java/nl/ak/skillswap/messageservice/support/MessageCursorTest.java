@@ -0,0 +1,66 @@
+package nl.ak.skillswap.messageservice.support;
+
+import nl.ak.skillswap.messageservice.domain.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("MessageCursor")
+class MessageCursorTest {
+
+    @Test
+    @DisplayName("should round-trip through the opaque token")
+    void shouldRoundTrip() {
+        MessageCursor cursor = new MessageCursor(Instant.parse("2024-03-01T10:15:30.123456Z"), UUID.randomUUID());
+
+        String token = cursor.encode();
+
+        assertThat(token).doesNotContain("=", "+", "/");
+        assertThat(MessageCursor.decode(token, MessageCursor.Direction.BEFORE)).isEqualTo(cursor);
+    }
+
+    @Test
+    @DisplayName("should truncate message timestamps to the stored precision")
+    void shouldTruncateToMicros() {
+        Message message = Message.builder()
+                .id(UUID.randomUUID())
+                .createdAt(Instant.parse("2024-03-01T10:15:30.123456789Z"))
+                .build();
+
+        assertThat(MessageCursor.of(message).createdAt()).isEqualTo(Instant.parse("2024-03-01T10:15:30.123456Z"));
+    }
+
+    @Test
+    @DisplayName("should accept legacy ISO timestamps as exclusive bounds")
+    void shouldAcceptLegacyTimestamps() {
+        Instant instant = Instant.parse("2024-03-01T10:15:30Z");
+
+        MessageCursor before = MessageCursor.decode(instant.toString(), MessageCursor.Direction.BEFORE);
+        MessageCursor after = MessageCursor.decode(instant.toString(), MessageCursor.Direction.AFTER);
+
+        assertThat(before.createdAt()).isEqualTo(instant);
+        assertThat(before.id()).isEqualTo(new UUID(0L, 0L));
+        assertThat(after.id()).isEqualTo(new UUID(-1L, -1L));
+    }
+
+    @Test
+    @DisplayName("should return null for a missing token")
+    void shouldReturnNullForBlank() {
+        assertThat(MessageCursor.decode(null, MessageCursor.Direction.BEFORE)).isNull();
+        assertThat(MessageCursor.decode(" ", MessageCursor.Direction.BEFORE)).isNull();
+    }
+
+    @Test
+    @DisplayName("should reject malformed tokens")
+    void shouldRejectMalformedTokens() {
+        assertThatThrownBy(() -> MessageCursor.decode("not a cursor!", MessageCursor.Direction.BEFORE))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> MessageCursor.decode("AAAA", MessageCursor.Direction.BEFORE))
+                .isInstanceOf(BadRequestException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package nl.ak.skillswap.messageservice.support;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("MultiPatternMatcher")
+class MultiPatternMatcherTest {
+
+    @Test
+    @DisplayName("should find overlapping patterns and patterns that are suffixes of others")
+    void shouldFindOverlappingPatterns() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.of(List.of("he", "she", "his", "hers"));
+
+        assertThat(matcher.findAll("ushers")).containsExactly("she", "he", "hers");
+        assertThat(matcher.containsAny("ushers")).isTrue();
+        assertThat(matcher.containsAny("usher")).isTrue();
+        assertThat(matcher.containsAny("xyz")).isFalse();
+    }
+
+    @Test
+    @DisplayName("should match regardless of case in text and patterns")
+    void shouldIgnoreCase() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.of(List.of("<SCRIPT", "union select"));
+
+        assertThat(matcher.containsAny("<ScRiPt>alert(1)")).isTrue();
+        assertThat(matcher.findAll("1 UNION SELECT password")).containsExactly("union select");
+    }
+
+    @Test
+    @DisplayName("should match non-ASCII patterns")
+    void shouldMatchNonAscii() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.of(List.of("ÄRGER", "ß"));
+
+        assertThat(matcher.findAll("kein ärger, straße")).containsExactly("ärger", "ß");
+        assertThat(matcher.containsAny("arger")).isFalse();
+    }
+
+    @Test
+    @DisplayName("should ignore blank and duplicate patterns")
+    void shouldIgnoreBlankAndDuplicatePatterns() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.of(List.of("", "  ", "eval(", "EVAL("));
+
+        assertThat(matcher.patternCount()).isEqualTo(1);
+        assertThat(MultiPatternMatcher.of(List.of()).containsAny("anything")).isFalse();
+    }
+
+    @Test
+    @DisplayName("should agree with lowercase contains on random input")
+    void shouldAgreeWithNaiveScan() {
+        Random random = new Random(7);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            patterns.add(randomString(random, 1 + random.nextInt(5)));
+        }
+        MultiPatternMatcher matcher = MultiPatternMatcher.of(patterns);
+
+        for (int n = 0; n < 5_000; n++) {
+            String text = randomString(random, random.nextInt(60));
+            String lower = text.toLowerCase(Locale.ROOT);
+            List<String> expected = patterns.stream()
+                    .map(p -> p.toLowerCase(Locale.ROOT))
+                    .distinct()
+                    .filter(lower::contains)
+                    .toList();
+
+            assertThat(matcher.findAll(text)).as(text).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(matcher.containsAny(text)).as(text).isEqualTo(!expected.isEmpty());
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        String alphabet = "abcAB<:(";
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -1,5 +1,9 @@
 package nl.ak.skillswap.userservice.api;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.userservice.domain.User;
@@ -7,7 +11,11 @@ import nl.ak.skillswap.userservice.repository.UserRepository;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Internal endpoints for service-to-service communication.
@@ -20,6 +28,8 @@ import java.util.UUID;
 @RequestMapping("/internal")
 public class InternalController {
 
+    static final int MAX_BATCH_SIZE = 500;
+
     private final UserRepository userRepository;
 
     /**
@@ -47,5 +57,53 @@ public class InternalController {
                 });
     }
 
+    /**
+     * Resolve many external IDs in one call with a single IN query.
+     * Unknown, deleted and inactive users are left out of the response.
+     */
+    @PostMapping("/users/resolve:batch")
+    public BatchResolveResponse resolveIds(@Valid @RequestBody BatchResolveRequest request) {
+        log.debug("Internal batch ID resolution request for {} IDs", request.externalIds().size());
+
+        List<IdResolutionResponse> resolved = userRepository.findActiveByExternalIds(Set.copyOf(request.externalIds()))
+                .stream()
+                .map(user -> new IdResolutionResponse(user.getId(), user.getExternalId(), user.getDisplayName()))
+                .toList();
+        return new BatchResolveResponse(resolved);
+    }
+
+    /**
+     * Existence check for many users in one call with a single IN query.
+     * Like {@code HEAD /api/users/{id}/exists}, an ID matches either a database ID or an external ID.
+     *
+     * @return the subset of the requested IDs that belong to an active user
+     */
+    @PostMapping("/users/exists:batch")
+    public BatchExistsResponse usersExist(@Valid @RequestBody BatchExistsRequest request) {
+        log.debug("Internal batch existence check for {} IDs", request.ids().size());
+
+        Set<UUID> requested = Set.copyOf(request.ids());
+        Set<String> requestedAsExternalIds = requested.stream().map(UUID::toString).collect(Collectors.toSet());
+
+        Set<UUID> existing = new HashSet<>();
+        for (User user : userRepository.findActiveByIdsOrExternalIds(requested, requestedAsExternalIds)) {
+            if (requested.contains(user.getId())) {
+                existing.add(user.getId());
+            }
+            if (user.getExternalId() != null && requestedAsExternalIds.contains(user.getExternalId())) {
+                existing.add(UUID.fromString(user.getExternalId()));
+            }
+        }
+        return new BatchExistsResponse(List.copyOf(existing));
+    }
+
     public record IdResolutionResponse(UUID databaseId, String externalId, String displayName) {}
+
+    public record BatchResolveRequest(@NotNull @Size(max = MAX_BATCH_SIZE) List<@NotBlank String> externalIds) {}
+
+    public record BatchResolveResponse(List<IdResolutionResponse> resolved) {}
+
+    public record BatchExistsRequest(@NotNull @Size(max = MAX_BATCH_SIZE) List<@NotNull UUID> ids) {}
+
+    public record BatchExistsResponse(List<UUID> existing) {}
 }
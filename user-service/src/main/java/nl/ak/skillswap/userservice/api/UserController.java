@@ -38,9 +38,8 @@ public class UserController {
      */
     @RequestMapping(value = "/{id}/exists", method = RequestMethod.HEAD)
     public ResponseEntity<Void> userExists(@PathVariable UUID id) {
-        // Check by database ID first, then by external ID (stored as String)
-        boolean exists = userRepository.existsByIdAndDeletedAtIsNullAndActiveTrue(id)
-                || userRepository.existsByExternalIdAndDeletedAtIsNullAndActiveTrue(id.toString());
+        // Match by database ID or external ID (stored as String) in a single query
+        boolean exists = userRepository.existsActiveByIdOrExternalId(id, id.toString());
         return exists ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 
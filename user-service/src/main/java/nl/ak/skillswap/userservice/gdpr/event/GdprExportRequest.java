@@ -6,10 +6,13 @@ import java.util.UUID;
 /**
  * Event requesting GDPR data export for a user.
  * Published by API Gateway, consumed by all services.
+ * Responses and chunks go to the {@code replyTo} queue of the gateway instance that asked;
+ * a request without one is answered on the shared exchange.
  */
 public record GdprExportRequest(
         UUID correlationId,
         UUID userId,
         String userExternalId,
-        Instant requestedAt
+        Instant requestedAt,
+        String replyTo
 ) {}
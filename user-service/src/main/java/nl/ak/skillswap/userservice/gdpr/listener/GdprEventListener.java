@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import nl.ak.skillswap.userservice.gdpr.event.GdprDeletionRequest;
 import nl.ak.skillswap.userservice.gdpr.event.GdprExportRequest;
 import nl.ak.skillswap.userservice.gdpr.event.GdprExportResponse;
+import nl.ak.skillswap.userservice.service.GdprDeletionJobRunner;
 import nl.ak.skillswap.userservice.service.GdprService;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -19,8 +20,11 @@ import org.springframework.stereotype.Component;
 public class GdprEventListener {
 
     private static final String SERVICE_NAME = "user-service";
+    private static final String EXCHANGE = "skillswap.events";
+    private static final String EXPORT_RESPONSE_ROUTING_KEY = "gdpr.export.response";
 
     private final GdprService gdprService;
+    private final GdprDeletionJobRunner deletionJobRunner;
     private final RabbitTemplate rabbitTemplate;
 
     /**
@@ -63,12 +67,22 @@ public class GdprEventListener {
             );
         }
 
-        // Send response to reply queue
-        rabbitTemplate.convertAndSend(
-                "skillswap.events",
-                "gdpr.export.response",
-                response
-        );
+        reply(request, EXPORT_RESPONSE_ROUTING_KEY, response);
+    }
+
+    /**
+     * Send a response to the gateway instance that asked, typed by its routing key.
+     * Without a reply queue it goes to the shared exchange under that routing key.
+     */
+    private void reply(GdprExportRequest request, String type, Object payload) {
+        if (request.replyTo() == null) {
+            rabbitTemplate.convertAndSend(EXCHANGE, type, payload);
+            return;
+        }
+        rabbitTemplate.convertAndSend("", request.replyTo(), payload, message -> {
+            message.getMessageProperties().setType(type);
+            return message;
+        });
     }
 
     /**
@@ -80,15 +94,15 @@ public class GdprEventListener {
                 request.correlationId(), request.userId(), request.deletionType());
 
         try {
-            GdprService.DeletionResult result = gdprService.deleteByExternalId(
-                    request.userExternalId(),
-                    request.deletionType()
-            );
-
-            log.info("GDPR deletion completed for user {}: success={}, message={}",
-                    request.userId(), result.success(), result.message());
+            var userId = gdprService.findUserIdByExternalId(request.userExternalId());
+            if (userId.isEmpty()) {
+                log.warn("User not found for deletion: {}", request.userExternalId());
+                return;
+            }
+            deletionJobRunner.submit(request.correlationId(), userId.get(), request.deletionType());
 
         } catch (Exception e) {
+            // Only the job could not be queued; failures of the job itself are retried by the runner
             log.error("GDPR deletion failed for user {}: {}", request.userId(), e.getMessage(), e);
         }
     }
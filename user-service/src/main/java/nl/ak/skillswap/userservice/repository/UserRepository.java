@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -56,6 +57,43 @@ public interface UserRepository extends JpaRepository<User, UUID> {
      */
     boolean existsByExternalIdAndDeletedAtIsNullAndActiveTrue(String externalId);
 
+    /**
+     * Single-query existence check by database ID or external ID (Keycloak sub).
+     */
+    @Query("""
+        SELECT COUNT(u) > 0 FROM User u
+        WHERE (u.id = :id OR u.externalId = :externalId)
+          AND u.deletedAt IS NULL
+          AND u.active = true
+    """)
+    boolean existsActiveByIdOrExternalId(@Param("id") UUID id, @Param("externalId") String externalId);
+
+    /**
+     * Batch variant of the existence check: active users matching any of the database IDs
+     * or external IDs, in one IN query.
+     */
+    @Query("""
+        SELECT u FROM User u
+        WHERE (u.id IN :ids OR u.externalId IN :externalIds)
+          AND u.deletedAt IS NULL
+          AND u.active = true
+    """)
+    List<User> findActiveByIdsOrExternalIds(
+            @Param("ids") Collection<UUID> ids,
+            @Param("externalIds") Collection<String> externalIds
+    );
+
+    /**
+     * Batch ID resolution: active users for the given external IDs, in one IN query.
+     */
+    @Query("""
+        SELECT u FROM User u
+        WHERE u.externalId IN :externalIds
+          AND u.deletedAt IS NULL
+          AND u.active = true
+    """)
+    List<User> findActiveByExternalIds(@Param("externalIds") Collection<String> externalIds);
+
     /**
      * Find user by external ID (Keycloak sub) - for looking up users by message-service's user IDs.
      */
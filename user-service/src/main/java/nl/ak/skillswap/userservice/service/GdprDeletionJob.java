@@ -0,0 +1,57 @@
+package nl.ak.skillswap.userservice.service;
+
+import nl.ak.skillswap.userservice.gdpr.event.GdprDeletionRequest;
+
+import java.util.UUID;
+
+/**
+ * A persisted GDPR deletion and how far it got, see {@link GdprDeletionJobRunner}.
+ */
+public record GdprDeletionJob(
+        UUID correlationId,
+        UUID userId,
+        GdprDeletionRequest.DeletionType deletionType,
+        Phase phase,
+        Status status,
+        int skillsDeleted,
+        int attempts,
+        String lastError
+) {
+
+    /**
+     * The steps of a deletion, in order. Batched phases repeat until a batch comes back short.
+     */
+    public enum Phase {
+        DELETE_SKILLS(true),
+        FINALIZE(false),
+        DONE(false);
+
+        private final boolean batched;
+
+        Phase(boolean batched) {
+            this.batched = batched;
+        }
+
+        public boolean batched() {
+            return batched;
+        }
+
+        public Phase next() {
+            return this == DONE ? DONE : values()[ordinal() + 1];
+        }
+
+        /**
+         * Anonymization keeps the user's skills and only rewrites the user row.
+         */
+        public static Phase first(GdprDeletionRequest.DeletionType type) {
+            return type == GdprDeletionRequest.DeletionType.FULL ? DELETE_SKILLS : FINALIZE;
+        }
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,227 @@
+package nl.ak.skillswap.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.userservice.gdpr.event.GdprDeletionRequest;
+import nl.ak.skillswap.userservice.service.GdprDeletionJob.Phase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works through persisted GDPR deletion jobs, one batch per short transaction.
+ *
+ * One thread per node leases the oldest unfinished job, deletes the user's skills in batches of
+ * {@code batch-size} rows with a pause of {@code batch-delay-ms} in between, and then soft-deletes
+ * or anonymizes the user. Each batch records its progress on the job in the same transaction, so
+ * after a crash the job resumes at the batch that did not commit, on whichever node takes over the lease.
+ *
+ * A failed batch is retried after {@code retry-delay-ms}; {@code max-attempts} failures in a row
+ * fail the job. A new request with the same correlation ID restarts a failed job.
+ */
+@Slf4j
+@Component
+public class GdprDeletionJobRunner {
+
+    private final GdprDeletionJobStore jobs;
+    private final GdprService gdprService;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final int batchSize;
+    private final long batchDelayMs;
+    private final long pollIntervalMs;
+    private final long leaseMs;
+    private final long retryDelayMs;
+    private final int maxAttempts;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running;
+    private Thread worker;
+
+    private final Counter skillsDeleted;
+    private final Counter completed;
+    private final Counter failed;
+
+    public GdprDeletionJobRunner(GdprDeletionJobStore jobs,
+                                 GdprService gdprService,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.gdpr.deletion.batch-size:1000}") int batchSize,
+                                 @Value("${app.gdpr.deletion.batch-delay-ms:100}") long batchDelayMs,
+                                 @Value("${app.gdpr.deletion.poll-interval-ms:10000}") long pollIntervalMs,
+                                 @Value("${app.gdpr.deletion.lease-ms:60000}") long leaseMs,
+                                 @Value("${app.gdpr.deletion.retry-delay-ms:30000}") long retryDelayMs,
+                                 @Value("${app.gdpr.deletion.max-attempts:5}") int maxAttempts) {
+        this.jobs = jobs;
+        this.gdprService = gdprService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.batchDelayMs = batchDelayMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.leaseMs = leaseMs;
+        this.retryDelayMs = retryDelayMs;
+        this.maxAttempts = maxAttempts;
+
+        this.skillsDeleted = Counter.builder("gdpr.deletion.rows")
+                .description("Rows changed by GDPR deletion batches")
+                .tag("phase", Phase.DELETE_SKILLS.name().toLowerCase())
+                .register(meterRegistry);
+        this.completed = jobs(meterRegistry, "completed");
+        this.failed = jobs(meterRegistry, "failed");
+    }
+
+    private static Counter jobs(MeterRegistry registry, String result) {
+        return Counter.builder("gdpr.deletion.jobs")
+                .description("GDPR deletion jobs finished, by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "gdpr-deletion");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("GDPR deletion runner started (batchSize={}, batchDelayMs={}, leaseMs={})",
+                batchSize, batchDelayMs, leaseMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker == null) return;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Persist a deletion job and have the runner pick it up. A redelivered request is ignored.
+     */
+    public void submit(UUID correlationId, UUID userId, GdprDeletionRequest.DeletionType type) {
+        if (jobs.create(correlationId, userId, type)) {
+            log.info("GDPR deletion job queued: correlationId={}, userId={}, type={}", correlationId, userId, type);
+            wakeUps.release();
+        } else {
+            log.info("GDPR deletion job {} already exists, ignoring request", correlationId);
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            boolean ranJob;
+            try {
+                ranJob = runNextJob();
+            } catch (RuntimeException e) {
+                log.warn("GDPR deletion runner failed to claim a job: {}", e.getMessage());
+                ranJob = false;
+            }
+            if (ranJob) continue;
+            try {
+                if (wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS)) wakeUps.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lease the next job and run it until it is done, fails a batch or the runner stops.
+     *
+     * @return whether there was a job to run
+     */
+    public boolean runNextJob() {
+        Optional<GdprDeletionJob> claimed = jobs.claim(nodeId, leaseMs);
+        if (claimed.isEmpty()) return false;
+
+        GdprDeletionJob job = claimed.get();
+        log.info("GDPR deletion job {} claimed at {} (attempt {})", job.correlationId(), job.phase(), job.attempts() + 1);
+
+        Phase phase = job.phase();
+        while (phase != Phase.DONE) {
+            if (!running) {
+                jobs.release(job.correlationId(), nodeId);
+                return true;
+            }
+            try {
+                Optional<GdprDeletionJob> progress = runBatch(job, phase);
+                if (progress.isEmpty()) {
+                    log.warn("GDPR deletion job {} was taken over by another node", job.correlationId());
+                    return true;
+                }
+                phase = progress.get().phase();
+                if (phase == Phase.DONE) {
+                    log.info("GDPR deletion job {} completed: userId={}, type={}, skillsDeleted={}",
+                            job.correlationId(), job.userId(), job.deletionType(), progress.get().skillsDeleted());
+                }
+            } catch (RuntimeException e) {
+                recordFailure(job, phase, e);
+                return true;
+            }
+            if (phase != Phase.DONE && !pause()) {
+                jobs.release(job.correlationId(), nodeId);
+                return true;
+            }
+        }
+        completed.increment();
+        return true;
+    }
+
+    private Optional<GdprDeletionJob> runBatch(GdprDeletionJob job, Phase phase) {
+        return transactionTemplate.execute(status -> {
+            int affected = gdprService.deleteBatch(job.userId(), job.deletionType(), phase, batchSize);
+            Phase next = phase.batched() && affected >= batchSize ? phase : phase.next();
+            Optional<GdprDeletionJob> progress = jobs.recordBatch(job.correlationId(), nodeId, next, affected, leaseMs);
+            if (progress.isEmpty()) {
+                // Another node holds the job now; its batches must not be counted twice
+                status.setRollbackOnly();
+            } else {
+                skillsDeleted.increment(affected);
+            }
+            return progress;
+        });
+    }
+
+    private void recordFailure(GdprDeletionJob job, Phase phase, RuntimeException e) {
+        log.warn("GDPR deletion job {} failed at {}: {}", job.correlationId(), phase, e.getMessage());
+        try {
+            jobs.recordFailure(job.correlationId(), nodeId, e.getMessage(), retryDelayMs, maxAttempts)
+                    .filter(updated -> updated.status() == GdprDeletionJob.Status.FAILED)
+                    .ifPresent(updated -> {
+                        failed.increment();
+                        log.error("GDPR deletion job {} failed after {} attempts: {}",
+                                updated.correlationId(), updated.attempts(), updated.lastError());
+                    });
+        } catch (RuntimeException recordError) {
+            // The lease runs out and the job is retried from its last committed batch
+            log.warn("Failed to record failure of GDPR deletion job {}: {}", job.correlationId(), recordError.getMessage());
+        }
+    }
+
+    /**
+     * @return false if the runner was interrupted
+     */
+    private boolean pause() {
+        if (batchDelayMs <= 0) return true;
+        try {
+            Thread.sleep(batchDelayMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import nl.ak.skillswap.userservice.gdpr.event.GdprDeletionRequest;
 import nl.ak.skillswap.userservice.repository.PrivacyEventRepository;
 import nl.ak.skillswap.userservice.repository.SkillRepository;
 import nl.ak.skillswap.userservice.repository.UserRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,10 +26,17 @@ public class GdprService {
 
     private static final String SERVICE_NAME = "user-service";
 
+    private static final String DELETE_SKILLS_BATCH = """
+            DELETE FROM skills s
+             USING (SELECT id FROM skills WHERE user_id = ? LIMIT ?) b
+             WHERE s.id = b.id
+            """;
+
     private final UserService userService;
     private final UserRepository userRepository;
     private final SkillRepository skills;
     private final PrivacyEventRepository privacyEvents;
+    private final JdbcTemplate jdbcTemplate;
 
     /**
      * Export all user data by database ID.
@@ -50,48 +58,39 @@ public class GdprService {
     }
 
     /**
-     * Delete user data by external ID.
+     * Resolve the user a deletion request is about, see {@link GdprDeletionJobRunner}.
      */
-    @Transactional
-    public DeletionResult deleteByExternalId(String externalId, GdprDeletionRequest.DeletionType type) {
-        log.info("GDPR deletion for externalId: {}, type: {}", externalId, type);
-
-        Optional<User> userOpt = userRepository.findByExternalId(externalId);
-        if (userOpt.isEmpty()) {
-            log.warn("User not found for deletion: {}", externalId);
-            return DeletionResult.notFound(externalId);
-        }
-
-        User user = userOpt.get();
-        UUID userId = user.getId();
-
-        try {
-            if (type == GdprDeletionRequest.DeletionType.FULL) {
-                // Full deletion - soft delete user, delete skills
-                int skillsDeleted = skills.deleteByUserId(userId);
-                user.softDeleteNow();
-                userRepository.save(user);
-
-                // Record deletion event
-                privacyEvents.save(PrivacyEvent.of(userId, PrivacyEventType.ACCOUNT_DELETED, null));
+    @Transactional(readOnly = true)
+    public Optional<UUID> findUserIdByExternalId(String externalId) {
+        return userRepository.findByExternalId(externalId).map(User::getId);
+    }
 
-                log.info("GDPR full deletion completed: userId={}, skillsDeleted={}", userId, skillsDeleted);
-                return new DeletionResult(SERVICE_NAME, externalId, Instant.now(), true, skillsDeleted, "User and skills deleted");
-            } else {
-                // Anonymize - clear personal data but keep record
-                user.anonymize();
+    /**
+     * Run one step of a deletion job.
+     *
+     * @return skills deleted by the step
+     */
+    @Transactional
+    public int deleteBatch(UUID userId, GdprDeletionRequest.DeletionType type, GdprDeletionJob.Phase phase, int batchSize) {
+        return switch (phase) {
+            case DELETE_SKILLS -> jdbcTemplate.update(DELETE_SKILLS_BATCH, userId, batchSize);
+            case FINALIZE -> {
+                User user = userRepository.findById(userId)
+                        .orElseThrow(() -> new IllegalStateException("User " + userId + " no longer exists"));
+                if (type == GdprDeletionRequest.DeletionType.FULL) {
+                    // Full deletion - soft delete user once the skills are gone
+                    user.softDeleteNow();
+                    privacyEvents.save(PrivacyEvent.of(userId, PrivacyEventType.ACCOUNT_DELETED, null));
+                } else {
+                    // Anonymize - clear personal data but keep record
+                    user.anonymize();
+                    privacyEvents.save(PrivacyEvent.of(userId, PrivacyEventType.ACCOUNT_DELETED, "anonymized"));
+                }
                 userRepository.save(user);
-
-                // Record anonymization event
-                privacyEvents.save(PrivacyEvent.of(userId, PrivacyEventType.ACCOUNT_DELETED, "anonymized"));
-
-                log.info("GDPR anonymization completed: userId={}", userId);
-                return new DeletionResult(SERVICE_NAME, externalId, Instant.now(), true, 0, "User data anonymized");
+                yield 0;
             }
-        } catch (Exception e) {
-            log.error("GDPR deletion failed for {}: {}", externalId, e.getMessage(), e);
-            return DeletionResult.error(externalId, e.getMessage());
-        }
+            case DONE -> 0;
+        };
     }
 
     private ExportBundle exportUserData(User user) {
@@ -163,21 +162,4 @@ public class GdprService {
 
         public record Summary(int totalSkills, int totalPrivacyEvents) {}
     }
-
-    public record DeletionResult(
-            String serviceName,
-            String externalId,
-            Instant deletedAt,
-            boolean success,
-            int itemsDeleted,
-            String message
-    ) {
-        public static DeletionResult notFound(String externalId) {
-            return new DeletionResult(SERVICE_NAME, externalId, Instant.now(), false, 0, "User not found");
-        }
-
-        public static DeletionResult error(String externalId, String errorMessage) {
-            return new DeletionResult(SERVICE_NAME, externalId, Instant.now(), false, 0, errorMessage);
-        }
-    }
 }
@@ -1,10 +1,14 @@
 package nl.ak.skillswap.userservice.service;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.userservice.support.MultiPatternMatcher;
 import org.owasp.encoder.Encode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Service for sanitizing user input to prevent XSS and injection attacks.
  * OWASP Top 10: A03 - Injection, A07 - Cross-Site Scripting (XSS)
@@ -13,12 +17,29 @@ import org.springframework.stereotype.Service;
 @Service
 public class InputSanitizer {
 
+    private static final List<String> DEFAULT_UNSAFE_PATTERNS = List.of(
+            "<script", "javascript:", "onerror=", "onclick=", "onload=", "eval(",
+            "union select", "drop table", "insert into", "delete from"
+    );
+
     @Value("${app.search.min-query-length:2}")
     private int minQueryLength;
 
     @Value("${app.search.max-query-length:100}")
     private int maxQueryLength;
 
+    private MultiPatternMatcher unsafePatterns = MultiPatternMatcher.of(DEFAULT_UNSAFE_PATTERNS);
+
+    /**
+     * Moderation terms on top of the built-in XSS and SQL patterns.
+     */
+    @Value("${app.content-safety.additional-patterns:}")
+    void setAdditionalUnsafePatterns(List<String> additionalPatterns) {
+        List<String> patterns = new ArrayList<>(DEFAULT_UNSAFE_PATTERNS);
+        patterns.addAll(additionalPatterns);
+        this.unsafePatterns = MultiPatternMatcher.of(patterns);
+    }
+
     /**
      * Sanitize search query input.
      * - Trims whitespace
@@ -104,22 +125,13 @@ public class InputSanitizer {
     /**
      * Check if input contains potential injection patterns.
      * Returns true if safe, false if suspicious.
+     * Covers the XSS and SQL patterns plus any configured moderation terms.
      */
     public boolean isSafeInput(String input) {
         if (input == null) {
             return true;
         }
 
-        String lower = input.toLowerCase();
-        return !lower.contains("<script") &&
-                !lower.contains("javascript:") &&
-                !lower.contains("onerror=") &&
-                !lower.contains("onclick=") &&
-                !lower.contains("onload=") &&
-                !lower.contains("eval(") &&
-                !lower.contains("union select") &&
-                !lower.contains("drop table") &&
-                !lower.contains("insert into") &&
-                !lower.contains("delete from");
+        return !unsafePatterns.containsAny(input);
     }
 }
@@ -1,8 +1,5 @@
 package nl.ak.skillswap.userservice.service;
 
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.distributed.proxy.ProxyManager;
 import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
 import io.lettuce.core.RedisClient;
@@ -10,57 +7,146 @@ import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.codec.StringCodec;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ak.skillswap.userservice.support.HybridRateLimiter;
 import nl.ak.skillswap.userservice.support.RateLimitExceededException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
-import java.util.function.Supplier;
 
 /**
  * Distributed rate limiting service using Bucket4j with Redis backend.
  * OWASP: Prevents API abuse, brute force attacks, and DoS attempts.
+ *
+ * Checks go through {@link HybridRateLimiter}: tokens are leased from Redis in chunks and served
+ * locally. When Redis is unavailable, limits are enforced per node rather than switched off.
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class RateLimitingService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${app.rate-limiting.search-per-minute:30}")
     private int searchPerMinute;
 
     @Value("${app.rate-limiting.search-burst:10}")
     private int searchBurst;
 
+    @Value("${app.rate-limiting.lease-size:5}")
+    private int leaseSize;
+
+    @Value("${app.rate-limiting.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${app.rate-limiting.redis-timeout-ms:500}")
+    private long redisTimeoutMs;
+
+    @Value("${app.rate-limiting.redis-retry-ms:5000}")
+    private long redisRetryMs;
+
     @Value("${spring.data.redis.host:localhost}")
     private String redisHost;
 
     @Value("${spring.data.redis.port:6379}")
     private int redisPort;
 
-    private ProxyManager<String> proxyManager;
+    private volatile HybridRateLimiter searchLimiter;
+    private volatile HybridRateLimiter apiLimiter;
+    private volatile boolean redisConnected;
 
     @PostConstruct
     public void init() {
+        ProxyManager<String> proxyManager = tryConnect();
+        buildLimiters(proxyManager);
+        log.info("Rate limiting initialized: {} searches/min, burst: {}, lease size: {}, redis: {}",
+                searchPerMinute, searchBurst, leaseSize, proxyManager != null ? "connected" : "unavailable");
+    }
+
+    /**
+     * Keeps trying to reach Redis when it was down at startup; until then limits are enforced per node.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limiting.redis-retry-ms:5000}",
+            initialDelayString = "${app.rate-limiting.redis-retry-ms:5000}")
+    void retryRedisConnection() {
+        if (redisConnected) return;
+        ProxyManager<String> proxyManager = tryConnect();
+        if (proxyManager == null) return;
+
+        // The node-local buckets held no Redis tokens, so they can simply be dropped
+        buildLimiters(proxyManager);
+        log.info("Redis reachable again, rate limits are shared across nodes");
+    }
+
+    private ProxyManager<String> tryConnect() {
+        try {
+            ProxyManager<String> proxyManager = connectProxyManager();
+            redisConnected = true;
+            return proxyManager;
+        } catch (RuntimeException e) {
+            log.warn("Redis not available for rate limiting, limiting per node: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    ProxyManager<String> connectProxyManager() {
+        RedisClient redisClient = RedisClient.create("redis://" + redisHost + ":" + redisPort);
         try {
-            RedisClient redisClient = RedisClient.create("redis://" + redisHost + ":" + redisPort);
             StatefulRedisConnection<String, byte[]> connection = redisClient.connect(
                     RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE)
             );
-
-            this.proxyManager = LettuceBasedProxyManager.builderFor(connection)
+            connection.setTimeout(Duration.ofMillis(redisTimeoutMs));
+            return LettuceBasedProxyManager.builderFor(connection)
                     .build();
+        } catch (RuntimeException e) {
+            redisClient.shutdown();
+            throw e;
+        }
+    }
+
+    private void buildLimiters(ProxyManager<String> proxyManager) {
+        Duration idleTimeout = Duration.ofMillis(idleTimeoutMs);
+        Duration retryDelay = Duration.ofMillis(redisRetryMs);
+        searchLimiter = new HybridRateLimiter(
+                new HybridRateLimiter.Limit("search", searchBurst, searchPerMinute, Duration.ofMinutes(1),
+                        Math.min(leaseSize, searchBurst)),
+                proxyManager, idleTimeout, retryDelay, meterRegistry);
+        apiLimiter = new HybridRateLimiter(
+                // Burst capacity 20, 100 requests/minute
+                new HybridRateLimiter.Limit("api", 20, 100, Duration.ofMinutes(1), leaseSize),
+                proxyManager, idleTimeout, retryDelay, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        limiters().forEach(HybridRateLimiter::releaseAll);
+    }
 
-            log.info("Rate limiting initialized: {} searches/min, burst: {}", searchPerMinute, searchBurst);
-        } catch (Exception e) {
-            log.warn("Redis not available for rate limiting, using in-memory fallback: {}", e.getMessage());
-            // Rate limiting will be disabled if Redis is unavailable
-            this.proxyManager = null;
+    @Scheduled(fixedDelayString = "${app.rate-limiting.reconcile-interval-ms:5000}",
+            initialDelayString = "${app.rate-limiting.reconcile-interval-ms:5000}")
+    void reconcile() {
+        for (HybridRateLimiter limiter : limiters()) {
+            try {
+                limiter.reconcile();
+            } catch (RuntimeException e) {
+                log.warn("Rate limit reconciliation failed: {}", e.getMessage());
+            }
         }
     }
 
+    private List<HybridRateLimiter> limiters() {
+        return List.of(searchLimiter, apiLimiter);
+    }
+
     /**
      * Check if user can perform a search (rate limiting).
      *
@@ -68,15 +154,7 @@ public class RateLimitingService {
      * @throws RateLimitExceededException if rate limit exceeded
      */
     public void checkSearchRateLimit(UUID userId) {
-        if (proxyManager == null) {
-            return; // Skip rate limiting if Redis unavailable
-        }
-
-        String key = "rate:search:" + userId;
-        Bucket bucket = proxyManager.builder()
-                .build(key, getSearchRateLimitConfig());
-
-        if (!bucket.tryConsume(1)) {
+        if (!searchLimiter.tryAcquire("rate:search:" + userId)) {
             log.warn("Search rate limit exceeded for user: {}", userId);
             throw new RateLimitExceededException("Too many search requests. Please wait before searching again.");
         }
@@ -86,35 +164,9 @@ public class RateLimitingService {
      * Check API rate limit (general API calls).
      */
     public void checkApiRateLimit(UUID userId) {
-        if (proxyManager == null) {
-            return;
-        }
-
-        String key = "rate:api:" + userId;
-        Bucket bucket = proxyManager.builder()
-                .build(key, getApiRateLimitConfig());
-
-        if (!bucket.tryConsume(1)) {
+        if (!apiLimiter.tryAcquire("rate:api:" + userId)) {
             log.warn("API rate limit exceeded for user: {}", userId);
             throw new RateLimitExceededException("Too many requests. Please slow down.");
         }
     }
-
-    private Supplier<BucketConfiguration> getSearchRateLimitConfig() {
-        return () -> BucketConfiguration.builder()
-                .addLimit(Bandwidth.builder()
-                        .capacity(searchBurst)
-                        .refillGreedy(searchPerMinute, Duration.ofMinutes(1))
-                        .build())
-                .build();
-    }
-
-    private Supplier<BucketConfiguration> getApiRateLimitConfig() {
-        return () -> BucketConfiguration.builder()
-                .addLimit(Bandwidth.builder()
-                        .capacity(20)  // Burst capacity
-                        .refillGreedy(100, Duration.ofMinutes(1))  // 100 requests/minute
-                        .build())
-                .build();
-    }
 }
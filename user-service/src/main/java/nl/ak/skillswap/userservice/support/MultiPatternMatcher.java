@@ -0,0 +1,197 @@
+package nl.ak.skillswap.userservice.support;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Case-insensitive Aho–Corasick automaton over a fixed set of patterns.
+ *
+ * Built once, it finds every pattern in one pass over the text, reading each character once
+ * and without creating a lowercase copy, so the cost of a scan does not grow with the number
+ * of patterns. Characters are compared after {@link Character#toLowerCase(char)}.
+ *
+ * The automaton is a complete DFA over the characters that occur in the patterns; every other
+ * character leads back to the root. Instances are immutable and thread-safe.
+ */
+public final class MultiPatternMatcher {
+
+    private static final int ASCII = 128;
+
+    private final String[] patterns;
+    // Character class per ASCII character; 0 is "not in any pattern"
+    private final int[] asciiClasses;
+    // Sorted non-ASCII pattern characters, with their classes at the same index
+    private final char[] otherChars;
+    private final int[] otherClasses;
+    private final int width;
+    // transitions[state * width + class] -> next state
+    private final int[] transitions;
+    // Pattern ending at a state, or -1
+    private final int[] match;
+    // Nearest state on the failure chain that ends a pattern, or -1
+    private final int[] outputLink;
+    // Whether any pattern ends at the state or on its failure chain
+    private final boolean[] accepting;
+
+    private MultiPatternMatcher(List<String> patterns) {
+        this.patterns = patterns.toArray(new String[0]);
+
+        // Alphabet: one class per distinct pattern character
+        Set<Character> alphabet = new TreeSet<>();
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) alphabet.add(pattern.charAt(i));
+        }
+        asciiClasses = new int[ASCII];
+        List<Character> others = new ArrayList<>();
+        int cls = 1;
+        for (char c : alphabet) {
+            if (c < ASCII) {
+                asciiClasses[c] = cls++;
+            } else {
+                others.add(c);
+            }
+        }
+        otherChars = new char[others.size()];
+        otherClasses = new int[others.size()];
+        for (int i = 0; i < others.size(); i++) {
+            otherChars[i] = others.get(i);
+            otherClasses[i] = cls++;
+        }
+        width = cls;
+
+        // Trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        gotoTable.add(newRow());
+        ends.add(-1);
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = classOf(pattern.charAt(i));
+                if (gotoTable.get(state)[c] < 0) {
+                    gotoTable.get(state)[c] = gotoTable.size();
+                    gotoTable.add(newRow());
+                    ends.add(-1);
+                }
+                state = gotoTable.get(state)[c];
+            }
+            ends.set(state, p);
+        }
+
+        // Failure links, breadth first, completing the goto function into a DFA on the way
+        int states = gotoTable.size();
+        transitions = new int[states * width];
+        match = new int[states];
+        outputLink = new int[states];
+        accepting = new boolean[states];
+        int[] fail = new int[states];
+        for (int s = 0; s < states; s++) match[s] = ends.get(s);
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        outputLink[0] = -1;
+        accepting[0] = match[0] >= 0;
+        for (int c = 0; c < width; c++) {
+            int child = gotoTable.get(0)[c];
+            if (child > 0) {
+                fail[child] = 0;
+                queue.add(child);
+                transitions[c] = child;
+            } else {
+                transitions[c] = 0;
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            int f = fail[s];
+            outputLink[s] = match[f] >= 0 ? f : outputLink[f];
+            accepting[s] = match[s] >= 0 || accepting[f];
+            for (int c = 0; c < width; c++) {
+                int child = gotoTable.get(s)[c];
+                if (child > 0) {
+                    fail[child] = transitions[f * width + c];
+                    queue.add(child);
+                    transitions[s * width + c] = child;
+                } else {
+                    transitions[s * width + c] = transitions[f * width + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param patterns patterns to look for; blank entries are ignored and case does not matter
+     */
+    public static MultiPatternMatcher of(Collection<String> patterns) {
+        Set<String> folded = new LinkedHashSet<>();
+        for (String pattern : patterns) {
+            if (pattern == null || pattern.isBlank()) continue;
+            folded.add(fold(pattern));
+        }
+        return new MultiPatternMatcher(List.copyOf(folded));
+    }
+
+    /**
+     * Whether the text contains any of the patterns. Stops at the first match.
+     */
+    public boolean containsAny(CharSequence text) {
+        if (patterns.length == 0) return false;
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = transitions[state * width + classOf(Character.toLowerCase(text.charAt(i)))];
+            if (accepting[state]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Every distinct pattern that occurs in the text, in lowercase, in order of first occurrence.
+     */
+    public List<String> findAll(CharSequence text) {
+        if (patterns.length == 0) return List.of();
+        boolean[] seen = new boolean[patterns.length];
+        List<String> found = new ArrayList<>();
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = transitions[state * width + classOf(Character.toLowerCase(text.charAt(i)))];
+            if (!accepting[state]) continue;
+            for (int s = match[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                int p = match[s];
+                if (!seen[p]) {
+                    seen[p] = true;
+                    found.add(patterns[p]);
+                }
+            }
+        }
+        return found;
+    }
+
+    public int patternCount() {
+        return patterns.length;
+    }
+
+    private int classOf(char c) {
+        if (c < ASCII) return asciiClasses[c];
+        int i = Arrays.binarySearch(otherChars, c);
+        return i >= 0 ? otherClasses[i] : 0;
+    }
+
+    private int[] newRow() {
+        int[] row = new int[width];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static String fold(String pattern) {
+        char[] chars = pattern.toCharArray();
+        for (int i = 0; i < chars.length; i++) chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,26 @@
+-- V3__gdpr_deletion_jobs.sql
+
+-- GDPR deletions run as jobs: skills are deleted in small batches, one short transaction each,
+-- before the user row is soft-deleted or anonymized. The job row records how far it got in the
+-- same transaction as every batch, so a job resumes where it stopped after a crash. A node holds
+-- a job through a lease (locked_by, locked_until) that it extends with every batch; an expired
+-- lease lets any node take over. After a failure locked_until also delays the retry.
+
+CREATE TABLE gdpr_deletion_jobs (
+                                    correlation_id  UUID PRIMARY KEY,
+                                    user_id         UUID        NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+                                    deletion_type   VARCHAR(16) NOT NULL,
+                                    phase           VARCHAR(32) NOT NULL,
+                                    status          VARCHAR(16) NOT NULL,
+                                    skills_deleted  INT         NOT NULL DEFAULT 0,
+                                    attempts        INT         NOT NULL DEFAULT 0,
+                                    last_error      TEXT,
+                                    locked_by       VARCHAR(64),
+                                    locked_until    TIMESTAMPTZ,
+                                    created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+                                    updated_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+                                    finished_at     TIMESTAMPTZ
+);
+
+CREATE INDEX idx_gdpr_deletion_jobs_open
+    ON gdpr_deletion_jobs (created_at) WHERE finished_at IS NULL;
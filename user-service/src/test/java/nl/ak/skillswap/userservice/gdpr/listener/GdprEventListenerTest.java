@@ -0,0 +1,76 @@
+package nl.ak.skillswap.userservice.gdpr.listener;
+
+import nl.ak.skillswap.userservice.gdpr.event.GdprExportRequest;
+import nl.ak.skillswap.userservice.gdpr.event.GdprExportResponse;
+import nl.ak.skillswap.userservice.service.GdprDeletionJobRunner;
+import nl.ak.skillswap.userservice.service.GdprService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GdprEventListener")
+class GdprEventListenerTest {
+
+    private static final String REPLY_QUEUE = "gdpr.export.reply.gateway.abc";
+
+    @Mock
+    private GdprService gdprService;
+
+    @Mock
+    private GdprDeletionJobRunner deletionJobRunner;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @InjectMocks
+    private GdprEventListener listener;
+
+    private GdprExportRequest request(String replyTo) {
+        return new GdprExportRequest(UUID.randomUUID(), UUID.randomUUID(), "kc-user", Instant.now(), replyTo);
+    }
+
+    @Test
+    @DisplayName("should send the export response to the reply queue of the gateway that asked")
+    void shouldReplyToRequestingGateway() {
+        when(gdprService.exportByExternalId("kc-user")).thenReturn(Optional.empty());
+
+        listener.handleExportRequest(request(REPLY_QUEUE));
+
+        ArgumentCaptor<MessagePostProcessor> postProcessor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(REPLY_QUEUE), any(GdprExportResponse.class), postProcessor.capture());
+        verify(rabbitTemplate, never()).convertAndSend(eq("skillswap.events"), anyString(), any(Object.class));
+
+        Message message = postProcessor.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertThat(message.getMessageProperties().getType()).isEqualTo("gdpr.export.response");
+    }
+
+    @Test
+    @DisplayName("should send the export response to the shared exchange when the request has no reply queue")
+    void shouldReplyOnSharedExchangeWithoutReplyQueue() {
+        when(gdprService.exportByExternalId("kc-user")).thenReturn(Optional.empty());
+
+        listener.handleExportRequest(request(null));
+
+        verify(rabbitTemplate).convertAndSend(eq("skillswap.events"), eq("gdpr.export.response"), any(GdprExportResponse.class));
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), any(), any(MessagePostProcessor.class));
+    }
+}
@@ -0,0 +1,121 @@
+package nl.ak.skillswap.userservice.integration;
+
+import nl.ak.skillswap.userservice.domain.User;
+import nl.ak.skillswap.userservice.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@DisplayName("InternalController Integration Tests")
+@AutoConfigureMockMvc
+@Import(TestSecurityConfig.class)
+class InternalControllerIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User activeUser;
+    private User otherActiveUser;
+    private User inactiveUser;
+    private User deletedUser;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+
+        activeUser = userRepository.save(user("active-ext-id", "active@test.com", true, null));
+        otherActiveUser = userRepository.save(user(UUID.randomUUID().toString(), "other@test.com", true, null));
+        inactiveUser = userRepository.save(user("inactive-ext-id", "inactive@test.com", false, null));
+        deletedUser = userRepository.save(user("deleted-ext-id", "deleted@test.com", true, OffsetDateTime.now()));
+    }
+
+    private User user(String externalId, String email, boolean active, OffsetDateTime deletedAt) {
+        return User.builder()
+                .externalId(externalId)
+                .email(email)
+                .displayName(email)
+                .active(active)
+                .allowMatching(true)
+                .allowEmails(true)
+                .deletedAt(deletedAt)
+                .build();
+    }
+
+    @Nested
+    @DisplayName("POST /internal/users/resolve:batch")
+    class ResolveBatch {
+
+        @Test
+        @DisplayName("should resolve only active users")
+        void shouldResolveOnlyActiveUsers() throws Exception {
+            mockMvc.perform(post("/internal/users/resolve:batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    {"externalIds": ["active-ext-id", "inactive-ext-id", "deleted-ext-id", "unknown"]}
+                                    """))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.resolved", hasSize(1)))
+                    .andExpect(jsonPath("$.resolved[0].databaseId", is(activeUser.getId().toString())))
+                    .andExpect(jsonPath("$.resolved[0].externalId", is("active-ext-id")));
+        }
+
+        @Test
+        @DisplayName("should reject batches above the limit")
+        void shouldRejectOversizedBatch() throws Exception {
+            String ids = String.join(",", Collections.nCopies(501, "\"x\""));
+
+            mockMvc.perform(post("/internal/users/resolve:batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"externalIds\": [" + ids + "]}"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("POST /internal/users/exists:batch")
+    class ExistsBatch {
+
+        @Test
+        @DisplayName("should return requested IDs that match a database or external ID")
+        void shouldMatchDatabaseAndExternalIds() throws Exception {
+            UUID otherUserExternalId = UUID.fromString(otherActiveUser.getExternalId());
+            UUID unknown = UUID.randomUUID();
+
+            mockMvc.perform(post("/internal/users/exists:batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"ids\": [\"%s\", \"%s\", \"%s\", \"%s\"]}".formatted(
+                                    activeUser.getId(), otherUserExternalId, inactiveUser.getId(), unknown)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.existing", hasSize(2)))
+                    .andExpect(jsonPath("$.existing", containsInAnyOrder(
+                            activeUser.getId().toString(), otherUserExternalId.toString())));
+        }
+
+        @Test
+        @DisplayName("should not report deleted users")
+        void shouldNotReportDeletedUsers() throws Exception {
+            mockMvc.perform(post("/internal/users/exists:batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"ids\": [\"%s\"]}".formatted(deletedUser.getId())))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.existing", empty()));
+        }
+    }
+}
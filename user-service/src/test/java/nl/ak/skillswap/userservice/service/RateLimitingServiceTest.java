@@ -0,0 +1,82 @@
+package nl.ak.skillswap.userservice.service;
+
+import io.github.bucket4j.distributed.BucketProxy;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.proxy.RemoteBucketBuilder;
+import io.lettuce.core.RedisConnectionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ak.skillswap.userservice.support.RateLimitExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("RateLimitingService")
+class RateLimitingServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final ProxyManager<String> proxyManager = mock(ProxyManager.class);
+    @SuppressWarnings("unchecked")
+    private final RemoteBucketBuilder<String> builder = mock(RemoteBucketBuilder.class);
+    private final BucketProxy remote = mock(BucketProxy.class);
+
+    private RateLimitingService service;
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        when(proxyManager.builder()).thenReturn(builder);
+        when(builder.build(anyString(), any())).thenReturn(remote);
+
+        service = spy(new RateLimitingService(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "searchPerMinute", 30);
+        ReflectionTestUtils.setField(service, "searchBurst", 10);
+        ReflectionTestUtils.setField(service, "leaseSize", 5);
+        ReflectionTestUtils.setField(service, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(service, "redisRetryMs", 5_000L);
+    }
+
+    @Test
+    @DisplayName("should limit per node while Redis is unreachable at startup")
+    void shouldLimitLocallyWithoutRedis() {
+        doThrow(new RedisConnectionException("down")).when(service).connectProxyManager();
+        service.init();
+
+        for (int i = 0; i < 10; i++) {
+            service.checkSearchRateLimit(userId);
+        }
+        assertThatThrownBy(() -> service.checkSearchRateLimit(userId))
+                .isInstanceOf(RateLimitExceededException.class);
+    }
+
+    @Test
+    @DisplayName("should switch to Redis once it becomes reachable after startup")
+    void shouldReconnectToRedis() {
+        doThrow(new RedisConnectionException("down"))
+                .doThrow(new RedisConnectionException("still down"))
+                .doReturn(proxyManager)
+                .when(service).connectProxyManager();
+        when(remote.tryConsumeAsMuchAsPossible(5)).thenReturn(5L);
+        service.init();
+
+        service.retryRedisConnection();
+        service.checkSearchRateLimit(userId);
+        verifyNoInteractions(remote);
+
+        service.retryRedisConnection();
+        assertThatNoException().isThrownBy(() -> service.checkSearchRateLimit(userId));
+        verify(remote).tryConsumeAsMuchAsPossible(5);
+
+        // Connected: later retries do nothing
+        service.retryRedisConnection();
+        verify(service, times(3)).connectProxyManager();
+    }
+}